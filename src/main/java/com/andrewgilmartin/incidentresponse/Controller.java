@@ -6,12 +6,37 @@ import java.util.List;
 
 public interface Controller {
 
+    /**
+     * The counter of conditional updates that found the task at another
+     * version.
+     */
+    String CONFLICTS_COUNTER = "incidentresponse.updates.conflicts";
+
     Workspace findWorkspace(String workspaceId);
 
+    /**
+     * Add the task. Every controller throws IllegalStateException, having
+     * logged why, when the task can not be stored, and never returns null.
+     */
     Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status);
 
+    /**
+     * Update the task whatever its version. Returns the updated task, or null
+     * when it can not be found. Throws IllegalStateException, as addTask
+     * does, when the task can not be stored.
+     */
     Task updateTask(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status);
 
+    /**
+     * Update the task only if it is still at the given version, ie no one has
+     * updated it since it was found. Returns the updated task, at the next
+     * version, or null when the task has a different version or can not be
+     * found, and then callers find the task again and retry. Throws
+     * IllegalStateException, as addTask does, when the task can not be
+     * stored, which retrying will not fix.
+     */
+    Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status);
+
     Task findTask(Workspace workspace, String taskId);
 
     List<Task> findTasks(Workspace workspace, TaskFilter taskFilter);
@@ -1,19 +1,61 @@
 package com.andrewgilmartin.incidentresponse;
 
+import com.andrewgilmartin.slack.AttachmentFragment;
+import com.andrewgilmartin.slack.SlackApp;
 import com.andrewgilmartin.slack.SlackRequest;
 import com.andrewgilmartin.slack.SlackResponse;
 import com.andrewgilmartin.slack.SlackResponseContent;
-import java.util.function.BiConsumer;
-import com.andrewgilmartin.slack.SlackApp;
+import com.andrewgilmartin.util.Metrics;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class IncidentResponseSlackApp implements SlackApp {
 
+    /**
+     * Slack shows at most 100 attachments and truncates messages of more than
+     * 40,000 characters.
+     */
+    public static final int DEFAULT_MAX_LIST_TASKS = 100;
+    public static final int DEFAULT_MAX_LIST_BYTES = 32 * 1024;
+
+    /**
+     * The continuation of a listing, eg "more 42" lists the tasks after task
+     * 42. It ends the command, as the next page's command is written, so
+     * that a task's description can have the words, eg "add more 2 servers".
+     */
+    private static final Pattern MORE_PATTERN = Pattern.compile("(?:^|\\s)more\\s+(\\d+)$");
+
+    /**
+     * A search of the descriptions, eg "?disk full" lists the tasks with the
+     * words "disk" and "full". The question mark can not start a task's
+     * description as a word can.
+     */
+    private static final Pattern FIND_PATTERN = Pattern.compile("^\\?\\s*(\\S.*)$");
+
+    /**
+     * How many times an update is tried when others update the task first.
+     */
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+
+    /**
+     * The reply when the controller can not store a task.
+     */
+    private static final String UNSTORED_ERROR_TEXT = "I'm sorry, but I couldn't save the task. Please, try again later.";
+
+    private static final LongAdder updateRetries = Metrics.counter("incidentresponse.updates.retries");
+    private static final LongAdder updateFailures = Metrics.counter("incidentresponse.updates.failed");
+
     private final String verificationToken;
     private final Controller controller;
+    private int maxListTasks = DEFAULT_MAX_LIST_TASKS;
+    private int maxListBytes = DEFAULT_MAX_LIST_BYTES;
 
     private final BiConsumer<SlackResponseContent, Task> formatTask = this::formatTask; // helper for inner class instances
+    private final TaskFragmentCache taskFragments = new TaskFragmentCache(formatTask, TaskFragmentCache.DEFAULT_CAPACITY, TaskFragmentCache.DEFAULT_TTL);
 
     public IncidentResponseSlackApp(Controller controller, String verificationToken) {
         this.controller = controller;
@@ -24,6 +66,17 @@ public class IncidentResponseSlackApp implements SlackApp {
         return controller;
     }
 
+    /**
+     * Limit each page of a listing to at most maxTasks tasks and about
+     * maxBytes of encoded attachments. A page that does not list all the
+     * matching tasks ends with a hint of the command that lists the next
+     * page. A page always lists at least one task.
+     */
+    public void setListBudget(int maxTasks, int maxBytes) {
+        this.maxListTasks = maxTasks;
+        this.maxListBytes = maxBytes;
+    }
+
     @Override
     public String getVerificationToken() {
         return verificationToken;
@@ -39,11 +92,16 @@ public class IncidentResponseSlackApp implements SlackApp {
         } else if (message.hasId()) {
             command = new UpdateCommand(request, response, workspace, message);
         } else if (message.hasText()) {
+            String listText = withoutMore(message.getText());
             if ("help".equalsIgnoreCase(message.getText())) {
                 command = new HelpCommand(request, response, workspace, message);
-            } else if ("all".equalsIgnoreCase(message.getText())) {
+            } else if (listText.isEmpty()) {
+                command = new ListCommand(request, response, workspace, message);
+            } else if ("all".equalsIgnoreCase(listText)) {
+                command = new ListCommand(request, response, workspace, message);
+            } else if ("finished".equalsIgnoreCase(listText)) {
                 command = new ListCommand(request, response, workspace, message);
-            } else if ("finished".equalsIgnoreCase(message.getText())) {
+            } else if (FIND_PATTERN.matcher(listText).matches()) {
                 command = new ListCommand(request, response, workspace, message);
             } else {
                 command = new AddCommand(request, response, workspace, message);
@@ -54,6 +112,11 @@ public class IncidentResponseSlackApp implements SlackApp {
         command.perform();
     }
 
+    private static String withoutMore(String text) {
+        Matcher m = MORE_PATTERN.matcher(text);
+        return m.find() ? (text.substring(0, m.start()) + text.substring(m.end())).trim() : text;
+    }
+
     private void formatTask(SlackResponseContent content, Task task) {
         content
                 .attachment()
@@ -127,7 +190,8 @@ public class IncidentResponseSlackApp implements SlackApp {
                     .text("Briefly, the 3 incident response actions are add task, update task, and list tasks. Ie, ").line()
                     .textf("`%s description [user...] [status]`", slackRequest.getCommandName()).line()
                     .textf("`%s 2 [description] [user...] [status]`", slackRequest.getCommandName()).line()
-                    .textf("`%s [ all | finished ] [user...] [status...]`", slackRequest.getCommandName()).line()
+                    .textf("`%s [ all | finished ] [user...] [status...] [more id]`", slackRequest.getCommandName()).line()
+                    .textf("`%s ?word... [user...] [status...] [more id]`", slackRequest.getCommandName()).line()
                     .text("The available statuses are ").acceptAll((c, s) -> c.space().text(s), workspace.getStatusSet().getStatuses()).line()
                     .text("For further information visit ").link("http://nowhere.com");
 
@@ -142,29 +206,69 @@ public class IncidentResponseSlackApp implements SlackApp {
 
         @Override
         public void perform() {
-            TaskFilter listMatching = new TaskFilter();
-            if ("all".equalsIgnoreCase(message.getText())) {
-                listMatching.hasStatus(workspace.getStatusSet().getStatuses());
-            } else if ("finished".equalsIgnoreCase(message.getText())) {
-                listMatching.hasStatus(workspace.getStatusSet().getFinishedStatuses());
+            String text = message.hasText() ? message.getText() : "";
+            Matcher more = MORE_PATTERN.matcher(text);
+            String afterId = more.find() ? more.group(1) : null;
+            text = withoutMore(text);
+            // one more than the page to know if there are more
+            StatusSet statusSet = workspace.getStatusSet();
+            TaskFilter listMatching = new TaskFilter(statusSet).after(afterId).limit(maxListTasks + 1);
+            Matcher find = FIND_PATTERN.matcher(text);
+            if (find.matches()) {
+                // finished tasks are found too unless statuses are given
+                listMatching.hasWords(find.group(1));
+                if (message.hasStatuses()) {
+                    listMatching.hasStatus(message.getStatuses());
+                } else {
+                    listMatching.hasStatusMask(statusSet.getStatusesMask());
+                }
+            } else if ("all".equalsIgnoreCase(text)) {
+                listMatching.hasStatusMask(statusSet.getStatusesMask());
+            } else if ("finished".equalsIgnoreCase(text)) {
+                listMatching.hasStatusMask(statusSet.getFinishedStatusesMask());
             } else if (message.hasStatuses()) {
                 listMatching.hasStatus(message.getStatuses());
             } else {
-                listMatching.hasStatus(workspace.getStatusSet().getUnfinishedStatuses());
+                listMatching.hasStatusMask(statusSet.getUnfinishedStatusesMask());
             }
             if (message.hasUsers()) {
                 listMatching.hasAssigment(message.getUsers());
             }
             List<Task> tasks = controller.findTasks(workspace, listMatching);
+            SlackResponseContent content = slackResponse.getResponseContent();
             if (tasks.isEmpty()) {
-                slackResponse.getResponseContent().text("No matching tasks");
+                content.text("No matching tasks");
             } else {
-                slackResponse.getResponseContent().text("Matched tasks");
+                content.text("Matched tasks");
+                int listed = 0;
+                int bytes = 0;
+                String lastId = null;
                 for (Task task : tasks) {
-                    slackResponse.getResponseContent().accept(formatTask, task);
+                    if (listed == maxListTasks) {
+                        more(content, lastId);
+                        break;
+                    }
+                    AttachmentFragment fragment = taskFragments.get(workspace, task);
+                    if (listed > 0 && bytes + fragment.size() > maxListBytes) {
+                        more(content, lastId);
+                        break;
+                    }
+                    content.attachment(fragment);
+                    bytes += fragment.size() + 1; // and the comma
+                    listed += 1;
+                    lastId = task.getId();
                 }
             }
         }
+
+        private void more(SlackResponseContent content, String lastId) {
+            String next = withoutMore(slackRequest.getCommandText()) + " more " + lastId;
+            content
+                    .attachment()
+                    .text("More tasks match. Use ")
+                    .textf("`%s %s`", slackRequest.getCommandName(), next.trim())
+                    .text(" to list them.");
+        }
     }
 
     private class AddCommand extends CommandBase {
@@ -175,13 +279,19 @@ public class IncidentResponseSlackApp implements SlackApp {
 
         @Override
         public void perform() {
-            Task addedTask = controller.addTask(
-                    workspace,
-                    message.getText(),
-                    new User(slackRequest.getUser()),
-                    message.getUsers(),
-                    message.hasStatuses() ? message.firstStatus() : workspace.getStatusSet().getDefaultIntitialStatus()
-            );
+            Task addedTask;
+            try {
+                addedTask = controller.addTask(
+                        workspace,
+                        message.getText(),
+                        UserPool.getDefault().intern(slackRequest.getUser()),
+                        message.getUsers(),
+                        message.hasStatuses() ? message.firstStatus() : workspace.getStatusSet().getDefaultIntitialStatus()
+                );
+            } catch (IllegalStateException e) {
+                slackResponse.setErrorText(UNSTORED_ERROR_TEXT);
+                return;
+            }
             slackResponse.getResponseContent().text("Added task").accept(formatTask, addedTask);
         }
     }
@@ -192,11 +302,22 @@ public class IncidentResponseSlackApp implements SlackApp {
             super(slackRequest, slackResponse, workspace, message);
         }
 
+        /**
+         * Merge the message into the task and update it if no one else has
+         * meanwhile, otherwise find the task again and retry. A task the
+         * controller can not store is not retried.
+         */
         @Override
         public void perform() {
-            Task task = controller.findTask(workspace, message.getId());
-            if (task != null) {
-                // NOTE multiple threads could be in this code updating the same task
+            for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+                if (attempt > 0) {
+                    updateRetries.increment();
+                }
+                Task task = controller.findTask(workspace, message.getId());
+                if (task == null) {
+                    slackResponse.setErrorText("I'm sorry, but I can't find the task. List the tasks to confirm the task id.");
+                    return;
+                }
 
                 String description;
                 if (message.hasText()) {
@@ -226,7 +347,17 @@ public class IncidentResponseSlackApp implements SlackApp {
 
                 User creator = task.getCreator();
 
-                Task updatedTask = controller.updateTask(workspace, task.getId(), description, creator, assignments, status);
+                Task updatedTask;
+                try {
+                    updatedTask = controller.updateTask(workspace, task.getId(), task.getVersion(), description, creator, assignments, status);
+                } catch (IllegalStateException e) {
+                    // not a conflict, so there is no point retrying
+                    slackResponse.setErrorText(UNSTORED_ERROR_TEXT);
+                    return;
+                }
+                if (updatedTask == null) {
+                    continue;
+                }
 
                 if (becameFinished) {
                     slackResponse.setBroadcastResponse(true);
@@ -237,9 +368,10 @@ public class IncidentResponseSlackApp implements SlackApp {
                 } else {
                     slackResponse.getResponseContent().text("Updated task").accept(formatTask, updatedTask);
                 }
-            } else {
-                slackResponse.setErrorText("I'm sorry, but I can't find the task. List the tasks to confirm the task id.");
+                return;
             }
+            updateFailures.increment();
+            slackResponse.setErrorText("I'm sorry, but I couldn't update the task as others are updating it too. Please, try again.");
         }
     }
 
@@ -1,21 +1,50 @@
 package com.andrewgilmartin.incidentresponse;
 
 import com.andrewgilmartin.util.Logger;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * A parsed command message. The message is parsed in place: the text, id and
+ * users are kept as offsets into the original message and strings are only
+ * made of them when asked for. Statuses are found by their offsets without
+ * making a string of their names.
+ */
 public class Message {
 
     private static final Logger logger = Logger.getLogger(Message.class);
 
     private static final char EOL = 0;
-    private static final int NAN = Integer.MAX_VALUE;
 
+    private static final Status[] NO_STATUSES = new Status[0];
+
+    private final String message;
     private String errorMessage;
-    private String id = null;
-    private List<User> users = new LinkedList<>();
-    private List<Status> statuses = new LinkedList<>();
-    private StringBuilder text = new StringBuilder();
+    private int idBegin = -1;
+    private int idEnd = -1;
+
+    /**
+     * The text's begin and end offset pairs. The spans are joined by a space
+     * but for those whose begin is stored complemented, ie ~begin, which are
+     * joined without one.
+     */
+    private int[] textSpans;
+    private int textCount = 0;
+
+    /**
+     * Each user's id begin and end offsets followed by its name's.
+     */
+    private int[] userSpans;
+    private int userCount = 0;
+
+    private Status[] statuses = NO_STATUSES;
+    private int statusCount = 0;
+
+    private String text;
+    private String id;
+    private List<User> users;
+    private List<Status> statusList;
 
     public boolean hasError() {
         return errorMessage != null;
@@ -26,55 +55,117 @@ public class Message {
     }
 
     public boolean hasId() {
-        return id != null;
+        return idBegin != -1;
     }
 
     public String getId() {
+        if (id == null && hasId()) {
+            id = message.substring(idBegin, idEnd);
+        }
         return id;
     }
 
     public boolean hasUsers() {
-        return !users.isEmpty();
+        return userCount > 0;
     }
 
     public List<User> getUsers() {
+        if (users == null) {
+            if (userCount == 0) {
+                users = Collections.emptyList();
+            } else {
+                UserPool pool = UserPool.getDefault();
+                User[] u = new User[userCount];
+                for (int i = 0, s = 0; i < userCount; i++, s += 4) {
+                    int nameBegin = userSpans[s + 2];
+                    int nameEnd = userSpans[s + 3];
+                    u[i] = pool.intern(string(userSpans[s], userSpans[s + 1]), nameBegin < nameEnd ? message : null, nameBegin, nameEnd);
+                }
+                users = Arrays.asList(u);
+            }
+        }
         return users;
     }
 
     public boolean hasStatuses() {
-        return !statuses.isEmpty();
+        return statusCount > 0;
     }
 
     public Status firstStatus() {
-        return statuses.isEmpty() ? null : statuses.get(0);
+        return statusCount == 0 ? null : statuses[0];
     }
 
     public List<Status> getStatuses() {
-        return statuses;
+        if (statusList == null) {
+            statusList = statusCount == 0
+                    ? Collections.emptyList()
+                    : Arrays.asList(statusCount == statuses.length ? statuses : Arrays.copyOf(statuses, statusCount));
+        }
+        return statusList;
     }
 
     public boolean hasText() {
-        return text.length() > 0;
+        return textCount > 0;
     }
 
+    /**
+     * Returns the text. When the text's spans are adjacent in the message,
+     * as is usual, the text is a substring of it.
+     */
     public String getText() {
-        return hasText() ? text.toString() : null;
+        if (text == null && hasText()) {
+            int length = 0;
+            boolean adjacent = true;
+            int end = -1;
+            for (int i = 0; i < textCount * 2; i += 2) {
+                int begin = textSpans[i];
+                if (begin < 0) {
+                    begin = ~begin;
+                    adjacent &= end == -1 || begin == end;
+                } else if (end != -1) {
+                    length += 1;
+                    adjacent &= begin == end + 1 && message.charAt(end) == ' ';
+                }
+                end = textSpans[i + 1];
+                length += end - begin;
+            }
+            if (adjacent) {
+                int begin = textSpans[0];
+                text = message.substring(begin < 0 ? ~begin : begin, end);
+            } else {
+                char[] t = new char[length];
+                int n = 0;
+                for (int i = 0; i < textCount * 2; i += 2) {
+                    int begin = textSpans[i];
+                    if (begin < 0) {
+                        begin = ~begin;
+                    } else if (n > 0) {
+                        t[n++] = ' ';
+                    }
+                    message.getChars(begin, textSpans[i + 1], t, n);
+                    n += textSpans[i + 1] - begin;
+                }
+                text = new String(t);
+            }
+        }
+        return text;
     }
 
     public Message(Workspace workspace, String message) {
 
-        char[] m = message.toCharArray();
-        int l = m.length;
+        this.message = message;
+        StatusSet statusSet = workspace.getStatusSet();
+        int l = message.length();
         int i = 0;
         int state = 0;
-        int begin = NAN;
-        String t1 = null;
+        int begin = -1;
+        int userIdEnd = -1;
 
         // looking for [ id ] ( text | "!" status | "<" user-id "|" user-name ">" )*
-        
+
         PARSE:
         for (;;) {
-            char c = i < l ? m[i++] : EOL;
+            char c = i < l ? message.charAt(i++) : EOL;
             switch (state) {
                 case 0: {
                     // start of line
@@ -140,10 +231,14 @@ public class Message {
                 }
 
                 case 2: {
-                    // inside id                    
-                    if (!Character.isDigit(c)) {
-                        id = string(m, begin, i - 1);
-                        begin = NAN;
+                    // inside id
+                    if (c == EOL) {
+                        this.idBegin = begin;
+                        this.idEnd = i;
+                        break PARSE;
+                    } else if (!Character.isDigit(c)) {
+                        this.idBegin = begin;
+                        this.idEnd = i - 1;
                         i -= 1;
                         state = 1;
                     }
@@ -154,7 +249,7 @@ public class Message {
                     // inside text
                     switch (c) {
                         case EOL:
-                            append(text, m, begin, i);
+                            text(begin, i);
                             break PARSE;
                         case '<':
                         case '!':
@@ -162,8 +257,7 @@ public class Message {
                         case '\t':
                         case '\r':
                         case '\n':
-                            append(text, m, begin, i - 1);
-                            begin = NAN;
+                            text(begin, i - 1);
                             state = 1;
                             i -= 1;
                             continue;
@@ -179,9 +273,9 @@ public class Message {
                             errorMessage = "missing the user's id";
                             break PARSE;
                         case '|':
-                            t1 = string(m, begin, i - 1);
-                            begin = i;
+                            userIdEnd = i - 1;
                             state = 5;
+                            continue;
                         default:
                             continue;
                     }
@@ -194,9 +288,7 @@ public class Message {
                             errorMessage = "missing the user's name";
                             break PARSE;
                         case '>':
-                            User user = new User(t1, string(m, begin, i - 1));
-                            users.add(user);
-                            begin = NAN;
+                            user(begin, userIdEnd, userIdEnd + 1, i - 1);
                             state = 1;
                             continue;
                         default:
@@ -210,7 +302,8 @@ public class Message {
                         // it has atleast one char
                         state = 7;
                     } else {
-                        text.append("!");
+                        // the ! is joined to the text without a space
+                        text(~(begin - 1), begin);
                         state = 1;
                     }
                     continue;
@@ -218,23 +311,17 @@ public class Message {
 
                 case 7: {
                     // in status
-                    if (c == EOL) {
-                        String name = string(m, begin, i);
-                        Status status = workspace.getStatusSet().findStatus(name);
+                    if (c == EOL || !Character.isLetterOrDigit(c)) {
+                        int end = c == EOL ? i : i - 1;
+                        Status status = statusSet.findStatus(message, begin, end);
                         if (status == null) {
-                            errorMessage = "unknown status !" + name;
-                        } else {
-                            statuses.add(status);
+                            errorMessage = "unknown status !" + message.substring(begin, end);
+                            break PARSE;
                         }
-                        break PARSE;
-                    } else if (!Character.isLetterOrDigit(c)) {
-                        String name = string(m, begin, i - 1);
-                        Status status = workspace.getStatusSet().findStatus(name);
-                        if (status == null) {
-                            errorMessage = "unknown status !" + name;
+                        status(status);
+                        if (c == EOL) {
                             break PARSE;
                         }
-                        statuses.add(status);
                         state = 1;
                         i -= 1;
                     }
@@ -243,18 +330,46 @@ public class Message {
             }
         }
     }
-    
-    private String string(char[] message, int begin, int end) {
-        return begin != NAN && begin < end ? new String(message, begin, end - begin) : null;
+
+    private void text(int begin, int end) {
+        int s = textCount * 2;
+        if (textSpans == null) {
+            textSpans = new int[16];
+        } else if (s == textSpans.length) {
+            textSpans = Arrays.copyOf(textSpans, s * 2);
+        }
+        textSpans[s] = begin;
+        textSpans[s + 1] = end;
+        textCount += 1;
+    }
+
+    private void user(int idBegin, int idEnd, int nameBegin, int nameEnd) {
+        int s = userCount * 4;
+        if (userSpans == null) {
+            userSpans = new int[8];
+        } else if (s == userSpans.length) {
+            userSpans = Arrays.copyOf(userSpans, s * 2);
+        }
+        userSpans[s] = idBegin;
+        userSpans[s + 1] = idEnd;
+        userSpans[s + 2] = nameBegin;
+        userSpans[s + 3] = nameEnd;
+        userCount += 1;
     }
 
-    private void append(StringBuilder sb, char[] message, int begin, int end) {
-        if (sb.length() > 0) {
-            sb.append(' ');
+    private void status(Status status) {
+        if (statusCount == statuses.length) {
+            statuses = Arrays.copyOf(statuses, Math.max(1, statusCount * 2));
         }
-        sb.append(message, begin, end - begin);
+        statuses[statusCount++] = status;
+    }
+
+    /**
+     * Returns the text between begin and end or null when it is empty.
+     */
+    private String string(int begin, int end) {
+        return begin < end ? message.substring(begin, end) : null;
     }
 }
 
 // END
-
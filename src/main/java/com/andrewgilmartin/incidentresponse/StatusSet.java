@@ -1,16 +1,21 @@
 package com.andrewgilmartin.incidentresponse;
 
 import java.awt.Color;
+import java.util.AbstractSet;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
 
 /**
- * Convenience class for organizing statuses.
+ * Convenience class for organizing statuses. A status set does not change
+ * once made: the statuses are kept in order in arrays and are found by name
+ * using a hash table of their case-folded names. Each status's ordinal is its
+ * position in the set, which the set and not the status keeps, and groups of
+ * statuses are also given as bitmasks of their ordinals.
  */
 public class StatusSet {
 
@@ -26,22 +31,91 @@ public class StatusSet {
     
     public static final StatusSet COMMON_STATUS_SET = new StatusSet(COMMON_STATUSES, COMMON_STATUSES.get(0));
     
+    private final Status[] ordered;
     private final Set<Status> allStatuses;
     private final Set<Status> unfinishedStatuses;
     private final Set<Status> finishedStatuses;
     private final Status defaultIntitialStatus;
+    private final long allMask;
+    private final long unfinishedMask;
+    private final long finishedMask;
 
+    /**
+     * The statuses hashed by their case-folded names using open addressing.
+     * The table is at most half full.
+     */
+    private final Status[] index;
+    private final int[] indexOrdinals;
+    private final int indexMask;
+
+    /**
+     * An immutable set of a few statuses kept in order in an array.
+     */
+    private static final class ArraySet extends AbstractSet<Status> {
+
+        private final Status[] statuses;
+
+        ArraySet(Status[] statuses) {
+            this.statuses = statuses;
+        }
+
+        @Override
+        public Iterator<Status> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(statuses)).iterator();
+        }
+
+        @Override
+        public int size() {
+            return statuses.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            for (Status status : statuses) {
+                if (status.equals(o)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Create the set. Each status's ordinal is its position in the set. A
+     * set has at most 64 statuses.
+     */
     public StatusSet(Collection<Status> statuses, Status defaultStatus) {
-        this.allStatuses = Collections.unmodifiableSet(new ConcurrentSkipListSet<>(
-                statuses
-        ));
-        this.finishedStatuses = Collections.unmodifiableSet(new ConcurrentSkipListSet<>(
-                statuses.stream().filter((s) -> s.isFinished()).collect(Collectors.toList())
-        ));
-        this.unfinishedStatuses = Collections.unmodifiableSet(new ConcurrentSkipListSet<>(
-                statuses.stream().filter((s) -> !s.isFinished()).collect(Collectors.toList())
-        ));
-        this.defaultIntitialStatus = defaultStatus;
+        Status[] all = new TreeSet<>(statuses).toArray(new Status[0]);
+        if (all.length > Long.SIZE) {
+            throw new IllegalArgumentException("a status set has at most " + Long.SIZE + " statuses");
+        }
+        long finished = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (all[i].isFinished()) {
+                finished |= 1L << i;
+            }
+        }
+        this.allMask = all.length == Long.SIZE ? -1L : (1L << all.length) - 1;
+        this.finishedMask = finished;
+        this.unfinishedMask = allMask & ~finished;
+        this.ordered = all;
+        this.allStatuses = new ArraySet(all);
+        this.finishedStatuses = new ArraySet(Arrays.stream(all).filter((s) -> s.isFinished()).toArray(Status[]::new));
+        this.unfinishedStatuses = new ArraySet(Arrays.stream(all).filter((s) -> !s.isFinished()).toArray(Status[]::new));
+        this.index = new Status[Integer.highestOneBit(Math.max(1, all.length)) * 4];
+        this.indexOrdinals = new int[index.length];
+        this.indexMask = index.length - 1;
+        for (int ordinal = 0; ordinal < all.length; ordinal++) {
+            String name = all[ordinal].getName();
+            int i = hash(name, 0, name.length()) & indexMask;
+            while (index[i] != null) {
+                i = (i + 1) & indexMask;
+            }
+            index[i] = all[ordinal];
+            indexOrdinals[i] = ordinal;
+        }
+        Status d = defaultStatus != null ? findStatus(defaultStatus.getName()) : null;
+        this.defaultIntitialStatus = d != null ? d : defaultStatus;
     }
 
     /**
@@ -65,6 +139,56 @@ public class StatusSet {
         return finishedStatuses;
     }
 
+    /**
+     * Returns the mask of all the statuses' bits.
+     */
+    public long getStatusesMask() {
+        return allMask;
+    }
+
+    /**
+     * Returns the mask of the not finished statuses' bits.
+     */
+    public long getUnfinishedStatusesMask() {
+        return unfinishedMask;
+    }
+
+    /**
+     * Returns the mask of the finished statuses' bits.
+     */
+    public long getFinishedStatusesMask() {
+        return finishedMask;
+    }
+
+    /**
+     * Returns the status's position in the set, or -1 when it is not in the
+     * set.
+     */
+    public int ordinalOf(Status status) {
+        if (status == null) {
+            return -1;
+        }
+        // tasks have the set's own statuses, which are found quickest by
+        // identity, eg when a TaskFilter tests many tasks
+        for (int i = 0; i < ordered.length; i++) {
+            if (ordered[i] == status) {
+                return i;
+            }
+        }
+        String name = status.getName();
+        int i = slot(name, 0, name.length());
+        return index[i] != null && index[i].equals(status) ? indexOrdinals[i] : -1;
+    }
+
+    /**
+     * Returns the status's bit in the set's masks, or zero when it is not in
+     * the set.
+     */
+    public long maskOf(Status status) {
+        int ordinal = ordinalOf(status);
+        return ordinal == -1 ? 0 : 1L << ordinal;
+    }
+
     /**
      * Returns the default status, ie for use when status is unspecified.
      */
@@ -76,11 +200,59 @@ public class StatusSet {
      * Find the status with the given, case-insensitive name
      */
     public Status findStatus(String name) {
-        for (Status status : allStatuses) {
-            if (status.getName().equalsIgnoreCase(name)) {
-                return status;
+        return name != null ? findStatus(name, 0, name.length()) : null;
+    }
+
+    /**
+     * Find the status with the given, case-insensitive name that is the text
+     * between begin and end. No string is made of the name.
+     */
+    public Status findStatus(CharSequence text, int begin, int end) {
+        return index[slot(text, begin, end)];
+    }
+
+    /**
+     * Returns the index's slot of the status with the name, or the empty slot
+     * that ends its search.
+     */
+    private int slot(CharSequence text, int begin, int end) {
+        for (int i = hash(text, begin, end) & indexMask;; i = (i + 1) & indexMask) {
+            Status status = index[i];
+            if (status == null || equalsIgnoreCase(status.getName(), text, begin, end)) {
+                return i;
+            }
+        }
+    }
+
+    private static int hash(CharSequence text, int begin, int end) {
+        int h = 0;
+        for (int i = begin; i < end; i++) {
+            h = 31 * h + fold(text.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Fold the character's case as String.equalsIgnoreCase does.
+     */
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static boolean equalsIgnoreCase(String name, CharSequence text, int begin, int end) {
+        if (name.length() != end - begin) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char a = name.charAt(i);
+            char b = text.charAt(begin + i);
+            if (a != b && fold(a) != fold(b)) {
+                return false;
             }
         }
-        return null;
+        return true;
     }
 }
@@ -1,45 +1,175 @@
 package com.andrewgilmartin.incidentresponse;
 
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 
-public class Task {
+/**
+ * An immutable task. Its assignments are kept as an array of the distinct
+ * users ordered by id, which for the usual few assignees is much smaller than
+ * a set, and are seen as an unmodifiable set in that order.
+ */
+public final class Task {
+
+    private static final User[] NO_USERS = new User[0];
+
+    /**
+     * Orders users by id. Users are equal when their ids are.
+     */
+    static final Comparator<User> BY_ID = Comparator.comparing(User::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
 
     private final String id;
     private final User creator;
     private final String description;
     private final Status status;
-    private final Set<User> assignments;
+    private final User[] assignments;
+    private final long version;
 
     public Task(String id, String description, User creator, Collection<User> assignments, Status status) {
+        this(id, description, creator, assignments, status, 0);
+    }
+
+    /**
+     * A task at the given version. A controller gives a new task version 1
+     * and each update the next version, or version 0 when it does not keep
+     * versions.
+     */
+    public Task(String id, String description, User creator, Collection<User> assignments, Status status, long version) {
         this.id = id;
+        this.version = version;
         this.description = description;
         this.creator = creator;
         this.status = status;
-        this.assignments = Collections.unmodifiableSet(new HashSet<>(assignments));
+        this.assignments = sortedUsers(assignments);
     }
 
-    public synchronized String getId() {
+    public String getId() {
         return id;
     }
 
-    public synchronized String getDescription() {
+    public String getDescription() {
         return description;
     }
 
-    public synchronized Status getStatus() {
+    public Status getStatus() {
         return status;
     }
 
-    public synchronized User getCreator() {
+    public User getCreator() {
         return creator;
     }
 
-    public synchronized Set<User> getAssignments() {
-        return assignments;
+    public Set<User> getAssignments() {
+        return assignments.length == 0 ? Collections.emptySet() : new UserArraySet(assignments);
+    }
+
+    /**
+     * Is the task assigned to one of the users? The users are given as their
+     * distinct ids ordered as by {@link #sortedIds(Collection)}.
+     */
+    public boolean isAssignedToAny(String[] userIds) {
+        int i = 0;
+        int j = 0;
+        while (i < assignments.length && j < userIds.length) {
+            String a = assignments[i].getId();
+            String b = userIds[j];
+            int c = a == null ? (b == null ? 0 : -1) : b == null ? 1 : a.compareTo(b);
+            if (c == 0) {
+                return true;
+            }
+            if (c < 0) {
+                i += 1;
+            } else {
+                j += 1;
+            }
+        }
+        return false;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the users' distinct ids in the order tasks keep their
+     * assignments, for {@link #isAssignedToAny(String[])}.
+     */
+    public static String[] sortedIds(Collection<User> users) {
+        User[] sorted = sortedUsers(users);
+        String[] ids = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            ids[i] = sorted[i].getId();
+        }
+        return ids;
+    }
+
+    private static User[] sortedUsers(Collection<User> users) {
+        if (users.isEmpty()) {
+            return NO_USERS;
+        }
+        User[] sorted = users.toArray(new User[users.size()]);
+        if (sorted.length > 1) {
+            Arrays.sort(sorted, BY_ID);
+            int n = 1;
+            for (int i = 1; i < sorted.length; i++) {
+                if (BY_ID.compare(sorted[n - 1], sorted[i]) != 0) {
+                    sorted[n++] = sorted[i];
+                }
+            }
+            if (n < sorted.length) {
+                sorted = Arrays.copyOf(sorted, n);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * An unmodifiable set view of the sorted, distinct assignments.
+     */
+    private static final class UserArraySet extends AbstractSet<User> {
+
+        private final User[] users;
+
+        UserArraySet(User[] users) {
+            this.users = users;
+        }
+
+        @Override
+        public Iterator<User> iterator() {
+            return new Iterator<User>() {
+
+                private int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < users.length;
+                }
+
+                @Override
+                public User next() {
+                    if (i == users.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return users[i++];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return users.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof User && Arrays.binarySearch(users, (User) o, BY_ID) >= 0;
+        }
     }
 
     @Override
@@ -69,4 +199,3 @@ public class Task {
 }
 
 // END
-
@@ -1,17 +1,49 @@
 package com.andrewgilmartin.incidentresponse;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
+/**
+ * Which of a workspace's tasks to find. The filter is bound to the
+ * workspace's StatusSet and keeps the included statuses as a mask of their
+ * bits in it, so testing a task's status is a single AND. A status that is
+ * not in the set adds no bit, but once any status is included a task must
+ * have one of the included statuses, and so an unknown status matches no
+ * task.
+ */
 public class TaskFilter implements Predicate<Task> {
 
+    private final StatusSet statusSet;
     private Pattern includedDescription;
+    private final List<String> includedWords = new ArrayList<>();
     private final Set<User> includedUsers = new HashSet<>();
-    private final Set<Status> includedStatuses = new HashSet<>();
+    private String[] includedUserIds = new String[0]; // as Task.sortedIds
+    private long includedStatuses; // the statuses' bits in statusSet
+    private boolean anyStatus = true; // until a status is included
+    private String afterId;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * A filter of tasks whose statuses are in the common status set.
+     */
+    public TaskFilter() {
+        this(StatusSet.COMMON_STATUS_SET);
+    }
+
+    /**
+     * A filter of tasks whose statuses are in the set, eg the workspace's.
+     */
+    public TaskFilter(StatusSet statusSet) {
+        this.statusSet = statusSet;
+    }
 
     public static TaskFilter create() {
         return new TaskFilter();
@@ -24,9 +56,25 @@ public class TaskFilter implements Predicate<Task> {
         return this;
     }
 
+    /**
+     * Include tasks whose description has all the words in the text,
+     * ignoring case. See {@link #words(String)}.
+     */
+    public TaskFilter hasWords(String text) {
+        if (text != null) {
+            for (String word : words(text)) {
+                if (!includedWords.contains(word)) {
+                    includedWords.add(word);
+                }
+            }
+        }
+        return this;
+    }
+
     public TaskFilter hasAssigment(Collection<User> users) {
         if (users != null) {
             this.includedUsers.addAll(users);
+            this.includedUserIds = Task.sortedIds(includedUsers);
         }
         return this;
     }
@@ -34,29 +82,216 @@ public class TaskFilter implements Predicate<Task> {
     public TaskFilter hasAssigment(User user) {
         if (user != null) {
             this.includedUsers.add(user);
+            this.includedUserIds = Task.sortedIds(includedUsers);
         }
         return this;
     }
 
     public TaskFilter hasStatus(Collection<Status> statuses) {
         if (statuses != null) {
-            this.includedStatuses.addAll(statuses);
+            for (Status status : statuses) {
+                hasStatus(status);
+            }
         }
         return this;
     }
 
     public TaskFilter hasStatus(Status status) {
         if (status != null) {
-            this.includedStatuses.add(status);
+            this.includedStatuses |= statusSet.maskOf(status);
+            this.anyStatus = false;
         }
         return this;
     }
 
+    /**
+     * Include the statuses given as a mask of their bits in the filter's
+     * StatusSet, eg {@link StatusSet#getUnfinishedStatusesMask()}.
+     */
+    public TaskFilter hasStatusMask(long statuses) {
+        this.includedStatuses |= statuses;
+        this.anyStatus = false;
+        return this;
+    }
+
+    /**
+     * Only include tasks whose id follows the given id. Used to continue a
+     * listing from its last task.
+     */
+    public TaskFilter after(String taskId) {
+        this.afterId = taskId;
+        return this;
+    }
+
+    /**
+     * Find at most limit tasks. Controllers find tasks in id order and stop
+     * once they have the limit.
+     */
+    public TaskFilter limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public StatusSet getStatusSet() {
+        return statusSet;
+    }
+
+    /**
+     * Is a task of any status included?
+     */
+    public boolean isAnyStatus() {
+        return anyStatus;
+    }
+
+    /**
+     * Returns the mask of the included statuses' bits in the filter's
+     * StatusSet. Unless any status is included, a mask of zero matches no
+     * task.
+     */
+    public long getStatusMask() {
+        return includedStatuses;
+    }
+
+    /**
+     * Returns the mask of the included statuses' bits in the given set.
+     */
+    public long getStatusMask(StatusSet statuses) {
+        if (statuses == statusSet) {
+            return includedStatuses;
+        }
+        long mask = 0;
+        for (Status status : getStatuses()) {
+            mask |= statuses.maskOf(status);
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the included statuses of the filter's StatusSet, which is empty
+     * when any status is included or when none matches.
+     */
+    public Set<Status> getStatuses() {
+        Set<Status> statuses = new LinkedHashSet<>();
+        if (!anyStatus) {
+            for (Status status : statusSet.getStatuses()) {
+                if ((includedStatuses & statusSet.maskOf(status)) != 0) {
+                    statuses.add(status);
+                }
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Returns the users one of whom tasks must be assigned to, or an empty set
+     * for any.
+     */
+    public Set<User> getAssignments() {
+        return Collections.unmodifiableSet(includedUsers);
+    }
+
+    /**
+     * Returns the pattern descriptions must contain a match of or null.
+     */
+    public Pattern getDescription() {
+        return includedDescription;
+    }
+
+    /**
+     * Returns the words descriptions must have, or an empty list for any.
+     */
+    public List<String> getWords() {
+        return Collections.unmodifiableList(includedWords);
+    }
+
+    /**
+     * Returns the id tasks must follow or null.
+     */
+    public String getAfter() {
+        return afterId;
+    }
+
+    /**
+     * Compare task ids. Ids are sequence numbers so numeric ids are compared
+     * by value, ie "9" precedes "10", and precede all other ids.
+     */
+    public static int compareIds(String a, String b) {
+        boolean an = isNumeric(a);
+        boolean bn = isNumeric(b);
+        if (an && bn && a.length() != b.length()) {
+            return a.length() - b.length();
+        }
+        if (an != bn) {
+            return an ? -1 : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * Returns the task id as an int, or -1 when it is not a positive integer
+     * without leading zeros, as the ids of the controllers that number their
+     * tasks are.
+     */
+    public static int parseId(String id) {
+        int l = id == null ? 0 : id.length();
+        if (l == 0 || l > 10 || id.charAt(0) == '0') {
+            return -1;
+        }
+        long n = 0;
+        for (int i = 0; i < l; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n > Integer.MAX_VALUE ? -1 : (int) n;
+    }
+
+    /**
+     * Returns the text's words in order. A word is a run of letters and
+     * digits and is lower cased, eg "Disk-full on db2" has the words "disk",
+     * "full", "on" and "db2".
+     */
+    public static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int l = text == null ? 0 : text.length();
+        for (int i = 0; i < l; i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                int begin = i;
+                while (i < l && Character.isLetterOrDigit(text.charAt(i))) {
+                    i++;
+                }
+                words.add(text.substring(begin, i).toLowerCase(Locale.ROOT));
+            }
+        }
+        return words;
+    }
+
+    private static boolean isNumeric(String id) {
+        if (id.isEmpty() || id.charAt(0) == '0') {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public boolean test(Task t) {
-        return (includedDescription == null || includedDescription.matcher(t.getDescription()).find())
-                && (includedUsers.isEmpty() || !Collections.disjoint(t.getAssignments(), includedUsers))
-                && (includedStatuses.isEmpty() || includedStatuses.contains(t.getStatus()));
+        return (afterId == null || compareIds(t.getId(), afterId) > 0)
+                && (includedDescription == null || includedDescription.matcher(t.getDescription()).find())
+                && (includedWords.isEmpty() || words(t.getDescription()).containsAll(includedWords))
+                && (includedUsers.isEmpty() || t.isAssignedToAny(includedUserIds))
+                && (anyStatus || (includedStatuses & statusSet.maskOf(t.getStatus())) != 0);
     }
 
 }
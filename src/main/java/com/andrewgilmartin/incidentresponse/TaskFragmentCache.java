@@ -0,0 +1,78 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.slack.AttachmentFragment;
+import com.andrewgilmartin.slack.SlackResponseContent;
+import com.andrewgilmartin.util.ExpiringCache;
+import com.andrewgilmartin.util.Metrics;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * A bounded cache of each task's attachment, formatted and encoded as JSON,
+ * so that listing unchanged tasks splices their bytes into the response
+ * rather than formatting and escaping them again. Entries are keyed on the
+ * workspace, the task's id and the task's version, as every change to a task,
+ * by this process or another, gives it a new version. A task at version 0,
+ * from a controller that does not keep versions, only hits the entry made
+ * from the same instance. Entries of old versions are left to expire. The
+ * hit rate is reported as the incidentresponse.fragments.hit_rate gauge, a
+ * percentage.
+ */
+class TaskFragmentCache {
+
+    static final int DEFAULT_CAPACITY = 10_000;
+    static final long DEFAULT_TTL = 10 * 60 * 1000; // milliseconds
+
+    private static final LongAdder hits = Metrics.counter("incidentresponse.fragments.hits");
+    private static final LongAdder misses = Metrics.counter("incidentresponse.fragments.misses");
+
+    static {
+        Metrics.gauge("incidentresponse.fragments.hit_rate", () -> {
+            long h = hits.sum();
+            long t = h + misses.sum();
+            return t == 0 ? 0 : h * 100 / t;
+        });
+    }
+
+    private final BiConsumer<SlackResponseContent, Task> formatter;
+    private final ExpiringCache<String, Entry> entries;
+
+    private static class Entry {
+
+        final Task task;
+        final AttachmentFragment fragment;
+
+        Entry(Task task, AttachmentFragment fragment) {
+            this.task = task;
+            this.fragment = fragment;
+        }
+    }
+
+    TaskFragmentCache(BiConsumer<SlackResponseContent, Task> formatter, int capacity, long ttlMillis) {
+        this.formatter = formatter;
+        this.entries = new ExpiringCache<>(capacity, ttlMillis);
+    }
+
+    /**
+     * Returns the task's fragment, formatting and encoding it when this
+     * version of the task is not cached.
+     */
+    AttachmentFragment get(Workspace workspace, Task task) {
+        String key = workspace.getId() + '\n' + task.getId() + '\n' + task.getVersion();
+        Entry entry = entries.get(key);
+        if (entry != null && (task.getVersion() != 0 || entry.task == task)) {
+            hits.increment();
+            return entry.fragment;
+        }
+        misses.increment();
+        AttachmentFragment fragment = AttachmentFragment.encode(formatter, task);
+        entries.put(key, new Entry(task, fragment));
+        return fragment;
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
+
+// END
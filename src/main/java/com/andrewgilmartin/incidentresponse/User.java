@@ -13,11 +13,10 @@ public class User extends SlackUserBase {
         super(id, name);
     }
 
+    /**
+     * Parse a user formatted as "<id|name>" returning the pooled user.
+     */
     public static User parseUser(String s) {
-        SlackUser u = parseSlackUserBase(s);
-        if (u != null) {
-            return new User(u.getId(), u.getName());
-        }
-        return null;
+        return UserPool.getDefault().parse(s);
     }
 }
@@ -0,0 +1,115 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.slack.SlackUser;
+import com.andrewgilmartin.slack.SlackUserBase;
+import com.andrewgilmartin.util.ExpiringCache;
+import com.andrewgilmartin.util.Metrics;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of canonical users keyed by their Slack id. The same handful
+ * of responders appear as the creator and assignees of most tasks, and so
+ * interning them shares one User among all of them rather than making a new
+ * one for each task read. A user whose name has changed replaces the pooled
+ * user. When the user is pooled, parsing it only makes its id.
+ */
+public class UserPool {
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final long DEFAULT_TTL = 60 * 60 * 1000; // milliseconds
+
+    private static final UserPool DEFAULT = new UserPool(DEFAULT_CAPACITY, DEFAULT_TTL);
+
+    private static final LongAdder hits = Metrics.counter("incidentresponse.users.hits");
+    private static final LongAdder misses = Metrics.counter("incidentresponse.users.misses");
+
+    private final ExpiringCache<String, User> users;
+
+    public UserPool(int capacity, long ttlMillis) {
+        this.users = new ExpiringCache<>(capacity, ttlMillis);
+    }
+
+    /**
+     * The pool shared by the application.
+     */
+    public static UserPool getDefault() {
+        return DEFAULT;
+    }
+
+    public User intern(SlackUser user) {
+        if (user instanceof User && user.getId() != null) {
+            User pooled = users.get(user.getId());
+            if (pooled != null && equals(pooled.getName(), user.getName())) {
+                hits.increment();
+                return pooled;
+            }
+            misses.increment();
+            users.put(user.getId(), (User) user);
+            return (User) user;
+        }
+        return intern(user.getId(), user.getName());
+    }
+
+    public User intern(String id, String name) {
+        return intern(id, name, 0, name == null ? 0 : name.length());
+    }
+
+    /**
+     * Returns the user with the given id and whose name is the text between
+     * nameBegin and nameEnd. The name is null when the text is null.
+     */
+    public User intern(String id, CharSequence text, int nameBegin, int nameEnd) {
+        if (id == null) {
+            return new User(null, string(text, nameBegin, nameEnd));
+        }
+        User pooled = users.get(id);
+        if (pooled != null && equals(pooled.getName(), text, nameBegin, nameEnd)) {
+            hits.increment();
+            return pooled;
+        }
+        misses.increment();
+        User user = new User(id, string(text, nameBegin, nameEnd));
+        users.put(id, user);
+        return user;
+    }
+
+    /**
+     * Parse a user formatted as "<id|name>", as does User.parseUser.
+     */
+    public User parse(String s) {
+        int separator = SlackUserBase.findSeparator(s);
+        if (separator == -1) {
+            return null;
+        }
+        return intern(s.substring(1, separator), s, separator + 1, s.length() - 1);
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    private static String string(CharSequence text, int begin, int end) {
+        return text == null ? null : text.subSequence(begin, end).toString();
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static boolean equals(String name, CharSequence text, int begin, int end) {
+        if (name == null || text == null) {
+            return name == null && text == null;
+        }
+        if (name.length() != end - begin) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(begin + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+
+// END
@@ -1,5 +1,6 @@
 package com.andrewgilmartin.incidentresponse.aws;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.SdkBaseException;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.andrewgilmartin.incidentresponse.Controller;
@@ -16,17 +17,25 @@ import com.amazonaws.services.simpledb.model.PutAttributesRequest;
 import com.amazonaws.services.simpledb.model.PutAttributesResult;
 import com.amazonaws.services.simpledb.model.ReplaceableAttribute;
 import com.amazonaws.services.simpledb.model.SelectRequest;
+import com.amazonaws.services.simpledb.model.SelectResult;
+import com.amazonaws.services.simpledb.model.UpdateCondition;
 import static com.amazonaws.services.simpledb.util.SimpleDBUtils.quoteName;
 import static com.amazonaws.services.simpledb.util.SimpleDBUtils.quoteValue;
 import com.andrewgilmartin.slack.SlackUser;
 import com.andrewgilmartin.util.Logger;
+import com.andrewgilmartin.util.Metrics;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class AwsController implements Controller {
 
@@ -37,10 +46,31 @@ public class AwsController implements Controller {
     private static final String STATUS_ATTRIBUTE = "status";
     private static final String CREATOR_ATTRIBUTE = "creator";
     private static final String ASSIGNMENT_ATTRIBUTE = "assignment";
+    private static final String VERSION_ATTRIBUTE = "version";
+    /**
+     * The task id padded with zeros to SEQUENCE_DIGITS, as SimpleDB compares
+     * values as strings, so that a select can order tasks by their ids.
+     */
+    private static final String SEQUENCE_ATTRIBUTE = "sequence";
+    private static final int SEQUENCE_DIGITS = 10;
+
+    /**
+     * The most items SimpleDB returns for a select.
+     */
+    private static final int MAX_SELECT_LIMIT = 2500;
+
+    // SimpleDB's errors for a put whose expected value does not match
+    private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
+    private static final String ATTRIBUTE_DOES_NOT_EXIST = "AttributeDoesNotExist";
+
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+
+    private static final LongAdder conflicts = Metrics.counter(Controller.CONFLICTS_COUNTER);
 
     private final AmazonSimpleDB db;
     private final String domain;
     private final Map<String, AtomicInteger> workspaceIdToTaskCount = new HashMap<>();
+    private final Set<String> sequencedWorkspaceIds = ConcurrentHashMap.newKeySet();
 
     public AwsController(String domain, AWSCredentialsProvider credentialsProvider) {
         this.domain = domain;
@@ -61,39 +91,134 @@ public class AwsController implements Controller {
         return workspace;
     }
 
+    /**
+     * Find the tasks. SimpleDB orders the tasks, starts after the filter's
+     * id, and tests their statuses and assignments; the rest of the filter
+     * is tested here. The items are read a page at a time and only until the
+     * filter's limit is reached.
+     */
     @Override
     public List<Task> findTasks(Workspace workspace, TaskFilter taskFilter) {
-        List<Task> tasks = new LinkedList<>();
+        List<Task> tasks = new ArrayList<>();
+        int limit = taskFilter.getLimit();
+        if (limit <= 0 || (!taskFilter.isAnyStatus() && taskFilter.getStatusMask() == 0)) {
+            // no task can match
+            return tasks;
+        }
+        backfillSequences(workspace);
+        StringBuilder expression = new StringBuilder()
+                .append("select ")
+                .append(DESCRIPTION_ATTRIBUTE).append(", ")
+                .append(STATUS_ATTRIBUTE).append(", ")
+                .append(CREATOR_ATTRIBUTE).append(", ")
+                .append(ASSIGNMENT_ATTRIBUTE).append(", ")
+                .append(VERSION_ATTRIBUTE)
+                .append(" from ").append(quoteName(domain))
+                .append(" where ").append(WORKSPACE_ATTRIBUTE).append(" = ").append(quoteValue(workspace.getId()));
+        int after = TaskFilter.parseId(taskFilter.getAfter());
+        if (after > 0) {
+            expression.append(" and ").append(SEQUENCE_ATTRIBUTE).append(" > ").append(quoteValue(sequence(after)));
+        } else {
+            // the sort attribute must be in the predicate
+            expression.append(" and ").append(SEQUENCE_ATTRIBUTE).append(" is not null");
+        }
+        appendIn(expression, STATUS_ATTRIBUTE, taskFilter.getStatuses());
+        appendIn(expression, ASSIGNMENT_ATTRIBUTE, taskFilter.getAssignments());
+        expression
+                .append(" order by ").append(SEQUENCE_ATTRIBUTE)
+                .append(" limit ").append(Math.min(MAX_SELECT_LIMIT, limit));
+        try {
+            String nextToken = null;
+            do {
+                SelectResult result = db.select(new SelectRequest()
+                        .withSelectExpression(expression.toString())
+                        .withNextToken(nextToken)
+                        .withConsistentRead(false)); // TODO investiage whether or not this can be set to true
+                for (Item item : result.getItems()) {
+                    Task task = constructTask(workspace, item.getName(), item.getAttributes());
+                    if (taskFilter.test(task)) {
+                        tasks.add(task);
+                        if (tasks.size() == limit) {
+                            return tasks;
+                        }
+                    }
+                }
+                nextToken = result.getNextToken();
+            } while (nextToken != null);
+        } catch (SdkBaseException e) {
+            logger.error(e, "unable to list tasks: workspaceId={0}", workspace.getId());
+        }
+        return tasks;
+    }
+
+    /**
+     * Append the predicate that the attribute has one of the values, if any.
+     */
+    private static void appendIn(StringBuilder expression, String name, Collection<?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        expression.append(" and ").append(name).append(" in (");
+        String separator = "";
+        for (Object value : values) {
+            expression.append(separator).append(quoteValue(value.toString()));
+            separator = ", ";
+        }
+        expression.append(')');
+    }
+
+    private static String sequence(int taskId) {
+        String id = Integer.toString(taskId);
+        StringBuilder sequence = new StringBuilder(SEQUENCE_DIGITS);
+        for (int i = id.length(); i < SEQUENCE_DIGITS; i++) {
+            sequence.append('0');
+        }
+        return sequence.append(id).toString();
+    }
+
+    /**
+     * Give the workspace's items written before the sequence attribute
+     * theirs, once a run, so that findTasks lists them.
+     */
+    private void backfillSequences(Workspace workspace) {
+        if (sequencedWorkspaceIds.contains(workspace.getId())) {
+            return;
+        }
         try {
             SelectRequest selectRequest = new SelectRequest()
                     .withSelectExpression(
-                            "select "
-                            + DESCRIPTION_ATTRIBUTE + ", "
-                            + STATUS_ATTRIBUTE + ", "
-                            + CREATOR_ATTRIBUTE + ", "
-                            + ASSIGNMENT_ATTRIBUTE
-                            + " from "
+                            "select itemName() from "
                             + quoteName(domain)
                             + " where "
                             + WORKSPACE_ATTRIBUTE + " = " + quoteValue(workspace.getId())
+                            + " and " + SEQUENCE_ATTRIBUTE + " is null"
                     )
-                    .withConsistentRead(false); // TODO investiage whether or not this can be set to true
-            for (Item item : db.select(selectRequest).getItems()) {
-                Task task = constructTask(workspace, item.getName(), item.getAttributes());
-                if (taskFilter.test(task)) {
-                    tasks.add(task);
+                    .withConsistentRead(false);
+            String nextToken = null;
+            do {
+                SelectResult result = db.select(selectRequest.withNextToken(nextToken));
+                for (Item item : result.getItems()) {
+                    int id = TaskFilter.parseId(item.getName());
+                    if (id > 0) {
+                        db.putAttributes(new PutAttributesRequest()
+                                .withDomainName(domain)
+                                .withItemName(item.getName())
+                                .withAttributes(Collections.singletonList(new ReplaceableAttribute(SEQUENCE_ATTRIBUTE, sequence(id), Boolean.TRUE))));
+                    }
                 }
-            }
+                nextToken = result.getNextToken();
+            } while (nextToken != null);
+            sequencedWorkspaceIds.add(workspace.getId());
         } catch (SdkBaseException e) {
-            logger.error(e, "unable to list tasks: workspaceId={0}", workspace.getId());
+            logger.error(e, "unable to add sequences: workspaceId={0}", workspace.getId());
         }
-        return tasks;
     }
 
     @Override
     public Task findTask(Workspace workspace, String taskId) {
         try {
-            GetAttributesResult result = db.getAttributes(new GetAttributesRequest(domain, taskId));
+            // consistently read so that an update retried after a conflict sees the winner's version
+            GetAttributesResult result = db.getAttributes(new GetAttributesRequest(domain, taskId).withConsistentRead(true));
             if (result.getSdkHttpMetadata().getHttpStatusCode() == 200) {
                 return constructTask(workspace, taskId, result.getAttributes());
             }
@@ -107,6 +232,7 @@ public class AwsController implements Controller {
         String description = null;
         Status status = null;
         User creator = null;
+        long version = 0; // items written before versions were kept
         List<User> assignments = new LinkedList<>();
         for (Attribute attribute : attributes) {
             switch (attribute.getName()) {
@@ -122,6 +248,9 @@ public class AwsController implements Controller {
                 case ASSIGNMENT_ATTRIBUTE:
                     assignments.add(User.parseUser(attribute.getValue()));
                     break;
+                case VERSION_ATTRIBUTE:
+                    version = Long.parseLong(attribute.getValue());
+                    break;
                 default:
                     break;
             }
@@ -131,26 +260,29 @@ public class AwsController implements Controller {
                 description,
                 creator,
                 assignments,
-                status
+                status,
+                version
         );
         return task;
     }
 
+    /**
+     * Add the task. Throws IllegalStateException when SimpleDB can not be
+     * reached or does not store the task.
+     */
     @Override
     public Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status) {
+        String taskId = nextTaskId(workspace);
+        if (taskId == null) {
+            // nextTaskId has logged why
+            throw new IllegalStateException("unable to number task in workspace " + workspace.getId());
+        }
         try {
-            String taskId = nextTaskId(workspace);
-            List<ReplaceableAttribute> attributes = new LinkedList<>();
-            attributes.add(new ReplaceableAttribute(WORKSPACE_ATTRIBUTE, workspace.getId(), Boolean.TRUE));
-            attributes.add(new ReplaceableAttribute(DESCRIPTION_ATTRIBUTE, description, Boolean.TRUE));
-            attributes.add(new ReplaceableAttribute(CREATOR_ATTRIBUTE, creator.toString(), Boolean.TRUE));
-            attributes.add(new ReplaceableAttribute(STATUS_ATTRIBUTE, status.toString(), Boolean.TRUE));
-            attributes.addAll(replaceableAttributeValues(ASSIGNMENT_ATTRIBUTE, assignments.iterator()));
             PutAttributesResult result = db.putAttributes(
                     new PutAttributesRequest()
                             .withDomainName(domain)
                             .withItemName(taskId)
-                            .withAttributes(attributes)
+                            .withAttributes(taskAttributes(workspace, taskId, description, creator, assignments, status, 1))
             );
             if (result.getSdkHttpMetadata().getHttpStatusCode() == 200) {
                 Task task = new Task(
@@ -158,30 +290,56 @@ public class AwsController implements Controller {
                         description,
                         creator,
                         assignments,
-                        status
+                        status,
+                        1
                 );
                 return task;
             }
+            logger.error("unable to add task: workspaceId={0}; status={1}", workspace.getId(), result.getSdkHttpMetadata().getHttpStatusCode());
         } catch (SdkBaseException e) {
             logger.error(e, "unable to add task: workspaceId={0}", workspace.getId());
+            throw new IllegalStateException("unable to add task to workspace " + workspace.getId(), e);
         }
-        return null;
+        throw new IllegalStateException("unable to add task to workspace " + workspace.getId());
     }
 
+    /**
+     * Update the task whatever its version. SimpleDB can only put the next
+     * version conditionally, so this finds the task's version and retries
+     * when someone else updates it first.
+     */
     @Override
     public Task updateTask(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status) {
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Task task = findTask(workspace, taskId);
+            if (task == null) {
+                return null;
+            }
+            Task updated = updateTask(workspace, taskId, task.getVersion(), description, creator, assignments, status);
+            if (updated != null) {
+                return updated;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Update the task if it is at the version. SimpleDB's failed condition is
+     * a conflict and returns null; any other error throws
+     * IllegalStateException.
+     */
+    @Override
+    public Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
         try {
-            List<ReplaceableAttribute> attributes = new LinkedList<>();
-            attributes.add(new ReplaceableAttribute(WORKSPACE_ATTRIBUTE, workspace.getId(), Boolean.TRUE));
-            attributes.add(new ReplaceableAttribute(DESCRIPTION_ATTRIBUTE, description, Boolean.TRUE));
-            attributes.add(new ReplaceableAttribute(CREATOR_ATTRIBUTE, creator.toString(), Boolean.TRUE));
-            attributes.add(new ReplaceableAttribute(STATUS_ATTRIBUTE, status.toString(), Boolean.TRUE));
-            attributes.addAll(replaceableAttributeValues(ASSIGNMENT_ATTRIBUTE, assignments.iterator()));
+            UpdateCondition expected = version == 0
+                    ? new UpdateCondition().withName(VERSION_ATTRIBUTE).withExists(Boolean.FALSE)
+                    : new UpdateCondition(VERSION_ATTRIBUTE, Long.toString(version), Boolean.TRUE);
             PutAttributesResult result = db.putAttributes(
                     new PutAttributesRequest()
                             .withDomainName(domain)
                             .withItemName(taskId)
-                            .withAttributes(attributes)
+                            .withAttributes(taskAttributes(workspace, taskId, description, creator, assignments, status, version + 1))
+                            .withExpected(expected)
             );
             if (result.getSdkHttpMetadata().getHttpStatusCode() == 200) {
                 Task task = new Task(
@@ -189,14 +347,39 @@ public class AwsController implements Controller {
                         description,
                         creator,
                         assignments,
-                        status
+                        status,
+                        version + 1
                 );
                 return task;
             }
+            logger.error("unable to update task: workspaceId={0}; taskId={1}; status={2}", workspace.getId(), taskId, result.getSdkHttpMetadata().getHttpStatusCode());
+        } catch (AmazonServiceException e) {
+            if (CONDITIONAL_CHECK_FAILED.equals(e.getErrorCode()) || ATTRIBUTE_DOES_NOT_EXIST.equals(e.getErrorCode())) {
+                conflicts.increment();
+                return null;
+            }
+            logger.error(e, "unable to update task: workspaceId={0}; taskId={1}", workspace.getId(), taskId);
+            throw new IllegalStateException("unable to update task " + taskId + " in workspace " + workspace.getId(), e);
         } catch (SdkBaseException e) {
             logger.error(e, "unable to update task: workspaceId={0}; taskId={1}", workspace.getId(), taskId);
+            throw new IllegalStateException("unable to update task " + taskId + " in workspace " + workspace.getId(), e);
         }
-        return null;
+        throw new IllegalStateException("unable to update task " + taskId + " in workspace " + workspace.getId());
+    }
+
+    private List<ReplaceableAttribute> taskAttributes(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status, long version) {
+        List<ReplaceableAttribute> attributes = new LinkedList<>();
+        attributes.add(new ReplaceableAttribute(WORKSPACE_ATTRIBUTE, workspace.getId(), Boolean.TRUE));
+        int id = TaskFilter.parseId(taskId);
+        if (id > 0) {
+            attributes.add(new ReplaceableAttribute(SEQUENCE_ATTRIBUTE, sequence(id), Boolean.TRUE));
+        }
+        attributes.add(new ReplaceableAttribute(DESCRIPTION_ATTRIBUTE, description, Boolean.TRUE));
+        attributes.add(new ReplaceableAttribute(CREATOR_ATTRIBUTE, creator.toString(), Boolean.TRUE));
+        attributes.add(new ReplaceableAttribute(STATUS_ATTRIBUTE, status.toString(), Boolean.TRUE));
+        attributes.add(new ReplaceableAttribute(VERSION_ATTRIBUTE, Long.toString(version), Boolean.TRUE));
+        attributes.addAll(replaceableAttributeValues(ASSIGNMENT_ATTRIBUTE, assignments.iterator()));
+        return attributes;
     }
 
     private List<ReplaceableAttribute> replaceableAttributeValues(String name, Iterator values) {
@@ -212,7 +395,7 @@ public class AwsController implements Controller {
 
     @Override
     public User findcreateUser(SlackUser slackUser) {
-        return new User(slackUser.getId(), slackUser.getName());
+        return UserPool.getDefault().intern(slackUser);
     }
 
     private String nextTaskId(Workspace workspace) {
@@ -222,8 +405,9 @@ public class AwsController implements Controller {
                 try {
                     /**
                      * TODO It is not good practice to put an HTTP request
-                     * within a synchronized block. Given that this is a Slack
-                     * application, we should use a delayed Slack response.
+                     * within a synchronized block. Run the server with
+                     * deferred responses so that at least this does not count
+                     * against Slack's 3 second budget.
                      */
                     SelectRequest selectRequest = new SelectRequest()
                             .withSelectExpression(
@@ -0,0 +1,183 @@
+package com.andrewgilmartin.incidentresponse.mapped;
+
+import com.andrewgilmartin.incidentresponse.IncidentResponseSlackApp;
+import com.andrewgilmartin.slack.AdmissionControl;
+import com.andrewgilmartin.slack.HttpSlackResponsePoster;
+import com.andrewgilmartin.slack.SlackAppDispatcher;
+import com.andrewgilmartin.slack.SlackServer;
+import com.andrewgilmartin.slack.httpserver.HttpServerSlackServer;
+import com.andrewgilmartin.slack.nio.NioSlackServer;
+import com.andrewgilmartin.util.ExecutorMode;
+import java.io.File;
+import java.io.IOException;
+
+public class Main {
+
+    public static void main(String... args) throws Exception {
+        String slackVerificationToken = null;
+        String metricsToken = null;
+        int port = 5000;
+        String path = "/ir";
+        int backlog = HttpServerSlackServer.DEFAULT_BACKLOG;
+        int threads = HttpServerSlackServer.DEFAULT_THREADS;
+        int queueSize = 100;
+        ExecutorMode executorMode = ExecutorMode.FIXED;
+        int deferredThreads = 0;
+        int maxBodySize = HttpServerSlackServer.DEFAULT_MAX_BODY_SIZE;
+        int maxInFlight = 0;
+        int maxWait = 250;
+        double channelRate = 0;
+        double userRate = 0;
+        int dedupWindow = 0;
+        int listMaxTasks = IncidentResponseSlackApp.DEFAULT_MAX_LIST_TASKS;
+        int listMaxBytes = IncidentResponseSlackApp.DEFAULT_MAX_LIST_BYTES;
+        String serverType = "jdk";
+        int eventLoops = NioSlackServer.DEFAULT_EVENT_LOOPS;
+        String dataDirectory = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--path":
+                    path = args[i + 1];
+                    i += 1;
+                    break;
+                case "--backlog":
+                    backlog = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--queue":
+                    queueSize = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--executor":
+                    executorMode = ExecutorMode.parse(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--server":
+                    serverType = args[i + 1];
+                    i += 1;
+                    break;
+                case "--event-loops":
+                    eventLoops = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--max-body":
+                    maxBodySize = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--max-in-flight":
+                    maxInFlight = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--max-wait":
+                    maxWait = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--channel-rate":
+                    channelRate = Double.parseDouble(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--user-rate":
+                    userRate = Double.parseDouble(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--dedup-window":
+                    dedupWindow = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--list-max-tasks":
+                    listMaxTasks = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--list-max-bytes":
+                    listMaxBytes = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--deferred":
+                    deferredThreads = Integer.parseInt(args[i + 1]);
+                    i += 1;
+                    break;
+                case "--data-dir":
+                    dataDirectory = args[i + 1];
+                    i += 1;
+                    break;
+                case "--metrics-token":
+                    metricsToken = args[i + 1];
+                    i += 1;
+                    break;
+                case "--token":
+                    slackVerificationToken = args[i + 1];
+                    i += 1;
+                    break;
+                default:
+                    System.err.printf(
+                            "usage: %s "
+                            + "--port http-port-number "
+                            + "--path url-path "
+                            + "[--server jdk|nio] "
+                            + "[--event-loops nio-event-loop-count] "
+                            + "[--backlog listen-backlog] "
+                            + "[--executor fixed|bounded|virtual] "
+                            + "[--threads thread-count] "
+                            + "[--queue queue-size] "
+                            + "[--deferred deferred-thread-count] "
+                            + "[--max-body max-request-body-bytes] "
+                            + "[--max-in-flight max-requests-in-flight] "
+                            + "[--max-wait max-admission-wait-millis] "
+                            + "[--channel-rate requests-per-second-per-channel] "
+                            + "[--user-rate requests-per-second-per-user] "
+                            + "[--dedup-window duplicate-request-window-seconds] "
+                            + "[--list-max-tasks tasks-per-list-page] "
+                            + "[--list-max-bytes attachment-bytes-per-list-page] "
+                            + "--data-dir task-data-directory "
+                            + "[--metrics-token metrics-bearer-token] "
+                            + "--token slack-verification-token",
+                            Main.class.getName()
+                    );
+                    System.exit(1);
+            }
+        }
+        if (dataDirectory == null) {
+            System.err.printf("%s: --data-dir is required%n", Main.class.getName());
+            System.exit(1);
+        }
+        MappedController controller = new MappedController(new File(dataDirectory));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                controller.close();
+            } catch (IOException e) {
+                // nothing more can be done while exiting
+            }
+        }));
+        IncidentResponseSlackApp slackApp = new IncidentResponseSlackApp(controller, slackVerificationToken);
+        slackApp.setListBudget(listMaxTasks, listMaxBytes);
+        SlackServer server = "nio".equals(serverType)
+                ? new NioSlackServer(port, path, slackApp, backlog, eventLoops, executorMode.create(threads, queueSize))
+                : new HttpServerSlackServer(port, path, slackApp, backlog, executorMode.create(threads, queueSize));
+        server.setMaxBodySize(maxBodySize);
+        server.setMetricsToken(metricsToken);
+        if (maxInFlight > 0 || channelRate > 0 || userRate > 0) {
+            AdmissionControl admissionControl = new AdmissionControl(maxInFlight > 0 ? maxInFlight : Integer.MAX_VALUE, maxWait);
+            admissionControl.setChannelRate(channelRate, (int) Math.ceil(channelRate * 2));
+            admissionControl.setUserRate(userRate, (int) Math.ceil(userRate * 2));
+            server.setAdmissionControl(admissionControl);
+        }
+        if (dedupWindow > 0) {
+            server.setDeduplication(dedupWindow * 1000L, SlackAppDispatcher.DEFAULT_DEDUPLICATION_CAPACITY);
+        }
+        if (deferredThreads > 0) {
+            server.setDeferredResponses(
+                    (executorMode == ExecutorMode.VIRTUAL ? ExecutorMode.VIRTUAL : ExecutorMode.FIXED).create(deferredThreads, 0),
+                    new HttpSlackResponsePoster()
+            );
+        }
+        server.run();
+    }
+}
@@ -0,0 +1,503 @@
+package com.andrewgilmartin.incidentresponse.mapped;
+
+import com.andrewgilmartin.incidentresponse.Controller;
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.UserPool;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import com.andrewgilmartin.slack.SlackUser;
+import com.andrewgilmartin.util.Logger;
+import com.andrewgilmartin.util.Metrics;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A controller that keeps its tasks in memory-mapped files in a directory,
+ * and so mostly off the Java heap. The files are
+ *
+ * {@code
+ *
+ * records: a task version per fixed size record
+ *   int workspace, int task-id, long version, long description, long creator,
+ *   long assignments, long status
+ * strings: the StringHeap of the descriptions, users, lists of users and
+ *   status names the records refer to
+ * pages: PAGE_INTS int pages; a workspace's spine page has the numbers of its
+ *   directory pages, and these have the record numbers of its tasks by id
+ * workspaces: a record per workspace of its name, spine page and last task id
+ *
+ * }
+ *
+ * Adding or updating a task appends a record and points the task's directory
+ * entry at it, so readers, which take no locks, see either the old or the new
+ * version. Writes are serialized. Only the workspaces are read when starting;
+ * tasks are decoded from their records as they are found. The superseded
+ * records and strings are not reclaimed.
+ */
+public class MappedController implements Controller, AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(MappedController.class);
+
+    private static final LongAdder conflicts = Metrics.counter(Controller.CONFLICTS_COUNTER);
+
+    static final int RECORD_SIZE = 64;
+    static final int PAGE_INTS = 4096;
+    static final int PAGE_SIZE = PAGE_INTS * 4;
+    /**
+     * A workspace's tasks are limited to what a spine page's directory pages
+     * hold.
+     */
+    static final int MAX_TASK_ID = PAGE_INTS * PAGE_INTS - 1;
+    private static final int WORKSPACE_SIZE = 16;
+
+    // record layout
+    private static final int WORKSPACE = 0;
+    private static final int TASK_ID = 4;
+    private static final int VERSION = 8;
+    private static final int DESCRIPTION = 16;
+    private static final int CREATOR = 24;
+    private static final int ASSIGNMENTS = 32;
+    private static final int STATUS = 40;
+
+    private final StatusSet statusSet = StatusSet.COMMON_STATUS_SET;
+    private final MappedFile records;
+    private final MappedFile pages;
+    private final MappedFile workspaces;
+    private final StringHeap strings;
+    private final ConcurrentMap<String, MappedWorkspace> idToWorkspace = new ConcurrentHashMap<>();
+
+    // what has been read from the string heap, and what written since starting
+    private final ConcurrentMap<Long, User> refToUser = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Status> refToStatus = new ConcurrentHashMap<>();
+    private final Map<String, Long> userToRef = new HashMap<>(); // guarded by this
+    private final Map<Status, Long> statusToRef = new HashMap<>(); // guarded by this
+
+    // guarded by this
+    private long recordCount;
+    private int pageCount;
+    private int workspaceCount;
+
+    private static class MappedWorkspace extends Workspace {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int number;
+        private final int spine;
+        private int lastId; // published by sequence
+        /**
+         * The number of changes made to the workspace's tasks, counting each
+         * task there was when opened as one. It is incremented, holding the
+         * lock, after each change's records and directory entries are written
+         * and is read before they are, so that readers see every change it
+         * counts.
+         */
+        private volatile long sequence;
+
+        public MappedWorkspace(String id, StatusSet statusSet, int number, int spine, int lastId) {
+            super(id, statusSet);
+            this.number = number;
+            this.spine = spine;
+            this.lastId = lastId;
+            this.sequence = lastId;
+        }
+
+        /**
+         * Returns the last task id. The sequence is read first, and when it
+         * is zero no task has been added.
+         */
+        int lastId() {
+            return sequence == 0 ? 0 : lastId;
+        }
+    }
+
+    public MappedController(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        this.records = new MappedFile(new File(directory, "records"));
+        this.pages = new MappedFile(new File(directory, "pages"));
+        this.workspaces = new MappedFile(new File(directory, "workspaces"));
+        this.strings = new StringHeap(new File(directory, "strings"));
+        // record, page and workspace 0 are the files' headers
+        this.recordCount = records.getLong(0);
+        this.pageCount = pages.getInt(0);
+        this.workspaceCount = workspaces.getInt(0);
+        for (int n = 1; n <= workspaceCount; n++) {
+            long offset = (long) n * WORKSPACE_SIZE;
+            MappedWorkspace workspace = new MappedWorkspace(
+                    strings.getString(workspaces.getLong(offset)),
+                    statusSet,
+                    n,
+                    workspaces.getInt(offset + 8),
+                    workspaces.getInt(offset + 12)
+            );
+            idToWorkspace.put(workspace.getId(), workspace);
+        }
+        logger.info("opened tasks: directory={0}; workspaces={1}; records={2}", directory, workspaceCount, recordCount);
+    }
+
+    @Override
+    public Workspace findWorkspace(String workspaceId) {
+        MappedWorkspace workspace = idToWorkspace.get(workspaceId);
+        if (workspace == null) {
+            synchronized (this) {
+                workspace = idToWorkspace.get(workspaceId);
+                if (workspace == null) {
+                    try {
+                        workspace = new MappedWorkspace(workspaceId, statusSet, workspaceCount + 1, newPage(), 0);
+                        long offset = (long) workspace.number * WORKSPACE_SIZE;
+                        workspaces.ensure(offset + WORKSPACE_SIZE);
+                        workspaces.putLong(offset, strings.append(workspaceId));
+                        workspaces.putInt(offset + 8, workspace.spine);
+                        workspaces.putInt(offset + 12, 0);
+                        workspaceCount += 1;
+                        workspaces.putInt(0, workspaceCount);
+                        idToWorkspace.put(workspaceId, workspace);
+                    } catch (IOException e) {
+                        // the workspace is still usable but can not have tasks
+                        logger.error(e, "unable to add workspace: workspaceId={0}", workspaceId);
+                        return new Workspace(workspaceId, statusSet);
+                    }
+                }
+            }
+        }
+        return workspace;
+    }
+
+    @Override
+    public Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status) {
+        MappedWorkspace w = workspace(workspace);
+        if (w == null) {
+            // findWorkspace has logged why the workspace could not be stored
+            throw new IllegalStateException("unable to store workspace " + workspace.getId());
+        }
+        synchronized (this) {
+            int id = w.lastId + 1;
+            if (id > MAX_TASK_ID) {
+                logger.error("too many tasks: workspaceId={0}", w.getId());
+                throw new IllegalStateException("too many tasks in workspace " + w.getId());
+            }
+            try {
+                long record = append(w, id, 1, description, creator, assignments, status);
+                point(w, id, record);
+                workspaces.putInt((long) w.number * WORKSPACE_SIZE + 12, id);
+                w.lastId = id;
+                w.sequence += 1;
+            } catch (IOException e) {
+                logger.error(e, "unable to add task: workspaceId={0}", w.getId());
+                throw new IllegalStateException("unable to add task to workspace " + w.getId(), e);
+            }
+            return new Task(Integer.toString(id), description, creator, assignments, status, 1);
+        }
+    }
+
+    @Override
+    public Task updateTask(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status) {
+        return update(workspace, taskId, -1, description, creator, assignments, status);
+    }
+
+    @Override
+    public Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
+        return update(workspace, taskId, version, description, creator, assignments, status);
+    }
+
+    /**
+     * Update the task if it is at the version, or whatever its version when
+     * version is -1.
+     */
+    private Task update(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
+        MappedWorkspace w = workspace(workspace);
+        int id = TaskFilter.parseId(taskId);
+        if (w == null || id == -1) {
+            return null;
+        }
+        synchronized (this) {
+            long record = find(w, id);
+            if (record == 0) {
+                return null;
+            }
+            long current = records.getLong(record * RECORD_SIZE + VERSION);
+            if (version != -1 && version != current) {
+                conflicts.increment();
+                return null;
+            }
+            try {
+                point(w, id, append(w, id, current + 1, description, creator, assignments, status));
+                w.sequence += 1;
+            } catch (IOException e) {
+                logger.error(e, "unable to update task: workspaceId={0}; taskId={1}", w.getId(), taskId);
+                throw new IllegalStateException("unable to update task " + taskId + " in workspace " + w.getId(), e);
+            }
+            return new Task(taskId, description, creator, assignments, status, current + 1);
+        }
+    }
+
+    @Override
+    public Task findTask(Workspace workspace, String taskId) {
+        MappedWorkspace w = workspace(workspace);
+        int id = TaskFilter.parseId(taskId);
+        if (w == null || id == -1) {
+            return null;
+        }
+        long record = find(w, id);
+        return record == 0 ? null : task(record);
+    }
+
+    @Override
+    public List<Task> findTasks(Workspace workspace, TaskFilter taskFilter) {
+        List<Task> tasks = new ArrayList<>();
+        MappedWorkspace w = workspace(workspace);
+        if (w == null) {
+            return tasks;
+        }
+        int id = 1;
+        if (taskFilter.getAfter() != null) {
+            id = TaskFilter.parseId(taskFilter.getAfter());
+            if (id == -1) {
+                return tasks;
+            }
+            id += 1;
+        }
+        int limit = taskFilter.getLimit();
+        // the filter's statuses as bits in the set, resolved once a listing
+        boolean anyStatus = taskFilter.isAnyStatus();
+        long statuses = anyStatus ? 0 : taskFilter.getStatusMask(statusSet);
+        if (!anyStatus && statuses == 0) {
+            return tasks;
+        }
+        // the status refs seen so far and their bits in the set
+        long[] refs = new long[8];
+        long[] masks = new long[8];
+        int seen = 0;
+        for (int last = w.lastId(); id <= last && tasks.size() < limit; id++) {
+            long record = find(w, id);
+            if (record == 0) {
+                continue;
+            }
+            // skip the tasks of other statuses without decoding them
+            if (!anyStatus) {
+                long ref = records.getLong(record * RECORD_SIZE + STATUS);
+                int i = 0;
+                while (i < seen && refs[i] != ref) {
+                    i++;
+                }
+                if (i == seen) {
+                    if (seen == refs.length) {
+                        refs = Arrays.copyOf(refs, seen * 2);
+                        masks = Arrays.copyOf(masks, seen * 2);
+                    }
+                    refs[i] = ref;
+                    masks[i] = statusSet.maskOf(status(ref));
+                    seen += 1;
+                }
+                if ((statuses & masks[i]) == 0) {
+                    continue;
+                }
+            }
+            Task task = task(record);
+            if (taskFilter.test(task)) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    @Override
+    public User findcreateUser(SlackUser slackUser) {
+        return UserPool.getDefault().intern(slackUser);
+    }
+
+    /**
+     * Write the changed pages of the files to disk and close them.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        records.close();
+        pages.close();
+        workspaces.close();
+        strings.close();
+    }
+
+    /**
+     * Returns the number of the record of the task with the id, or 0 when
+     * there is none.
+     */
+    private long find(MappedWorkspace workspace, int id) {
+        if (id < 1 || id > workspace.lastId()) {
+            return 0;
+        }
+        int page = pages.getInt((long) workspace.spine * PAGE_SIZE + (id / PAGE_INTS) * 4L);
+        return page == 0 ? 0 : pages.getInt((long) page * PAGE_SIZE + (id % PAGE_INTS) * 4L);
+    }
+
+    /**
+     * Point the task's directory entry at the record, adding the directory
+     * page when needed. Called holding the lock.
+     */
+    private void point(MappedWorkspace workspace, int id, long record) throws IOException {
+        long entry = (long) workspace.spine * PAGE_SIZE + (id / PAGE_INTS) * 4L;
+        int page = pages.getInt(entry);
+        if (page == 0) {
+            page = newPage();
+            pages.putInt(entry, page);
+        }
+        pages.putInt((long) page * PAGE_SIZE + (id % PAGE_INTS) * 4L, (int) record);
+    }
+
+    /**
+     * Returns the number of a new, zeroed page. Called holding the lock.
+     */
+    private int newPage() throws IOException {
+        int page = pageCount + 1;
+        pages.ensure((long) (page + 1) * PAGE_SIZE);
+        pageCount = page;
+        pages.putInt(0, pageCount);
+        return page;
+    }
+
+    /**
+     * Append the task's record and return its number. Called holding the
+     * lock.
+     */
+    private long append(MappedWorkspace workspace, int id, long version, String description, User creator, Collection<User> assignments, Status status) throws IOException {
+        long record = recordCount + 1;
+        if (record > Integer.MAX_VALUE) {
+            throw new IOException("too many records");
+        }
+        long offset = record * RECORD_SIZE;
+        records.ensure(offset + RECORD_SIZE);
+        records.putInt(offset + WORKSPACE, workspace.number);
+        records.putInt(offset + TASK_ID, id);
+        records.putLong(offset + VERSION, version);
+        records.putLong(offset + DESCRIPTION, strings.append(description));
+        records.putLong(offset + CREATOR, ref(creator));
+        records.putLong(offset + ASSIGNMENTS, ref(assignments));
+        records.putLong(offset + STATUS, ref(status));
+        recordCount = record;
+        records.putLong(0, recordCount);
+        return record;
+    }
+
+    private Task task(long record) {
+        long offset = record * RECORD_SIZE;
+        long assignmentsRef = records.getLong(offset + ASSIGNMENTS);
+        List<User> assignments = Collections.emptyList();
+        if (assignmentsRef != StringHeap.NONE) {
+            User[] users = new User[strings.getLength(assignmentsRef) / 8];
+            for (int i = 0; i < users.length; i++) {
+                users[i] = user(strings.getLong(assignmentsRef, i));
+            }
+            assignments = Arrays.asList(users);
+        }
+        return new Task(
+                Integer.toString(records.getInt(offset + TASK_ID)),
+                strings.getString(records.getLong(offset + DESCRIPTION)),
+                user(records.getLong(offset + CREATOR)),
+                assignments,
+                status(records.getLong(offset + STATUS)),
+                records.getLong(offset + VERSION)
+        );
+    }
+
+    private User user(long ref) {
+        if (ref == StringHeap.NONE) {
+            return null;
+        }
+        User user = refToUser.get(ref);
+        if (user == null) {
+            // a user is their id followed by their name
+            user = UserPool.getDefault().intern(strings.getString(strings.getLong(ref, 0)), strings.getString(strings.getLong(ref, 1)));
+            refToUser.put(ref, user);
+        }
+        return user;
+    }
+
+    private Status status(long ref) {
+        if (ref == StringHeap.NONE) {
+            return null;
+        }
+        Status status = refToStatus.get(ref);
+        if (status == null) {
+            status = statusSet.findStatus(strings.getString(ref));
+            if (status != null) {
+                refToStatus.put(ref, status);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Returns the reference of the user's entry, appending it the first time
+     * it is used since starting. Called holding the lock.
+     */
+    private long ref(User user) throws IOException {
+        if (user == null) {
+            return StringHeap.NONE;
+        }
+        String key = user.getId() + "|" + user.getName();
+        Long ref = userToRef.get(key);
+        if (ref == null) {
+            ref = strings.append(longs(strings.append(user.getId()), strings.append(user.getName())), 16);
+            userToRef.put(key, ref);
+            refToUser.put(ref, user);
+        }
+        return ref;
+    }
+
+    private long ref(Collection<User> users) throws IOException {
+        if (users.isEmpty()) {
+            return StringHeap.NONE;
+        }
+        long[] refs = new long[users.size()];
+        int n = 0;
+        for (User user : users) {
+            refs[n++] = ref(user);
+        }
+        return strings.append(longs(refs), refs.length * 8);
+    }
+
+    private long ref(Status status) throws IOException {
+        if (status == null) {
+            return StringHeap.NONE;
+        }
+        Long ref = statusToRef.get(status);
+        if (ref == null) {
+            ref = strings.append(status.getName());
+            statusToRef.put(status, ref);
+        }
+        return ref;
+    }
+
+    private static byte[] longs(long... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8);
+        for (long value : values) {
+            buffer.putLong(value);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Returns this controller's workspace with the workspace's id, or null
+     * when it could not be added.
+     */
+    private MappedWorkspace workspace(Workspace workspace) {
+        Workspace w = workspace instanceof MappedWorkspace ? workspace : findWorkspace(workspace.getId());
+        return w instanceof MappedWorkspace ? (MappedWorkspace) w : null;
+    }
+}
+
+// END
@@ -0,0 +1,94 @@
+package com.andrewgilmartin.incidentresponse.mapped;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file mapped into memory in segments of SEGMENT_SIZE bytes. Values are
+ * read and written at absolute offsets and must not span segments. Reads take
+ * no locks; the file's single writer maps more segments, and so grows the
+ * file, with ensure before writing past the mapped end.
+ */
+final class MappedFile implements AutoCloseable {
+
+    static final int SEGMENT_BITS = 26;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    MappedFile(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ensure(Math.max(1, channel.size()));
+    }
+
+    /**
+     * Map the segments needed to hold offsets below end.
+     */
+    synchronized void ensure(long end) throws IOException {
+        int n = (int) ((end + SEGMENT_MASK) >>> SEGMENT_BITS);
+        MappedByteBuffer[] s = segments;
+        if (n > s.length) {
+            MappedByteBuffer[] grown = new MappedByteBuffer[n];
+            System.arraycopy(s, 0, grown, 0, s.length);
+            for (int i = s.length; i < n; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << SEGMENT_BITS, SEGMENT_SIZE);
+            }
+            segments = grown;
+        }
+    }
+
+    int getInt(long offset) {
+        return segment(offset).getInt((int) (offset & SEGMENT_MASK));
+    }
+
+    void putInt(long offset, int value) {
+        segment(offset).putInt((int) (offset & SEGMENT_MASK), value);
+    }
+
+    long getLong(long offset) {
+        return segment(offset).getLong((int) (offset & SEGMENT_MASK));
+    }
+
+    void putLong(long offset, long value) {
+        segment(offset).putLong((int) (offset & SEGMENT_MASK), value);
+    }
+
+    void get(long offset, byte[] bytes, int length) {
+        ByteBuffer b = segment(offset).duplicate();
+        b.position((int) (offset & SEGMENT_MASK));
+        b.get(bytes, 0, length);
+    }
+
+    void put(long offset, byte[] bytes, int length) {
+        ByteBuffer b = segment(offset).duplicate();
+        b.position((int) (offset & SEGMENT_MASK));
+        b.put(bytes, 0, length);
+    }
+
+    private MappedByteBuffer segment(long offset) {
+        return segments[(int) (offset >>> SEGMENT_BITS)];
+    }
+
+    /**
+     * Write the changed pages to the file.
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
+
+// END
@@ -0,0 +1,99 @@
+package com.andrewgilmartin.incidentresponse.mapped;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An append-only heap of strings and other byte arrays in a mapped file. An
+ * entry is its int length followed by its bytes and is referred to by its
+ * offset. Entries are never changed, so once an entry's offset is published
+ * it can be read without locking. Appending is not thread safe.
+ */
+final class StringHeap implements AutoCloseable {
+
+    /**
+     * The reference to no entry, eg a null string.
+     */
+    static final long NONE = -1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private final MappedFile file;
+    private long end;
+
+    StringHeap(File file) throws IOException {
+        this.file = new MappedFile(file);
+        this.end = Math.max(HEADER_SIZE, this.file.getLong(0));
+    }
+
+    /**
+     * Append the string as UTF-8 and return its reference.
+     */
+    long append(String s) throws IOException {
+        if (s == null) {
+            return NONE;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return append(bytes, bytes.length);
+    }
+
+    /**
+     * Append the bytes and return their reference. An entry does not span
+     * segments, so one that does not fit in the current segment starts the
+     * next.
+     */
+    long append(byte[] bytes, int length) throws IOException {
+        int size = 4 + length;
+        if (size > MappedFile.SEGMENT_SIZE) {
+            throw new IllegalArgumentException("entry too large: length=" + length);
+        }
+        long ref = end;
+        if ((ref & MappedFile.SEGMENT_MASK) + size > MappedFile.SEGMENT_SIZE) {
+            ref = (ref | MappedFile.SEGMENT_MASK) + 1;
+        }
+        file.ensure(ref + size);
+        file.putInt(ref, length);
+        file.put(ref + 4, bytes, length);
+        end = ref + size;
+        file.putLong(0, end);
+        return ref;
+    }
+
+    /**
+     * Returns the string at the reference, or null for NONE.
+     */
+    String getString(long ref) {
+        if (ref == NONE) {
+            return null;
+        }
+        byte[] bytes = new byte[file.getInt(ref)];
+        file.get(ref + 4, bytes, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the length of the entry's bytes.
+     */
+    int getLength(long ref) {
+        return file.getInt(ref);
+    }
+
+    /**
+     * Returns the long at the index of the entry's bytes read as longs.
+     */
+    long getLong(long ref, int index) {
+        return file.getLong(ref + 4 + index * 8L);
+    }
+
+    void force() {
+        file.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
+
+// END
@@ -0,0 +1,113 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+/**
+ * An immutable set of task ids kept as a bitset of blocks of BLOCK_SIZE bits.
+ * A block without ids is not kept, so a set of a few ids spread among many
+ * tasks, as an assignee's are, takes a block per run of ids rather than a bit
+ * per task. The blocks are kept in a RadixTrie, so adding or removing an id
+ * makes a new set that copies only the changed block and its path.
+ */
+final class IdSet {
+
+    static final int BLOCK_BITS = 10;
+    static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    static final int BLOCK_WORDS = BLOCK_SIZE / 64;
+
+    static final IdSet EMPTY = new IdSet(RadixTrie.empty(), 0);
+
+    private final RadixTrie<long[]> blocks;
+    private final int size;
+
+    private IdSet(RadixTrie<long[]> blocks, int size) {
+        this.blocks = blocks;
+        this.size = size;
+    }
+
+    /**
+     * Returns the set with the id.
+     */
+    IdSet with(int id) {
+        if (contains(id)) {
+            return this;
+        }
+        int b = id >>> BLOCK_BITS;
+        long[] block = blocks.get(b);
+        block = block == null ? new long[BLOCK_WORDS] : block.clone();
+        block[(id >>> 6) & (BLOCK_WORDS - 1)] |= 1L << id;
+        return new IdSet(blocks.with(b, block), size + 1);
+    }
+
+    /**
+     * Returns the set without the id.
+     */
+    IdSet without(int id) {
+        if (!contains(id)) {
+            return this;
+        }
+        int b = id >>> BLOCK_BITS;
+        long[] block = blocks.get(b).clone();
+        block[(id >>> 6) & (BLOCK_WORDS - 1)] &= ~(1L << id);
+        return new IdSet(blocks.with(b, isEmpty(block) ? null : block), size - 1);
+    }
+
+    boolean contains(int id) {
+        long[] block = block(id >>> BLOCK_BITS);
+        return block != null && (block[(id >>> 6) & (BLOCK_WORDS - 1)] & (1L << id)) != 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the block's words, or null when it has no ids. Block b holds
+     * ids b * BLOCK_SIZE to (b + 1) * BLOCK_SIZE - 1. The words must not be
+     * changed.
+     */
+    long[] block(int b) {
+        return blocks.get(b);
+    }
+
+    /**
+     * Collects ids into a set without copying, for building a set at once.
+     * The builder must not be used after build.
+     */
+    static final class Builder {
+
+        private long[][] blocks = new long[0][];
+        private int size;
+
+        void add(int id) {
+            int b = id >>> BLOCK_BITS;
+            if (b >= blocks.length) {
+                long[][] copy = new long[Math.max(b + 1, blocks.length * 2)][];
+                System.arraycopy(blocks, 0, copy, 0, blocks.length);
+                blocks = copy;
+            }
+            if (blocks[b] == null) {
+                blocks[b] = new long[BLOCK_WORDS];
+            }
+            long bit = 1L << id;
+            int w = (id >>> 6) & (BLOCK_WORDS - 1);
+            if ((blocks[b][w] & bit) == 0) {
+                blocks[b][w] |= bit;
+                size += 1;
+            }
+        }
+
+        IdSet build() {
+            return size == 0 ? EMPTY : new IdSet(RadixTrie.of(blocks), size);
+        }
+    }
+
+    private static boolean isEmpty(long[] block) {
+        for (long word : block) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+
+// END
@@ -6,117 +6,616 @@ import com.andrewgilmartin.incidentresponse.StatusSet;
 import com.andrewgilmartin.incidentresponse.Task;
 import com.andrewgilmartin.incidentresponse.TaskFilter;
 import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.UserPool;
 import com.andrewgilmartin.incidentresponse.Workspace;
 import com.andrewgilmartin.slack.SlackUser;
+import com.andrewgilmartin.util.IO;
+import com.andrewgilmartin.util.Logger;
+import com.andrewgilmartin.util.Metrics;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
-public class MemoryController implements Controller {
+/**
+ * A controller that keeps workspaces and their tasks in memory. Each
+ * workspace's tasks are kept in a TaskTable indexed by their integer ids, so
+ * finding and updating a task does not search, and workspaces are found
+ * without a global lock. Reads take no locks and list from a snapshot of
+ * the table, so long listings neither block nor are blocked by writes.
+ * Listing by status or assignee tests only the tasks the workspace's
+ * TaskIndex finds for them, and finding by words or description only those
+ * its TextIndex finds.
+ *
+ * A controller given a directory is durable. Each new version of a task is
+ * appended to a TaskLog in the directory and, every snapshotRecords
+ * versions, all the tasks are written to the file snapshot.N and the logs and
+ * snapshots before it are deleted. On starting, the controller reads the last
+ * snapshot and the logs written since.
+ *
+ * A controller given a budget for its tasks' heap evicts the least recently
+ * used workspaces once its resident workspaces' tasks exceed it, writing each
+ * to a file in its spill directory, and reloads a workspace from its file
+ * when it is next found. The heap is estimated by the workspaces' tables.
+ */
+public class MemoryController implements Controller, AutoCloseable {
 
-    private final Map<String, Workspace> idToWorkspace = new HashMap<>();
-    private final Map<String, AtomicInteger> workspaceIdToTaskCount = new HashMap<>();
+    private static final Logger logger = Logger.getLogger(MemoryController.class);
+
+    private static final int CANDIDATES = 256;
+
+    static final String SNAPSHOT_BASE_NAME = "snapshot";
+    public static final int DEFAULT_SNAPSHOT_RECORDS = 1_000_000;
+
+    private static final LongAdder conflicts = Metrics.counter(Controller.CONFLICTS_COUNTER);
+    private static final LongAdder snapshots = Metrics.counter("incidentresponse.log.snapshots");
+    private static final LongAdder evictions = Metrics.counter("incidentresponse.workspaces.evictions");
+    private static final LongAdder reloads = Metrics.counter("incidentresponse.workspaces.reloads");
+    private static final LongAdder reloadMicros = Metrics.counter("incidentresponse.workspaces.reload_micros");
+
+    private static final String SPILL_SUFFIX = ".tasks";
+
+    private final ConcurrentMap<String, MemoryWorkspace> idToWorkspace = new ConcurrentHashMap<>();
+    private final File directory;
+    private final TaskLog log;
+    private final boolean synchronous;
+    private final int snapshotRecords;
+    private final AtomicLong unsnapshotted = new AtomicLong();
+    private final ExecutorService snapshotter;
+    /**
+     * The estimated heap of the resident workspaces' tasks.
+     */
+    private final AtomicLong resident = new AtomicLong();
+    /**
+     * Held while spilling, reloading and snapshotting workspaces.
+     */
+    private final Object spillLock = new Object();
+    /**
+     * Set once, by setEviction, and read by the writers.
+     */
+    private volatile Eviction eviction;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private static final class Eviction {
+
+        private final File spillDirectory;
+        private final long budget;
+        private final ExecutorService evictor;
+
+        Eviction(File spillDirectory, long budget, ExecutorService evictor) {
+            this.spillDirectory = spillDirectory;
+            this.budget = budget;
+            this.evictor = evictor;
+        }
+    }
 
     private static class MemoryWorkspace extends Workspace {
 
-        private final List<Task> tasks = new LinkedList<>();
+        private final TaskTable tasks;
+        private volatile long lastUsed = System.nanoTime();
 
-        public MemoryWorkspace(String id, StatusSet statusSet) {
+        public MemoryWorkspace(String id, StatusSet statusSet, TaskTable tasks) {
             super(id, statusSet);
+            this.tasks = tasks;
         }
 
-        public List<Task> getTasks() {
+        public TaskTable getTasks() {
             return tasks;
         }
 
     }
 
-    @Override
-    public Workspace findWorkspace(String workspaceId) {
-        synchronized (idToWorkspace) {
-            Workspace workspace = idToWorkspace.get(workspaceId);
+    /**
+     * A controller that keeps nothing once it is gone.
+     */
+    public MemoryController() {
+        this.directory = null;
+        this.log = null;
+        this.synchronous = false;
+        this.snapshotRecords = 0;
+        this.snapshotter = null;
+    }
+
+    /**
+     * A durable controller keeping its files in the directory. When
+     * commitMillis is 0 adding and updating a task waits for its version to
+     * be on disk, sharing the wait with the other writers at that moment;
+     * otherwise the versions are written every commitMillis and those of the
+     * last commitMillis can be lost in a crash.
+     */
+    public MemoryController(File directory, int commitMillis, int snapshotRecords) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        this.directory = directory;
+        this.synchronous = commitMillis == 0;
+        this.snapshotRecords = snapshotRecords;
+        this.snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // the snapshot has every version logged before it was begun
+        Map<String, Task[]> tasks = new HashMap<>();
+        int snapshot = IO.findLastNumberedFile(directory, SNAPSHOT_BASE_NAME);
+        if (snapshot > 0) {
+            recover(new File(directory, SNAPSHOT_BASE_NAME + "." + snapshot), tasks);
+        }
+        int last = snapshot;
+        for (int number : IO.findNumberedFiles(directory, TaskLog.BASE_NAME)) {
+            if (number >= snapshot) {
+                recover(new File(directory, TaskLog.BASE_NAME + "." + number), tasks);
+                last = number;
+            }
+        }
+        // a new log so that nothing is appended after a damaged end
+        this.log = new TaskLog(directory, last + 1, commitMillis);
+        for (Map.Entry<String, Task[]> e : tasks.entrySet()) {
+            idToWorkspace.put(e.getKey(), new MemoryWorkspace(e.getKey(), StatusSet.COMMON_STATUS_SET, TaskTable.of(e.getKey(), StatusSet.COMMON_STATUS_SET, log, resident, e.getValue())));
+        }
+        logger.info("recovered tasks: directory={0}; workspaces={1}; snapshot={2}; log={3}", directory, tasks.size(), snapshot, last);
+    }
+
+    /**
+     * Read the file's tasks into the workspaces' arrays of tasks by id,
+     * keeping each task's highest version.
+     */
+    private static void recover(File file, Map<String, Task[]> workspaceIdToTasks) throws IOException {
+        for (TaskRecords.Entry entry : TaskRecords.read(file, StatusSet.COMMON_STATUS_SET, Runtime.getRuntime().availableProcessors())) {
+            Task[] tasks = workspaceIdToTasks.get(entry.workspaceId);
+            if (tasks == null || entry.id >= tasks.length) {
+                tasks = tasks == null
+                        ? new Task[Math.max(1024, entry.id + 1)]
+                        : Arrays.copyOf(tasks, Math.max(entry.id + 1, tasks.length * 2));
+                workspaceIdToTasks.put(entry.workspaceId, tasks);
+            }
+            if (tasks[entry.id] == null || tasks[entry.id].getVersion() < entry.task.getVersion()) {
+                tasks[entry.id] = entry.task;
+            }
+        }
+    }
+
+    /**
+     * Write all the tasks to the next snapshot and delete the logs and
+     * snapshots it replaces.
+     */
+    void snapshot() throws IOException {
+        synchronized (spillLock) {
+            writeSnapshot();
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        unsnapshotted.set(0);
+        // versions logged from now on are in the log numbered as the snapshot
+        int number = log.roll();
+        File file = new File(directory, SNAPSHOT_BASE_NAME + "." + number);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            TaskRecords.Writer writer = new TaskRecords.Writer();
+            for (MemoryWorkspace workspace : idToWorkspace.values()) {
+                count += write(channel, writer, workspace.getId(), workspace.getTasks().snapshot());
+            }
+            // the evicted workspaces' files are records too
+            Eviction active = eviction;
+            if (active != null) {
+                for (File spilled : active.spillDirectory.listFiles((d, name) -> name.endsWith(SPILL_SUFFIX))) {
+                    byte[] bytes = Files.readAllBytes(spilled.toPath());
+                    TaskRecords.write(channel, bytes, bytes.length);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        for (int n : IO.findNumberedFiles(directory, SNAPSHOT_BASE_NAME)) {
+            if (n < number) {
+                Files.deleteIfExists(new File(directory, SNAPSHOT_BASE_NAME + "." + n).toPath());
+            }
+        }
+        for (int n : IO.findNumberedFiles(directory, TaskLog.BASE_NAME)) {
+            if (n < number) {
+                Files.deleteIfExists(new File(directory, TaskLog.BASE_NAME + "." + n).toPath());
+            }
+        }
+        snapshots.increment();
+        logger.info("wrote snapshot: file={0}; tasks={1}", file, count);
+    }
+
+    /**
+     * Write the workspace's tasks to the channel. Returns the number of tasks
+     * written.
+     */
+    private static long write(FileChannel channel, TaskRecords.Writer writer, String workspaceId, TaskTable.Snapshot tasks) throws IOException {
+        long count = 0;
+        writer.reset();
+        for (int id = 1; id <= tasks.lastId(); id++) {
+            Task task = tasks.get(id);
+            if (task != null) {
+                writer.put(workspaceId, task);
+                count += 1;
+                if (writer.size() >= 1 << 20) {
+                    TaskRecords.write(channel, writer.array(), writer.size());
+                    writer.reset();
+                }
+            }
+        }
+        TaskRecords.write(channel, writer.array(), writer.size());
+        writer.reset();
+        return count;
+    }
+
+    /**
+     * Evict the least recently used workspaces once the resident tasks'
+     * estimated heap exceeds budgetBytes, writing them to files in the
+     * directory. The directory's files of a previous run are deleted: a
+     * durable controller has recovered their tasks from its own files. The
+     * eviction can only be set once.
+     */
+    public synchronized void setEviction(File spillDirectory, long budgetBytes) throws IOException {
+        if (eviction != null) {
+            throw new IllegalStateException("eviction is already set");
+        }
+        if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            throw new IOException("unable to create " + spillDirectory);
+        }
+        for (File file : spillDirectory.listFiles((d, name) -> name.endsWith(SPILL_SUFFIX) || name.endsWith(SPILL_SUFFIX + ".tmp"))) {
+            Files.delete(file.toPath());
+        }
+        this.eviction = new Eviction(spillDirectory, budgetBytes, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "workspace-evictor");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        Metrics.gauge("incidentresponse.workspaces.resident", idToWorkspace::size);
+        Metrics.gauge("incidentresponse.workspaces.resident_bytes", resident::get);
+    }
+
+    /**
+     * Evict the least recently used workspaces until the resident tasks take
+     * less than 90% of the budget, so that evictions come in batches, but
+     * keep at least the most recently used workspace.
+     */
+    void evictIdle(long budget) {
+        long target = budget / 10 * 9;
+        while (resident.get() > target) {
+            MemoryWorkspace lru = null;
+            int count = 0;
+            for (MemoryWorkspace workspace : idToWorkspace.values()) {
+                count += 1;
+                if (lru == null || workspace.lastUsed < lru.lastUsed) {
+                    lru = workspace;
+                }
+            }
+            if (count < 2) {
+                break;
+            }
+            try {
+                spill(lru);
+            } catch (IOException e) {
+                logger.error(e, "unable to evict workspace: workspaceId={0}", lru.getId());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Write the workspace's tasks to its file and forget them.
+     */
+    private void spill(MemoryWorkspace workspace) throws IOException {
+        synchronized (spillLock) {
+            if (idToWorkspace.get(workspace.getId()) != workspace) {
+                return;
+            }
+            TaskTable.Snapshot tasks = workspace.getTasks().evict();
+            File file = spillFile(workspace.getId());
+            File temporary = new File(file.getPath() + ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    write(channel, new TaskRecords.Writer(), workspace.getId(), tasks);
+                }
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                // keep the tasks resident in a new table
+                Task[] array = new Task[tasks.lastId() + 1];
+                for (int id = 1; id <= tasks.lastId(); id++) {
+                    array[id] = tasks.get(id);
+                }
+                idToWorkspace.put(workspace.getId(), new MemoryWorkspace(workspace.getId(), workspace.getStatusSet(), TaskTable.of(workspace.getId(), workspace.getStatusSet(), log, resident, array)));
+                throw e;
+            }
+            idToWorkspace.remove(workspace.getId(), workspace);
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Returns the workspace, reading it from its file when it was evicted.
+     */
+    private MemoryWorkspace reload(String workspaceId) {
+        synchronized (spillLock) {
+            MemoryWorkspace workspace = idToWorkspace.get(workspaceId);
             if (workspace == null) {
-                workspace = new Workspace(workspaceId, StatusSet.COMMON_STATUS_SET);
-                idToWorkspace.put(workspace.getId(), workspace);
+                Task[] tasks = new Task[0];
+                File file = spillFile(workspaceId);
+                if (file.exists()) {
+                    long started = System.nanoTime();
+                    Map<String, Task[]> workspaceIdToTasks = new HashMap<>();
+                    try {
+                        recover(file, workspaceIdToTasks);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("unable to reload workspace " + workspaceId, e);
+                    }
+                    tasks = workspaceIdToTasks.getOrDefault(workspaceId, tasks);
+                    reloads.increment();
+                    reloadMicros.add((System.nanoTime() - started) / 1000);
+                }
+                workspace = new MemoryWorkspace(workspaceId, StatusSet.COMMON_STATUS_SET, TaskTable.of(workspaceId, StatusSet.COMMON_STATUS_SET, log, resident, tasks));
+                idToWorkspace.put(workspaceId, workspace);
+                file.delete();
             }
             return workspace;
         }
     }
 
-    @Override
-    public Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status) {
-        synchronized (workspace) {
-            Task task = new Task(nextTaskId(workspace), description, creator, assignments, status);
-            ((MemoryWorkspace) workspace).getTasks().add(task);
-            return task;
+    private File spillFile(String workspaceId) {
+        try {
+            return new File(eviction.spillDirectory, URLEncoder.encode(workspaceId, "UTF-8") + SPILL_SUFFIX);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
         }
     }
 
-    @Override
-    public Task updateTask(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status) {
-        synchronized (workspace) {
-            ListIterator<Task> t = ((MemoryWorkspace) workspace).getTasks().listIterator();
-            while (t.hasNext()) {
-                Task task = t.next();
-                if (task.getId().equals(taskId)) {
-                    Task replacement = new Task(
-                            task.getId(),
-                            description,
-                            creator,
-                            assignments,
-                            status
-                    );
-                    t.set(task);
-                    return replacement;
-                }
+    /**
+     * Apply the write to the workspace's tasks, again when the workspace was
+     * evicted meanwhile, and return the written task once it is logged. No
+     * writes are applied once the log has failed.
+     */
+    private Task write(Workspace workspace, Function<TaskTable, Task> write) {
+        if (log != null && log.isFailed()) {
+            throw new IllegalStateException("the task log can not be written: directory=" + directory);
+        }
+        for (;;) {
+            TaskTable tasks = tasks(workspace);
+            Task task = write.apply(tasks);
+            if (task != null || !tasks.isEvicted()) {
+                return written(task);
             }
+        }
+    }
+
+    /**
+     * Returns the task once its version is logged. Throws
+     * IllegalStateException when it could not be, though the task has been
+     * published and stays until the controller is restarted. Starts a
+     * snapshot when enough versions have been logged since the last, and an
+     * eviction when the resident tasks exceed the budget.
+     */
+    private Task written(Task task) {
+        if (task == null) {
             return null;
         }
+        Eviction active = eviction;
+        if (active != null && resident.get() > active.budget && evicting.compareAndSet(false, true)) {
+            active.evictor.execute(() -> {
+                try {
+                    evictIdle(active.budget);
+                } finally {
+                    evicting.set(false);
+                }
+            });
+        }
+        if (log == null) {
+            return task;
+        }
+        if (synchronous && !log.awaitDurable()) {
+            logger.error("unable to log task: taskId={0}", task.getId());
+            throw new IllegalStateException("unable to log task " + task.getId());
+        }
+        if (unsnapshotted.incrementAndGet() == snapshotRecords) {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    logger.error(e, "unable to write snapshot: directory={0}", directory);
+                }
+            });
+        }
+        return task;
     }
 
+    /**
+     * Commit the log and stop. Only needed for a durable controller.
+     */
     @Override
-    public Task findTask(Workspace workspace, String taskId) {
-        synchronized (workspace) {
-            for (Task task : ((MemoryWorkspace) workspace).getTasks()) {
-                if (task.getId().equals(taskId)) {
-                    return task;
-                }
+    public void close() throws IOException {
+        Eviction active = eviction;
+        if (active != null) {
+            // a spill in progress finishes before its files are gone
+            active.evictor.shutdown();
+            try {
+                active.evictor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            return null;
         }
+        if (log != null) {
+            snapshotter.shutdown();
+            try {
+                snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            log.close();
+        }
+    }
+
+    @Override
+    public Workspace findWorkspace(String workspaceId) {
+        MemoryWorkspace workspace = idToWorkspace.get(workspaceId);
+        if (workspace == null || workspace.getTasks().isEvicted()) {
+            workspace = eviction != null
+                    ? reload(workspaceId)
+                    : idToWorkspace.computeIfAbsent(workspaceId, id -> new MemoryWorkspace(
+                            id,
+                            StatusSet.COMMON_STATUS_SET,
+                            TaskTable.of(id, StatusSet.COMMON_STATUS_SET, log, resident, new Task[0])
+                    ));
+        }
+        workspace.lastUsed = System.nanoTime();
+        return workspace;
     }
 
     @Override
+    public Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status) {
+        return write(workspace, tasks -> tasks.add(id -> new Task(Integer.toString(id), description, creator, assignments, status, 1)));
+    }
+
+    @Override
+    public Task updateTask(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status) {
+        return write(workspace, tasks -> tasks.replace(TaskTable.parseId(taskId), task -> new Task(
+                task.getId(),
+                description,
+                creator,
+                assignments,
+                status,
+                task.getVersion() + 1
+        )));
+    }
 
+    @Override
+    public Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
+        return write(workspace, tasks -> tasks.replace(TaskTable.parseId(taskId), task -> {
+            if (task.getVersion() != version) {
+                conflicts.increment();
+                return null;
+            }
+            return new Task(
+                    task.getId(),
+                    description,
+                    creator,
+                    assignments,
+                    status,
+                    version + 1
+            );
+        }));
+    }
+
+    @Override
+    public Task findTask(Workspace workspace, String taskId) {
+        return tasks(workspace).get(TaskTable.parseId(taskId));
+    }
+
+    @Override
     public List<Task> findTasks(Workspace workspace, TaskFilter taskFilter) {
-        synchronized (workspace) {
-            List<Task> tasks = new LinkedList<>();
-            for (Task task : ((MemoryWorkspace) workspace).getTasks()) {
-                if (taskFilter.test(task)) {
+        // list from one snapshot however many writes happen meanwhile
+        TaskTable.Snapshot table = tasks(workspace).snapshot();
+        List<Task> tasks = new ArrayList<>();
+        int limit = taskFilter.getLimit();
+        // tasks are found in id order starting after the filter's id
+        int id = 1;
+        if (taskFilter.getAfter() != null) {
+            id = TaskTable.parseId(taskFilter.getAfter());
+            if (id == -1) {
+                // all ids are numbers and so precede it
+                return tasks;
+            }
+            id += 1;
+        }
+        int last = table.lastId();
+        // only test the tasks the text index has for the words and the
+        // description's literals, when it has any
+        Pattern description = taskFilter.getDescription();
+        int[] matching = table.getText().find(
+                taskFilter.getWords(),
+                description == null ? null : TextIndex.literals(description.pattern()),
+                id,
+                last,
+                limit
+        );
+        if (matching != null) {
+            for (int i = 0; i < matching.length && tasks.size() < limit; i++) {
+                Task task = table.get(matching[i]);
+                if (task != null && taskFilter.test(task)) {
                     tasks.add(task);
                 }
             }
             return tasks;
         }
+        // the filter's statuses as bits in the index's StatusSet, or zero
+        // for any status
+        long statuses = 0;
+        if (!taskFilter.isAnyStatus()) {
+            statuses = taskFilter.getStatusMask(table.getIndex().getStatusSet());
+            if (statuses == 0) {
+                // none of the statuses are in the set and so no task has them
+                return tasks;
+            }
+        }
+        Set<User> assignments = taskFilter.getAssignments();
+        if (statuses == 0 && assignments.isEmpty()) {
+            for (; id > 0 && id <= last && tasks.size() < limit; id++) {
+                Task task = table.get(id);
+                if (task != null && taskFilter.test(task)) {
+                    tasks.add(task);
+                }
+            }
+            return tasks;
+        }
+        // only test the tasks the index has for the statuses and assignees
+        int[] candidates = new int[Math.min(CANDIDATES, Math.max(1, limit))];
+        while (id > 0 && id <= last && tasks.size() < limit) {
+            int n = table.getIndex().find(statuses, assignments.isEmpty() ? null : assignments, id, last, candidates);
+            for (int i = 0; i < n && tasks.size() < limit; i++) {
+                Task task = table.get(candidates[i]);
+                if (task != null && taskFilter.test(task)) {
+                    tasks.add(task);
+                }
+            }
+            if (n < candidates.length) {
+                break;
+            }
+            id = candidates[n - 1] + 1;
+        }
+        return tasks;
     }
 
     @Override
     public User findcreateUser(SlackUser slackUser) {
-        return new User(slackUser.getId(), slackUser.getName());
+        return UserPool.getDefault().intern(slackUser);
     }
 
-    private String nextTaskId(Workspace workspace) {
-        synchronized (workspaceIdToTaskCount) {
-            AtomicInteger count = workspaceIdToTaskCount.get(workspace.getId());
-            if (count == null) {
-                count = new AtomicInteger(0);
-                workspaceIdToTaskCount.put(workspace.getId(), count);
-            }
-            return Integer.toString(count.incrementAndGet());
+    /**
+     * Returns the workspace's tasks. The workspace need not be the instance
+     * this controller found, nor still resident.
+     */
+    TaskTable tasks(Workspace workspace) {
+        if (workspace instanceof MemoryWorkspace && !((MemoryWorkspace) workspace).getTasks().isEvicted()) {
+            MemoryWorkspace w = (MemoryWorkspace) workspace;
+            w.lastUsed = System.nanoTime();
+            return w.getTasks();
         }
+        return ((MemoryWorkspace) findWorkspace(workspace.getId())).getTasks();
     }
 }
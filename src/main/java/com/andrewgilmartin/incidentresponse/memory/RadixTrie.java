@@ -0,0 +1,144 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import java.util.Arrays;
+
+/**
+ * An immutable sparse array of values keyed by non-negative ints, kept as a
+ * trie of nodes of WIDTH slots, each level taking BITS bits of the key. The
+ * trie is only as deep as its largest key needs, so a key is found in about
+ * log32 steps. Setting a key makes a new trie that copies only the nodes on
+ * the key's path and shares all others with this one, so a write costs the
+ * trie's depth rather than its size. Nodes left without values are dropped.
+ */
+final class RadixTrie<T> {
+
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+
+    private static final RadixTrie<Object> EMPTY = new RadixTrie<>(null, 0);
+
+    /**
+     * The root node, or null when the trie is empty. A node's slots are
+     * nodes, or values at the last level.
+     */
+    private final Object[] root;
+    /**
+     * The shift of the root's level. The keys are less than
+     * 1 << (shift + BITS).
+     */
+    private final int shift;
+
+    private RadixTrie(Object[] root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> RadixTrie<T> empty() {
+        return (RadixTrie<T>) EMPTY;
+    }
+
+    /**
+     * Returns the trie of the values, each keyed by its position in the
+     * array. Building the trie at once is much quicker than setting the
+     * values one at a time.
+     */
+    static <T> RadixTrie<T> of(T[] values) {
+        int length = values.length;
+        while (length > 0 && values[length - 1] == null) {
+            length -= 1;
+        }
+        if (length == 0) {
+            return empty();
+        }
+        Object[] level = new Object[((length - 1) >>> BITS) + 1];
+        for (int n = 0; n < level.length; n++) {
+            level[n] = node(Arrays.copyOfRange(values, n << BITS, (n + 1) << BITS, Object[].class));
+        }
+        int shift = 0;
+        while (level.length > 1) {
+            Object[] parents = new Object[((level.length - 1) >>> BITS) + 1];
+            for (int n = 0; n < parents.length; n++) {
+                parents[n] = node(Arrays.copyOfRange(level, n << BITS, (n + 1) << BITS));
+            }
+            level = parents;
+            shift += BITS;
+        }
+        return new RadixTrie<>((Object[]) level[0], shift);
+    }
+
+    /**
+     * Returns the value with the key or null.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int key) {
+        if (key < 0 || (key >>> shift) >>> BITS != 0) {
+            return null;
+        }
+        Object[] node = root;
+        for (int s = shift; node != null; s -= BITS) {
+            Object slot = node[(key >>> s) & MASK];
+            if (s == 0) {
+                return (T) slot;
+            }
+            node = (Object[]) slot;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the trie with the key's value, or without the key when the
+     * value is null.
+     */
+    RadixTrie<T> with(int key, T value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("negative key: " + key);
+        }
+        Object[] r = root;
+        int s = shift;
+        while ((key >>> s) >>> BITS != 0) {
+            if (value == null) {
+                // the key is not in the trie
+                return this;
+            }
+            r = r == null ? null : node(new Object[]{r});
+            s += BITS;
+        }
+        r = with(r, s, key, value);
+        return r == root ? this : new RadixTrie<>(r, r == null ? 0 : s);
+    }
+
+    private static Object[] with(Object[] node, int shift, int key, Object value) {
+        int i = (key >>> shift) & MASK;
+        Object slot = node == null ? null : node[i];
+        Object changed = shift == 0 ? value : with((Object[]) slot, shift - BITS, key, value);
+        if (changed == slot) {
+            return node;
+        }
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        copy[i] = changed;
+        return changed == null && isEmpty(copy) ? null : copy;
+    }
+
+    /**
+     * Returns the slots as a node of WIDTH slots, or null when all are null.
+     */
+    private static Object[] node(Object[] slots) {
+        if (isEmpty(slots)) {
+            return null;
+        }
+        return slots.length == WIDTH ? slots : Arrays.copyOf(slots, WIDTH);
+    }
+
+    private static boolean isEmpty(Object[] node) {
+        for (Object slot : node) {
+            if (slot != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+
+// END
@@ -0,0 +1,264 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.User;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A workspace's postings from status ordinal, in the workspace's StatusSet,
+ * and from assignee id to the ids of their tasks. The index is immutable:
+ * each add and update of a task makes a new index sharing all but the changed
+ * postings with the old one, and so an index is a consistent snapshot that
+ * can be read without locking. The assignees' postings are kept in a
+ * RadixTrie by the hash of the assignee's id, so a change copies only the
+ * changed postings' path rather than all the assignees. A filter's statuses
+ * and assignees are answered by the union of each's postings intersected with
+ * the other's, a block of ids at a time. The ids found are candidates only:
+ * the filter is still tested on each task, as the postings do not cover the
+ * description.
+ */
+final class TaskIndex {
+
+    private static final IdSet[] NONE = new IdSet[0];
+
+    private final StatusSet statusSet;
+    /**
+     * The postings by status ordinal. Tasks whose status is not in the set
+     * have no postings, as no filter of statuses matches them.
+     */
+    private final IdSet[] byStatus;
+    /**
+     * Buckets of assignee ids and their postings, alternately, by the hash of
+     * the ids.
+     */
+    private final RadixTrie<Object[]> byAssignee;
+
+    private TaskIndex(StatusSet statusSet, IdSet[] byStatus, RadixTrie<Object[]> byAssignee) {
+        this.statusSet = statusSet;
+        this.byStatus = byStatus;
+        this.byAssignee = byAssignee;
+    }
+
+    /**
+     * The set whose ordinals the postings are by.
+     */
+    StatusSet getStatusSet() {
+        return statusSet;
+    }
+
+    /**
+     * Returns the empty index of tasks with statuses in the set.
+     */
+    static TaskIndex empty(StatusSet statusSet) {
+        return new TaskIndex(statusSet, new IdSet[64], RadixTrie.empty());
+    }
+
+    /**
+     * Returns the index with the task's id moved from the postings of its
+     * previous version, if any, to those of its current version.
+     */
+    TaskIndex with(int id, Task previous, Task task) {
+        IdSet[] statuses = byStatus.clone();
+        int ordinal = ordinal(previous);
+        if (ordinal >= 0) {
+            statuses[ordinal] = statuses[ordinal].without(id);
+        }
+        ordinal = ordinal(task);
+        if (ordinal >= 0) {
+            statuses[ordinal] = (statuses[ordinal] == null ? IdSet.EMPTY : statuses[ordinal]).with(id);
+        }
+        RadixTrie<Object[]> assignees = byAssignee;
+        if (previous != null) {
+            for (User user : previous.getAssignments()) {
+                IdSet ids = assigned(assignees, user.getId());
+                if (ids != null) {
+                    ids = ids.without(id);
+                    assignees = withAssigned(assignees, user.getId(), ids.size() == 0 ? null : ids);
+                }
+            }
+        }
+        for (User user : task.getAssignments()) {
+            IdSet ids = assigned(assignees, user.getId());
+            assignees = withAssigned(assignees, user.getId(), (ids == null ? IdSet.EMPTY : ids).with(id));
+        }
+        return new TaskIndex(statusSet, statuses, assignees);
+    }
+
+    /**
+     * Returns the index of the tasks, which are at their ids' positions in
+     * the array. Building the index at once is much quicker than adding the
+     * tasks one at a time.
+     */
+    static TaskIndex of(StatusSet statusSet, Task[] tasks) {
+        IdSet.Builder[] statuses = new IdSet.Builder[64];
+        Map<String, IdSet.Builder> assignees = new HashMap<>();
+        for (int id = 0; id < tasks.length; id++) {
+            Task task = tasks[id];
+            if (task == null) {
+                continue;
+            }
+            int ordinal = statusSet.ordinalOf(task.getStatus());
+            if (ordinal >= 0) {
+                if (statuses[ordinal] == null) {
+                    statuses[ordinal] = new IdSet.Builder();
+                }
+                statuses[ordinal].add(id);
+            }
+            for (User user : task.getAssignments()) {
+                assignees.computeIfAbsent(user.getId(), k -> new IdSet.Builder()).add(id);
+            }
+        }
+        IdSet[] byStatus = new IdSet[64];
+        for (int i = 0; i < statuses.length; i++) {
+            byStatus[i] = statuses[i] == null ? null : statuses[i].build();
+        }
+        RadixTrie<Object[]> byAssignee = RadixTrie.empty();
+        for (Map.Entry<String, IdSet.Builder> e : assignees.entrySet()) {
+            byAssignee = withAssigned(byAssignee, e.getKey(), e.getValue().build());
+        }
+        return new TaskIndex(statusSet, byStatus, byAssignee);
+    }
+
+    /**
+     * Find the ids, from id from through id last, of the tasks that have one
+     * of the statuses, given as a mask of their bits in the index's
+     * StatusSet, or any status when statuses is zero, and that are assigned
+     * to one of the users, or to anyone when users is null. Returns the
+     * number of ids put in ids, which is less than its length only when there
+     * are no more.
+     */
+    int find(long statuses, Collection<User> users, int from, int last, int[] ids) {
+        IdSet[] withStatuses = NONE;
+        if (statuses != 0) {
+            withStatuses = new IdSet[Long.bitCount(statuses)];
+            int n = 0;
+            for (long bits = statuses; bits != 0; bits &= bits - 1) {
+                withStatuses[n++] = byStatus[Long.numberOfTrailingZeros(bits)];
+            }
+        }
+        IdSet[] assignees = NONE;
+        if (users != null) {
+            assignees = new IdSet[users.size()];
+            int n = 0;
+            for (User user : users) {
+                assignees[n++] = assigned(byAssignee, user.getId());
+            }
+        }
+        long[] s = new long[IdSet.BLOCK_WORDS];
+        long[] a = new long[IdSet.BLOCK_WORDS];
+        int count = 0;
+        for (int b = from >>> IdSet.BLOCK_BITS; b <= last >>> IdSet.BLOCK_BITS; b++) {
+            if (statuses != 0 && !union(withStatuses, b, s)) {
+                continue;
+            }
+            if (users != null && !union(assignees, b, a)) {
+                continue;
+            }
+            int base = b << IdSet.BLOCK_BITS;
+            for (int w = 0; w < IdSet.BLOCK_WORDS; w++) {
+                long word = (statuses != 0 ? s[w] : -1L) & (users != null ? a[w] : -1L);
+                for (; word != 0; word &= word - 1) {
+                    int id = base + (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (id > last) {
+                        return count;
+                    }
+                    if (id >= from) {
+                        ids[count++] = id;
+                        if (count == ids.length) {
+                            return count;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the postings of the assignee or null.
+     */
+    private static IdSet assigned(RadixTrie<Object[]> assignees, String userId) {
+        Object[] bucket = assignees.get(hash(userId));
+        if (bucket != null) {
+            for (int i = 0; i < bucket.length; i += 2) {
+                if (Objects.equals(bucket[i], userId)) {
+                    return (IdSet) bucket[i + 1];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the assignees with the assignee's postings, or without them
+     * when ids is null.
+     */
+    private static RadixTrie<Object[]> withAssigned(RadixTrie<Object[]> assignees, String userId, IdSet ids) {
+        int hash = hash(userId);
+        Object[] bucket = assignees.get(hash);
+        int i = 0;
+        while (bucket != null && i < bucket.length && !Objects.equals(bucket[i], userId)) {
+            i += 2;
+        }
+        if (bucket == null || i == bucket.length) {
+            if (ids == null) {
+                return assignees;
+            }
+            bucket = bucket == null ? new Object[2] : Arrays.copyOf(bucket, bucket.length + 2);
+            bucket[i] = userId;
+        } else if (ids == null) {
+            if (bucket.length == 2) {
+                return assignees.with(hash, null);
+            }
+            Object[] b = new Object[bucket.length - 2];
+            System.arraycopy(bucket, 0, b, 0, i);
+            System.arraycopy(bucket, i + 2, b, i, b.length - i);
+            return assignees.with(hash, b);
+        } else {
+            bucket = bucket.clone();
+        }
+        bucket[i + 1] = ids;
+        return assignees.with(hash, bucket);
+    }
+
+    private static int hash(String userId) {
+        return Objects.hashCode(userId) & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Put the union of the sets' words in block b into words. Returns false
+     * when the union is empty.
+     */
+    private static boolean union(IdSet[] sets, int b, long[] words) {
+        boolean any = false;
+        for (IdSet set : sets) {
+            long[] block = set == null ? null : set.block(b);
+            if (block != null) {
+                if (any) {
+                    for (int w = 0; w < words.length; w++) {
+                        words[w] |= block[w];
+                    }
+                } else {
+                    System.arraycopy(block, 0, words, 0, words.length);
+                    any = true;
+                }
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Returns the ordinal of the task's status, or -1 when there is no task
+     * or its status is not in the set.
+     */
+    private int ordinal(Task task) {
+        return task == null ? -1 : statusSet.ordinalOf(task.getStatus());
+    }
+}
+
+// END
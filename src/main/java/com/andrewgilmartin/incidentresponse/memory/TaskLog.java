@@ -0,0 +1,228 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.util.Logger;
+import com.andrewgilmartin.util.Metrics;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An append-only log of the tasks' versions kept in the files log.N of a
+ * directory. Appending only copies the encoded record into a buffer; a
+ * committer thread writes the buffer and forces it to disk, taking all the
+ * records appended meanwhile in one write, so a commit's cost is shared by
+ * every writer in it. When commitMillis is 0 the committer commits as soon as
+ * there are records and writers can wait for theirs to be on disk. Otherwise
+ * it commits every commitMillis and records appended within that time of a
+ * crash can be lost.
+ */
+class TaskLog implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(TaskLog.class);
+
+    private static final LongAdder records = Metrics.counter("incidentresponse.log.records");
+    private static final LongAdder commits = Metrics.counter("incidentresponse.log.commits");
+    private static final LongAdder bytesWritten = Metrics.counter("incidentresponse.log.bytes");
+
+    static final String BASE_NAME = "log";
+
+    private static final ThreadLocal<TaskRecords.Writer> writers = ThreadLocal.withInitial(TaskRecords.Writer::new);
+
+    private final File directory;
+    private final int commitMillis;
+    private final Thread committer;
+    /**
+     * Held while writing to the channel, so the log is not rolled mid-write.
+     */
+    private final Object channelLock = new Object();
+    private FileChannel channel;
+    private int number;
+
+    // guarded by this
+    private byte[] pending = new byte[64 * 1024];
+    private int pendingSize;
+    private byte[] spare = new byte[64 * 1024];
+    private long appendedCount;
+    private long durableCount;
+    private boolean closed;
+    private boolean failed;
+
+    /**
+     * Open the directory's log.number for appending.
+     */
+    TaskLog(File directory, int number, int commitMillis) throws IOException {
+        this.directory = directory;
+        this.commitMillis = commitMillis;
+        this.number = number;
+        this.channel = open(number);
+        this.committer = new Thread(this::commit, "task-log-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Append the workspace's task. Returns without waiting for the record to
+     * be written.
+     */
+    void append(String workspaceId, Task task) {
+        TaskRecords.Writer writer = writers.get();
+        writer.reset();
+        writer.put(workspaceId, task);
+        synchronized (this) {
+            if (failed) {
+                return;
+            }
+            if (pendingSize + writer.size() > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pendingSize + writer.size(), pending.length * 2));
+            }
+            System.arraycopy(writer.array(), 0, pending, pendingSize, writer.size());
+            if (pendingSize == 0) {
+                // wake the committer
+                notifyAll();
+            }
+            pendingSize += writer.size();
+            appendedCount += 1;
+        }
+        records.increment();
+    }
+
+    /**
+     * Wait until every record appended so far is on disk. Returns false when
+     * the log can not be written.
+     */
+    boolean awaitDurable() {
+        synchronized (this) {
+            long target = appendedCount;
+            while (durableCount < target && !failed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return !failed;
+        }
+    }
+
+    /**
+     * Returns true once a write to the log has failed. Records appended since
+     * are dropped.
+     */
+    synchronized boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Commit the pending records and continue the log in the next numbered
+     * file. Returns the new file's number; every record appended before the
+     * roll is in a lower numbered file.
+     */
+    int roll() throws IOException {
+        synchronized (channelLock) {
+            write();
+            channel.close();
+            number += 1;
+            channel = open(number);
+            return number;
+        }
+    }
+
+    /**
+     * Commit the pending records and close the log.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (channelLock) {
+            write();
+            channel.close();
+        }
+    }
+
+    private void commit() {
+        for (;;) {
+            synchronized (this) {
+                while (pendingSize == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            try {
+                synchronized (channelLock) {
+                    write();
+                }
+            } catch (IOException e) {
+                logger.error(e, "unable to write the task log: directory={0}; number={1}", directory, number);
+                synchronized (this) {
+                    failed = true;
+                    notifyAll();
+                }
+                return;
+            }
+            if (commitMillis > 0) {
+                try {
+                    Thread.sleep(commitMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write and force the pending records. Called holding the channelLock.
+     */
+    private void write() throws IOException {
+        byte[] bytes;
+        int size;
+        long count;
+        synchronized (this) {
+            bytes = pending;
+            size = pendingSize;
+            count = appendedCount;
+            pending = spare;
+            pendingSize = 0;
+            spare = bytes;
+        }
+        if (size > 0) {
+            TaskRecords.write(channel, bytes, size);
+            channel.force(false);
+            commits.increment();
+            bytesWritten.add(size);
+        }
+        synchronized (this) {
+            durableCount = count;
+            notifyAll();
+        }
+    }
+
+    private FileChannel open(int number) throws IOException {
+        return FileChannel.open(
+                new File(directory, BASE_NAME + "." + number).toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND
+        );
+    }
+}
+
+// END
@@ -0,0 +1,291 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.UserPool;
+import com.andrewgilmartin.util.Logger;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * The records of the task log and snapshot files. Each record is a task's
+ * whole state, so replaying a task's records in any order and keeping its
+ * highest version recovers it. A record is
+ *
+ * {@code
+ *
+ * int length, int crc32, byte[length] body
+ *
+ * body: byte PUT, string workspace-id, int task-id, long version,
+ *   string description, user creator, string status, int n, user[n] assignments
+ * user: string id, string name, or a single null string for no user
+ * string: int length of its UTF-8 bytes, or -1 for null, followed by the bytes
+ *
+ * }
+ *
+ * A file is read up to its first incomplete or damaged record, which is what
+ * a crash while appending leaves behind.
+ */
+class TaskRecords {
+
+    private static final Logger logger = Logger.getLogger(TaskRecords.class);
+
+    static final byte PUT = 1;
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * A recovered task and the workspace it belongs to.
+     */
+    static final class Entry {
+
+        final String workspaceId;
+        final int id;
+        final Task task;
+
+        Entry(String workspaceId, int id, Task task) {
+            this.workspaceId = workspaceId;
+            this.id = id;
+            this.task = task;
+        }
+    }
+
+    /**
+     * A growable buffer that records are encoded into. Not thread safe.
+     */
+    static final class Writer {
+
+        private byte[] bytes = new byte[256];
+        private int size;
+        private final CRC32 crc = new CRC32();
+
+        void reset() {
+            size = 0;
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Append the task's record.
+         */
+        void put(String workspaceId, Task task) {
+            int start = size;
+            size += HEADER_SIZE;
+            writeByte(PUT);
+            writeString(workspaceId);
+            writeInt(TaskTable.parseId(task.getId()));
+            writeLong(task.getVersion());
+            writeString(task.getDescription());
+            writeUser(task.getCreator());
+            writeString(task.getStatus() == null ? null : task.getStatus().getName());
+            writeInt(task.getAssignments().size());
+            for (User user : task.getAssignments()) {
+                writeUser(user);
+            }
+            int length = size - start - HEADER_SIZE;
+            crc.reset();
+            crc.update(bytes, start + HEADER_SIZE, length);
+            ByteBuffer.wrap(bytes, start, HEADER_SIZE).putInt(length).putInt((int) crc.getValue());
+        }
+
+        private void writeUser(User user) {
+            if (user == null) {
+                writeString(null);
+            } else {
+                writeString(user.getId() == null ? "" : user.getId());
+                writeString(user.getName());
+            }
+        }
+
+        private void writeString(String s) {
+            if (s == null) {
+                writeInt(-1);
+                return;
+            }
+            // most text is ASCII and so is written directly
+            ensure(4 + s.length());
+            int l = s.length();
+            int i = 0;
+            for (; i < l; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                bytes[size + 4 + i] = (byte) c;
+            }
+            if (i == l) {
+                writeInt(l);
+                size += l;
+            } else {
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                writeInt(utf8.length);
+                ensure(utf8.length);
+                System.arraycopy(utf8, 0, bytes, size, utf8.length);
+                size += utf8.length;
+            }
+        }
+
+        private void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        private void writeInt(int i) {
+            ensure(4);
+            bytes[size++] = (byte) (i >>> 24);
+            bytes[size++] = (byte) (i >>> 16);
+            bytes[size++] = (byte) (i >>> 8);
+            bytes[size++] = (byte) i;
+        }
+
+        private void writeLong(long l) {
+            writeInt((int) (l >>> 32));
+            writeInt((int) l);
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + n, bytes.length * 2));
+            }
+        }
+    }
+
+    /**
+     * Write all the bytes to the channel.
+     */
+    static void write(FileChannel channel, byte[] bytes, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, size);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Read the file's records, decoding them on the given number of threads.
+     * Returns the entries in file order up to the first damaged record.
+     */
+    static List<Entry> read(File file, StatusSet statusSet, int threads) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        // find the records' offsets; the records are then decoded in parallel
+        int[] offsets = new int[1024];
+        int count = 0;
+        for (int offset = 0; offset + HEADER_SIZE <= bytes.length;) {
+            int length = ByteBuffer.wrap(bytes, offset, 4).getInt();
+            if (length < 0 || offset + HEADER_SIZE + length > bytes.length) {
+                break;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+            offset += HEADER_SIZE + length;
+        }
+        Entry[] entries = new Entry[count];
+        int n = Math.max(1, Math.min(threads, count / 10_000));
+        if (n == 1) {
+            decode(bytes, offsets, 0, count, entries, statusSet);
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(n);
+            try {
+                List<Future<Void>> futures = new ArrayList<>();
+                int[] o = offsets;
+                for (int t = 0; t < n; t++) {
+                    int from = (int) ((long) count * t / n);
+                    int to = (int) ((long) count * (t + 1) / n);
+                    futures.add(executor.submit(() -> {
+                        decode(bytes, o, from, to, entries, statusSet);
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (Exception e) {
+                throw new IOException("unable to read " + file, e);
+            } finally {
+                executor.shutdown();
+            }
+        }
+        // a damaged record ends the file
+        List<Entry> valid = new ArrayList<>(count);
+        for (Entry entry : entries) {
+            if (entry == null) {
+                logger.warn("ignoring the damaged end of {0}: recovered={1}; records={2}", file, valid.size(), count);
+                break;
+            }
+            valid.add(entry);
+        }
+        return valid;
+    }
+
+    private static void decode(byte[] bytes, int[] offsets, int from, int to, Entry[] entries, StatusSet statusSet) {
+        CRC32 crc = new CRC32();
+        UserPool pool = UserPool.getDefault();
+        for (int i = from; i < to; i++) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offsets[i], bytes.length - offsets[i]);
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            crc.reset();
+            crc.update(bytes, buffer.position(), length);
+            if ((int) crc.getValue() != expected || buffer.get() != PUT) {
+                return;
+            }
+            String workspaceId = readString(buffer);
+            int id = buffer.getInt();
+            long version = buffer.getLong();
+            String description = readString(buffer);
+            User creator = readUser(buffer, pool);
+            String status = readString(buffer);
+            User[] assignments = new User[buffer.getInt()];
+            for (int a = 0; a < assignments.length; a++) {
+                assignments[a] = readUser(buffer, pool);
+            }
+            Task task = new Task(
+                    Integer.toString(id),
+                    description,
+                    creator,
+                    Arrays.asList(assignments),
+                    statusSet.findStatus(status),
+                    version
+            );
+            entries[i] = new Entry(workspaceId, id, task);
+        }
+    }
+
+    private static User readUser(ByteBuffer buffer, UserPool pool) {
+        String id = readString(buffer);
+        if (id == null) {
+            return null;
+        }
+        return pool.intern(id.isEmpty() ? null : id, readString(buffer));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+}
+
+// END
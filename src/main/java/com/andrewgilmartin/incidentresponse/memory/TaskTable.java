@@ -0,0 +1,309 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * A workspace's tasks keyed by their sequential integer ids. The table is a
+ * succession of immutable snapshots: each add and update makes a new snapshot
+ * and publishes it, and readers take the current snapshot without locking and
+ * read a consistent version of the tasks and their index however long they
+ * take. The tasks are kept in a RadixTrie by id, and the index's postings in
+ * RadixTries too, so finding a task takes a few steps and a write copies only
+ * the paths to what it changed. Writers of a table are serialized. When the
+ * table has a log each new version of a task is appended to it, in the order
+ * the versions are made, once the version is published. The table estimates
+ * the heap its tasks take, and adds the changes to the estimate to the
+ * resident total it is given. Once evicted a table is no longer changed. The
+ * descriptions are indexed by a TextIndex, which the snapshots share. Once
+ * the text index is stale a new one is built from a snapshot in the
+ * background, and then brought up to date with the writes made meanwhile and
+ * published, so that no write waits for the whole table to be indexed.
+ */
+class TaskTable {
+
+    /**
+     * The estimated heap of a task without its description and assignments:
+     * the task, its description's string and array, and its slot and
+     * postings.
+     */
+    static final int TASK_BYTES = 128;
+
+    /**
+     * The estimated heap of each character of a description: the character
+     * and its word's and trigram's postings in the text index.
+     */
+    static final int DESCRIPTION_CHAR_BYTES = 7;
+
+    /**
+     * Builds the new text indexes of all tables.
+     */
+    private static final ExecutorService TEXT_INDEXER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "text-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Snapshot current;
+    private volatile boolean evicted;
+    /**
+     * The writes made since the snapshot a new text index is being built
+     * from, or null when none is being built. Guarded by this.
+     */
+    private List<Task[]> textWrites;
+    private final String workspaceId;
+    private final TaskLog log;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong resident;
+
+    TaskTable(StatusSet statusSet) {
+        this(null, null, null, new Snapshot(RadixTrie.empty(), 0, TaskIndex.empty(statusSet), new TextIndex()));
+    }
+
+    private TaskTable(String workspaceId, TaskLog log, AtomicLong resident, Snapshot current) {
+        this.workspaceId = workspaceId;
+        this.log = log;
+        this.resident = resident;
+        this.current = current;
+    }
+
+    /**
+     * Returns the table of the workspace's tasks, which are at their ids'
+     * positions in the array and have statuses in the set, that logs its
+     * changes to the log, if any, and counts its heap in resident, if any.
+     */
+    static TaskTable of(String workspaceId, StatusSet statusSet, TaskLog log, AtomicLong resident, Task[] tasks) {
+        int lastId = Math.max(0, tasks.length - 1);
+        while (lastId > 0 && tasks[lastId] == null) {
+            lastId -= 1;
+        }
+        TaskTable table = new TaskTable(workspaceId, log, resident, new Snapshot(RadixTrie.of(tasks), lastId, TaskIndex.of(statusSet, tasks), TextIndex.of(tasks)));
+        long size = 0;
+        for (Task task : tasks) {
+            size += sizeOf(task);
+        }
+        table.account(size);
+        return table;
+    }
+
+    /**
+     * A version of the table. Its tasks and index are never changed, and
+     * its text index only grows.
+     */
+    static final class Snapshot {
+
+        private final RadixTrie<Task> tasks;
+        private final int lastId;
+        private final TaskIndex index;
+        private final TextIndex text;
+
+        private Snapshot(RadixTrie<Task> tasks, int lastId, TaskIndex index, TextIndex text) {
+            this.tasks = tasks;
+            this.lastId = lastId;
+            this.index = index;
+            this.text = text;
+        }
+
+        /**
+         * Returns the task with the id or null.
+         */
+        Task get(int id) {
+            if (id < 1 || id > lastId) {
+                return null;
+            }
+            return tasks.get(id);
+        }
+
+        /**
+         * The highest id in the snapshot. Every id up to it has a task,
+         * unless its versions were lost from a damaged log.
+         */
+        int lastId() {
+            return lastId;
+        }
+
+        TaskIndex getIndex() {
+            return index;
+        }
+
+        TextIndex getText() {
+            return text;
+        }
+
+        /**
+         * Returns the snapshot with the task. The text index is changed too.
+         */
+        private Snapshot with(int id, Task previous, Task task) {
+            text.add(id, previous, task);
+            return new Snapshot(tasks.with(id, task), Math.max(id, lastId), index.with(id, previous, task), text);
+        }
+
+        private Snapshot withText(TextIndex text) {
+            return new Snapshot(tasks, lastId, index, text);
+        }
+    }
+
+    /**
+     * Returns the current snapshot.
+     */
+    Snapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Add the task made for the next id.
+     */
+    synchronized Task add(IntFunction<Task> factory) {
+        if (evicted) {
+            return null;
+        }
+        Snapshot s = current;
+        int id = s.lastId + 1;
+        Task task = factory.apply(id);
+        publish(s.with(id, null, task), null, task);
+        if (log != null) {
+            log.append(workspaceId, task);
+        }
+        account(sizeOf(task));
+        return task;
+    }
+
+    /**
+     * Returns the task with the id or null.
+     */
+    Task get(int id) {
+        return current.get(id);
+    }
+
+    /**
+     * Replace the task with the id with the one made from it, unless the
+     * replacer returns null. Returns the replacement, or null when there is
+     * no task with the id or it was not replaced, or the table was evicted.
+     */
+    synchronized Task replace(int id, UnaryOperator<Task> replacer) {
+        if (evicted) {
+            return null;
+        }
+        Snapshot s = current;
+        Task task = s.get(id);
+        if (task == null) {
+            return null;
+        }
+        Task replacement = replacer.apply(task);
+        if (replacement != null) {
+            publish(s.with(id, task, replacement), task, replacement);
+            if (log != null) {
+                log.append(workspaceId, replacement);
+            }
+            account(sizeOf(replacement) - sizeOf(task));
+        }
+        return replacement;
+    }
+
+    /**
+     * Make the snapshot current, and note the write for, or start, the
+     * building of a new text index.
+     */
+    private void publish(Snapshot s, Task previous, Task task) {
+        current = s;
+        if (textWrites != null) {
+            textWrites.add(new Task[]{previous, task});
+        } else if (s.text.isStale()) {
+            textWrites = new ArrayList<>();
+            TEXT_INDEXER.execute(() -> rebuildText(s));
+        }
+    }
+
+    /**
+     * Build a new text index from the snapshot, add the writes made since,
+     * and publish it.
+     */
+    private void rebuildText(Snapshot from) {
+        TextIndex text = new TextIndex();
+        for (int id = 1; id <= from.lastId; id++) {
+            Task task = from.get(id);
+            if (task != null) {
+                text.add(id, null, task);
+            }
+        }
+        synchronized (this) {
+            for (Task[] write : textWrites) {
+                text.add(parseId(write[1].getId()), write[0], write[1]);
+            }
+            textWrites = null;
+            if (!evicted) {
+                current = current.withText(text);
+            }
+        }
+    }
+
+    /**
+     * Stop changing the table, so that its final snapshot, which is
+     * returned, can be kept elsewhere. Adding to or replacing in an evicted
+     * table returns null. The table's heap is no longer counted as resident.
+     */
+    synchronized Snapshot evict() {
+        if (!evicted) {
+            evicted = true;
+            if (resident != null) {
+                resident.addAndGet(-bytes.get());
+            }
+        }
+        return current;
+    }
+
+    boolean isEvicted() {
+        return evicted;
+    }
+
+    /**
+     * The estimated heap taken by the table's tasks.
+     */
+    long bytes() {
+        return bytes.get();
+    }
+
+    private void account(long delta) {
+        bytes.addAndGet(delta);
+        if (resident != null) {
+            resident.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Returns the estimated heap taken by the task. Its creator and assignees
+     * are shared with other tasks and are not counted.
+     */
+    static long sizeOf(Task task) {
+        if (task == null) {
+            return 0;
+        }
+        int description = task.getDescription() == null ? 0 : task.getDescription().length();
+        return TASK_BYTES + (long) DESCRIPTION_CHAR_BYTES * description + 8L * task.getAssignments().size();
+    }
+
+    /**
+     * The highest id in the current snapshot.
+     */
+    int lastId() {
+        return current.lastId;
+    }
+
+    /**
+     * Returns the task id as an int, or -1 when it is not a positive integer
+     * without leading zeros, and so can not be in a table.
+     */
+    static int parseId(String id) {
+        return TaskFilter.parseId(id);
+    }
+}
+
+// END
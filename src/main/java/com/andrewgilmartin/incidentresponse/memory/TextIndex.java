@@ -0,0 +1,310 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A workspace's postings from the words and the trigrams of its tasks'
+ * descriptions to the ids of the tasks. Words, as TaskFilter.words finds
+ * them, answer a filter's words, and trigrams, three consecutive characters,
+ * answer the literal text a filter's description pattern must match. The
+ * ids found are candidates only and the filter is still tested on each task.
+ *
+ * Unlike TaskIndex the index is changed in place by the table's single
+ * writer, and so it is shared by the table's snapshots. It only grows: a
+ * task's new description adds its id to the postings of its words and
+ * trigrams, but the id is left in those of its old description, so the
+ * index finds a superset of the tasks in any snapshot made with it. Readers
+ * take no locks. Once more than half of the postings are stale the table
+ * makes a new index.
+ */
+final class TextIndex {
+
+    private static final int[] NONE = new int[0];
+
+    /**
+     * A filter's key is ignored once it has more than this many times the
+     * ids of the rarer keys, as testing the tasks is then cheaper than
+     * intersecting it.
+     */
+    private static final int SKEW = 16;
+
+    /**
+     * About how many ids of postings can be read in the time it takes to
+     * test a task.
+     */
+    private static final int TEST_COST = 32;
+
+    private final ConcurrentHashMap<Object, Postings> postings = new ConcurrentHashMap<>();
+    private long size;
+    private long stale;
+
+    /**
+     * The ids of the tasks with a key. Ids are only appended, by the single
+     * writer, and are in the order they were added, which is not id order
+     * once tasks are updated. A reader reads size before ids and so sees at
+     * least size ids.
+     */
+    private static final class Postings {
+
+        private volatile int[] ids = new int[2];
+        private volatile int size;
+
+        /**
+         * Add the id unless it was the last added.
+         */
+        boolean add(int id) {
+            int n = size;
+            int[] i = ids;
+            if (n > 0 && i[n - 1] == id) {
+                return false;
+            }
+            if (n == i.length) {
+                i = Arrays.copyOf(i, n * 2);
+                ids = i;
+            }
+            i[n] = id;
+            size = n + 1;
+            return true;
+        }
+    }
+
+    /**
+     * Returns the index of the tasks, which are at their ids' positions in
+     * the array.
+     */
+    static TextIndex of(Task[] tasks) {
+        TextIndex index = new TextIndex();
+        for (int id = 0; id < tasks.length; id++) {
+            if (tasks[id] != null) {
+                index.add(id, null, tasks[id]);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Index the task's description, if changed from its previous version's.
+     */
+    void add(int id, Task previous, Task task) {
+        String description = task.getDescription();
+        if (previous != null) {
+            String old = previous.getDescription();
+            if (Objects.equals(old, description)) {
+                return;
+            }
+            stale += TaskFilter.words(old).size() + Math.max(0, old == null ? 0 : old.length() - 2);
+        }
+        // a task's keys are added together, so a repeated key is the last id
+        for (String word : TaskFilter.words(description)) {
+            post(word, id);
+        }
+        for (int i = 0; description != null && i + 3 <= description.length(); i++) {
+            post(trigram(description, i), id);
+        }
+    }
+
+    private void post(Object key, int id) {
+        Postings p = postings.get(key);
+        if (p == null) {
+            p = new Postings();
+            postings.put(key, p);
+        }
+        if (p.add(id)) {
+            size += 1;
+        }
+    }
+
+    /**
+     * Returns true when more than half of the postings are of descriptions
+     * that have since changed.
+     */
+    boolean isStale() {
+        return stale > 1024 && stale * 2 > size;
+    }
+
+    /**
+     * Find the ids, from id from through id last, of the tasks whose
+     * descriptions may have all the words and the literals. Returns the ids
+     * in order, or null when every task is a candidate, as neither the words
+     * nor the literals have any keys, eg literals of fewer than three
+     * characters, or when testing the tasks in order until limit match is
+     * expected to be quicker than reading the keys' postings.
+     */
+    int[] find(Collection<String> words, Collection<String> literals, int from, int last, int limit) {
+        List<Object> keys = new ArrayList<>(words);
+        if (literals != null) {
+            for (String literal : literals) {
+                for (int i = 0; i + 3 <= literal.length(); i++) {
+                    keys.add(trigram(literal, i));
+                }
+            }
+        }
+        if (keys.isEmpty()) {
+            return null;
+        }
+        if (from > last) {
+            return NONE;
+        }
+        int[][] p = new int[keys.size()][];
+        int[] sizes = new int[p.length];
+        for (int k = 0; k < p.length; k++) {
+            Postings posting = postings.get(keys.get(k));
+            if (posting == null) {
+                return NONE;
+            }
+            sizes[k] = posting.size;
+            p[k] = posting.ids;
+        }
+        // intersect the rarest keys first
+        Integer[] order = new Integer[p.length];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(sizes[a], sizes[b]));
+        int rarest = Math.max(1, sizes[order[0]]);
+        long reads = 0;
+        for (int n : sizes) {
+            reads += n <= (long) SKEW * rarest ? n : 0;
+        }
+        // at most the rarest key's tasks match, so a scan is expected to
+        // test at least (last - from + 1) / rarest tasks for each it finds
+        if (reads > (double) TEST_COST * limit * (last - from + 1) / rarest) {
+            return null;
+        }
+        long[] bits = null;
+        int count = 0;
+        for (Integer k : order) {
+            if (bits != null && sizes[k] > SKEW * count) {
+                break;
+            }
+            long[] b = new long[(last - from >>> 6) + 1];
+            int[] ids = p[k];
+            for (int i = 0; i < sizes[k]; i++) {
+                int id = ids[i];
+                if (id >= from && id <= last) {
+                    b[id - from >>> 6] |= 1L << (id - from);
+                }
+            }
+            count = 0;
+            for (int w = 0; w < b.length; w++) {
+                if (bits != null) {
+                    b[w] &= bits[w];
+                }
+                count += Long.bitCount(b[w]);
+            }
+            bits = b;
+            if (count == 0) {
+                return NONE;
+            }
+        }
+        int[] found = new int[count];
+        int n = 0;
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                found[n++] = from + (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the key of the trigram at the text's offset.
+     */
+    private static Long trigram(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    /**
+     * Returns the literal texts that every match of the regex contains, or
+     * null when they can not be found, eg the regex has alternatives or
+     * flags. The literals are only those outside of groups and classes and
+     * not made optional by a quantifier, and so there may be none.
+     */
+    static List<String> literals(String regex) {
+        if (regex.indexOf('|') >= 0 || regex.contains("(?") || regex.contains("\\Q")) {
+            return null;
+        }
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        boolean lastLiteral = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                char e = regex.charAt(++i);
+                if ("dDsSwWbB".indexOf(e) >= 0) {
+                    lastLiteral = flush(run, literals);
+                } else if (Character.isLetterOrDigit(e)) {
+                    // eg an escape of a code point or a back reference
+                    return null;
+                } else if (depth == 0) {
+                    run.append(e);
+                    lastLiteral = true;
+                }
+            } else if (c == '[') {
+                lastLiteral = flush(run, literals);
+                i += 1;
+                if (i < regex.length() && regex.charAt(i) == '^') {
+                    i += 1;
+                }
+                if (i < regex.length() && regex.charAt(i) == ']') {
+                    i += 1;
+                }
+                for (; i < regex.length() && regex.charAt(i) != ']'; i++) {
+                    if (regex.charAt(i) == '[') {
+                        return null;
+                    }
+                    if (regex.charAt(i) == '\\') {
+                        i += 1;
+                    }
+                }
+            } else if (c == '(') {
+                lastLiteral = flush(run, literals);
+                depth += 1;
+            } else if (c == ')') {
+                depth -= 1;
+            } else if (depth > 0) {
+                // groups may be optional
+            } else if (c == '*' || c == '?' || c == '{') {
+                // the quantified character may be absent
+                if (lastLiteral) {
+                    run.setLength(run.length() - 1);
+                }
+                lastLiteral = flush(run, literals);
+                if (c == '{') {
+                    while (i < regex.length() && regex.charAt(i) != '}') {
+                        i += 1;
+                    }
+                }
+            } else if (c == '+' || c == '.' || c == '^' || c == '$') {
+                lastLiteral = flush(run, literals);
+            } else {
+                run.append(c);
+                lastLiteral = true;
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    /**
+     * Add the run to the literals, if long enough to have a trigram, and
+     * empty it. Returns false, ie the last character is no longer a literal.
+     */
+    private static boolean flush(StringBuilder run, List<String> literals) {
+        if (run.length() >= 3) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+        return false;
+    }
+}
+
+// END
@@ -0,0 +1,241 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.util.Metrics;
+import com.andrewgilmartin.util.TokenBucket;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a request is to be performed now or shed. A request is shed
+ * when its channel or its user has exceeded its rate, or when the limit of
+ * requests in flight is reached and no slot frees up within the maximum wait.
+ * The rate limits are checked first so that a runaway channel is turned away
+ * without ever taking an in flight slot from other channels, and a token is
+ * only taken when both the channel and the user have one.
+ *
+ * A server that queues requests for its workers takes the in flight slot
+ * before queueing, using enter, so that queued requests count as in flight,
+ * and checks the rates once the request is read, using admitEntered.
+ *
+ * {@code
+ *
+ * AdmissionControl admission = new AdmissionControl(20, 250);
+ * admission.setChannelRate(5, 10);
+ * admission.setUserRate(2, 5);
+ * if (admission.admit(channelId, userId)) {
+ *     try {
+ *         ...
+ *     } finally {
+ *         admission.release();
+ *     }
+ * }
+ *
+ * }
+ */
+public class AdmissionControl {
+
+    /**
+     * The most buckets kept per kind. Full, ie idle, buckets are forgotten when
+     * there are more than this.
+     */
+    private static final int MAX_BUCKETS = 10_000;
+
+    private static final LongAdder admitted = Metrics.counter("slack.admission.admitted");
+    private static final LongAdder shedInFlight = Metrics.counter("slack.admission.shed.in_flight");
+    private static final LongAdder shedChannel = Metrics.counter("slack.admission.shed.channel");
+    private static final LongAdder shedUser = Metrics.counter("slack.admission.shed.user");
+    private static final LongAdder waits = Metrics.counter("slack.admission.waits");
+    private static final LongAdder waitMicros = Metrics.counter("slack.admission.wait_micros");
+
+    private final int maxInFlight;
+    private final long maxWaitNanos;
+    private final Semaphore inFlight;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Limiter channels = new Limiter();
+    private final Limiter users = new Limiter();
+
+    /**
+     * Allow at most maxInFlight requests to be performed at once. A request
+     * waits at most maxWaitMillis for one of them to finish.
+     */
+    public AdmissionControl(int maxInFlight, long maxWaitMillis) {
+        this.maxInFlight = maxInFlight;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.inFlight = new Semaphore(maxInFlight);
+        Metrics.gauge("slack.admission.in_flight", () -> this.maxInFlight - inFlight.availablePermits());
+        Metrics.gauge("slack.admission.queue_depth", waiting::get);
+    }
+
+    /**
+     * Limit each channel to ratePerSecond requests with bursts of up to burst
+     * requests. A rate of zero removes the limit.
+     */
+    public void setChannelRate(double ratePerSecond, int burst) {
+        channels.setRate(ratePerSecond, burst);
+    }
+
+    /**
+     * Limit each user to ratePerSecond requests with bursts of up to burst
+     * requests. A rate of zero removes the limit.
+     */
+    public void setUserRate(double ratePerSecond, int burst) {
+        users.setRate(ratePerSecond, burst);
+    }
+
+    /**
+     * Returns true when the request is admitted. An admitted request must be
+     * released when it is finished.
+     */
+    public boolean admit(String channelId, String userId) {
+        if (!takeTokens(channelId, userId)) {
+            return false;
+        }
+        if (!inFlight.tryAcquire()) {
+            if (!await()) {
+                shedInFlight.increment();
+                return false;
+            }
+        }
+        admitted.increment();
+        return true;
+    }
+
+    /**
+     * Take an in flight slot without waiting. Returns false, and the request
+     * is to be shed, when there is none.
+     */
+    public boolean enter() {
+        if (!inFlight.tryAcquire()) {
+            shedInFlight.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true when the request that has entered is admitted, ie its
+     * channel and user are within their rates. The slot is released when it
+     * is not.
+     */
+    public boolean admitEntered(String channelId, String userId) {
+        if (!takeTokens(channelId, userId)) {
+            inFlight.release();
+            return false;
+        }
+        admitted.increment();
+        return true;
+    }
+
+    public void release() {
+        inFlight.release();
+    }
+
+    /**
+     * Take a token from both the channel's and the user's buckets, or from
+     * neither when either is empty.
+     */
+    private boolean takeTokens(String channelId, String userId) {
+        if (!channels.hasToken(channelId)) {
+            shedChannel.increment();
+            return false;
+        }
+        if (!users.hasToken(userId)) {
+            shedUser.increment();
+            return false;
+        }
+        if (!channels.tryTake(channelId)) {
+            shedChannel.increment();
+            return false;
+        }
+        if (!users.tryTake(userId)) {
+            // another request took the user's last token meanwhile
+            channels.giveBack(channelId);
+            shedUser.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean await() {
+        if (maxWaitNanos <= 0) {
+            return false;
+        }
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            return inFlight.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+            waits.increment();
+            waitMicros.add((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * The token buckets of one kind of key.
+     */
+    private static class Limiter {
+
+        private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private volatile double rate = 0;
+        private volatile int burst = 0;
+
+        void setRate(double rate, int burst) {
+            this.rate = rate;
+            this.burst = Math.max(1, burst);
+            buckets.clear();
+        }
+
+        boolean hasToken(String key) {
+            if (rate <= 0 || key == null) {
+                return true;
+            }
+            // a new bucket is full
+            TokenBucket bucket = buckets.get(key);
+            return bucket == null || bucket.hasToken();
+        }
+
+        void giveBack(String key) {
+            if (rate <= 0 || key == null) {
+                return;
+            }
+            TokenBucket bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.giveBack();
+            }
+        }
+
+        boolean tryTake(String key) {
+            if (rate <= 0 || key == null) {
+                return true;
+            }
+            TokenBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= MAX_BUCKETS) {
+                    forgetIdle();
+                }
+                bucket = buckets.computeIfAbsent(key, (k) -> new TokenBucket(rate, burst));
+            }
+            return bucket.tryTake();
+        }
+
+        private void forgetIdle() {
+            for (Iterator<Map.Entry<String, TokenBucket>> i = buckets.entrySet().iterator(); i.hasNext();) {
+                if (i.next().getValue().isFull()) {
+                    i.remove();
+                }
+            }
+        }
+    }
+}
+
+// END
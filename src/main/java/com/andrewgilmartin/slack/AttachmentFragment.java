@@ -0,0 +1,51 @@
+package com.andrewgilmartin.slack;
+
+import java.util.function.BiConsumer;
+
+/**
+ * An attachment already encoded as JSON. A fragment is made once, kept by the
+ * app, and spliced into later responses without formatting or escaping the
+ * attachment again.
+ *
+ * {@code
+ *
+ * AttachmentFragment fragment = AttachmentFragment.encode(formatTask, task);
+ * ...
+ * response.getResponseContent().attachment(fragment);
+ *
+ * }
+ */
+public final class AttachmentFragment {
+
+    private final byte[] json;
+
+    AttachmentFragment(byte[] json) {
+        this.json = json;
+    }
+
+    /**
+     * Encode the attachment the formatter starts for the item. The formatter
+     * must start exactly one attachment.
+     */
+    public static <T> AttachmentFragment encode(BiConsumer<SlackResponseContent, T> formatter, T item) {
+        SlackResponseContentBase content = new SlackResponseContentBase();
+        formatter.accept(content, item);
+        if (content.getAttachments().size() != 2) {
+            throw new IllegalStateException("the formatter must start exactly one attachment");
+        }
+        return new AttachmentFragment(new SlackResponseBase(content).encode(content.getAttachments().get(1)));
+    }
+
+    /**
+     * The size of the encoded attachment in bytes.
+     */
+    public int size() {
+        return json.length;
+    }
+
+    byte[] getJson() {
+        return json;
+    }
+}
+
+// END
@@ -0,0 +1,55 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.util.ResponseBuffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Posts delayed responses using the JRE's HttpURLConnection.
+ */
+public class HttpSlackResponsePoster implements SlackResponsePoster {
+
+    private static final int DEFAULT_TIMEOUT = 10_000; // milliseconds
+
+    private final int timeout;
+
+    public HttpSlackResponsePoster(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public HttpSlackResponsePoster() {
+        this(DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public void post(String responseUrl, SlackResponseBase response) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(responseUrl).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setDoOutput(true);
+        connection.setRequestProperty("content-type", "application/json; charset=utf-8");
+        ResponseBuffer body = ResponseBuffer.get();
+        response.render(body);
+        connection.setFixedLengthStreamingMode(body.size());
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.array(), 0, body.size());
+        }
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            connection.disconnect();
+            throw new IOException("unexpected response status " + status + " from " + responseUrl);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[256];
+            while (in.read(buffer) != -1) {
+                // drain so the connection can be reused
+            }
+        }
+    }
+}
+
+// END
@@ -0,0 +1,378 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.util.ExpiringCache;
+import com.andrewgilmartin.util.Logger;
+import com.andrewgilmartin.util.Metrics;
+import com.andrewgilmartin.util.ResponseBuffer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The transport independent part of serving a Slack app. The dispatcher checks
+ * the verification token, performs the command, either immediately or
+ * deferred, and returns the reply the server is to send. It is shared by the
+ * HTTP front ends.
+ */
+public class SlackAppDispatcher {
+
+    private static final Logger logger = Logger.getLogger(SlackAppDispatcher.class);
+
+    public static final int HTTP_OK = 200;
+    public static final int HTTP_BAD_REQUEST = 400;
+    public static final int HTTP_UNAUTHORIZED = 401;
+    public static final int HTTP_NOT_FOUND = 404;
+    public static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+    public static final int HTTP_INTERNAL_SERVER_ERROR = 500;
+
+    public static final int DEFAULT_DEDUPLICATION_CAPACITY = 10_000;
+
+    /**
+     * How long a duplicate waits for the original request to finish. This is
+     * within Slack's 3 second budget.
+     */
+    private static final long DUPLICATE_WAIT = 2_500; // milliseconds
+
+    private static final LongAdder duplicates = Metrics.counter("slack.dedup.duplicates");
+    private static final LongAdder retries = Metrics.counter("slack.dedup.retries");
+
+    private final SlackApp slackApp;
+    private Executor deferredExecutor;
+    private SlackResponsePoster responsePoster;
+    private AdmissionControl admissionControl;
+    private ExpiringCache<String, Pending> requests;
+    private byte[] metricsToken;
+
+    /**
+     * The server's reply. A reply without a response has no body.
+     */
+    public static class Reply {
+
+        private final int status;
+        private final SlackResponseBase response;
+        private final byte[] rendered;
+
+        public Reply(int status, SlackResponseBase response) {
+            this(status, response, null);
+        }
+
+        Reply(int status, SlackResponseBase response, byte[] rendered) {
+            this.status = status;
+            this.response = response;
+            this.rendered = rendered;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean hasResponse() {
+            return response != null;
+        }
+
+        public SlackResponseBase getResponse() {
+            return response;
+        }
+
+        /**
+         * Render the response into the buffer. A reply that is replayed to
+         * duplicate requests was rendered once and its bytes are copied.
+         */
+        public void render(ResponseBuffer buffer) throws IOException {
+            if (rendered != null) {
+                buffer.write(rendered, 0, rendered.length);
+            } else {
+                response.render(buffer);
+            }
+        }
+
+        /**
+         * Can the reply be replayed to a duplicate request? Errors are not so
+         * that a later retry performs the request again.
+         */
+        boolean isReplayable() {
+            return status == HTTP_OK && (response == null || !response.isError());
+        }
+    }
+
+    /**
+     * A request being, or recently, performed. Duplicates wait for its reply.
+     */
+    private static class Pending {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Reply reply;
+
+        void complete(Reply reply) {
+            this.reply = reply;
+            done.countDown();
+        }
+
+        Reply await() {
+            try {
+                if (done.await(DUPLICATE_WAIT, TimeUnit.MILLISECONDS) && reply != null) {
+                    return reply;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // acknowledge the duplicate and leave the original to respond
+            return new Reply(HTTP_OK, null);
+        }
+    }
+
+    public SlackAppDispatcher(SlackApp slackApp) {
+        this.slackApp = slackApp;
+    }
+
+    public SlackApp getSlackApp() {
+        return slackApp;
+    }
+
+    /**
+     * Use delayed responses. When a request has a response URL the dispatcher
+     * acknowledges it immediately, performs the command using the executor,
+     * and then posts the response to the URL using the poster. This keeps the
+     * server within Slack's 3 second budget no matter how slow the controller
+     * is. The executor is shutdown when the dispatcher is.
+     */
+    public void setDeferredResponses(Executor deferredExecutor, SlackResponsePoster responsePoster) {
+        this.deferredExecutor = deferredExecutor;
+        this.responsePoster = responsePoster;
+    }
+
+    /**
+     * Use admission control. A request that is not admitted is answered
+     * immediately with an ephemeral "busy" message rather than queued.
+     */
+    public void setAdmissionControl(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * Serve the metrics only to requests with the header "Authorization:
+     * Bearer token". Without a token the metrics are not served.
+     */
+    public void setMetricsToken(String metricsToken) {
+        this.metricsToken = metricsToken != null ? ("Bearer " + metricsToken).getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Returns the status of a request for the metrics given its Authorization
+     * header, which may be null: HTTP_OK when the metrics are to be served,
+     * HTTP_NOT_FOUND when there is no token, and HTTP_UNAUTHORIZED when the
+     * header does not have it.
+     */
+    public int metricsStatus(String authorization) {
+        byte[] token = metricsToken;
+        if (token == null) {
+            return HTTP_NOT_FOUND;
+        }
+        if (authorization == null || !MessageDigest.isEqual(token, authorization.trim().getBytes(StandardCharsets.UTF_8))) {
+            return HTTP_UNAUTHORIZED;
+        }
+        return HTTP_OK;
+    }
+
+    /**
+     * Perform each of Slack's retries of a request only once within the
+     * window. A request is identified by its team, channel, user, command and
+     * text. A retry of a request performed within the window waits for the
+     * original to finish and is sent a copy of the original's response. A
+     * request that is not a retry is always performed, as users do repeat
+     * commands, eg to list the tasks again. At most about capacity requests
+     * are remembered.
+     */
+    public void setDeduplication(long windowMillis, int capacity) {
+        this.requests = windowMillis > 0 ? new ExpiringCache<>(capacity, windowMillis) : null;
+        if (requests != null) {
+            ExpiringCache<String, Pending> r = requests;
+            Metrics.gauge("slack.dedup.requests", r::size);
+        }
+    }
+
+    public void shutdown() {
+        if (deferredExecutor instanceof ExecutorService) {
+            ((ExecutorService) deferredExecutor).shutdown();
+        }
+    }
+
+    /**
+     * Take an in flight slot, without waiting, for a request the server is
+     * about to queue for a worker. Returns false when the request is to be
+     * answered with the busy reply instead. A request that has entered is
+     * dispatched with entered true, and otherwise must leave.
+     */
+    public boolean enter() {
+        AdmissionControl admission = admissionControl;
+        return admission == null || admission.enter();
+    }
+
+    /**
+     * Release the slot of a request that entered but is not dispatched.
+     */
+    public void leave() {
+        release(admissionControl);
+    }
+
+    /**
+     * Returns the reply to a request that is shed.
+     */
+    public Reply busy() {
+        SlackResponseBase slackResponse = new SlackResponseBase();
+        slackResponse.setErrorText("I'm busy right now. Please, try again in a moment.");
+        return new Reply(HTTP_OK, slackResponse);
+    }
+
+    /**
+     * Dispatch the request given by the form.
+     */
+    public Reply dispatch(SlackForm form) {
+        return dispatch(form, false, false);
+    }
+
+    /**
+     * Dispatch the request given by the form. Retry is true when Slack has
+     * marked the request as a retry of an earlier one.
+     */
+    public Reply dispatch(SlackForm form, boolean retry) {
+        return dispatch(form, retry, false);
+    }
+
+    /**
+     * Dispatch the request given by the form, as above. Entered is true when
+     * the request has taken its in flight slot, see enter, and the slot is
+     * released once the request is finished.
+     */
+    public Reply dispatch(SlackForm form, boolean retry, boolean entered) {
+        String verificationToken = form.getToken();
+        String sslCheck = form.getSslCheck();
+        if (sslCheck != null && "1".equals(sslCheck)) {
+            return unperformed(new Reply(HTTP_OK, null), entered);
+        }
+        if (verificationToken == null || !verificationToken.equals(slackApp.getVerificationToken())) {
+            return unperformed(new Reply(HTTP_UNAUTHORIZED, null), entered);
+        }
+        ExpiringCache<String, Pending> cache = requests;
+        if (cache == null) {
+            return perform(form, false, entered);
+        }
+        String key = identity(form);
+        Pending pending = new Pending();
+        if (retry) {
+            retries.increment();
+            Pending original = cache.putIfAbsent(key, pending);
+            if (original != null) {
+                duplicates.increment();
+                return unperformed(original.await(), entered);
+            }
+        } else {
+            cache.put(key, pending);
+        }
+        Reply reply = null;
+        try {
+            reply = perform(form, true, entered);
+            return reply;
+        } finally {
+            if (reply == null || !reply.isReplayable()) {
+                cache.remove(key, pending);
+            }
+            pending.complete(reply);
+        }
+    }
+
+    private Reply unperformed(Reply reply, boolean entered) {
+        if (entered) {
+            leave();
+        }
+        return reply;
+    }
+
+    private Reply perform(SlackForm form, boolean replayable, boolean entered) {
+        SlackRequestBase slackRequest = new SlackRequestBase(
+                new SlackChannelBase(form.getChannelId(), form.getChannelName()),
+                new SlackUserBase(form.getUserId(), form.getUserName()),
+                form.getCommand(),
+                form.getText(),
+                form.getResponseUrl()
+        );
+        AdmissionControl admission = admissionControl;
+        if (admission != null && !(entered
+                ? admission.admitEntered(form.getChannelId(), form.getUserId())
+                : admission.admit(form.getChannelId(), form.getUserId()))) {
+            return busy();
+        }
+        if (deferredExecutor != null && slackRequest.getResponseUrl() != null) {
+            try {
+                deferredExecutor.execute(() -> deferredRequest(slackRequest, admission));
+            } catch (RuntimeException e) {
+                release(admission);
+                throw e;
+            }
+            return new Reply(HTTP_OK, null);
+        }
+        try {
+            SlackResponseBase slackResponse = new SlackResponseBase();
+            slackApp.request(slackRequest, slackResponse);
+            if (replayable && !slackResponse.isError()) {
+                return new Reply(HTTP_OK, slackResponse, render(slackResponse));
+            }
+            return new Reply(HTTP_OK, slackResponse);
+        } finally {
+            release(admission);
+        }
+    }
+
+    private static byte[] render(SlackResponseBase slackResponse) {
+        try {
+            ResponseBuffer buffer = ResponseBuffer.get();
+            slackResponse.render(buffer);
+            return Arrays.copyOf(buffer.array(), buffer.size());
+        } catch (IOException e) {
+            // a ResponseBuffer does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String identity(SlackForm form) {
+        return new StringBuilder()
+                .append(form.getTeamId()).append('\n')
+                .append(form.getChannelId()).append('\n')
+                .append(form.getUserId()).append('\n')
+                .append(form.getCommand()).append('\n')
+                .append(form.getText())
+                .toString();
+    }
+
+    private void deferredRequest(SlackRequestBase slackRequest, AdmissionControl admission) {
+        SlackResponseBase slackResponse = new SlackResponseBase();
+        try {
+            slackApp.request(slackRequest, slackResponse);
+        } catch (RuntimeException e) {
+            logger.error(e, "unable to perform deferred request: channel={0}; user={1}", slackRequest.getChannel(), slackRequest.getUser());
+            slackResponse = new SlackResponseBase();
+            slackResponse.setErrorText("I'm sorry, but something went wrong. Please, try again.");
+        } finally {
+            release(admission);
+        }
+        try {
+            responsePoster.post(slackRequest.getResponseUrl(), slackResponse);
+        } catch (IOException e) {
+            logger.error(e, "unable to post deferred response: channel={0}; user={1}", slackRequest.getChannel(), slackRequest.getUser());
+        }
+    }
+
+    private static void release(AdmissionControl admission) {
+        if (admission != null) {
+            admission.release();
+        }
+    }
+}
+
+// END
@@ -0,0 +1,180 @@
+package com.andrewgilmartin.slack;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The fields of a slash command's application/x-www-form-urlencoded request
+ * body. The parser works directly on the request bytes: it matches the handful
+ * of known keys without decoding them, skips all other pairs, and decodes
+ * percent-escapes of the wanted values in place before making their strings.
+ * Only the first occurrence of a key is used. An invalid escape is kept as
+ * is.
+ */
+public class SlackForm {
+
+    private static final int TOKEN = 0;
+    private static final int SSL_CHECK = 1;
+    private static final int TEAM_ID = 2;
+    private static final int CHANNEL_ID = 3;
+    private static final int CHANNEL_NAME = 4;
+    private static final int USER_ID = 5;
+    private static final int USER_NAME = 6;
+    private static final int COMMAND = 7;
+    private static final int TEXT = 8;
+    private static final int RESPONSE_URL = 9;
+
+    private static final byte[][] KEYS = new byte[][]{
+        ascii("token"),
+        ascii("ssl_check"),
+        ascii("team_id"),
+        ascii("channel_id"),
+        ascii("channel_name"),
+        ascii("user_id"),
+        ascii("user_name"),
+        ascii("command"),
+        ascii("text"),
+        ascii("response_url")
+    };
+
+    private final String[] values = new String[KEYS.length];
+
+    private SlackForm() {
+        // use parse()
+    }
+
+    /**
+     * Parse the form. NOTE that the bytes are modified as values are decoded
+     * in place.
+     */
+    public static SlackForm parse(byte[] bytes, int offset, int length) {
+        SlackForm form = new SlackForm();
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int keyBegin = i;
+            int keyEnd = -1;
+            while (i < end && bytes[i] != '&') {
+                if (keyEnd == -1 && bytes[i] == '=') {
+                    keyEnd = i;
+                }
+                i += 1;
+            }
+            int pairEnd = i;
+            i += 1; // skip the &
+            if (keyEnd == -1) {
+                keyEnd = pairEnd;
+            }
+            int k = findKey(bytes, keyBegin, keyEnd);
+            if (k != -1 && form.values[k] == null) {
+                int valueBegin = Math.min(keyEnd + 1, pairEnd);
+                int valueLength = decode(bytes, valueBegin, pairEnd);
+                form.values[k] = new String(bytes, valueBegin, valueLength, StandardCharsets.UTF_8);
+            }
+        }
+        return form;
+    }
+
+    public static SlackForm parse(byte[] bytes) {
+        return parse(bytes, 0, bytes.length);
+    }
+
+    private static int findKey(byte[] bytes, int begin, int end) {
+        int length = end - begin;
+        KEYS:
+        for (int k = 0; k < KEYS.length; k++) {
+            byte[] key = KEYS[k];
+            if (key.length != length) {
+                continue;
+            }
+            for (int j = 0; j < length; j++) {
+                if (bytes[begin + j] != key[j]) {
+                    continue KEYS;
+                }
+            }
+            return k;
+        }
+        return -1;
+    }
+
+    /**
+     * Decode the percent-escapes and plus signs of the value in place and
+     * return the decoded length.
+     */
+    private static int decode(byte[] bytes, int begin, int end) {
+        int w = begin;
+        for (int r = begin; r < end; r++) {
+            byte b = bytes[r];
+            if (b == '+') {
+                b = ' ';
+            } else if (b == '%' && r + 2 < end) {
+                int h = hex(bytes[r + 1]);
+                int l = hex(bytes[r + 2]);
+                if (h != -1 && l != -1) {
+                    b = (byte) ((h << 4) | l);
+                    r += 2;
+                }
+            }
+            bytes[w++] = b;
+        }
+        return w - begin;
+    }
+
+    private static int hex(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public String getToken() {
+        return values[TOKEN];
+    }
+
+    public String getSslCheck() {
+        return values[SSL_CHECK];
+    }
+
+    public String getTeamId() {
+        return values[TEAM_ID];
+    }
+
+    public String getChannelId() {
+        return values[CHANNEL_ID];
+    }
+
+    public String getChannelName() {
+        return values[CHANNEL_NAME];
+    }
+
+    public String getUserId() {
+        return values[USER_ID];
+    }
+
+    public String getUserName() {
+        return values[USER_NAME];
+    }
+
+    public String getCommand() {
+        return values[COMMAND];
+    }
+
+    public String getText() {
+        return values[TEXT];
+    }
+
+    public String getResponseUrl() {
+        return values[RESPONSE_URL];
+    }
+}
+
+// END
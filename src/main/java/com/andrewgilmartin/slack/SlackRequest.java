@@ -26,4 +26,10 @@ public interface SlackRequest {
      */
     String getCommandText();
 
+    /**
+     * The URL to which a delayed response can be posted, or null if none was
+     * given.
+     */
+    String getResponseUrl();
+
 }
@@ -6,12 +6,18 @@ public class SlackRequestBase implements SlackRequest {
     final SlackUser user;
     final String commandName;
     final String commandText;
+    final String responseUrl;
 
-    public SlackRequestBase(SlackChannel channel, SlackUser user, String commandName, String commandText) {
+    public SlackRequestBase(SlackChannel channel, SlackUser user, String commandName, String commandText, String responseUrl) {
         this.channel = channel;
         this.user = user;
         this.commandName = commandName;
         this.commandText = commandText;
+        this.responseUrl = responseUrl;
+    }
+
+    public SlackRequestBase(SlackChannel channel, SlackUser user, String commandName, String commandText) {
+        this(channel, user, commandName, commandText, null);
     }
 
     @Override
@@ -34,5 +40,10 @@ public class SlackRequestBase implements SlackRequest {
         return commandText;
     }
 
+    @Override
+    public String getResponseUrl() {
+        return responseUrl;
+    }
+
 }
 
@@ -1,12 +1,12 @@
 package com.andrewgilmartin.slack;
 
 import com.andrewgilmartin.slack.SlackResponseContentBase.Attachment;
-import com.andrewgilmartin.util.JsonWriter;
+import com.andrewgilmartin.util.JsonEncoder;
+import com.andrewgilmartin.util.ResponseBuffer;
 import java.awt.Color;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Iterator;
 
 public class SlackResponseBase implements SlackResponse {
@@ -52,50 +52,91 @@ public class SlackResponseBase implements SlackResponse {
         return content;
     }
 
+    /**
+     * Render the response to the stream. The stream is closed.
+     */
     public void render(OutputStream out) throws IOException {
-        try (JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
-            Iterator<Attachment> i = content.getAttachments().iterator();
-            if (i.hasNext()) {
-                Attachment attachment = i.next();
-                json.hash();
-                {
-                    if (isError()) {
-                        json.value("response_type", "ephemeral");
-                        json.value("text", getErrorText());
-                    } else {
-                        json.value("response_type", isBroadcastResponse() ? "in_channel" : "ephemeral");
-                        json.value("text", attachment.getText());
-                        if (i.hasNext()) {
-                            json.key("attachments");
-                            json.array();
-                            {
-                                do {
-                                    json.hash();
-                                    {
-                                        attachment = i.next();
-                                        if (attachment.hasTitle()) {
-                                            json.value("title", attachment.getTitle());
-                                        }
-                                        if (attachment.hasColor()) {
-                                            json.value("color", toSlackColor(attachment.getColor()));
-                                        }
-                                        json.value("text", attachment.getText());
-                                        json.value("mrkdwn", true);
-                                    }
-                                    json.end();
-                                } while (i.hasNext());
-                            }
-                            json.end();
-                        }
+        try (OutputStream o = out) {
+            ResponseBuffer buffer = ResponseBuffer.get();
+            render(buffer);
+            o.write(buffer.array(), 0, buffer.size());
+        }
+    }
+
+    /**
+     * Render the response into the buffer. The buffer is not emptied first.
+     */
+    public void render(ResponseBuffer buffer) throws IOException {
+        render(new JsonEncoder(buffer));
+    }
+
+    private void render(JsonEncoder json) {
+        Iterator<Attachment> i = content.getAttachments().iterator();
+        if (isError()) {
+            json.hash();
+            {
+                json.value("response_type", "ephemeral");
+                json.value("text", getErrorText());
+            }
+            json.end();
+        } else if (i.hasNext()) {
+            Attachment attachment = i.next();
+            json.hash();
+            {
+                json.value("response_type", isBroadcastResponse() ? "in_channel" : "ephemeral");
+                json.escapedValue("text", attachment.getEscapedText());
+                if (i.hasNext()) {
+                    json.key("attachments");
+                    json.array();
+                    {
+                        do {
+                            render(json, i.next());
+                        } while (i.hasNext());
                     }
+                    json.end();
                 }
-                json.end();
             }
+            json.end();
         }
     }
 
+    private void render(JsonEncoder json, Attachment attachment) {
+        if (attachment.isFragment()) {
+            json.encodedValue(attachment.getFragment().getJson());
+            return;
+        }
+        json.hash();
+        {
+            if (attachment.hasTitle()) {
+                json.value("title", attachment.getTitle());
+            }
+            if (attachment.hasColor()) {
+                json.value("color", toSlackColor(attachment.getColor()));
+            }
+            json.escapedValue("text", attachment.getEscapedText());
+            json.value("mrkdwn", true);
+        }
+        json.end();
+    }
+
+    /**
+     * Encode the single attachment. Used to make fragments.
+     */
+    byte[] encode(Attachment attachment) {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        render(new JsonEncoder(buffer), attachment);
+        return Arrays.copyOf(buffer.array(), buffer.size());
+    }
+
     protected String toSlackColor(Color color) {
-        return "#" + toHex(color.getRed()) + toHex(color.getGreen()) + toHex(color.getBlue());
+        int rgb = color.getRGB();
+        char[] c = new char[7];
+        c[0] = '#';
+        for (int i = 6; i > 0; i--) {
+            c[i] = HEX_DIGITS[rgb & 0x0F];
+            rgb >>= 4;
+        }
+        return new String(c);
     }
 
     protected String toHex(int i) {
@@ -34,6 +34,12 @@ public interface SlackResponseContent {
      */
     SlackResponseContent attachment();
 
+    /**
+     * Add a pre-encoded attachment. Its content can not be changed, so the
+     * next change must start a new attachment.
+     */
+    SlackResponseContent attachment(AttachmentFragment fragment);
+
     /**
      * Set the title for the attachment. Only the last setting is retained.
      */
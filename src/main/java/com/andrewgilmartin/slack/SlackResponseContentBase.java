@@ -1,5 +1,6 @@
 package com.andrewgilmartin.slack;
 
+import com.andrewgilmartin.util.JsonEncoder;
 import com.andrewgilmartin.util.JsonWriter;
 import java.awt.Color;
 import java.sql.Timestamp;
@@ -22,11 +23,39 @@ public class SlackResponseContentBase implements SlackResponseContent {
     private final List<Attachment> attachments = new LinkedList<>();
     private Attachment attachment;
 
+    /**
+     * An attachment. Its text is kept both Slack and JSON escaped, as it is
+     * to be sent, so that each text is escaped in a single pass as it is
+     * added.
+     */
     public static class Attachment {
 
         private Color color;
         private String title;
-        private final StringBuilder text = new StringBuilder();
+        private final StringBuilder text;
+        private final AttachmentFragment fragment;
+
+        Attachment() {
+            this.text = new StringBuilder();
+            this.fragment = null;
+        }
+
+        Attachment(AttachmentFragment fragment) {
+            this.text = null;
+            this.fragment = fragment;
+        }
+
+        /**
+         * Is the attachment a pre-encoded fragment? A fragment has no title,
+         * color, or text of its own.
+         */
+        public boolean isFragment() {
+            return fragment != null;
+        }
+
+        AttachmentFragment getFragment() {
+            return fragment;
+        }
 
         public boolean hasTitle() {
             return title != null;
@@ -52,8 +81,18 @@ public class SlackResponseContentBase implements SlackResponseContent {
             return color;
         }
 
+        /**
+         * The unescaped text. A fragment's text is not available.
+         */
         public String getText() {
-            return text.toString();
+            return text != null ? JsonEncoder.unescape(text) : null;
+        }
+
+        /**
+         * The JSON escaped text without copying it. Used when rendering.
+         */
+        CharSequence getEscapedText() {
+            return text;
         }
     }
 
@@ -65,6 +104,17 @@ public class SlackResponseContentBase implements SlackResponseContent {
         return attachments;
     }
 
+    private Attachment current() {
+        if (attachment.isFragment()) {
+            throw new IllegalStateException("a fragment can not be changed");
+        }
+        return attachment;
+    }
+
+    private StringBuilder text() {
+        return current().text;
+    }
+
     @Override
     public SlackResponseContent attachment() {
         attachment = new Attachment();
@@ -72,12 +122,19 @@ public class SlackResponseContentBase implements SlackResponseContent {
         return this;
     }
 
+    @Override
+    public SlackResponseContent attachment(AttachmentFragment fragment) {
+        attachment = new Attachment(fragment);
+        attachments.add(attachment);
+        return this;
+    }
+
     @Override
     public SlackResponseContent title(String title) {
         if (attachments.size() < 2) {
             throw new IllegalStateException("only attachments can have titles");
         }
-        attachment.setTitle(JsonWriter.escapeXml(title));
+        current().setTitle(JsonWriter.escapeXml(title));
         return this;
     }
 
@@ -86,89 +143,92 @@ public class SlackResponseContentBase implements SlackResponseContent {
         if (attachments.size() < 2) {
             throw new IllegalStateException("only attachments can have color");
         }
-        attachment.setColor(color);
+        current().setColor(color);
         return this;
     }
 
     @Override
     public SlackResponseContent space() {
-        if (attachment.text.length() > 0) {
-            attachment.text.append(' ');
+        if (text().length() > 0) {
+            text().append(' ');
         }
         return this;
     }
 
     @Override
     public SlackResponseContent line() {
-        if (attachment.text.length() > 0) {
-            attachment.text.append('\n');
+        if (text().length() > 0) {
+            text().append("\\n");
         }
         return this;
     }
 
     @Override
     public SlackResponseContent text(Object object) {
-        attachment.text.append(JsonWriter.escapeXml(object.toString()));
+        JsonEncoder.escapeWithEntities(text(), object.toString());
         return this;
     }
 
     @Override
     public SlackResponseContent text(Date date) {
-        attachment.text.append(DATE_FORMAT.format(date));
+        JsonEncoder.escape(text(), DATE_FORMAT.format(date));
         return this;
     }
 
     @Override
     public SlackResponseContent text(Timestamp timestamp) {
-        attachment.text.append(TIMESTAMP_FORMAT.format(timestamp));
+        JsonEncoder.escape(text(), TIMESTAMP_FORMAT.format(timestamp));
         return this;
     }
 
     @Override
     public SlackResponseContent text(Number number) {
-        attachment.text.append(number.toString());
+        JsonEncoder.escape(text(), number.toString());
         return this;
     }
 
     @Override
     public SlackResponseContent text(String text) {
-        attachment.text.append(JsonWriter.escapeXml(text));
+        JsonEncoder.escapeWithEntities(text(), text);
         return this;
     }
 
     @Override
     public SlackResponseContent textf(String format, Object... parameters) {
-        attachment.text.append(JsonWriter.escapeXml(String.format(format, parameters)));
+        JsonEncoder.escapeWithEntities(text(), String.format(format, parameters));
         return this;
     }
 
     @Override
     public SlackResponseContent link(String text, String url) {
-        attachment.text.append('<').append(url).append('|').append(JsonWriter.escapeXml(text)).append('>');
+        JsonEncoder.escape(text().append('<'), url).append('|');
+        JsonEncoder.escapeWithEntities(text(), text).append('>');
         return this;
     }
 
     @Override
     public SlackResponseContent link(String url) {
-        attachment.text.append('<').append(url).append('>');
+        JsonEncoder.escape(text().append('<'), url).append('>');
         return this;
     }
 
     @Override
     public SlackResponseContent image(String text, String url) {
-        attachment.text.append('<').append(url).append('|').append(JsonWriter.escapeXml(text)).append('>');
+        JsonEncoder.escape(text().append('<'), url).append('|');
+        JsonEncoder.escapeWithEntities(text(), text).append('>');
         return this;
     }
 
     @Override
     public SlackResponseContent image(String url) {
-        attachment.text.append('<').append(url).append('>');
+        JsonEncoder.escape(text().append('<'), url).append('>');
         return this;
     }
 
     @Override
     public SlackResponseContent user(String id, String name) {
-        attachment.text.append('<').append(id).append('|').append(name).append('>');
+        JsonEncoder.escape(text().append('<'), id).append('|');
+        JsonEncoder.escape(text(), name).append('>');
         return this;
     }
 
@@ -179,7 +239,7 @@ public class SlackResponseContentBase implements SlackResponseContent {
 
     @Override
     public SlackResponseContent emoji(String name) {
-        attachment.text.append(':').append(name).append(':');
+        JsonEncoder.escape(text().append(':'), name).append(':');
         return this;
     }
 
@@ -0,0 +1,16 @@
+package com.andrewgilmartin.slack;
+
+import java.io.IOException;
+
+/**
+ * Sends a delayed response to the Slack request's response URL.
+ */
+public interface SlackResponsePoster {
+
+    /**
+     * Post the rendered response to the URL.
+     */
+    void post(String responseUrl, SlackResponseBase response) throws IOException;
+}
+
+// END
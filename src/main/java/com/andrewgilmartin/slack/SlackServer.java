@@ -0,0 +1,61 @@
+package com.andrewgilmartin.slack;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A server that makes a Slack app available over HTTP. Running the server
+ * starts it and returns; closing it stops it.
+ */
+public interface SlackServer extends Runnable, AutoCloseable {
+
+    /**
+     * The path at which the server makes the {@link com.andrewgilmartin.util.Metrics}
+     * available to requests with the metrics token.
+     */
+    String METRICS_PATH = "/metrics";
+
+    /**
+     * The header Slack adds to a request that retries an earlier one.
+     */
+    String SLACK_RETRY_NUM = "X-Slack-Retry-Num";
+
+    /**
+     * Use delayed responses. See
+     * {@link SlackAppDispatcher#setDeferredResponses}.
+     */
+    void setDeferredResponses(Executor deferredExecutor, SlackResponsePoster responsePoster);
+
+    /**
+     * Use admission control. See
+     * {@link SlackAppDispatcher#setAdmissionControl}.
+     */
+    void setAdmissionControl(AdmissionControl admissionControl);
+
+    /**
+     * Perform each distinct request only once within the window. See
+     * {@link SlackAppDispatcher#setDeduplication}.
+     */
+    void setDeduplication(long windowMillis, int capacity);
+
+    /**
+     * Serve the metrics only to requests with the header "Authorization:
+     * Bearer metricsToken". See {@link SlackAppDispatcher#setMetricsToken}.
+     */
+    void setMetricsToken(String metricsToken);
+
+    /**
+     * Set the largest request body, in bytes, the server accepts. Larger
+     * requests are refused with a 413 before any decoding.
+     */
+    void setMaxBodySize(int maxBodySize);
+
+    /**
+     * The port the server is listening on. Useful when created with port 0.
+     */
+    int getPort();
+
+    @Override
+    void close();
+}
+
+// END
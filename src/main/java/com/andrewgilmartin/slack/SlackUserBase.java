@@ -1,7 +1,6 @@
 package com.andrewgilmartin.slack;
 
 import java.util.Objects;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SlackUserBase implements SlackUser {
@@ -57,12 +56,46 @@ public class SlackUserBase implements SlackUser {
     }
 
     public static SlackUserBase parseSlackUserBase(String s) {
-        Matcher m = SLACK_USER_PATTERN.matcher(s);
-        if (m.matches()) {
-            return new SlackUserBase(m.group(1), m.group(2));
+        int separator = findSeparator(s);
+        if (separator != -1) {
+            return new SlackUserBase(s.substring(1, separator), s.substring(separator + 1, s.length() - 1));
         }
         return null;
     }
+
+    /**
+     * Returns the offset of the "|" in a user formatted as "<id|name>", or -1
+     * when the text is not a user. This matches exactly what
+     * SLACK_USER_PATTERN matches, without the regex: the id is up to the first
+     * "|", the name is the rest up to the last ">", and neither may contain a
+     * line terminator.
+     */
+    public static int findSeparator(CharSequence s) {
+        int l = s.length();
+        if (l < 3 || s.charAt(0) != '<' || s.charAt(l - 1) != '>') {
+            return -1;
+        }
+        int separator = -1;
+        for (int i = 1; i < l - 1; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '|':
+                    if (separator == -1) {
+                        separator = i;
+                    }
+                    break;
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    return -1;
+                default:
+                    break;
+            }
+        }
+        return separator;
+    }
 }
 
 // END
@@ -1,26 +1,30 @@
 package com.andrewgilmartin.slack.httpserver;
 
-import com.andrewgilmartin.slack.SlackRequestBase;
-import com.andrewgilmartin.slack.SlackChannelBase;
-import com.andrewgilmartin.slack.SlackUserBase;
+import com.andrewgilmartin.slack.AdmissionControl;
+import com.andrewgilmartin.slack.SlackApp;
+import com.andrewgilmartin.slack.SlackAppDispatcher;
+import com.andrewgilmartin.slack.SlackAppDispatcher.Reply;
+import com.andrewgilmartin.slack.SlackForm;
+import com.andrewgilmartin.slack.SlackResponsePoster;
+import com.andrewgilmartin.slack.SlackServer;
+import com.andrewgilmartin.util.BufferPool;
+import com.andrewgilmartin.util.ExecutorMode;
 import com.andrewgilmartin.util.IO;
 import com.andrewgilmartin.util.Logger;
+import com.andrewgilmartin.util.Metrics;
+import com.andrewgilmartin.util.ResponseBuffer;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.InetSocketAddress;
-import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Executors;
-import com.andrewgilmartin.slack.SlackApp;
-import com.andrewgilmartin.slack.SlackResponseBase;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  *
@@ -43,29 +47,94 @@ import com.andrewgilmartin.slack.SlackResponseBase;
  *
  * }
  */
-public class HttpServerSlackServer implements Runnable, HttpHandler, AutoCloseable {
+public class HttpServerSlackServer implements SlackServer, HttpHandler {
 
     private static final Logger logger = Logger.getLogger(HttpServerSlackServer.class);
 
-    private static final int HTTP_OK = 200;
-    private static final int HTTP_BAD_REQUEST = 400;
-    private static final int HTTP_UNAUTHORIZED = 401;
-    private static final int HTTP_NOT_FOUND = 404;
-    private static final int HTTP_INTERNAL_SERVER_ERROR = 500;
+    public static final int DEFAULT_BACKLOG = 10;
+    public static final int DEFAULT_THREADS = 10;
+    public static final int DEFAULT_MAX_BODY_SIZE = 64 * 1024;
+
+    private static final int BUFFER_POOL_CAPACITY = 64;
+
+    /**
+     * Whether the exchange being run by the thread holds an in flight slot,
+     * TRUE, or was shed, FALSE. See execute.
+     */
+    private static final ThreadLocal<Boolean> entered = new ThreadLocal<>();
+
+    static {
+        // The HttpServer writes the response headers and body separately. With
+        // Nagle's algorithm the body then waits for the client's delayed ACK of
+        // the headers, adding about 40ms to every response. The property is
+        // read when the first HttpServer is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
 
-    private final SlackApp slackApp;
+    private final SlackAppDispatcher dispatcher;
     private final HttpServer httpServer;
+    private final Executor executor;
+    private BufferPool bufferPool = new BufferPool(DEFAULT_MAX_BODY_SIZE, BUFFER_POOL_CAPACITY);
 
     public HttpServerSlackServer(int port, String path, SlackApp slackApp) throws IOException {
-        this.slackApp = slackApp;
-        this.httpServer = HttpServer.create(new InetSocketAddress(port), 10);
-        this.httpServer.setExecutor(Executors.newFixedThreadPool(10));
+        this(port, path, slackApp, DEFAULT_BACKLOG, ExecutorMode.FIXED.create(DEFAULT_THREADS, 0));
+    }
+
+    /**
+     * Create the server with the given listen backlog and executor. The
+     * executor is shutdown when the server is closed.
+     */
+    public HttpServerSlackServer(int port, String path, SlackApp slackApp, int backlog, Executor executor) throws IOException {
+        this.dispatcher = new SlackAppDispatcher(slackApp);
+        this.executor = executor;
+        this.httpServer = HttpServer.create(new InetSocketAddress(port), backlog);
+        this.httpServer.setExecutor(this::execute);
         this.httpServer.createContext(path, this);
+        this.httpServer.createContext(METRICS_PATH, this::metrics);
+        if (executor instanceof ThreadPoolExecutor) {
+            Metrics.gauge("slack.server.queue_depth", ((ThreadPoolExecutor) executor).getQueue()::size);
+        }
+    }
+
+    @Override
+    public void setDeferredResponses(Executor deferredExecutor, SlackResponsePoster responsePoster) {
+        dispatcher.setDeferredResponses(deferredExecutor, responsePoster);
+    }
+
+    @Override
+    public void setAdmissionControl(AdmissionControl admissionControl) {
+        dispatcher.setAdmissionControl(admissionControl);
+    }
+
+    @Override
+    public void setMetricsToken(String metricsToken) {
+        dispatcher.setMetricsToken(metricsToken);
+    }
+
+    @Override
+    public void setDeduplication(long windowMillis, int capacity) {
+        dispatcher.setDeduplication(windowMillis, capacity);
+    }
+
+    @Override
+    public void setMaxBodySize(int maxBodySize) {
+        this.bufferPool = new BufferPool(maxBodySize, BUFFER_POOL_CAPACITY);
+    }
+
+    @Override
+    public int getPort() {
+        return httpServer.getAddress().getPort();
     }
 
     @Override
     public void close() {
         httpServer.stop(0);
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+        dispatcher.shutdown();
     }
 
     @Override
@@ -73,59 +142,119 @@ public class HttpServerSlackServer implements Runnable, HttpHandler, AutoCloseab
         httpServer.start();
     }
 
-    @Override
-    public void handle(HttpExchange he) throws IOException {
-        Map<String, List<String>> parameters = parseParameters(IO.slurp(he.getRequestBody()));
-        String verificationToken = findFirst(parameters, "token");
-        String sslCheck = findFirst(parameters, "ssl_check");
-        if (sslCheck != null && "1".equals(sslCheck)) {
-            he.sendResponseHeaders(HTTP_OK, 0);
-            he.getResponseBody().close();
-        } else if (verificationToken == null || !verificationToken.equals(slackApp.getVerificationToken())) {
-            he.sendResponseHeaders(HTTP_UNAUTHORIZED, 0);
-            he.getResponseBody().close();
-        } else {
-            SlackRequestBase slackRequest = new SlackRequestBase(
-                    new SlackChannelBase(findFirst(parameters, "channel_id"), findFirst(parameters, "channel_name")),
-                    new SlackUserBase(findFirst(parameters, "user_id"), findFirst(parameters, "user_name")),
-                    findFirst(parameters, "command"),
-                    findFirst(parameters, "text")
-            );
-            SlackResponseBase slackResponse = new SlackResponseBase();
-            slackApp.request(slackRequest, slackResponse);
-            he.getResponseHeaders().add("content-type", "application/json; charset=utf-8");
-            he.sendResponseHeaders(HTTP_OK, 0);
-            slackResponse.render(he.getResponseBody());
+    /**
+     * Take an in flight slot for the exchange before queueing it for the
+     * executor, so that queued requests count as in flight. An exchange that
+     * gets none is run on the server's thread, where handle answers it
+     * without reading its body. The slot is released once the exchange is
+     * run unless handle has passed it to the dispatcher.
+     */
+    private void execute(Runnable exchange) {
+        if (!dispatcher.enter()) {
+            entered.set(Boolean.FALSE);
+            try {
+                exchange.run();
+            } finally {
+                entered.remove();
+            }
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                entered.set(Boolean.TRUE);
+                try {
+                    exchange.run();
+                } finally {
+                    if (entered.get() != null) {
+                        dispatcher.leave();
+                    }
+                    entered.remove();
+                }
+            });
+        } catch (RuntimeException e) {
+            dispatcher.leave();
+            throw e;
         }
     }
 
-    private Map<String, List<String>> parseParameters(String query) throws UnsupportedEncodingException {
-        Map<String, List<String>> q = new HashMap<>();
-        if (query != null) {
-            String[] pp = query.split("&");
-            for (String p : pp) {
-                String[] nv = p.split("=", 2);
-                String name = URLDecoder.decode(nv[0], StandardCharsets.UTF_8.name());
-                String value = nv.length == 2 ? URLDecoder.decode(nv[1], StandardCharsets.UTF_8.name()) : "";
-                if (!q.containsKey(name)) {
-                    q.put(name, new LinkedList<>());
-                }
-                q.get(name).add(value);
+    @Override
+    public void handle(HttpExchange he) throws IOException {
+        if (Boolean.FALSE.equals(entered.get())) {
+            send(he, dispatcher.busy());
+            return;
+        }
+        BufferPool pool = bufferPool;
+        long contentLength = contentLength(he);
+        if (contentLength > pool.getBufferSize()) {
+            // reject before reading any of the body
+            he.sendResponseHeaders(SlackAppDispatcher.HTTP_PAYLOAD_TOO_LARGE, -1);
+            he.close();
+            return;
+        }
+        // a body of unknown length may need the largest buffer
+        byte[] buffer = contentLength < 0 ? pool.acquire() : pool.acquire((int) contentLength);
+        try {
+            int length = IO.read(he.getRequestBody(), buffer);
+            if (length == -1) {
+                he.sendResponseHeaders(SlackAppDispatcher.HTTP_PAYLOAD_TOO_LARGE, -1);
+                he.close();
+                return;
             }
+            SlackForm form = SlackForm.parse(buffer, 0, length);
+            // the dispatcher releases the slot from here on
+            boolean slot = entered.get() != null;
+            entered.remove();
+            send(he, dispatcher.dispatch(form, he.getRequestHeaders().containsKey(SLACK_RETRY_NUM), slot));
+        } finally {
+            pool.release(buffer);
         }
-        return q;
     }
 
-    private <T> T findFirst(Map<String, List<T>> m, String k) {
-        return m == null ? null : findFirst(m.get(k));
+    private static void send(HttpExchange he, Reply reply) throws IOException {
+        ResponseBuffer response = ResponseBuffer.get();
+        if (reply.hasResponse()) {
+            reply.render(response);
+        }
+        if (response.size() > 0) {
+            // send an exact length rather than chunks
+            he.getResponseHeaders().add("content-type", "application/json; charset=utf-8");
+            he.sendResponseHeaders(reply.getStatus(), response.size());
+            try (OutputStream out = he.getResponseBody()) {
+                out.write(response.array(), 0, response.size());
+            }
+        } else {
+            he.sendResponseHeaders(reply.getStatus(), -1);
+            he.close();
+        }
     }
 
-    private <T> T findFirst(List<T> l) {
-        return l == null || l.isEmpty() ? null : l.get(0);
+    private void metrics(HttpExchange he) throws IOException {
+        int status = dispatcher.metricsStatus(he.getRequestHeaders().getFirst("authorization"));
+        if (status != SlackAppDispatcher.HTTP_OK) {
+            he.sendResponseHeaders(status, -1);
+            he.close();
+            return;
+        }
+        he.getResponseHeaders().add("content-type", "text/plain; charset=utf-8");
+        he.sendResponseHeaders(SlackAppDispatcher.HTTP_OK, 0);
+        try (Writer out = new OutputStreamWriter(he.getResponseBody(), StandardCharsets.UTF_8)) {
+            Metrics.render(out);
+        }
     }
 
-    private <T> T findFirst(Iterator<T> i) {
-        return i == null || !i.hasNext() ? null : i.next();
+    /**
+     * Returns the request's content length or -1 when not given.
+     */
+    private static long contentLength(HttpExchange he) {
+        String value = he.getRequestHeaders().getFirst("content-length");
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                // fall through and let the body be read with its bound
+            }
+        }
+        return -1;
     }
 
 }
@@ -0,0 +1,329 @@
+package com.andrewgilmartin.slack.nio;
+
+import com.andrewgilmartin.util.BufferPool;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An incremental HTTP/1.x request parser. Bytes are fed to the parser as they
+ * arrive and it consumes only those belonging to the current request, so any
+ * pipelined bytes remain in the buffer. Only requests with a Content-Length
+ * body are supported as that is all Slack sends. Bodies are read into buffers
+ * from the pool sized by their declared length, and a declared length larger
+ * than the pool's largest buffers is refused before any of the body is read.
+ */
+class HttpRequestParser {
+
+    static final int HTTP_BAD_REQUEST = 400;
+    static final int HTTP_LENGTH_REQUIRED = 411;
+    static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+    static final int HTTP_HEADERS_TOO_LARGE = 431;
+    static final int HTTP_VERSION_NOT_SUPPORTED = 505;
+
+    private static final int REQUEST_LINE = 0;
+    private static final int HEADERS = 1;
+    private static final int BODY = 2;
+    private static final int COMPLETE = 3;
+    private static final int ERROR = 4;
+
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final int maxHeaderSize;
+    private final BufferPool bodyPool;
+
+    private int state;
+    private int headerSize;
+    private byte[] line = new byte[128];
+    private int lineLength;
+    private String method;
+    private String target;
+    private boolean http10;
+    private int contentLength;
+    private boolean chunked;
+    private boolean keepAlive;
+    private boolean expectContinue;
+    private boolean retry;
+    private String authorization;
+    private byte[] body;
+    private int bodyLength;
+    private int errorStatus;
+
+    HttpRequestParser(int maxHeaderSize, BufferPool bodyPool) {
+        this.maxHeaderSize = maxHeaderSize;
+        this.bodyPool = bodyPool;
+        reset();
+    }
+
+    /**
+     * Return the body's buffer to the pool. The body is empty afterwards.
+     */
+    void releaseBody() {
+        if (body != NO_BODY) {
+            bodyPool.release(body);
+            body = NO_BODY;
+            bodyLength = 0;
+        }
+    }
+
+    /**
+     * Prepare for the next request on the connection.
+     */
+    final void reset() {
+        releaseBody();
+        state = REQUEST_LINE;
+        headerSize = 0;
+        lineLength = 0;
+        method = null;
+        target = null;
+        http10 = false;
+        contentLength = -1;
+        chunked = false;
+        keepAlive = true;
+        expectContinue = false;
+        retry = false;
+        authorization = null;
+        body = NO_BODY;
+        bodyLength = 0;
+        errorStatus = 0;
+    }
+
+    /**
+     * Has any part of the current request been received?
+     */
+    boolean isStarted() {
+        return state != REQUEST_LINE || lineLength > 0;
+    }
+
+    boolean isComplete() {
+        return state == COMPLETE;
+    }
+
+    boolean hasError() {
+        return state == ERROR;
+    }
+
+    int getErrorStatus() {
+        return errorStatus;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    /**
+     * The request target without any query string.
+     */
+    String getPath() {
+        int q = target.indexOf('?');
+        return q == -1 ? target : target.substring(0, q);
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Is the client waiting for a "100 Continue" before sending the body? This
+     * is true only once per request.
+     */
+    boolean takeExpectContinue() {
+        boolean e = expectContinue && state == BODY;
+        expectContinue = false;
+        return e;
+    }
+
+    /**
+     * Is the request one of Slack's retries?
+     */
+    boolean isRetry() {
+        return retry;
+    }
+
+    /**
+     * The Authorization header, or null when not given.
+     */
+    String getAuthorization() {
+        return authorization;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    int getBodyLength() {
+        return bodyLength;
+    }
+
+    /**
+     * Consume bytes from the buffer. Returns true when the request is complete
+     * or in error.
+     */
+    boolean parse(ByteBuffer in) {
+        while (in.hasRemaining()) {
+            switch (state) {
+                case REQUEST_LINE:
+                case HEADERS: {
+                    byte b = in.get();
+                    if (++headerSize > maxHeaderSize) {
+                        return error(HTTP_HEADERS_TOO_LARGE);
+                    }
+                    if (b == '\n') {
+                        int l = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                        lineLength = 0;
+                        if (state == REQUEST_LINE) {
+                            if (l > 0 && !requestLine(l)) {
+                                return true;
+                            }
+                        } else if (l > 0) {
+                            if (!header(l)) {
+                                return true;
+                            }
+                        } else if (!endOfHeaders()) {
+                            return true;
+                        }
+                    } else {
+                        if (lineLength == line.length) {
+                            byte[] l = new byte[line.length * 2];
+                            System.arraycopy(line, 0, l, 0, lineLength);
+                            line = l;
+                        }
+                        line[lineLength++] = b;
+                    }
+                    break;
+                }
+                case BODY: {
+                    int n = Math.min(in.remaining(), contentLength - bodyLength);
+                    in.get(body, bodyLength, n);
+                    bodyLength += n;
+                    if (bodyLength == contentLength) {
+                        state = COMPLETE;
+                    }
+                    break;
+                }
+                default:
+                    return true;
+            }
+            if (state == COMPLETE) {
+                return true;
+            }
+        }
+        return state == COMPLETE || state == ERROR;
+    }
+
+    private boolean requestLine(int l) {
+        String s = new String(line, 0, l, StandardCharsets.ISO_8859_1);
+        int a = s.indexOf(' ');
+        int b = s.lastIndexOf(' ');
+        if (a <= 0 || b <= a) {
+            return error(HTTP_BAD_REQUEST);
+        }
+        method = s.substring(0, a);
+        target = s.substring(a + 1, b);
+        String version = s.substring(b + 1);
+        if ("HTTP/1.1".equals(version)) {
+            http10 = false;
+            keepAlive = true;
+        } else if ("HTTP/1.0".equals(version)) {
+            http10 = true;
+            keepAlive = false;
+        } else {
+            return error(HTTP_VERSION_NOT_SUPPORTED);
+        }
+        state = HEADERS;
+        return true;
+    }
+
+    private boolean header(int l) {
+        int c = indexOf(line, l, (byte) ':');
+        if (c <= 0) {
+            return error(HTTP_BAD_REQUEST);
+        }
+        if (nameEquals(c, "content-length")) {
+            try {
+                contentLength = Integer.parseInt(value(c + 1, l));
+            } catch (NumberFormatException e) {
+                return error(HTTP_BAD_REQUEST);
+            }
+            if (contentLength < 0) {
+                return error(HTTP_BAD_REQUEST);
+            }
+        } else if (nameEquals(c, "transfer-encoding")) {
+            chunked = !"identity".equalsIgnoreCase(value(c + 1, l));
+        } else if (nameEquals(c, "connection")) {
+            String v = value(c + 1, l);
+            if ("close".equalsIgnoreCase(v)) {
+                keepAlive = false;
+            } else if ("keep-alive".equalsIgnoreCase(v)) {
+                keepAlive = true;
+            }
+        } else if (nameEquals(c, "x-slack-retry-num")) {
+            retry = true;
+        } else if (nameEquals(c, "authorization")) {
+            authorization = value(c + 1, l);
+        } else if (nameEquals(c, "expect")) {
+            expectContinue = !http10 && "100-continue".equalsIgnoreCase(value(c + 1, l));
+        }
+        return true;
+    }
+
+    private boolean endOfHeaders() {
+        if (chunked) {
+            return error(HTTP_LENGTH_REQUIRED);
+        }
+        if (contentLength > bodyPool.getBufferSize()) {
+            return error(HTTP_PAYLOAD_TOO_LARGE);
+        }
+        if (contentLength > 0) {
+            body = bodyPool.acquire(contentLength);
+            state = BODY;
+        } else {
+            contentLength = 0;
+            state = COMPLETE;
+        }
+        return true;
+    }
+
+    private boolean error(int status) {
+        errorStatus = status;
+        keepAlive = false;
+        state = ERROR;
+        return false;
+    }
+
+    private boolean nameEquals(int length, String name) {
+        if (length != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            int b = line[i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String value(int begin, int end) {
+        while (begin < end && (line[begin] == ' ' || line[begin] == '\t')) {
+            begin += 1;
+        }
+        while (end > begin && (line[end - 1] == ' ' || line[end - 1] == '\t')) {
+            end -= 1;
+        }
+        return new String(line, begin, end - begin, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte b) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
+
+// END
@@ -0,0 +1,598 @@
+package com.andrewgilmartin.slack.nio;
+
+import com.andrewgilmartin.slack.AdmissionControl;
+import com.andrewgilmartin.slack.SlackApp;
+import com.andrewgilmartin.slack.SlackAppDispatcher;
+import com.andrewgilmartin.slack.SlackAppDispatcher.Reply;
+import com.andrewgilmartin.slack.SlackForm;
+import com.andrewgilmartin.slack.SlackResponsePoster;
+import com.andrewgilmartin.slack.SlackServer;
+import com.andrewgilmartin.util.BufferPool;
+import com.andrewgilmartin.util.Logger;
+import com.andrewgilmartin.util.Metrics;
+import com.andrewgilmartin.util.ResponseBuffer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * A Slack app server built on NIO selectors. A small number of event loop
+ * threads accept connections and incrementally parse requests; complete
+ * requests are handed to the worker executor and the replies are written back
+ * by the event loops. Idle keep-alive connections hold no buffers and so
+ * thousands of them are cheap. Slow clients are closed when they exceed the
+ * read timeout and idle connections when they exceed the idle timeout.
+ *
+ * {@code
+ *
+ * NioSlackServer server = new NioSlackServer(8080, "/ir", app, 1000, 2, Executors.newFixedThreadPool(10));
+ * server.run();
+ *
+ * }
+ */
+public class NioSlackServer implements SlackServer {
+
+    private static final Logger logger = Logger.getLogger(NioSlackServer.class);
+
+    public static final int DEFAULT_EVENT_LOOPS = 2;
+    public static final int DEFAULT_READ_TIMEOUT = 10_000; // milliseconds
+    public static final int DEFAULT_IDLE_TIMEOUT = 60_000; // milliseconds
+    public static final int DEFAULT_MAX_HEADER_SIZE = 8 * 1024;
+    public static final int DEFAULT_MAX_BODY_SIZE = 64 * 1024;
+
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+    private static final int BUFFER_POOL_CAPACITY = 64;
+    private static final long TICK = 500; // milliseconds between timeout checks
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String TEXT = "text/plain; charset=utf-8";
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final SlackAppDispatcher dispatcher;
+    private final String path;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] eventLoops;
+    private final Executor workers;
+    private int readTimeout = DEFAULT_READ_TIMEOUT;
+    private int idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private int maxHeaderSize = DEFAULT_MAX_HEADER_SIZE;
+    private BufferPool bodyPool = new BufferPool(DEFAULT_MAX_BODY_SIZE, BUFFER_POOL_CAPACITY);
+    private volatile boolean running = false;
+    private int nextEventLoop = 0;
+
+    /**
+     * Create the server. The workers executor is shutdown when the server is
+     * closed.
+     */
+    public NioSlackServer(int port, String path, SlackApp slackApp, int backlog, int eventLoopCount, Executor workers) throws IOException {
+        this.dispatcher = new SlackAppDispatcher(slackApp);
+        this.path = path;
+        this.workers = workers;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        this.serverChannel.bind(new InetSocketAddress(port), backlog);
+        this.serverChannel.configureBlocking(false);
+        this.eventLoops = new EventLoop[Math.max(1, eventLoopCount)];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop(i);
+        }
+        if (workers instanceof ThreadPoolExecutor) {
+            Metrics.gauge("slack.server.queue_depth", ((ThreadPoolExecutor) workers).getQueue()::size);
+        }
+    }
+
+    /**
+     * Set the longest time, in milliseconds, a client has to send a complete
+     * request once it has started.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Set the longest time, in milliseconds, a keep-alive connection can wait
+     * for its next request.
+     */
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public void setMaxHeaderSize(int maxHeaderSize) {
+        this.maxHeaderSize = maxHeaderSize;
+    }
+
+    @Override
+    public void setMaxBodySize(int maxBodySize) {
+        this.bodyPool = new BufferPool(maxBodySize, BUFFER_POOL_CAPACITY);
+    }
+
+    @Override
+    public void setAdmissionControl(AdmissionControl admissionControl) {
+        dispatcher.setAdmissionControl(admissionControl);
+    }
+
+    @Override
+    public void setDeduplication(long windowMillis, int capacity) {
+        dispatcher.setDeduplication(windowMillis, capacity);
+    }
+
+    @Override
+    public void setMetricsToken(String metricsToken) {
+        dispatcher.setMetricsToken(metricsToken);
+    }
+
+    @Override
+    public void setDeferredResponses(Executor deferredExecutor, SlackResponsePoster responsePoster) {
+        dispatcher.setDeferredResponses(deferredExecutor, responsePoster);
+    }
+
+    @Override
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        running = true;
+        eventLoops[0].execute(() -> {
+            try {
+                serverChannel.register(eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+            } catch (ClosedChannelException e) {
+                logger.error(e, "unable to accept connections");
+            }
+        });
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.thread.start();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.selector.wakeup();
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            try {
+                eventLoop.thread.join(TICK * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.warn(e, "unable to close server channel");
+        }
+        if (workers instanceof ExecutorService) {
+            ((ExecutorService) workers).shutdown();
+        }
+        dispatcher.shutdown();
+    }
+
+    private void accept() {
+        for (;;) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+                if (channel == null) {
+                    return;
+                }
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                logger.warn(e, "unable to accept connection");
+                return;
+            }
+            EventLoop eventLoop = eventLoops[nextEventLoop];
+            nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+            eventLoop.execute(() -> eventLoop.register(channel));
+        }
+    }
+
+    /**
+     * Returns the reply as the bytes to write. The body is in the thread's
+     * response buffer.
+     */
+    private static ByteBuffer[] reply(Reply reply, boolean keepAlive) throws IOException {
+        ResponseBuffer body = ResponseBuffer.get();
+        if (reply.hasResponse()) {
+            reply.render(body);
+        }
+        return reply(reply.getStatus(), body.size() > 0 ? body.toByteBuffer() : null, keepAlive);
+    }
+
+    private static ByteBuffer metrics() {
+        StringBuilder out = new StringBuilder(1024);
+        try {
+            Metrics.render(out);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+        }
+        return ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ByteBuffer[] reply(int status, ByteBuffer body, boolean keepAlive) {
+        return reply(status, JSON, body, keepAlive);
+    }
+
+    private static ByteBuffer[] reply(int status, String contentType, ByteBuffer body, boolean keepAlive) {
+        StringBuilder head = new StringBuilder(128)
+                .append("HTTP/1.1 ").append(status).append(' ').append(reason(status)).append("\r\n")
+                .append("Content-Length: ").append(body == null ? 0 : body.remaining()).append("\r\n");
+        if (body != null) {
+            head.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        if (!keepAlive) {
+            head.append("Connection: close\r\n");
+        }
+        head.append("\r\n");
+        ByteBuffer h = ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        return body == null ? new ByteBuffer[]{h} : new ByteBuffer[]{h, body};
+    }
+
+    /**
+     * Returns a copy of the bytes not yet written, or null when all have been.
+     */
+    private static ByteBuffer remaining(ByteBuffer[] buffers) {
+        int n = 0;
+        for (ByteBuffer b : buffers) {
+            n += b.remaining();
+        }
+        if (n == 0) {
+            return null;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(n);
+        for (ByteBuffer b : buffers) {
+            copy.put(b);
+        }
+        copy.flip();
+        return copy;
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 400:
+                return "Bad Request";
+            case 401:
+                return "Unauthorized";
+            case 404:
+                return "Not Found";
+            case 411:
+                return "Length Required";
+            case 413:
+                return "Payload Too Large";
+            case 431:
+                return "Request Header Fields Too Large";
+            case 503:
+                return "Service Unavailable";
+            case 505:
+                return "HTTP Version Not Supported";
+            default:
+                return "Error";
+        }
+    }
+
+    private class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        public EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, NioSlackServer.class.getSimpleName() + "-" + index);
+        }
+
+        /**
+         * Run the task on this event loop's thread.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void register(SocketChannel channel) {
+            try {
+                Connection connection = new Connection(this, channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connection.deadline = System.currentTimeMillis() + idleTimeout;
+            } catch (IOException e) {
+                logger.warn(e, "unable to register connection");
+                close(channel);
+            }
+        }
+
+        @Override
+        public void run() {
+            long nextTick = System.currentTimeMillis() + TICK;
+            while (running) {
+                try {
+                    selector.select(TICK);
+                } catch (IOException e) {
+                    logger.error(e, "unable to select");
+                    break;
+                }
+                for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                    task.run();
+                }
+                Iterator<SelectionKey> i = selector.selectedKeys().iterator();
+                while (i.hasNext()) {
+                    SelectionKey key = i.next();
+                    i.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            connection.read();
+                        } else if (key.isWritable()) {
+                            connection.write();
+                        }
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextTick) {
+                    expire(now);
+                    nextTick = now + TICK;
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                close(key.channel());
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.warn(e, "unable to close selector");
+            }
+        }
+
+        private void expire(long now) {
+            for (SelectionKey key : selector.keys()) {
+                Object attachment = key.attachment();
+                if (attachment instanceof Connection) {
+                    Connection connection = (Connection) attachment;
+                    if (connection.deadline != 0 && connection.deadline < now) {
+                        connection.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private class Connection {
+
+        private final EventLoop eventLoop;
+        private final SocketChannel channel;
+        private final HttpRequestParser parser = new HttpRequestParser(maxHeaderSize, bodyPool);
+        private SelectionKey key;
+        private ByteBuffer pending; // bytes read but not yet parsed
+        private ByteBuffer[] output;
+        private boolean interim; // the output is a 100 Continue
+        private boolean keepAlive;
+        private long deadline; // zero when no deadline applies
+
+        public Connection(EventLoop eventLoop, SocketChannel channel) {
+            this.eventLoop = eventLoop;
+            this.channel = channel;
+        }
+
+        void read() {
+            ByteBuffer buffer = eventLoop.readBuffer;
+            buffer.clear();
+            int n;
+            try {
+                n = channel.read(buffer);
+            } catch (IOException e) {
+                logger.debug(e, "unable to read");
+                close();
+                return;
+            }
+            if (n == -1) {
+                close();
+                return;
+            }
+            buffer.flip();
+            consume(buffer);
+        }
+
+        void consume(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                if (!parser.isStarted()) {
+                    deadline = System.currentTimeMillis() + readTimeout;
+                }
+                boolean done = parser.parse(buffer);
+                if (parser.hasError()) {
+                    keepAlive = false;
+                    respond(reply(parser.getErrorStatus(), null, false));
+                    return;
+                }
+                if (parser.takeExpectContinue()) {
+                    // the rest of the request is read once the 100 Continue
+                    // is written
+                    keep(buffer);
+                    output = new ByteBuffer[]{ByteBuffer.wrap(CONTINUE)};
+                    interim = true;
+                    write();
+                    return;
+                }
+                if (done) {
+                    keep(buffer);
+                    dispatch();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Keep the buffer's remaining bytes to consume later.
+         */
+        private void keep(ByteBuffer buffer) {
+            if (buffer.hasRemaining()) {
+                pending = ByteBuffer.allocate(buffer.remaining());
+                pending.put(buffer).flip();
+            }
+        }
+
+        private void dispatch() {
+            deadline = 0;
+            keepAlive = parser.isKeepAlive();
+            key.interestOps(0);
+            // the app's requests take their in flight slots before waiting for
+            // a worker, and those shed are answered here
+            boolean entered = path.equals(parser.getPath());
+            if (entered && !dispatcher.enter()) {
+                ByteBuffer[] busy;
+                try {
+                    busy = reply(dispatcher.busy(), keepAlive);
+                } catch (IOException e) {
+                    // a ResponseBuffer does not throw
+                    throw new IllegalStateException(e);
+                }
+                // the event loop's response buffer is reused by the next reply
+                ByteBuffer rest = remaining(busy);
+                parser.releaseBody();
+                respond(new ByteBuffer[]{rest});
+                return;
+            }
+            try {
+                workers.execute(() -> {
+                    // The event loop leaves the channel alone while the request
+                    // is being performed and so the worker can write the reply
+                    // directly from its response buffer. Only when the socket
+                    // cannot take all of it are the rest of the bytes copied
+                    // for the event loop to write.
+                    ByteBuffer[] reply = perform(entered);
+                    ByteBuffer rest;
+                    try {
+                        channel.write(reply);
+                        rest = remaining(reply);
+                    } catch (IOException e) {
+                        logger.debug(e, "unable to write");
+                        eventLoop.execute(this::close);
+                        return;
+                    }
+                    eventLoop.execute(() -> respond(rest == null ? null : new ByteBuffer[]{rest}));
+                });
+            } catch (RejectedExecutionException e) {
+                if (entered) {
+                    dispatcher.leave();
+                }
+                parser.releaseBody();
+                keepAlive = false;
+                respond(reply(HTTP_SERVICE_UNAVAILABLE, null, false));
+            }
+        }
+
+        /**
+         * Perform the request on a worker thread and return the reply as the
+         * bytes to write. The body is in the worker thread's response buffer
+         * and so is only valid until the thread performs another request.
+         * Entered is true when the app's request took its in flight slot
+         * before it was queued. A failed request's connection is closed.
+         */
+        private ByteBuffer[] perform(boolean entered) {
+            if (!path.equals(parser.getPath())) {
+                if (METRICS_PATH.equals(parser.getPath())) {
+                    int status = dispatcher.metricsStatus(parser.getAuthorization());
+                    if (status == SlackAppDispatcher.HTTP_OK) {
+                        return reply(status, TEXT, metrics(), keepAlive);
+                    }
+                    return reply(status, null, keepAlive);
+                }
+                return reply(SlackAppDispatcher.HTTP_NOT_FOUND, null, keepAlive);
+            }
+            try {
+                Reply reply = dispatcher.dispatch(SlackForm.parse(parser.getBody(), 0, parser.getBodyLength()), parser.isRetry(), entered);
+                return reply(reply, keepAlive);
+            } catch (IOException | RuntimeException e) {
+                logger.error(e, "unable to perform request");
+                keepAlive = false;
+                return reply(SlackAppDispatcher.HTTP_INTERNAL_SERVER_ERROR, null, false);
+            } finally {
+                parser.releaseBody();
+            }
+        }
+
+        private void respond(ByteBuffer[] reply) {
+            output = reply;
+            write();
+        }
+
+        /**
+         * Write the output, if any, and when all of it is written go on
+         * reading the request after a 100 Continue, or move on to the
+         * connection's next request, or close the connection when it is not
+         * kept alive.
+         */
+        void write() {
+            if (output != null) {
+                try {
+                    channel.write(output);
+                } catch (IOException e) {
+                    logger.debug(e, "unable to write");
+                    close();
+                    return;
+                }
+                if (output[output.length - 1].hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    deadline = System.currentTimeMillis() + readTimeout;
+                    return;
+                }
+                output = null;
+            }
+            if (interim) {
+                interim = false;
+            } else if (!keepAlive) {
+                close();
+                return;
+            } else {
+                parser.reset();
+                deadline = System.currentTimeMillis() + idleTimeout;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if (pending != null) {
+                ByteBuffer p = pending;
+                pending = null;
+                consume(p);
+            }
+        }
+
+        void close() {
+            key.cancel();
+            NioSlackServer.close(channel);
+            parser.releaseBody();
+        }
+    }
+
+    private static void close(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug(e, "unable to close channel");
+        }
+    }
+}
+
+// END
@@ -0,0 +1,101 @@
+package com.andrewgilmartin.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of byte arrays in size classes, each twice the size of the
+ * last, from 1KB up to the largest size, so a small request body does not
+ * take the largest array. When a class is empty a new array is allocated and
+ * when it is full a released array is left to the garbage collector, so the
+ * pool never blocks.
+ */
+public class BufferPool {
+
+    static final int SMALLEST_SIZE = 1024;
+
+    private final int bufferSize;
+    private final int[] sizes;
+    private final List<ArrayBlockingQueue<byte[]>> buffers;
+    private final AtomicLong allocations = new AtomicLong();
+
+    /**
+     * Create the pool of arrays of at most bufferSize bytes, keeping up to
+     * capacity arrays of each size.
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        int n = 1;
+        for (long size = SMALLEST_SIZE; size < bufferSize; size *= 2) {
+            n += 1;
+        }
+        this.sizes = new int[n];
+        this.buffers = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            sizes[i] = i == n - 1 ? bufferSize : SMALLEST_SIZE << i;
+            buffers.add(new ArrayBlockingQueue<>(capacity));
+        }
+    }
+
+    /**
+     * The size of the largest arrays.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns an array of the largest size.
+     */
+    public byte[] acquire() {
+        return acquire(bufferSize);
+    }
+
+    /**
+     * Returns an array of at least the given size, which is at most the
+     * largest size.
+     */
+    public byte[] acquire(int size) {
+        if (size > bufferSize) {
+            throw new IllegalArgumentException("size " + size + " is larger than " + bufferSize);
+        }
+        int i = sizeClass(size);
+        byte[] buffer = buffers.get(i).poll();
+        if (buffer == null) {
+            allocations.incrementAndGet();
+            buffer = new byte[sizes[i]];
+        }
+        return buffer;
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length <= bufferSize) {
+            int i = sizeClass(buffer.length);
+            if (buffer.length == sizes[i]) {
+                buffers.get(i).offer(buffer);
+            }
+        }
+    }
+
+    /**
+     * The number of arrays the pool has had to allocate.
+     */
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    /**
+     * Returns the index of the smallest size class holding the size.
+     */
+    private int sizeClass(int size) {
+        int i = 0;
+        while (sizes[i] < size) {
+            i += 1;
+        }
+        return i;
+    }
+}
+
+// END
@@ -0,0 +1,88 @@
+package com.andrewgilmartin.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ways a server can execute its requests.
+ *
+ * {@code
+ *
+ * ExecutorService executor = ExecutorMode.valueOf("BOUNDED").create(10, 50);
+ *
+ * }
+ */
+public enum ExecutorMode {
+
+    /**
+     * A fixed number of threads with an unbounded queue. This is the
+     * historical behavior.
+     */
+    FIXED {
+        @Override
+        public ExecutorService create(int threads, int queueSize) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    },
+    /**
+     * A fixed number of threads with a bounded queue. When both are full the
+     * submitting thread runs the request itself, which stops it from accepting
+     * more connections and so pushes back into the listen backlog. A queue
+     * size of 0 hands each request directly to an idle thread.
+     */
+    BOUNDED {
+        @Override
+        public ExecutorService create(int threads, int queueSize) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1: " + threads);
+            }
+            if (queueSize < 0) {
+                throw new IllegalArgumentException("queue size must not be negative: " + queueSize);
+            }
+            return new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    60, TimeUnit.SECONDS,
+                    queueSize == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueSize),
+                    new ThreadPoolExecutor.CallerRunsPolicy()
+            );
+        }
+    },
+    /**
+     * A new virtual thread per request. Requires Java 21 or later. The method
+     * is found reflectively so that the rest of the application still runs on
+     * older JREs.
+     */
+    VIRTUAL {
+        @Override
+        public ExecutorService create(int threads, int queueSize) {
+            try {
+                Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) m.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("virtual threads require Java 21 or later", e);
+            }
+        }
+    };
+
+    /**
+     * Create the executor. The thread count and queue size are ignored by the
+     * modes that do not use them. Throws IllegalArgumentException when a mode
+     * can not use them.
+     */
+    public abstract ExecutorService create(int threads, int queueSize);
+
+    /**
+     * Parse the mode's case-insensitive name.
+     */
+    public static ExecutorMode parse(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
+
+// END
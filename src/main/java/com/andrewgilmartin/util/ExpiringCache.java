@@ -0,0 +1,149 @@
+package com.andrewgilmartin.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded concurrent cache whose entries expire a fixed time after they are
+ * added. The cache keeps two generations of entries: new entries go into the
+ * current generation and when it is full, or older than the time to live, it
+ * becomes the previous generation and the old previous generation is dropped
+ * whole. This bounds the cache to twice the generation size without tracking
+ * the order of entries.
+ */
+public class ExpiringCache<K, V> {
+
+    private final int generationSize;
+    private final long ttlNanos;
+    private volatile Generation<K, V> current;
+    private volatile Generation<K, V> previous;
+
+    private static class Generation<K, V> {
+
+        final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+        final long started = System.nanoTime();
+    }
+
+    private static class Entry<V> {
+
+        final V value;
+        final long expires;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Create a cache of at most about capacity entries that each live for
+     * ttlMillis.
+     */
+    public ExpiringCache(int capacity, long ttlMillis) {
+        this.generationSize = Math.max(1, capacity / 2);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.current = new Generation<>();
+        this.previous = new Generation<>();
+    }
+
+    /**
+     * Returns the key's unexpired value or null.
+     */
+    public V get(K key) {
+        long now = System.nanoTime();
+        V value = get(current, key, now);
+        return value != null ? value : get(previous, key, now);
+    }
+
+    /**
+     * Add the value unless the key already has an unexpired value. Returns the
+     * existing value or null when the value was added. The generations are
+     * rotated, the previous one checked and the value added holding the
+     * rotation lock, so that no rotation comes between the check and the add
+     * and lets two callers both add the key.
+     */
+    public V putIfAbsent(K key, V value) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            Generation<K, V> g = generation(now);
+            V existing = get(previous, key, now);
+            if (existing != null) {
+                return existing;
+            }
+            Entry<V> entry = new Entry<>(value, now + ttlNanos);
+            for (;;) {
+                Entry<V> e = g.entries.putIfAbsent(key, entry);
+                if (e == null) {
+                    return null;
+                }
+                if (e.expires - now > 0) {
+                    return e.value;
+                }
+                if (g.entries.replace(key, e, entry)) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the value replacing any existing value.
+     */
+    public void put(K key, V value) {
+        long now = System.nanoTime();
+        generation(now).entries.put(key, new Entry<>(value, now + ttlNanos));
+        previous.entries.remove(key);
+    }
+
+    /**
+     * Remove the key's entry.
+     */
+    public void remove(K key) {
+        current.entries.remove(key);
+        previous.entries.remove(key);
+    }
+
+    /**
+     * Remove the key's entry if it has the given value.
+     */
+    public void remove(K key, V value) {
+        remove(current, key, value);
+        remove(previous, key, value);
+    }
+
+    /**
+     * The number of entries, including those expired but not yet dropped.
+     */
+    public int size() {
+        return current.entries.size() + previous.entries.size();
+    }
+
+    private Generation<K, V> generation(long now) {
+        Generation<K, V> g = current;
+        if (g.entries.size() >= generationSize || now - g.started > ttlNanos) {
+            synchronized (this) {
+                g = current;
+                if (g.entries.size() >= generationSize || now - g.started > ttlNanos) {
+                    previous = g;
+                    current = g = new Generation<>();
+                }
+            }
+        }
+        return g;
+    }
+
+    private static <K, V> V get(Generation<K, V> g, K key, long now) {
+        Entry<V> e = g.entries.get(key);
+        return e != null && e.expires - now > 0 ? e.value : null;
+    }
+
+    private static <K, V> void remove(Generation<K, V> g, K key, V value) {
+        Entry<V> e = g.entries.get(key);
+        if (e != null && e.value == value) {
+            g.entries.remove(key, e);
+        }
+    }
+}
+
+// END
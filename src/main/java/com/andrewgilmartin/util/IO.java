@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,6 +24,25 @@ public class IO {
         return sb.toString();
     }
 
+    /**
+     * Read the stream into the buffer and return the number of bytes read, or
+     * -1 if the stream has more bytes than the buffer holds. The stream is
+     * read no further than one byte past the buffer's length.
+     */
+    public static int read(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        for (;;) {
+            if (length == buffer.length) {
+                return in.read() == -1 ? length : -1;
+            }
+            int l = in.read(buffer, length, buffer.length - length);
+            if (l == -1) {
+                return length;
+            }
+            length += l;
+        }
+    }
+
     public static int findLastNumberedFile(File directory, String baseName) {
         int last = 0;
         if (directory.isDirectory()) {
@@ -39,6 +59,26 @@ public class IO {
         }
         return last;
     }
+
+    /**
+     * Returns the numbers of the directory's files named baseName.number in
+     * ascending order.
+     */
+    public static int[] findNumberedFiles(File directory, String baseName) {
+        int[] numbers = new int[0];
+        if (directory.isDirectory()) {
+            Pattern p = Pattern.compile(baseName + "\\.(\\d+)");
+            for (String name : directory.list()) {
+                Matcher m = p.matcher(name);
+                if (m.matches()) {
+                    numbers = Arrays.copyOf(numbers, numbers.length + 1);
+                    numbers[numbers.length - 1] = Integer.parseInt(m.group(1));
+                }
+            }
+            Arrays.sort(numbers);
+        }
+        return numbers;
+    }
 }
 
 // END
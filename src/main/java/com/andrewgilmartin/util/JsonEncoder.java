@@ -0,0 +1,352 @@
+package com.andrewgilmartin.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A compact JSON encoder that writes UTF-8 directly into a ResponseBuffer. It
+ * has the same hash, array, key, value and end methods as JsonWriter but
+ * writes no whitespace. Strings are escaped using a table: runs of characters
+ * that need no escaping are copied at once and non-ASCII characters are
+ * written as UTF-8 rather than escaped. A CharSequence value, eg a
+ * StringBuilder, is encoded without first making a String of it. For example,
+ * the JSON
+ *
+ * {@code
+ *
+ * {"a":"b","c":[1,2],"d":3}
+ *
+ * }
+ *
+ * is created with
+ *
+ * {@code
+ *
+ * new JsonEncoder(buffer)
+ *  .hash()
+ *      .value("a","b")
+ *      .key("c")
+ *          .array()
+ *              .value(1)
+ *              .value(2)
+ *          .end()
+ *      .value("d",3)
+ *  .end();
+ *
+ * }
+ */
+public class JsonEncoder {
+
+    /**
+     * For each ASCII character the character that follows the backslash in
+     * its escape, 'u' for those needing a \\u00XX escape, or zero when it
+     * needs none.
+     */
+    private static final byte[] ESCAPES = new byte[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES[0x7F] = 'u';
+    }
+
+    /**
+     * The escapes of already escaped text: none.
+     */
+    private static final byte[] NO_ESCAPES = new byte[128];
+
+    private static final byte[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    /**
+     * For each ASCII character its JSON escape, or null when it needs none.
+     */
+    private static final String[] JSON_ESCAPES = new String[128];
+
+    /**
+     * For each ASCII character its Slack entity escape, ie for &amp;, &lt;
+     * and &gt;, or its JSON escape, or null when it needs neither.
+     */
+    private static final String[] ENTITY_AND_JSON_ESCAPES = new String[128];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            if (ESCAPES[c] == 'u') {
+                JSON_ESCAPES[c] = "\\u00" + (char) HEX_DIGITS[c >> 4] + (char) HEX_DIGITS[c & 0xF];
+            } else if (ESCAPES[c] != 0) {
+                JSON_ESCAPES[c] = "\\" + (char) ESCAPES[c];
+            }
+        }
+        System.arraycopy(JSON_ESCAPES, 0, ENTITY_AND_JSON_ESCAPES, 0, 128);
+        ENTITY_AND_JSON_ESCAPES['&'] = "&amp;";
+        ENTITY_AND_JSON_ESCAPES['<'] = "&lt;";
+        ENTITY_AND_JSON_ESCAPES['>'] = "&gt;";
+    }
+
+    private final ResponseBuffer out;
+    // the closing bracket of each open hash or array and whether it has
+    // any members yet
+    private byte[] endings = new byte[8];
+    private boolean[] members = new boolean[8];
+    private int depth = 0;
+    private boolean afterKey = false;
+
+    public JsonEncoder(ResponseBuffer out) {
+        this.out = out;
+    }
+
+    public JsonEncoder hash() {
+        return open('{', '}');
+    }
+
+    public JsonEncoder array() {
+        return open('[', ']');
+    }
+
+    public JsonEncoder end() {
+        depth -= 1;
+        out.put(endings[depth]);
+        return this;
+    }
+
+    public JsonEncoder key(Object key) {
+        separator();
+        string(key.toString(), ESCAPES);
+        out.put(':');
+        afterKey = true;
+        return this;
+    }
+
+    public JsonEncoder value(Object value) {
+        separator();
+        if (value == null) {
+            out.putAscii("null", 0, 4);
+        } else if (value instanceof Boolean) {
+            String b = value.toString();
+            out.putAscii(b, 0, b.length());
+        } else if (value instanceof Integer || value instanceof Long) {
+            number(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            String n = value.toString();
+            out.putAscii(n, 0, n.length());
+        } else if (value instanceof CharSequence) {
+            string((CharSequence) value, ESCAPES);
+        } else {
+            string(value.toString(), ESCAPES);
+        }
+        return this;
+    }
+
+    public JsonEncoder value(Object key, Object value) {
+        return key(key).value(value);
+    }
+
+    /**
+     * Add a string value that has already been escaped, eg by
+     * {@link #escape(StringBuilder, CharSequence)}. Only non-ASCII characters
+     * are encoded.
+     */
+    public JsonEncoder escapedValue(CharSequence value) {
+        separator();
+        string(value, NO_ESCAPES);
+        return this;
+    }
+
+    public JsonEncoder escapedValue(Object key, CharSequence value) {
+        return key(key).escapedValue(value);
+    }
+
+    /**
+     * Add a value that is already encoded JSON, eg a fragment made earlier by
+     * another encoder. The bytes are copied as is.
+     */
+    public JsonEncoder encodedValue(byte[] json) {
+        separator();
+        out.write(json, 0, json.length);
+        return this;
+    }
+
+    public JsonEncoder values(Collection<?> values) {
+        for (Object value : values) {
+            value(value);
+        }
+        return this;
+    }
+
+    public JsonEncoder values(Object key, Collection<?> values) {
+        return key(key).array().values(values).end();
+    }
+
+    private JsonEncoder open(char begin, char end) {
+        separator();
+        out.put(begin);
+        if (depth == endings.length) {
+            endings = Arrays.copyOf(endings, depth * 2);
+            members = Arrays.copyOf(members, depth * 2);
+        }
+        endings[depth] = (byte) end;
+        members[depth] = false;
+        depth += 1;
+        return this;
+    }
+
+    private void separator() {
+        if (afterKey) {
+            afterKey = false;
+        } else if (depth > 0) {
+            if (members[depth - 1]) {
+                out.put(',');
+            } else {
+                members[depth - 1] = true;
+            }
+        }
+    }
+
+    private void string(CharSequence text, byte[] escapes) {
+        out.put('"');
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int run = i;
+            char c = 0;
+            while (i < length && (c = text.charAt(i)) < 0x80 && escapes[c] == 0) {
+                i += 1;
+            }
+            if (i > run) {
+                out.putAscii(text, run, i);
+            }
+            if (i == length) {
+                break;
+            }
+            i += 1;
+            if (c < 0x80) {
+                escape(c);
+            } else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(text.charAt(i))) {
+                out.putCodePoint(Character.toCodePoint(c, text.charAt(i)));
+                i += 1;
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate can only be escaped
+                escape(c);
+            } else {
+                out.putCodePoint(c);
+            }
+        }
+        out.put('"');
+    }
+
+    private void escape(char c) {
+        out.put('\\');
+        byte e = c < 0x80 ? ESCAPES[c] : (byte) 'u';
+        out.put(e);
+        if (e == 'u') {
+            out.put(HEX_DIGITS[(c >> 12) & 0xF]);
+            out.put(HEX_DIGITS[(c >> 8) & 0xF]);
+            out.put(HEX_DIGITS[(c >> 4) & 0xF]);
+            out.put(HEX_DIGITS[c & 0xF]);
+        }
+    }
+
+    /**
+     * Append the JSON escaped text to the builder. Non-ASCII characters are
+     * not escaped; they are encoded when the text is added with
+     * escapedValue().
+     */
+    public static StringBuilder escape(StringBuilder out, CharSequence text) {
+        return escape(out, text, JSON_ESCAPES);
+    }
+
+    /**
+     * Append the text to the builder with both Slack's entity escapes for
+     * &amp;, &lt; and &gt; and the JSON escapes in one pass. This is the same
+     * as, but cheaper than, JSON escaping JsonWriter.escapeXml(text).
+     */
+    public static StringBuilder escapeWithEntities(StringBuilder out, CharSequence text) {
+        return escape(out, text, ENTITY_AND_JSON_ESCAPES);
+    }
+
+    private static StringBuilder escape(StringBuilder out, CharSequence text, String[] escapes) {
+        if (text == null) {
+            return out.append("null");
+        }
+        int length = text.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80 && escapes[c] != null) {
+                out.append(text, run, i).append(escapes[c]);
+                run = i + 1;
+            }
+        }
+        return out.append(text, run, length);
+    }
+
+    /**
+     * Returns the text with its JSON escapes undone.
+     */
+    public static String unescape(CharSequence text) {
+        StringBuilder out = new StringBuilder(text.length());
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                c = text.charAt(++i);
+                switch (c) {
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 'u':
+                        if (i + 4 < length) {
+                            c = (char) Integer.parseInt(text.subSequence(i + 1, i + 5).toString(), 16);
+                            i += 4;
+                        }
+                        break;
+                    default:
+                        // \", \\ and \/ are the character itself
+                        break;
+                }
+            }
+            out.append(c);
+        }
+        return out.toString();
+    }
+
+    private void number(long n) {
+        if (n == Long.MIN_VALUE) {
+            String s = Long.toString(n);
+            out.putAscii(s, 0, s.length());
+            return;
+        }
+        if (n < 0) {
+            out.put('-');
+            n = -n;
+        }
+        long divisor = 1;
+        while (divisor <= n / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.put('0' + (int) (n / divisor % 10));
+        }
+    }
+}
+
+// END
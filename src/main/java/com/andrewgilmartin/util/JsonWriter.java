@@ -53,6 +53,13 @@ public class JsonWriter implements AutoCloseable {
         }
     }
 
+    /**
+     * Flush the writer without closing it.
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
     public JsonWriter hash() throws IOException {
         comma();
         writer.append("{\n");
@@ -0,0 +1,69 @@
+package com.andrewgilmartin.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A process wide registry of named counters and gauges. Counters are
+ * incremented by the code being measured; gauges are sampled when the metrics
+ * are read. The servers make the metrics available as plain text, one "name
+ * value" pair per line, to requests with the metrics token, eg
+ *
+ * {@code
+ *
+ * curl -H "Authorization: Bearer $METRICS_TOKEN" http://localhost:8080/metrics
+ *
+ * }
+ */
+public class Metrics {
+
+    private static final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the named counter, creating it if needed. Callers should hold on
+     * to the counter rather than look it up for each use.
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, (n) -> new LongAdder());
+    }
+
+    /**
+     * Register the named gauge. A later registration replaces an earlier one.
+     */
+    public static void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Returns the current values of all the counters and gauges ordered by
+     * name.
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+            snapshot.put(e.getKey(), e.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            snapshot.put(e.getKey(), e.getValue().getAsLong());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Write the snapshot as "name value" lines.
+     */
+    public static <T extends Appendable> T render(T out) throws IOException {
+        for (Map.Entry<String, Long> e : snapshot().entrySet()) {
+            out.append(e.getKey()).append(' ').append(Long.toString(e.getValue())).append('\n');
+        }
+        return out;
+    }
+}
+
+// END
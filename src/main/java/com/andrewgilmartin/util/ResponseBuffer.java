@@ -0,0 +1,229 @@
+package com.andrewgilmartin.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A per-thread, reusable buffer into which a response is rendered before it is
+ * sent. Rendering first lets the server send an exact Content-Length and write
+ * the payload at once, and reusing the buffer keeps the steady state
+ * allocation per response near zero. The buffer's bytes are only valid until
+ * the thread next gets its buffer.
+ *
+ * {@code
+ *
+ * ResponseBuffer buffer = ResponseBuffer.get();
+ * response.render(buffer);
+ * out.write(buffer.array(), 0, buffer.size());
+ *
+ * }
+ */
+public class ResponseBuffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_SIZE = 4 * 1024;
+
+    /**
+     * A buffer that has grown beyond this is not kept for reuse so that one
+     * large response does not pin its memory to the thread forever.
+     */
+    private static final int MAX_RETAINED_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<ResponseBuffer> buffers = ThreadLocal.withInitial(ResponseBuffer::new);
+
+    private Utf8Writer writer;
+
+    private ResponseBuffer() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * Returns the current thread's buffer, emptied.
+     */
+    public static ResponseBuffer get() {
+        ResponseBuffer buffer = buffers.get();
+        if (buffer.buf.length > MAX_RETAINED_SIZE) {
+            buffer = new ResponseBuffer();
+            buffers.set(buffer);
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Returns a UTF-8 writer onto the buffer. The writer encodes directly into
+     * the buffer and so, unlike an OutputStreamWriter, does not allocate for
+     * each string written. The writer is reused and so must not be closed.
+     */
+    public Writer writer() {
+        if (writer == null) {
+            writer = new Utf8Writer();
+        }
+        return writer;
+    }
+
+    /**
+     * The buffer's backing array. Only the first size() bytes are valid.
+     */
+    public byte[] array() {
+        return buf;
+    }
+
+    /**
+     * Returns a ByteBuffer over the valid bytes without copying them.
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    @Override
+    public synchronized void reset() {
+        super.reset();
+        if (writer != null) {
+            writer.highSurrogate = 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        // the buffer is reused
+    }
+
+    private void ensure(int n) {
+        if (count + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+        }
+    }
+
+    /*
+     * The primitives used by the writer and the JsonEncoder. They are not
+     * synchronized.
+     */
+    void put(int b) {
+        ensure(1);
+        buf[count++] = (byte) b;
+    }
+
+    /**
+     * Put the characters, which must all be ASCII, as bytes.
+     */
+    void putAscii(CharSequence text, int begin, int end) {
+        ensure(end - begin);
+        byte[] b = buf;
+        int c = count;
+        for (int i = begin; i < end; i++) {
+            b[c++] = (byte) text.charAt(i);
+        }
+        count = c;
+    }
+
+    /**
+     * Put the UTF-8 encoding of the code point, which must not be a
+     * surrogate.
+     */
+    void putCodePoint(int p) {
+        if (p < 0x80) {
+            put(p);
+        } else if (p < 0x800) {
+            ensure(2);
+            buf[count++] = (byte) (0xC0 | (p >> 6));
+            buf[count++] = (byte) (0x80 | (p & 0x3F));
+        } else if (p < 0x10000) {
+            ensure(3);
+            buf[count++] = (byte) (0xE0 | (p >> 12));
+            buf[count++] = (byte) (0x80 | ((p >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (p & 0x3F));
+        } else {
+            ensure(4);
+            buf[count++] = (byte) (0xF0 | (p >> 18));
+            buf[count++] = (byte) (0x80 | ((p >> 12) & 0x3F));
+            buf[count++] = (byte) (0x80 | ((p >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (p & 0x3F));
+        }
+    }
+
+    private class Utf8Writer extends Writer {
+
+        private char highSurrogate = 0;
+
+        @Override
+        public void write(int c) {
+            encode((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                encode(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                encode(text.charAt(i));
+            }
+        }
+
+        @Override
+        public Writer append(CharSequence text) {
+            return append(text, 0, text == null ? 4 : text.length());
+        }
+
+        @Override
+        public Writer append(CharSequence text, int start, int end) {
+            if (text == null) {
+                text = "null";
+            }
+            for (int i = start; i < end; i++) {
+                encode(text.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Writer append(char c) {
+            encode(c);
+            return this;
+        }
+
+        @Override
+        public void flush() {
+            // nothing is buffered
+        }
+
+        @Override
+        public void close() {
+            // the buffer is reused
+        }
+
+        private void encode(char c) {
+            if (highSurrogate != 0) {
+                char h = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    putCodePoint(Character.toCodePoint(h, c));
+                    return;
+                }
+                unmappable();
+            }
+            if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                unmappable();
+            } else {
+                putCodePoint(c);
+            }
+        }
+
+        /**
+         * An unpaired surrogate is replaced by '?' as the JDK's encoder does.
+         */
+        private void unmappable() {
+            put('?');
+        }
+    }
+}
+
+// END
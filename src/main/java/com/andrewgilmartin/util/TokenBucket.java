@@ -0,0 +1,65 @@
+package com.andrewgilmartin.util;
+
+/**
+ * A token bucket rate limiter. The bucket holds up to burst tokens and is
+ * refilled at rate tokens per second.
+ */
+public class TokenBucket {
+
+    private final double rate; // tokens per nanosecond
+    private final double burst;
+    private double tokens;
+    private long refilled;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.rate = ratePerSecond / 1e9;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilled = System.nanoTime();
+    }
+
+    /**
+     * Take a token if one is available.
+     */
+    public synchronized boolean tryTake() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Is a token available? None is taken.
+     */
+    public synchronized boolean hasToken() {
+        refill();
+        return tokens >= 1;
+    }
+
+    /**
+     * Return a token taken by tryTake, eg when the request it was taken for
+     * is not performed after all.
+     */
+    public synchronized void giveBack() {
+        refill();
+        tokens = Math.min(burst, tokens + 1);
+    }
+
+    /**
+     * Is the bucket full, ie has it been unused long enough to be forgotten?
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= burst;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilled) * rate);
+        refilled = now;
+    }
+}
+
+// END
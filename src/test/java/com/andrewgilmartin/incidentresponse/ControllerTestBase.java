@@ -0,0 +1,223 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.slack.SlackUserBase;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The tests every Controller must pass. A controller's test extends this and
+ * makes a new, empty controller.
+ */
+public abstract class ControllerTestBase {
+
+    protected static final Status OPEN = StatusSet.COMMON_STATUS_SET.getDefaultIntitialStatus();
+    protected static final User ALICE = new User("U1", "alice");
+    protected static final User BOB = new User("U2", "bob");
+
+    protected abstract Controller newController() throws Exception;
+
+    private static Status finished() {
+        for (Status status : StatusSet.COMMON_STATUS_SET.getStatuses()) {
+            if (status.isFinished()) {
+                return status;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    @Test
+    public void testAddFind() throws Exception {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        assertEquals("T1", workspace.getId());
+        Task a = controller.addTask(workspace, "first", ALICE, Collections.singletonList(BOB), OPEN);
+        Task b = controller.addTask(workspace, "second", ALICE, Collections.emptyList(), OPEN);
+        assertEquals("1", a.getId());
+        assertEquals("2", b.getId());
+
+        Task found = controller.findTask(workspace, "1");
+        assertEquals("first", found.getDescription());
+        assertEquals(ALICE, found.getCreator());
+        assertEquals(Collections.singleton(BOB), found.getAssignments());
+        assertEquals(OPEN, found.getStatus());
+        assertNull(controller.findTask(workspace, "3"));
+        assertNull(controller.findTask(workspace, "0"));
+        assertNull(controller.findTask(workspace, "01"));
+        assertNull(controller.findTask(workspace, "abc"));
+    }
+
+    @Test
+    public void testWorkspaces() throws Exception {
+        Controller controller = newController();
+        Workspace a = controller.findWorkspace("T1");
+        Workspace b = controller.findWorkspace("T2");
+        controller.addTask(a, "a", ALICE, Collections.emptyList(), OPEN);
+        assertEquals("1", controller.addTask(b, "b", ALICE, Collections.emptyList(), OPEN).getId());
+        assertEquals("a", controller.findTask(controller.findWorkspace("T1"), "1").getDescription());
+        // a workspace equal to the one found
+        assertEquals("b", controller.findTask(new Workspace("T2", StatusSet.COMMON_STATUS_SET), "1").getDescription());
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        controller.addTask(workspace, "first", ALICE, Collections.emptyList(), OPEN);
+        Task updated = controller.updateTask(workspace, "1", "changed", BOB, Arrays.asList(ALICE, BOB), finished());
+        assertEquals("1", updated.getId());
+        assertEquals("changed", updated.getDescription());
+
+        Task found = controller.findTask(workspace, "1");
+        assertEquals("changed", found.getDescription());
+        assertEquals(BOB, found.getCreator());
+        assertEquals(new HashSet<>(Arrays.asList(ALICE, BOB)), found.getAssignments());
+        assertEquals(finished(), found.getStatus());
+
+        assertNull(controller.updateTask(workspace, "2", "missing", BOB, Collections.emptyList(), OPEN));
+        assertNull(controller.findTask(workspace, "2"));
+    }
+
+    @Test
+    public void testFindTasks() throws Exception {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        for (int i = 1; i <= 25; i++) {
+            controller.addTask(workspace, "task " + i, ALICE, i % 2 == 0 ? Collections.singletonList(BOB) : Collections.emptyList(), i % 5 == 0 ? finished() : OPEN);
+        }
+        assertEquals(25, controller.findTasks(workspace, new TaskFilter()).size());
+        assertEquals(Arrays.asList("11", "12", "13"), ids(controller.findTasks(workspace, new TaskFilter().after("10").limit(3))));
+        assertEquals(Arrays.asList("5", "10", "15", "20", "25"), ids(controller.findTasks(workspace, new TaskFilter().hasStatus(finished()))));
+        assertEquals(Arrays.asList("2", "4"), ids(controller.findTasks(workspace, new TaskFilter().hasAssigment(BOB).limit(2))));
+        assertEquals(Arrays.asList("12"), ids(controller.findTasks(workspace, new TaskFilter().hasDescription("2$").after("3").limit(1))));
+        assertEquals(Arrays.asList("5", "10"), ids(controller.findTasks(workspace, new TaskFilter(workspace.getStatusSet()).hasStatusMask(workspace.getStatusSet().getFinishedStatusesMask()).limit(2))));
+        assertTrue(controller.findTasks(workspace, new TaskFilter().hasStatus(new Status("UNKNOWN", Color.PINK, 0, false))).isEmpty());
+        assertTrue(controller.findTasks(workspace, new TaskFilter().after("25")).isEmpty());
+        assertTrue(controller.findTasks(controller.findWorkspace("T2"), new TaskFilter()).isEmpty());
+    }
+
+    @Test
+    public void testFindText() throws Exception {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        controller.addTask(workspace, "Disk full on db2", ALICE, Collections.emptyList(), OPEN);
+        controller.addTask(workspace, "restart db2 after the disk is replaced", ALICE, Collections.emptyList(), OPEN);
+        controller.addTask(workspace, "page the on-call DBA", ALICE, Collections.emptyList(), OPEN);
+        assertEquals(Arrays.asList("1", "2"), ids(controller.findTasks(workspace, new TaskFilter().hasWords("DISK db2"))));
+        assertEquals(Arrays.asList("1"), ids(controller.findTasks(workspace, new TaskFilter().hasWords("full disk"))));
+        assertEquals(Arrays.asList("2"), ids(controller.findTasks(workspace, new TaskFilter().hasWords("disk").after("1"))));
+        // words are whole
+        assertTrue(controller.findTasks(workspace, new TaskFilter().hasWords("dis")).isEmpty());
+        assertEquals(Arrays.asList("1", "2"), ids(controller.findTasks(workspace, new TaskFilter().hasDescription("db2"))));
+        assertEquals(Arrays.asList("2"), ids(controller.findTasks(workspace, new TaskFilter().hasDescription("^restart.*disk"))));
+        assertEquals(Arrays.asList("1", "3"), ids(controller.findTasks(workspace, new TaskFilter().hasDescription("full|on-call"))));
+        assertEquals(Arrays.asList("1", "2", "3"), ids(controller.findTasks(workspace, new TaskFilter().hasDescription("(?i)DB"))));
+
+        controller.updateTask(workspace, "1", "disk replaced", ALICE, Collections.emptyList(), OPEN);
+        assertEquals(Arrays.asList("2"), ids(controller.findTasks(workspace, new TaskFilter().hasWords("disk db2"))));
+        assertEquals(Arrays.asList("1"), ids(controller.findTasks(workspace, new TaskFilter().hasDescription("disk rep"))));
+        assertTrue(controller.findTasks(workspace, new TaskFilter().hasDescription("full")).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    Task task = controller.addTask(workspace, "task", ALICE, Collections.emptyList(), OPEN);
+                    ids.add(task.getId());
+                    controller.updateTask(workspace, task.getId(), "updated", ALICE, Collections.emptyList(), OPEN);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, ids.size());
+        List<Task> tasks = controller.findTasks(workspace, new TaskFilter());
+        assertEquals(4000, tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals(Integer.toString(i + 1), tasks.get(i).getId());
+            assertEquals("updated", tasks.get(i).getDescription());
+        }
+    }
+
+    @Test
+    public void testConditionalUpdate() throws Exception {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        Task task = controller.addTask(workspace, "first", ALICE, Collections.emptyList(), OPEN);
+        assertEquals(1, task.getVersion());
+
+        Task updated = controller.updateTask(workspace, "1", 1, "second", ALICE, Collections.emptyList(), OPEN);
+        assertEquals(2, updated.getVersion());
+        assertEquals(2, controller.findTask(workspace, "1").getVersion());
+
+        // a stale version does not update
+        assertNull(controller.updateTask(workspace, "1", 1, "stale", ALICE, Collections.emptyList(), OPEN));
+        assertEquals("second", controller.findTask(workspace, "1").getDescription());
+        assertNull(controller.updateTask(workspace, "2", 1, "missing", ALICE, Collections.emptyList(), OPEN));
+
+        // an unconditional update is still a new version
+        assertEquals(3, controller.updateTask(workspace, "1", "third", ALICE, Collections.emptyList(), OPEN).getVersion());
+    }
+
+    @Test
+    public void testConcurrentConditionalUpdates() throws Exception {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        controller.addTask(workspace, "0", ALICE, Collections.emptyList(), OPEN);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 250; i++) {
+                    // increment the description, retrying when another thread wins
+                    for (;;) {
+                        Task task = controller.findTask(workspace, "1");
+                        String next = Integer.toString(Integer.parseInt(task.getDescription()) + 1);
+                        if (controller.updateTask(workspace, "1", task.getVersion(), next, ALICE, Collections.emptyList(), OPEN) != null) {
+                            break;
+                        }
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Task task = controller.findTask(workspace, "1");
+        assertEquals("1000", task.getDescription());
+        assertEquals(1001, task.getVersion());
+    }
+
+    @Test
+    public void testFindCreateUser() throws Exception {
+        Controller controller = newController();
+        User user = controller.findcreateUser(new SlackUserBase("U9", "zed"));
+        assertEquals("U9", user.getId());
+        assertEquals("zed", user.getName());
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        List<String> ids = new ArrayList<>();
+        for (Task task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+}
+
+// END
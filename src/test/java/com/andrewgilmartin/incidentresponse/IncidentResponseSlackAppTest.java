@@ -0,0 +1,211 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.incidentresponse.memory.MemoryController;
+import com.andrewgilmartin.slack.SlackChannelBase;
+import com.andrewgilmartin.slack.SlackRequestBase;
+import com.andrewgilmartin.slack.SlackResponseBase;
+import com.andrewgilmartin.slack.SlackResponseContentBase;
+import com.andrewgilmartin.slack.SlackResponseContentBase.Attachment;
+import com.andrewgilmartin.slack.SlackUserBase;
+import com.andrewgilmartin.util.Metrics;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IncidentResponseSlackAppTest {
+
+    private static final User USER = new User("U1", "alice");
+
+    /**
+     * A controller where someone else updates the task just before each of
+     * the first conflicts conditional updates.
+     */
+    private static class ConflictingController extends MemoryController {
+
+        int conflicts;
+
+        ConflictingController(int conflicts) {
+            this.conflicts = conflicts;
+        }
+
+        @Override
+        public Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
+            if (conflicts > 0) {
+                conflicts -= 1;
+                Task task = findTask(workspace, taskId);
+                updateTask(workspace, taskId, task.getDescription(), task.getCreator(), Collections.singletonList(USER), task.getStatus());
+            }
+            return super.updateTask(workspace, taskId, version, description, creator, assignments, status);
+        }
+    }
+
+    /**
+     * A controller that can not store tasks once failing, eg as its log has
+     * failed.
+     */
+    private static class FailingController extends MemoryController {
+
+        boolean failing;
+
+        @Override
+        public Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status) {
+            if (failing) {
+                throw new IllegalStateException("unable to log task");
+            }
+            return super.addTask(workspace, description, creator, assignments, status);
+        }
+
+        @Override
+        public Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
+            if (failing) {
+                throw new IllegalStateException("unable to log task");
+            }
+            return super.updateTask(workspace, taskId, version, description, creator, assignments, status);
+        }
+    }
+
+    private static ListController listController(int count) {
+        return new ListController(count, i -> new Task(Integer.toString(i), "task number " + i, USER, Collections.emptyList(), StatusSet.COMMON_STATUSES.get(0)));
+    }
+
+    private static SlackResponseBase request(IncidentResponseSlackApp app, String text) {
+        SlackResponseBase response = new SlackResponseBase();
+        app.request(new SlackRequestBase(new SlackChannelBase("C1", "ops"), new SlackUserBase("U1", "alice"), "/ir", text), response);
+        return response;
+    }
+
+    private static List<Attachment> list(IncidentResponseSlackApp app, String text) {
+        SlackResponseBase response = new SlackResponseBase();
+        app.request(new SlackRequestBase(new SlackChannelBase("C1", "ops"), new SlackUserBase("U1", "alice"), "/ir", text), response);
+        assertFalse(response.isError());
+        return ((SlackResponseContentBase) response.getResponseContent()).getAttachments();
+    }
+
+    @Test
+    public void testPages() {
+        ListController controller = listController(25);
+        IncidentResponseSlackApp app = new IncidentResponseSlackApp(controller, "token");
+        app.setListBudget(10, Integer.MAX_VALUE);
+
+        // the heading, 10 tasks, and the hint
+        List<Attachment> page = list(app, "all");
+        assertEquals(12, page.size());
+        assertEquals(11, controller.found);
+        assertEquals("More tasks match. Use `/ir all more 10` to list them.", page.get(11).getText());
+
+        page = list(app, "all more 10");
+        assertEquals(12, page.size());
+        assertEquals("More tasks match. Use `/ir all more 20` to list them.", page.get(11).getText());
+
+        page = list(app, "all more 20");
+        assertEquals(6, page.size());
+        assertTrue(page.get(5).isFragment());
+    }
+
+    @Test
+    public void testByteBudget() {
+        ListController controller = listController(100);
+        IncidentResponseSlackApp app = new IncidentResponseSlackApp(controller, "token");
+        app.setListBudget(100, 1000);
+        List<Attachment> page = list(app, "");
+        // each task's attachment is about 70 bytes
+        assertTrue(page.size() > 12 && page.size() < 18);
+        assertFalse(page.get(page.size() - 1).isFragment());
+
+        // at least one task is listed
+        app.setListBudget(100, 1);
+        page = list(app, "more 50");
+        assertEquals(3, page.size());
+        assertEquals("More tasks match. Use `/ir more 51` to list them.", page.get(2).getText());
+    }
+
+    @Test
+    public void testFind() {
+        IncidentResponseSlackApp app = new IncidentResponseSlackApp(new MemoryController(), "token");
+        assertFalse(request(app, "Disk full on db2").isError());
+        assertFalse(request(app, "restart the web servers").isError());
+        assertFalse(request(app, "replace the disk !DONE").isError());
+
+        // finished tasks are found too
+        List<Attachment> page = list(app, "?disk");
+        assertEquals(3, page.size());
+        assertEquals("Matched tasks", page.get(0).getText());
+        page = list(app, "? DISK full");
+        assertEquals(2, page.size());
+        page = list(app, "?disk !DONE");
+        assertEquals(2, page.size());
+        assertEquals("No matching tasks", list(app, "?printer").get(0).getText());
+
+        // a task may start with any word
+        assertFalse(request(app, "Find the root cause of the outage").isError());
+        assertEquals(5, list(app, "all").size());
+    }
+
+    @Test
+    public void testMoreInDescription() {
+        MemoryController controller = new MemoryController();
+        IncidentResponseSlackApp app = new IncidentResponseSlackApp(controller, "token");
+        assertFalse(request(app, "add more 2 servers").isError());
+        assertFalse(request(app, "more 2 servers").isError());
+        Workspace workspace = controller.findWorkspace("C1");
+        assertEquals("add more 2 servers", controller.findTask(workspace, "1").getDescription());
+        assertEquals("more 2 servers", controller.findTask(workspace, "2").getDescription());
+        // the words are searched for rather than taken as the next page
+        assertEquals(3, list(app, "?more 2 servers").size());
+        // the heading and the task after task 1
+        assertEquals(2, list(app, "all more 1").size());
+        assertEquals(2, list(app, "?servers more 1").size());
+    }
+
+    @Test
+    public void testUpdateRetriesOnConflict() {
+        ConflictingController controller = new ConflictingController(2);
+        IncidentResponseSlackApp app = new IncidentResponseSlackApp(controller, "token");
+        Workspace workspace = controller.findWorkspace("C1");
+        controller.addTask(workspace, "first", USER, Collections.emptyList(), StatusSet.COMMON_STATUSES.get(0));
+        long retries = Metrics.snapshot().getOrDefault("incidentresponse.updates.retries", 0L);
+
+        SlackResponseBase response = request(app, "1 changed");
+        assertFalse(response.isError());
+        assertEquals(Long.valueOf(retries + 2), Metrics.snapshot().get("incidentresponse.updates.retries"));
+        // both the other update and this one are kept
+        Task task = controller.findTask(workspace, "1");
+        assertEquals("changed", task.getDescription());
+        assertEquals(Collections.singleton(USER), task.getAssignments());
+        assertEquals(4, task.getVersion());
+    }
+
+    @Test
+    public void testUpdateGivesUp() {
+        ConflictingController controller = new ConflictingController(Integer.MAX_VALUE);
+        IncidentResponseSlackApp app = new IncidentResponseSlackApp(controller, "token");
+        controller.addTask(controller.findWorkspace("C1"), "first", USER, Collections.emptyList(), StatusSet.COMMON_STATUSES.get(0));
+        assertTrue(request(app, "1 changed").isError());
+        assertEquals("first", controller.findTask(controller.findWorkspace("C1"), "1").getDescription());
+    }
+
+    @Test
+    public void testUnstored() {
+        FailingController controller = new FailingController();
+        IncidentResponseSlackApp app = new IncidentResponseSlackApp(controller, "token");
+        assertFalse(request(app, "first").isError());
+        controller.failing = true;
+        assertTrue(request(app, "second").isError());
+        long retries = Metrics.snapshot().getOrDefault("incidentresponse.updates.retries", 0L);
+        assertTrue(request(app, "1 changed").isError());
+        // a failure is not a conflict
+        assertEquals(Long.valueOf(retries), Metrics.snapshot().getOrDefault("incidentresponse.updates.retries", 0L));
+    }
+
+    @Test
+    public void testCompareIds() {
+        assertTrue(TaskFilter.compareIds("9", "10") < 0);
+        assertTrue(TaskFilter.compareIds("10", "9") > 0);
+        assertEquals(0, TaskFilter.compareIds("42", "42"));
+        assertTrue(TaskFilter.compareIds("100", "abc") < 0);
+    }
+}
+
+// END
@@ -0,0 +1,79 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.slack.SlackUser;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Just enough of a controller to list tasks, for the tests and benchmarks of
+ * listings. Every channel is the one workspace.
+ */
+class ListController implements Controller {
+
+    static final Workspace WORKSPACE = new Workspace("C1", StatusSet.COMMON_STATUS_SET);
+
+    final List<Task> tasks = new ArrayList<>();
+    /**
+     * The number of tasks the last listing found.
+     */
+    int found;
+
+    /**
+     * Create the controller with count tasks, made by task from their ids
+     * 1 through count.
+     */
+    ListController(int count, IntFunction<Task> task) {
+        for (int i = 1; i <= count; i++) {
+            tasks.add(task.apply(i));
+        }
+    }
+
+    @Override
+    public Workspace findWorkspace(String workspaceId) {
+        return WORKSPACE;
+    }
+
+    @Override
+    public Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Task updateTask(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Task findTask(Workspace workspace, String taskId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Task> findTasks(Workspace workspace, TaskFilter taskFilter) {
+        List<Task> found = new ArrayList<>();
+        for (Task task : tasks) {
+            if (found.size() == taskFilter.getLimit()) {
+                break;
+            }
+            if (taskFilter.test(task)) {
+                found.add(task);
+            }
+        }
+        this.found = found.size();
+        return found;
+    }
+
+    @Override
+    public User findcreateUser(SlackUser slackUser) {
+        return new User(slackUser.getId(), slackUser.getName());
+    }
+}
+
+// END
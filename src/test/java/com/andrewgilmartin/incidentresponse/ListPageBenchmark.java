@@ -0,0 +1,76 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.slack.SlackChannelBase;
+import com.andrewgilmartin.slack.SlackRequestBase;
+import com.andrewgilmartin.slack.SlackResponseBase;
+import com.andrewgilmartin.slack.SlackUserBase;
+import com.andrewgilmartin.util.Benchmarks;
+import com.andrewgilmartin.util.ResponseBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Lists all of a channel's tasks, and renders the response, with an unlimited
+ * budget, as was done before list pages, and with the default budget. The
+ * page's time, allocation and size should not grow with the number of
+ * matching tasks.
+ *
+ * {@code
+ *
+ * java ... ListPageBenchmark [tasks...]
+ *
+ * }
+ */
+public class ListPageBenchmark {
+
+    private static final User USER = new User("U1", "alice");
+
+    public static void main(String... args) throws Exception {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{100, 1_000, 10_000};
+        for (int size : sizes) {
+            ListController controller = new ListController(size, i -> new Task(
+                    Integer.toString(i),
+                    "Restart the <primary> & \"replica\" databases after failover #" + i,
+                    USER,
+                    Collections.singletonList(USER),
+                    StatusSet.COMMON_STATUSES.get(0)
+            ));
+            IncidentResponseSlackApp unlimited = new IncidentResponseSlackApp(controller, "token");
+            unlimited.setListBudget(Integer.MAX_VALUE - 1, Integer.MAX_VALUE);
+            IncidentResponseSlackApp paged = new IncidentResponseSlackApp(controller, "token");
+            int iterations = Math.max(50, 200_000 / size);
+            int[] unlimitedBytes = new int[1];
+            int[] pagedBytes = new int[1];
+            Runnable u = () -> unlimitedBytes[0] = list(unlimited);
+            Runnable p = () -> pagedBytes[0] = list(paged);
+            System.out.printf(
+                    "tasks=%-6d unlimited: %10.0fns %10.0fB/op %8dB  paged: %8.0fns %8.0fB/op %6dB%n",
+                    size,
+                    Benchmarks.time(iterations, iterations, u),
+                    Benchmarks.allocations(iterations, iterations, u),
+                    unlimitedBytes[0],
+                    Benchmarks.time(iterations, iterations, p),
+                    Benchmarks.allocations(iterations, iterations, p),
+                    pagedBytes[0]
+            );
+        }
+    }
+
+    private static int list(IncidentResponseSlackApp app) {
+        try {
+            SlackResponseBase response = new SlackResponseBase();
+            app.request(new SlackRequestBase(new SlackChannelBase("C1", "ops"), new SlackUserBase("U1", "alice"), "/ir", "all"), response);
+            ResponseBuffer buffer = ResponseBuffer.get();
+            response.render(buffer);
+            return buffer.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
+
+// END
@@ -0,0 +1,284 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.util.Benchmarks;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compares the allocations of parsing messages with the parser as it was
+ * before parsing in place, a copy of which is below, and with Message. Each
+ * parse also gets the text, users and statuses, as a command does. The
+ * parsers' results are checked to be the same first.
+ *
+ * {@code
+ *
+ * java ... MessageParseBenchmark
+ *
+ * }
+ */
+public class MessageParseBenchmark {
+
+    private static final Workspace WORKSPACE = new Workspace("C1", StatusSet.COMMON_STATUS_SET);
+
+    private static final String[] MESSAGES = {
+        "",
+        "all",
+        "finished !done",
+        "12 !green",
+        "Restart the primary database after the failover <U123|alice> !red",
+        "12 Restart the primary  and the replica <U123|alice> <U456|bob> !yellow",
+        "This ! is !done an error! <U1|a>"
+    };
+
+    public static void main(String... args) {
+        for (String message : MESSAGES) {
+            Message m = new Message(WORKSPACE, message);
+            LinkedListMessage o = new LinkedListMessage(WORKSPACE, message);
+            if (!Objects.equals(m.getText(), o.getText())
+                    || !Objects.equals(m.getId(), o.id)
+                    || !Objects.equals(m.getStatuses(), o.statuses)
+                    || !Objects.equals(m.getUsers(), o.users)
+                    || !Objects.equals(m.getError(), o.errorMessage)) {
+                throw new IllegalStateException("parsers differ: " + message);
+            }
+        }
+        int iterations = 200_000;
+        for (String message : MESSAGES) {
+            Runnable before = () -> {
+                LinkedListMessage o = new LinkedListMessage(WORKSPACE, message);
+                o.getText();
+            };
+            Runnable after = () -> {
+                Message m = new Message(WORKSPACE, message);
+                m.getText();
+                m.getUsers();
+                m.getStatuses();
+            };
+            System.out.printf(
+                    "%-75s before: %5.0fns %5.0fB/op  after: %5.0fns %5.0fB/op%n",
+                    '"' + message + '"',
+                    Benchmarks.time(iterations, iterations, before),
+                    Benchmarks.allocations(iterations, iterations, before),
+                    Benchmarks.time(iterations, iterations, after),
+                    Benchmarks.allocations(iterations, iterations, after)
+            );
+        }
+    }
+
+    /**
+     * The parser before parsing in place.
+     */
+    private static class LinkedListMessage {
+
+        private static final char EOL = 0;
+        private static final int NAN = Integer.MAX_VALUE;
+
+        private String errorMessage;
+        private String id = null;
+        private final List<User> users = new LinkedList<>();
+        private final List<Status> statuses = new LinkedList<>();
+        private final StringBuilder text = new StringBuilder();
+
+        String getText() {
+            return text.length() > 0 ? text.toString() : null;
+        }
+
+        LinkedListMessage(Workspace workspace, String message) {
+
+            char[] m = message.toCharArray();
+            int l = m.length;
+            int i = 0;
+            int state = 0;
+            int begin = NAN;
+            String t1 = null;
+
+            // looking for [ id ] ( text | "!" status | "<" user-id "|" user-name ">" )*
+
+            PARSE:
+            for (;;) {
+                char c = i < l ? m[i++] : EOL;
+                switch (state) {
+                    case 0: {
+                        // start of line
+                        switch (c) {
+                            case EOL:
+                                break PARSE;
+                            case ' ':
+                            case '\t':
+                            case '\r':
+                            case '\n':
+                                continue;
+                            case '<':
+                                begin = i;
+                                state = 4;
+                                continue;
+                            case '!':
+                                begin = i;
+                                state = 6;
+                                continue;
+                            case '0':
+                            case '1':
+                            case '2':
+                            case '3':
+                            case '4':
+                            case '5':
+                            case '6':
+                            case '7':
+                            case '8':
+                            case '9':
+                                begin = i - 1;
+                                state = 2;
+                                continue;
+                            default:
+                                begin = i - 1;
+                                state = 3;
+                                continue;
+                        }
+                    }
+
+                    case 1: {
+                        // inside line (and so no id)
+                        switch (c) {
+                            case EOL:
+                                break PARSE;
+                            case ' ':
+                            case '\t':
+                            case '\r':
+                            case '\n':
+                                continue;
+                            case '<':
+                                begin = i;
+                                state = 4;
+                                continue;
+                            case '!':
+                                begin = i;
+                                state = 6;
+                                continue;
+                            default:
+                                begin = i - 1;
+                                state = 3;
+                                continue;
+                        }
+                    }
+
+                    case 2: {
+                        // inside id                    
+                        if (!Character.isDigit(c)) {
+                            id = string(m, begin, i - 1);
+                            begin = NAN;
+                            i -= 1;
+                            state = 1;
+                        }
+                        continue;
+                    }
+
+                    case 3: {
+                        // inside text
+                        switch (c) {
+                            case EOL:
+                                append(text, m, begin, i);
+                                break PARSE;
+                            case '<':
+                            case '!':
+                            case ' ':
+                            case '\t':
+                            case '\r':
+                            case '\n':
+                                append(text, m, begin, i - 1);
+                                begin = NAN;
+                                state = 1;
+                                i -= 1;
+                                continue;
+                            default:
+                                continue;
+                        }
+                    }
+
+                    case 4: {
+                        // after user <
+                        switch (c) {
+                            case EOL:
+                                errorMessage = "missing the user's id";
+                                break PARSE;
+                            case '|':
+                                t1 = string(m, begin, i - 1);
+                                begin = i;
+                                state = 5;
+                                continue;
+                            default:
+                                continue;
+                        }
+                    }
+
+                    case 5: {
+                        // after user |
+                        switch (c) {
+                            case EOL:
+                                errorMessage = "missing the user's name";
+                                break PARSE;
+                            case '>':
+                                User user = new User(t1, string(m, begin, i - 1));
+                                users.add(user);
+                                begin = NAN;
+                                state = 1;
+                                continue;
+                            default:
+                                continue;
+                        }
+                    }
+
+                    case 6: {
+                        // after status !
+                        if (Character.isLetterOrDigit(c)) {
+                            // it has atleast one char
+                            state = 7;
+                        } else {
+                            text.append("!");
+                            state = 1;
+                        }
+                        continue;
+                    }
+
+                    case 7: {
+                        // in status
+                        if (c == EOL) {
+                            String name = string(m, begin, i);
+                            Status status = workspace.getStatusSet().findStatus(name);
+                            if (status == null) {
+                                errorMessage = "unknown status !" + name;
+                            } else {
+                                statuses.add(status);
+                            }
+                            break PARSE;
+                        } else if (!Character.isLetterOrDigit(c)) {
+                            String name = string(m, begin, i - 1);
+                            Status status = workspace.getStatusSet().findStatus(name);
+                            if (status == null) {
+                                errorMessage = "unknown status !" + name;
+                                break PARSE;
+                            }
+                            statuses.add(status);
+                            state = 1;
+                            i -= 1;
+                        }
+                        continue;
+                    }
+                }
+            }
+        }
+
+        private String string(char[] message, int begin, int end) {
+            return begin != NAN && begin < end ? new String(message, begin, end - begin) : null;
+        }
+
+        private void append(StringBuilder sb, char[] message, int begin, int end) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(message, begin, end - begin);
+        }
+    }
+}
+
+// END
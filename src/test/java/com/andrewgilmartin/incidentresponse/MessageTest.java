@@ -126,5 +126,24 @@ public class MessageTest {
 
         instance = new Message(WORKSPACE, "This 12 is not an error");
         assertFalse(instance.hasId());
+
+        instance = new Message(WORKSPACE, "12");
+        assertTrue(instance.hasId());
+        assertEquals("12", instance.getId());
+        assertFalse(instance.hasText());
+    }
+
+    @Test
+    public void testMixed() {
+        Message instance = new Message(WORKSPACE, "12  fix <id1|name1> the ! !" + DONE_STATUS + " db! ");
+        assertFalse(instance.hasError());
+        assertEquals("12", instance.getId());
+        assertEquals("fix the! db!", instance.getText());
+        assertEquals(1, instance.getUsers().size());
+        assertEquals("name1", instance.getUsers().get(0).getName());
+        assertEquals(DONE_STATUS, instance.firstStatus());
+
+        instance = new Message(WORKSPACE, "!" + DONE_STATUS.toString().toUpperCase());
+        assertEquals(DONE_STATUS, instance.firstStatus());
     }
 }
@@ -0,0 +1,80 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.util.Benchmarks;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Compares finding statuses by name with a scan of a ConcurrentSkipListSet,
+ * as was done before the StatusSet's index, and with the index. Each
+ * operation finds a thousand statuses, as listing a thousand SimpleDB items
+ * does. The names are new strings, as decoded values are, and are looked up
+ * both as stored and in lower case, as users type them.
+ *
+ * {@code
+ *
+ * java ... StatusLookupBenchmark
+ *
+ * }
+ */
+public class StatusLookupBenchmark {
+
+    public static void main(String... args) {
+        List<Status> many = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            many.add(new Status("STATUS" + i, Color.BLACK, i, false));
+        }
+        run("common", StatusSet.COMMON_STATUSES);
+        run("24", many);
+    }
+
+    private static void run(String name, List<Status> statuses) {
+        StatusSet statusSet = new StatusSet(statuses, statuses.get(0));
+        Set<Status> skipList = new ConcurrentSkipListSet<>(statuses);
+        for (boolean lowerCase : new boolean[]{false, true}) {
+            String[] names = new String[1000];
+            for (int i = 0; i < names.length; i++) {
+                String n = statuses.get(i % statuses.size()).getName();
+                names[i] = lowerCase ? n.toLowerCase() : new String(n);
+            }
+            int iterations = 20_000;
+            Runnable scan = () -> {
+                for (String n : names) {
+                    if (scan(skipList, n) == null) {
+                        throw new IllegalStateException(n);
+                    }
+                }
+            };
+            Runnable index = () -> {
+                for (String n : names) {
+                    if (statusSet.findStatus(n) == null) {
+                        throw new IllegalStateException(n);
+                    }
+                }
+            };
+            System.out.printf(
+                    "statuses=%-6s %-6s 1000 lookups  scan: %8.0fns %6.0fB/op  index: %8.0fns %6.0fB/op%n",
+                    name,
+                    lowerCase ? "lower" : "stored",
+                    Benchmarks.time(iterations, iterations, scan),
+                    Benchmarks.allocations(iterations, iterations, scan),
+                    Benchmarks.time(iterations, iterations, index),
+                    Benchmarks.allocations(iterations, iterations, index)
+            );
+        }
+    }
+
+    private static Status scan(Set<Status> statuses, String name) {
+        for (Status status : statuses) {
+            if (status.getName().equalsIgnoreCase(name)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
+
+// END
@@ -0,0 +1,108 @@
+package com.andrewgilmartin.incidentresponse;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StatusSetTest {
+
+    private static final StatusSet STATUS_SET = StatusSet.COMMON_STATUS_SET;
+
+    @Test
+    public void testFindStatus() {
+        for (Status status : StatusSet.COMMON_STATUSES) {
+            assertSame(status, STATUS_SET.findStatus(status.getName()));
+            assertSame(status, STATUS_SET.findStatus(status.getName().toLowerCase()));
+        }
+        assertSame(StatusSet.COMMON_STATUSES.get(1), STATUS_SET.findStatus("rEd"));
+        assertNull(STATUS_SET.findStatus("redder"));
+        assertNull(STATUS_SET.findStatus(""));
+        assertNull(STATUS_SET.findStatus(null));
+
+        String text = "fix it !green now";
+        assertSame(StatusSet.COMMON_STATUSES.get(3), STATUS_SET.findStatus(text, 8, 13));
+        assertNull(STATUS_SET.findStatus(text, 8, 12));
+    }
+
+    @Test
+    public void testManyStatuses() {
+        List<Status> statuses = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            statuses.add(new Status("S" + i, Color.BLACK, i, i % 2 == 0));
+        }
+        StatusSet set = new StatusSet(statuses, statuses.get(0));
+        for (Status status : statuses) {
+            assertSame(status, set.findStatus("s" + status.getOrder()));
+        }
+        assertNull(set.findStatus("S64"));
+        assertEquals(64, set.getStatuses().size());
+        assertEquals(32, set.getFinishedStatuses().size());
+        assertTrue(set.getFinishedStatuses().contains(statuses.get(2)));
+        assertFalse(set.getFinishedStatuses().contains(statuses.get(1)));
+        assertEquals(-1L, set.getStatusesMask());
+        assertEquals(0x5555555555555555L, set.getFinishedStatusesMask());
+
+        statuses.add(new Status("S64", Color.BLACK, 64, false));
+        try {
+            new StatusSet(statuses, statuses.get(0));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOrdinals() {
+        for (Status status : STATUS_SET.getStatuses()) {
+            assertSame(status, STATUS_SET.getStatuses().toArray()[STATUS_SET.ordinalOf(status)]);
+            assertEquals(status.isFinished(), (STATUS_SET.getFinishedStatusesMask() & STATUS_SET.maskOf(status)) != 0);
+            assertEquals(!status.isFinished(), (STATUS_SET.getUnfinishedStatusesMask() & STATUS_SET.maskOf(status)) != 0);
+        }
+        assertEquals(0x3FL, STATUS_SET.getStatusesMask());
+
+        // a status shared by sets has each set's ordinal
+        Status done = STATUS_SET.findStatus("DONE");
+        StatusSet other = new StatusSet(Arrays.asList(done), done);
+        assertSame(done, other.findStatus("DONE"));
+        assertEquals(0, other.ordinalOf(done));
+        assertEquals(1L, other.maskOf(done));
+        assertEquals(1, STATUS_SET.ordinalOf(done));
+
+        // a status not in the set has no ordinal
+        assertEquals(-1, other.ordinalOf(STATUS_SET.findStatus("RED")));
+        assertEquals(0L, other.maskOf(STATUS_SET.findStatus("RED")));
+    }
+
+    @Test
+    public void testTaskFilter() {
+        User user = new User("U1", "alice");
+        Task red = new Task("1", "a", user, Arrays.asList(user), STATUS_SET.findStatus("RED"));
+        Task done = new Task("2", "b", user, Arrays.asList(user), STATUS_SET.findStatus("DONE"));
+        TaskFilter unfinished = new TaskFilter().hasStatus(STATUS_SET.getUnfinishedStatuses());
+        assertTrue(unfinished.test(red));
+        assertFalse(unfinished.test(done));
+        TaskFilter any = new TaskFilter();
+        assertTrue(any.test(red) && any.test(done));
+        TaskFilter named = new TaskFilter().hasStatus(STATUS_SET.findStatus("done"));
+        assertFalse(named.test(red));
+        assertTrue(named.test(done));
+        // a status no task has matches no task, rather than any
+        TaskFilter unknown = new TaskFilter().hasStatus(new Status("CLOSED", Color.BLACK, 9, true));
+        assertFalse(unknown.test(red) || unknown.test(done));
+    }
+
+    @Test
+    public void testOrder() {
+        // by order then name, as before
+        List<String> names = new ArrayList<>();
+        for (Status status : STATUS_SET.getStatuses()) {
+            names.add(status.getName());
+        }
+        assertEquals(Arrays.asList("CANCELED", "DONE", "ASSIGNED", "GREEN", "YELLOW", "RED"), names);
+    }
+}
+
+// END
@@ -0,0 +1,96 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.util.Benchmarks;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compares TaskFilter.test of the default unfinished filter, as ListCommand
+ * builds it from the StatusSet's mask, with testing the statuses against a
+ * HashSet, as TaskFilter did before status masks. Each operation builds the
+ * filter and tests 100,000 tasks.
+ *
+ * {@code
+ *
+ * java ... TaskFilterBenchmark
+ *
+ * }
+ */
+public class TaskFilterBenchmark {
+
+    public static void main(String... args) {
+        StatusSet statusSet = StatusSet.COMMON_STATUS_SET;
+        List<Status> statuses = new ArrayList<>(statusSet.getStatuses());
+        User user = new User("U1", "alice");
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            tasks.add(new Task(Integer.toString(i + 1), "task " + i, user, Collections.singletonList(user), statuses.get(i % statuses.size())));
+        }
+        int iterations = 200;
+        int[] matched = new int[2];
+        Runnable hashSet = () -> {
+            Predicate<Task> unfinished = new HashSetFilter(statusSet.getUnfinishedStatuses());
+            int n = 0;
+            for (Task task : tasks) {
+                if (unfinished.test(task)) {
+                    n += 1;
+                }
+            }
+            matched[0] = n;
+        };
+        Runnable filter = () -> {
+            Predicate<Task> unfinished = new TaskFilter(statusSet).hasStatusMask(statusSet.getUnfinishedStatusesMask());
+            int n = 0;
+            for (Task task : tasks) {
+                if (unfinished.test(task)) {
+                    n += 1;
+                }
+            }
+            matched[1] = n;
+        };
+        System.out.printf(
+                "100,000 tasks  HashSet: %9.0fns %6.0fB/op  TaskFilter: %9.0fns %6.0fB/op%n",
+                Benchmarks.time(iterations, iterations, hashSet),
+                Benchmarks.allocations(iterations, iterations, hashSet),
+                Benchmarks.time(iterations, iterations, filter),
+                Benchmarks.allocations(iterations, iterations, filter)
+        );
+        if (matched[0] != matched[1]) {
+            throw new IllegalStateException("filters differ");
+        }
+    }
+
+    /**
+     * TaskFilter's checks as they were made before status masks.
+     */
+    private static class HashSetFilter implements Predicate<Task> {
+
+        private Pattern includedDescription;
+        private final List<String> includedWords = new ArrayList<>();
+        private final Set<User> includedUsers = new HashSet<>();
+        private String[] includedUserIds = new String[0];
+        private final Set<Status> includedStatuses = new HashSet<>();
+        private String afterId;
+
+        HashSetFilter(Collection<Status> statuses) {
+            includedStatuses.addAll(statuses);
+        }
+
+        @Override
+        public boolean test(Task t) {
+            return (afterId == null || TaskFilter.compareIds(t.getId(), afterId) > 0)
+                    && (includedDescription == null || includedDescription.matcher(t.getDescription()).find())
+                    && (includedWords.isEmpty() || TaskFilter.words(t.getDescription()).containsAll(includedWords))
+                    && (includedUsers.isEmpty() || t.isAssignedToAny(includedUserIds))
+                    && (includedStatuses.isEmpty() || includedStatuses.contains(t.getStatus()));
+        }
+    }
+}
+
+// END
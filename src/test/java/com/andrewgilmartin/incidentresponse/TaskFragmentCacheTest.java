@@ -0,0 +1,93 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.slack.AttachmentFragment;
+import com.andrewgilmartin.slack.SlackResponseBase;
+import com.andrewgilmartin.slack.SlackResponseContent;
+import com.andrewgilmartin.util.ResponseBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TaskFragmentCacheTest {
+
+    private static final Workspace WORKSPACE = new Workspace("id-1234", StatusSet.COMMON_STATUS_SET);
+    private static final Status STATUS = StatusSet.COMMON_STATUSES.get(0);
+    private static final Status OTHER_STATUS = StatusSet.COMMON_STATUSES.get(1);
+    private static final User CREATOR = new User("U1", "alice");
+    private static final User ASSIGNEE = new User("U2", "bob");
+
+    private final AtomicInteger formatted = new AtomicInteger();
+
+    private final BiConsumer<SlackResponseContent, Task> formatTask = (content, task) -> {
+        formatted.incrementAndGet();
+        content
+                .attachment()
+                .color(task.getStatus().getColor())
+                .text(task.getId())
+                .space()
+                .text("!").text(task.getStatus())
+                .space()
+                .text(task.getDescription());
+        for (User user : task.getAssignments()) {
+            content.space().user(user);
+        }
+    };
+
+    private static Task task(String description, Status status, long version, User... assignments) {
+        return new Task("7", description, CREATOR, Arrays.asList(assignments), status, version);
+    }
+
+    private static byte[] render(SlackResponseBase response) throws Exception {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        response.render(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.size());
+    }
+
+    @Test
+    public void testFragmentIsByteIdentical() throws Exception {
+        Task[] tasks = {
+            task("restart <db> & \"cache\"", STATUS, 1, ASSIGNEE),
+            task("caf\u00e9 \ud83d\udd25", OTHER_STATUS, 1)
+        };
+        SlackResponseBase expected = new SlackResponseBase();
+        expected.getResponseContent().text("Matched tasks").acceptAll(formatTask, Arrays.asList(tasks));
+        SlackResponseBase actual = new SlackResponseBase();
+        actual.getResponseContent().text("Matched tasks");
+        for (Task task : tasks) {
+            actual.getResponseContent().attachment(AttachmentFragment.encode(formatTask, task));
+        }
+        assertArrayEquals(render(expected), render(actual));
+    }
+
+    @Test
+    public void testHitsUnchangedVersions() {
+        TaskFragmentCache cache = new TaskFragmentCache(formatTask, 100, 60_000);
+        AttachmentFragment a = cache.get(WORKSPACE, task("a", STATUS, 1, ASSIGNEE));
+        // a controller can return a new instance of the same version
+        AttachmentFragment b = cache.get(WORKSPACE, task("a", STATUS, 1, ASSIGNEE));
+        assertSame(a, b);
+        assertEquals(1, formatted.get());
+
+        // an update made elsewhere is seen by its version
+        assertNotSame(a, cache.get(WORKSPACE, task("b", STATUS, 2, ASSIGNEE)));
+        assertNotSame(a, cache.get(new Workspace("id-5678", StatusSet.COMMON_STATUS_SET), task("a", STATUS, 1, ASSIGNEE)));
+        assertEquals(3, formatted.get());
+    }
+
+    @Test
+    public void testUnversionedTasks() {
+        TaskFragmentCache cache = new TaskFragmentCache(formatTask, 100, 60_000);
+        Task task = new Task("7", "a", CREATOR, Collections.emptyList(), STATUS);
+        AttachmentFragment a = cache.get(WORKSPACE, task);
+        assertSame(a, cache.get(WORKSPACE, task));
+        assertEquals(1, formatted.get());
+        // an equal instance may be a different version
+        assertNotSame(a, cache.get(WORKSPACE, new Task("7", "b", CREATOR, Collections.emptyList(), OTHER_STATUS)));
+        assertEquals(2, formatted.get());
+    }
+}
+
+// END
@@ -0,0 +1,118 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.util.Benchmarks;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Measures the heap taken by each task, and the time to filter them by
+ * assignee and status, for Task and for a task kept as Task was before it
+ * was made compact: with synchronized getters and its assignments copied into
+ * a HashSet. The tasks share their descriptions and users, so the bytes are
+ * those of the task itself. A third of the tasks have no assignees and the
+ * rest one to three.
+ *
+ * {@code
+ *
+ * java ... TaskHeapBenchmark [tasks]
+ *
+ * }
+ */
+public class TaskHeapBenchmark {
+
+    private static final List<User> USERS = Arrays.asList(new User("U1", "alice"), new User("U2", "bob"), new User("U3", "carol"), new User("U4", "dave"));
+    private static final String DESCRIPTION = "Restart the primary database after failover";
+
+    private static int sink;
+
+    public static void main(String... args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Status> statuses = StatusSet.COMMON_STATUSES;
+
+        long before = Benchmarks.usedHeap();
+        OldTask[] oldTasks = new OldTask[count];
+        for (int i = 0; i < count; i++) {
+            oldTasks[i] = new OldTask(Integer.toString(i + 1), DESCRIPTION, USERS.get(0), assignments(i), statuses.get(i % statuses.size()));
+        }
+        long oldBytes = Benchmarks.usedHeap() - before;
+
+        before = Benchmarks.usedHeap();
+        Task[] tasks = new Task[count];
+        for (int i = 0; i < count; i++) {
+            tasks[i] = new Task(Integer.toString(i + 1), DESCRIPTION, USERS.get(0), assignments(i), statuses.get(i % statuses.size()));
+        }
+        long newBytes = Benchmarks.usedHeap() - before;
+
+        // the id strings are the same for both
+        System.out.printf("%,d tasks  old: %.0fB/task  compact: %.0fB/task%n", count, (double) oldBytes / count, (double) newBytes / count);
+
+        Set<User> included = Collections.singleton(USERS.get(2));
+        long unfinished = StatusSet.COMMON_STATUS_SET.getUnfinishedStatusesMask();
+        TaskFilter filter = new TaskFilter().hasAssigment(included).hasStatus(StatusSet.COMMON_STATUS_SET.getUnfinishedStatuses());
+        Runnable oldFilter = () -> {
+            for (OldTask task : oldTasks) {
+                if (!Collections.disjoint(task.getAssignments(), included) && (unfinished & StatusSet.COMMON_STATUS_SET.maskOf(task.getStatus())) != 0) {
+                    sink += 1;
+                }
+            }
+        };
+        Runnable newFilter = () -> {
+            for (Task task : tasks) {
+                if (filter.test(task)) {
+                    sink += 1;
+                }
+            }
+        };
+        System.out.printf(
+                "%,d tasks  filter old: %9.0fns %5.0fB/op  compact: %9.0fns %5.0fB/op%n",
+                count,
+                Benchmarks.time(50, 100, oldFilter),
+                Benchmarks.allocations(50, 100, oldFilter),
+                Benchmarks.time(50, 100, newFilter),
+                Benchmarks.allocations(50, 100, newFilter)
+        );
+    }
+
+    private static List<User> assignments(int i) {
+        int n = i % 3 == 0 ? 0 : 1 + i % 3 + (i % 7 == 0 ? 1 : 0);
+        return USERS.subList(1, 1 + Math.min(n, 3));
+    }
+
+    /**
+     * Task as it was.
+     */
+    private static class OldTask {
+
+        private final String id;
+        private final User creator;
+        private final String description;
+        private final Status status;
+        private final Set<User> assignments;
+
+        OldTask(String id, String description, User creator, Collection<User> assignments, Status status) {
+            this.id = id;
+            this.description = description;
+            this.creator = creator;
+            this.status = status;
+            this.assignments = Collections.unmodifiableSet(new HashSet<>(assignments));
+        }
+
+        synchronized String getId() {
+            return id;
+        }
+
+        synchronized Status getStatus() {
+            return status;
+        }
+
+        synchronized Set<User> getAssignments() {
+            return assignments;
+        }
+    }
+}
+
+// END
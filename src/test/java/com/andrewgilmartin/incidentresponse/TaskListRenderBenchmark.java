@@ -0,0 +1,104 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.slack.SlackResponseBase;
+import com.andrewgilmartin.slack.SlackResponseContent;
+import com.andrewgilmartin.util.Benchmarks;
+import com.andrewgilmartin.util.ResponseBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Compares listing tasks by formatting each task, as was done before the
+ * TaskFragmentCache, and by splicing cached fragments. Both build the response
+ * and render it into a ResponseBuffer. The cache is warm, as it is when a
+ * channel's tasks are listed repeatedly.
+ *
+ * {@code
+ *
+ * java ... TaskListRenderBenchmark [tasks...]
+ *
+ * }
+ */
+public class TaskListRenderBenchmark {
+
+    private static final Workspace WORKSPACE = new Workspace("T1", StatusSet.COMMON_STATUS_SET);
+
+    private static final BiConsumer<SlackResponseContent, Task> FORMAT_TASK = (content, task) -> {
+        content
+                .attachment()
+                .color(task.getStatus().getColor())
+                .text(task.getId())
+                .space()
+                .text("!").text(task.getStatus())
+                .space()
+                .text(task.getDescription());
+        for (User user : task.getAssignments()) {
+            content.space().user(user);
+        }
+    };
+
+    public static void main(String... args) throws Exception {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10, 100, 500};
+        for (int size : sizes) {
+            List<Task> tasks = tasks(size);
+            TaskFragmentCache cache = new TaskFragmentCache(FORMAT_TASK, TaskFragmentCache.DEFAULT_CAPACITY, TaskFragmentCache.DEFAULT_TTL);
+            int iterations = Math.max(1000, 200_000 / size);
+            Runnable format = () -> {
+                SlackResponseBase response = new SlackResponseBase();
+                response.getResponseContent().text("Matched tasks");
+                for (Task task : tasks) {
+                    response.getResponseContent().accept(FORMAT_TASK, task);
+                }
+                render(response);
+            };
+            Runnable splice = () -> {
+                SlackResponseBase response = new SlackResponseBase();
+                response.getResponseContent().text("Matched tasks");
+                for (Task task : tasks) {
+                    response.getResponseContent().attachment(cache.get(WORKSPACE, task));
+                }
+                render(response);
+            };
+            System.out.printf(
+                    "tasks=%-4d format: %9.0fns %8.0fB/op  fragments: %9.0fns %8.0fB/op%n",
+                    size,
+                    Benchmarks.time(iterations, iterations, format),
+                    Benchmarks.allocations(iterations, iterations, format),
+                    Benchmarks.time(iterations, iterations, splice),
+                    Benchmarks.allocations(iterations, iterations, splice)
+            );
+        }
+    }
+
+    private static void render(SlackResponseBase response) {
+        try {
+            response.render(ResponseBuffer.get());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Task> tasks(int size) {
+        List<User> users = Arrays.asList(new User("U1", "alice"), new User("U2", "bob"));
+        List<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(new Task(
+                    Integer.toString(i + 1),
+                    "Restart the <primary> & \"replica\" databases after failover #" + i,
+                    users.get(0),
+                    users.subList(0, i % 3 == 0 ? 2 : 1),
+                    StatusSet.COMMON_STATUSES.get(i % StatusSet.COMMON_STATUSES.size()),
+                    1
+            ));
+        }
+        return tasks;
+    }
+}
+
+// END
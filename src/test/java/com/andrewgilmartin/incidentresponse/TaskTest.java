@@ -0,0 +1,51 @@
+package com.andrewgilmartin.incidentresponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TaskTest {
+
+    private static final Status STATUS = StatusSet.COMMON_STATUSES.get(0);
+    private static final User ALICE = new User("U1", "alice");
+    private static final User BOB = new User("U2", "bob");
+    private static final User CAROL = new User("U3", "carol");
+
+    @Test
+    public void testAssignments() {
+        Task task = new Task("1", "a", ALICE, Arrays.asList(CAROL, ALICE, new User("U3", "caroline")), STATUS);
+        Set<User> assignments = task.getAssignments();
+        assertEquals(2, assignments.size());
+        // ordered by id
+        assertEquals(Arrays.asList(ALICE, CAROL), Arrays.asList(assignments.toArray()));
+        assertEquals(new HashSet<>(Arrays.asList(ALICE, CAROL)), assignments);
+        assertTrue(assignments.contains(CAROL));
+        assertFalse(assignments.contains(BOB));
+        try {
+            assignments.add(BOB);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertTrue(new Task("2", "b", ALICE, Collections.emptyList(), STATUS).getAssignments().isEmpty());
+    }
+
+    @Test
+    public void testIsAssignedToAny() {
+        Task task = new Task("1", "a", ALICE, Arrays.asList(BOB, CAROL), STATUS);
+        assertTrue(task.isAssignedToAny(Task.sortedIds(Arrays.asList(CAROL))));
+        assertTrue(task.isAssignedToAny(Task.sortedIds(Arrays.asList(new User("U9", "zed"), ALICE, BOB))));
+        assertFalse(task.isAssignedToAny(Task.sortedIds(Arrays.asList(ALICE))));
+        assertFalse(task.isAssignedToAny(new String[0]));
+        assertFalse(new Task("2", "b", ALICE, Collections.emptyList(), STATUS).isAssignedToAny(Task.sortedIds(Arrays.asList(ALICE))));
+
+        TaskFilter filter = new TaskFilter().hasAssigment(new User("U3", "c"));
+        assertTrue(filter.test(task));
+        assertFalse(new TaskFilter().hasAssigment(ALICE).test(task));
+    }
+}
+
+// END
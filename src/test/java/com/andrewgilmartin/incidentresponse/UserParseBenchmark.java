@@ -0,0 +1,57 @@
+package com.andrewgilmartin.incidentresponse;
+
+import com.andrewgilmartin.util.Benchmarks;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares parsing users with the regex and a new User for each, as was done
+ * before the UserPool, and with the pool. Each operation parses a thousand
+ * creator and assignment attributes, as constructing a long list of SimpleDB
+ * items does, drawn from a handful of responders. The attributes are new
+ * strings, as decoded values are.
+ *
+ * {@code
+ *
+ * java ... UserParseBenchmark
+ *
+ * }
+ */
+public class UserParseBenchmark {
+
+    private static final Pattern SLACK_USER_PATTERN = Pattern.compile("<(.*?)\\|(.*?)>");
+
+    private static int sink;
+
+    public static void main(String... args) {
+        String[] responders = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi"};
+        String[] attributes = new String[1000];
+        for (int i = 0; i < attributes.length; i++) {
+            int r = i % responders.length;
+            attributes[i] = new String("<U0" + r + "ABCDEF|" + responders[r] + ">");
+        }
+        UserPool pool = new UserPool(UserPool.DEFAULT_CAPACITY, UserPool.DEFAULT_TTL);
+        Runnable regex = () -> {
+            for (String attribute : attributes) {
+                Matcher m = SLACK_USER_PATTERN.matcher(attribute);
+                if (m.matches()) {
+                    sink += new User(m.group(1), m.group(2)).hashCode();
+                }
+            }
+        };
+        Runnable pooled = () -> {
+            for (String attribute : attributes) {
+                sink += pool.parse(attribute).hashCode();
+            }
+        };
+        System.out.printf(
+                "1,000 users  regex: %8.0fns %7.0fB/op  pool: %8.0fns %7.0fB/op%n",
+                Benchmarks.time(2000, 2000, regex),
+                Benchmarks.allocations(2000, 2000, regex),
+                Benchmarks.time(2000, 2000, pooled),
+                Benchmarks.allocations(2000, 2000, pooled)
+        );
+    }
+}
+
+// END
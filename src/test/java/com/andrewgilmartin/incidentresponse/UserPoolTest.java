@@ -0,0 +1,47 @@
+package com.andrewgilmartin.incidentresponse;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class UserPoolTest {
+
+    @Test
+    public void testInterning() {
+        UserPool pool = new UserPool(100, 60_000);
+        User alice = pool.parse("<U1|alice>");
+        assertEquals("U1", alice.getId());
+        assertEquals("alice", alice.getName());
+        assertSame(alice, pool.parse("<U1|alice>"));
+        assertSame(alice, pool.intern("U1", "alice"));
+        assertSame(alice, pool.intern(new User("U1", "alice")));
+        assertNotSame(alice, pool.parse("<U2|bob>"));
+        assertEquals(2, pool.size());
+        assertNull(pool.parse("U1|alice"));
+    }
+
+    @Test
+    public void testRename() {
+        UserPool pool = new UserPool(100, 60_000);
+        User alice = pool.parse("<U1|alice>");
+        User alicia = pool.parse("<U1|alicia>");
+        assertNotSame(alice, alicia);
+        assertEquals("alicia", alicia.getName());
+        assertSame(alicia, pool.intern("U1", "alicia"));
+        // names are compared exactly, including a missing name
+        User unnamed = pool.intern("U1", null);
+        assertNull(unnamed.getName());
+        assertSame(unnamed, pool.intern("U1", null));
+        assertEquals("", pool.parse("<U1|>").getName());
+    }
+
+    @Test
+    public void testMessageUsersArePooled() {
+        Workspace workspace = new Workspace("T1", StatusSet.COMMON_STATUS_SET);
+        User a = new Message(workspace, "12 <U7|carol> <U8|dave>").getUsers().get(0);
+        User b = new Message(workspace, "fix it <U7|carol>").getUsers().get(0);
+        assertSame(a, b);
+        assertEquals("carol", b.getName());
+    }
+}
+
+// END
@@ -0,0 +1,147 @@
+package com.andrewgilmartin.incidentresponse.mapped;
+
+import com.andrewgilmartin.incidentresponse.Controller;
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import com.andrewgilmartin.incidentresponse.memory.MemoryController;
+import com.andrewgilmartin.util.Benchmarks;
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares the garbage collection of a MemoryController and a
+ * MappedController holding many tasks, by default 5 million in 100
+ * workspaces. After adding the tasks it reports the heap used and the time of
+ * a full collection, and then the collections during a few seconds of 2
+ * threads finding, listing and updating random tasks, and the latency of
+ * those calls. Run each controller in its own JVM with the same heap, eg
+ *
+ * {@code
+ *
+ * java -Xmx4g ... GcPauseBenchmark memory|mapped [tasks [seconds [directory]]]
+ *
+ * }
+ */
+public class GcPauseBenchmark {
+
+    private static final int WORKSPACES = 100;
+    private static final List<User> USERS = Arrays.asList(new User("U1", "alice"), new User("U2", "bob"), new User("U3", "carol"));
+
+    private static volatile int sink;
+
+    public static void main(String... args) throws Exception {
+        String type = args.length > 0 ? args[0] : "mapped";
+        int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        File parent = new File(args.length > 3 ? args[3] : System.getProperty("java.io.tmpdir"));
+        File directory = null;
+        Controller controller;
+        if ("memory".equals(type)) {
+            controller = new MemoryController();
+        } else {
+            directory = Files.createTempDirectory(parent.toPath(), "mapped").toFile();
+            controller = new MappedController(directory);
+        }
+        try {
+            List<Status> statuses = new ArrayList<>(StatusSet.COMMON_STATUS_SET.getStatuses());
+            Workspace[] workspaces = new Workspace[WORKSPACES];
+            for (int w = 0; w < workspaces.length; w++) {
+                workspaces[w] = controller.findWorkspace("T" + w);
+            }
+            long started = System.nanoTime();
+            for (int i = 0; i < tasks; i++) {
+                controller.addTask(
+                        workspaces[i % WORKSPACES],
+                        "investigate the failing health check number " + i,
+                        USERS.get(i % USERS.size()),
+                        Collections.singletonList(USERS.get((i / 7) % USERS.size())),
+                        statuses.get(i % statuses.size())
+                );
+            }
+            System.out.printf("%s: %,d tasks added in %,d ms%n", type, tasks, (System.nanoTime() - started) / 1_000_000);
+
+            started = System.nanoTime();
+            System.gc();
+            System.out.printf("full collection %,d ms; heap used %,d MB%n", (System.nanoTime() - started) / 1_000_000, Benchmarks.usedHeap() >> 20);
+
+            long[] before = collections();
+            int perWorkspace = tasks / WORKSPACES;
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            long[][] latencies = new long[2][10_000_000];
+            int[] counts = new int[latencies.length];
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < latencies.length; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    TaskFilter filter = new TaskFilter().limit(100);
+                    while (System.nanoTime() < deadline && counts[thread] < latencies[thread].length) {
+                        Workspace workspace = workspaces[random.nextInt(WORKSPACES)];
+                        String id = Integer.toString(1 + random.nextInt(perWorkspace));
+                        long began = System.nanoTime();
+                        int operation = random.nextInt(10);
+                        if (operation == 0) {
+                            controller.updateTask(workspace, id, "updated", USERS.get(0), USERS, statuses.get(0));
+                        } else if (operation == 1) {
+                            sink += controller.findTasks(workspace, filter.after(id)).size();
+                        } else {
+                            sink += controller.findTask(workspace, id).getDescription().length();
+                        }
+                        latencies[thread][counts[thread]++] = System.nanoTime() - began;
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long[] after = collections();
+            long[] all = new long[counts[0] + counts[1]];
+            System.arraycopy(latencies[0], 0, all, 0, counts[0]);
+            System.arraycopy(latencies[1], 0, all, counts[0], counts[1]);
+            System.out.printf(
+                    "%d s of calls: %,d calls; %d collections taking %,d ms; latency p50 %,d p99 %,d p999 %,d max %,d us%n",
+                    seconds,
+                    all.length,
+                    after[0] - before[0],
+                    after[1] - before[1],
+                    Benchmarks.percentile(all, all.length, 0.50) / 1000,
+                    Benchmarks.percentile(all, all.length, 0.99) / 1000,
+                    Benchmarks.percentile(all, all.length, 0.999) / 1000,
+                    all.length == 0 ? 0 : all[all.length - 1] / 1000
+            );
+        } finally {
+            if (directory != null) {
+                ((MappedController) controller).close();
+                for (File file : directory.listFiles()) {
+                    file.delete();
+                }
+                directory.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of collections and their total milliseconds so far.
+     */
+    private static long[] collections() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, bean.getCollectionCount());
+            totals[1] += Math.max(0, bean.getCollectionTime());
+        }
+        return totals;
+    }
+}
+
+// END
@@ -0,0 +1,96 @@
+package com.andrewgilmartin.incidentresponse.mapped;
+
+import com.andrewgilmartin.incidentresponse.Controller;
+import com.andrewgilmartin.incidentresponse.ControllerTestBase;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MappedControllerTest extends ControllerTestBase {
+
+    private final List<MappedController> controllers = new ArrayList<>();
+    private final List<File> directories = new ArrayList<>();
+    private File directory;
+
+    @Override
+    protected Controller newController() throws Exception {
+        directory = Files.createTempDirectory("mapped").toFile();
+        directories.add(directory);
+        return open();
+    }
+
+    private MappedController open() throws IOException {
+        MappedController controller = new MappedController(directory);
+        controllers.add(controller);
+        return controller;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (MappedController controller : controllers) {
+            controller.close();
+        }
+        for (File d : directories) {
+            for (File file : d.listFiles()) {
+                file.delete();
+            }
+            d.delete();
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        MappedController controller = (MappedController) newController();
+        Workspace a = controller.findWorkspace("T1");
+        Workspace b = controller.findWorkspace("T2");
+        controller.addTask(a, "first", ALICE, Arrays.asList(ALICE, BOB), OPEN);
+        controller.addTask(a, "second", null, Collections.emptyList(), null);
+        controller.addTask(b, "caf\u00e9", BOB, Collections.emptyList(), OPEN);
+        controller.updateTask(a, "1", "first again", BOB, Collections.singletonList(BOB), OPEN);
+        controller.close();
+
+        MappedController reopened = open();
+        a = reopened.findWorkspace("T1");
+        Task task = reopened.findTask(a, "1");
+        assertEquals("first again", task.getDescription());
+        assertEquals(BOB, task.getCreator());
+        assertEquals("bob", task.getCreator().getName());
+        assertEquals(Collections.singleton(BOB), task.getAssignments());
+        assertEquals(OPEN, task.getStatus());
+        assertEquals(2, task.getVersion());
+        task = reopened.findTask(a, "2");
+        assertNull(task.getCreator());
+        assertNull(task.getStatus());
+        assertEquals("caf\u00e9", reopened.findTask(reopened.findWorkspace("T2"), "1").getDescription());
+        assertEquals("3", reopened.addTask(a, "third", ALICE, Collections.emptyList(), OPEN).getId());
+    }
+
+    @Test
+    public void testDirectoryPages() throws Exception {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        int count = MappedController.PAGE_INTS * 2 + 10;
+        for (int i = 1; i <= count; i++) {
+            controller.addTask(workspace, "task " + i, ALICE, Collections.emptyList(), OPEN);
+        }
+        assertEquals("task " + count, controller.findTask(workspace, Integer.toString(count)).getDescription());
+        assertEquals("task 4096", controller.findTask(workspace, "4096").getDescription());
+        assertNull(controller.findTask(workspace, Integer.toString(count + 1)));
+        List<Task> tasks = controller.findTasks(workspace, new TaskFilter().after("4090").limit(10));
+        assertEquals("4091", tasks.get(0).getId());
+        assertEquals(10, new HashSet<>(tasks).size());
+    }
+}
+
+// END
@@ -0,0 +1,145 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Controller;
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import com.andrewgilmartin.util.Benchmarks;
+import com.andrewgilmartin.util.IO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures a durable MemoryController. First the latency of adding a task
+ * with 1 and 8 writers, in memory, logged every 10 milliseconds and logged
+ * synchronously, where the writers share the log's commits. Then the time to
+ * recover a million tasks in 100 workspaces from the log, from a snapshot and
+ * from a snapshot decoded on a single thread.
+ *
+ * {@code
+ *
+ * java ... DurableMemoryControllerBenchmark [directory [tasks]]
+ *
+ * }
+ */
+public class DurableMemoryControllerBenchmark {
+
+    private static final User USER = new User("U1", "alice");
+    private static final List<User> ASSIGNMENTS = Collections.singletonList(new User("U2", "bob"));
+
+    public static void main(String... args) throws Exception {
+        File parent = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"));
+        int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        System.out.printf("%d cpus; add latency p50/p99/p999 in microseconds%n", Runtime.getRuntime().availableProcessors());
+        for (int writers : new int[]{1, 8}) {
+            report("memory", writers, adds(new MemoryController(), writers));
+            for (int commitMillis : new int[]{10, 0}) {
+                File directory = Files.createTempDirectory(parent.toPath(), "tasks").toFile();
+                try (MemoryController controller = new MemoryController(directory, commitMillis, Integer.MAX_VALUE)) {
+                    report(commitMillis == 0 ? "synchronous" : "every 10ms", writers, adds(controller, writers));
+                } finally {
+                    delete(directory);
+                }
+            }
+        }
+
+        File directory = Files.createTempDirectory(parent.toPath(), "tasks").toFile();
+        try {
+            Status status = StatusSet.COMMON_STATUS_SET.getDefaultIntitialStatus();
+            try (MemoryController controller = new MemoryController(directory, 10, Integer.MAX_VALUE)) {
+                Workspace[] workspaces = new Workspace[100];
+                for (int w = 0; w < workspaces.length; w++) {
+                    workspaces[w] = controller.findWorkspace("T" + w);
+                }
+                for (int i = 0; i < tasks; i++) {
+                    controller.addTask(workspaces[i % workspaces.length], "task number " + i + " of the benchmark", USER, ASSIGNMENTS, status);
+                }
+            }
+            System.out.printf("%,d tasks; log %,d bytes%n", tasks, size(directory));
+            recover("from log", directory);
+            try (MemoryController controller = new MemoryController(directory, 10, Integer.MAX_VALUE)) {
+                controller.snapshot();
+            }
+            System.out.printf("snapshot %,d bytes%n", size(directory));
+            recover("from snapshot", directory);
+            File snapshot = new File(directory, MemoryController.SNAPSHOT_BASE_NAME + "." + IO.findLastNumberedFile(directory, MemoryController.SNAPSHOT_BASE_NAME));
+            for (int threads : new int[]{1, Runtime.getRuntime().availableProcessors()}) {
+                long started = System.nanoTime();
+                int count = TaskRecords.read(snapshot, StatusSet.COMMON_STATUS_SET, threads).size();
+                System.out.printf("decode %,d records on %d threads: %,d ms%n", count, threads, (System.nanoTime() - started) / 1_000_000);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static long[] adds(Controller controller, int writerCount) throws Exception {
+        int count = 20_000 / writerCount;
+        long[][] latencies = new long[writerCount][count];
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writerCount; w++) {
+            int writer = w;
+            Workspace workspace = controller.findWorkspace("T" + w);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    long started = System.nanoTime();
+                    controller.addTask(workspace, "task " + i, USER, ASSIGNMENTS, null);
+                    latencies[writer][i] = System.nanoTime() - started;
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long[] all = new long[writerCount * count];
+        for (int w = 0; w < writerCount; w++) {
+            System.arraycopy(latencies[w], 0, all, w * count, count);
+        }
+        return all;
+    }
+
+    private static void report(String name, int writers, long[] latencies) {
+        System.out.printf(
+                "writers=%d %-12s %8.1f %8.1f %8.1f%n",
+                writers,
+                name,
+                Benchmarks.percentile(latencies, latencies.length, 0.50) / 1000.0,
+                Benchmarks.percentile(latencies, latencies.length, 0.99) / 1000.0,
+                Benchmarks.percentile(latencies, latencies.length, 0.999) / 1000.0
+        );
+    }
+
+    private static void recover(String name, File directory) throws IOException {
+        System.gc();
+        long started = System.nanoTime();
+        MemoryController controller = new MemoryController(directory, 10, Integer.MAX_VALUE);
+        long elapsed = System.nanoTime() - started;
+        controller.close();
+        System.out.printf("recover %s: %,d ms%n", name, elapsed / 1_000_000);
+    }
+
+    private static long size(File directory) {
+        long size = 0;
+        for (File file : directory.listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    private static void delete(File directory) {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+}
+
+// END
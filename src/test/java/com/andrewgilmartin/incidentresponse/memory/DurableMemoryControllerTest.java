@@ -0,0 +1,211 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Controller;
+import com.andrewgilmartin.incidentresponse.ControllerTestBase;
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import com.andrewgilmartin.util.IO;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DurableMemoryControllerTest extends ControllerTestBase {
+
+    private final List<MemoryController> controllers = new ArrayList<>();
+    private final List<File> directories = new ArrayList<>();
+    private File directory;
+
+    @Override
+    protected Controller newController() throws Exception {
+        directory = Files.createTempDirectory("tasks").toFile();
+        directories.add(directory);
+        return open(0);
+    }
+
+    private MemoryController open(int commitMillis) throws IOException {
+        MemoryController controller = new MemoryController(directory, commitMillis, MemoryController.DEFAULT_SNAPSHOT_RECORDS);
+        controllers.add(controller);
+        return controller;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (MemoryController controller : controllers) {
+            controller.close();
+        }
+        for (File d : directories) {
+            for (File file : d.listFiles()) {
+                file.delete();
+            }
+            d.delete();
+        }
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        MemoryController controller = (MemoryController) newController();
+        Workspace a = controller.findWorkspace("T1");
+        Workspace b = controller.findWorkspace("T2");
+        for (int i = 0; i < 10; i++) {
+            controller.addTask(a, "a" + i, ALICE, Collections.singletonList(BOB), OPEN);
+        }
+        controller.addTask(b, "b\u00e9", null, Collections.emptyList(), OPEN);
+        Status closed = StatusSet.COMMON_STATUS_SET.findStatus("DONE");
+        controller.updateTask(a, "3", "a3 again", ALICE, Collections.emptyList(), closed);
+        controller.close();
+
+        MemoryController recovered = open(0);
+        a = recovered.findWorkspace("T1");
+        Task task = recovered.findTask(a, "3");
+        assertEquals("a3 again", task.getDescription());
+        assertEquals(2, task.getVersion());
+        assertEquals(closed, task.getStatus());
+        assertEquals(Collections.singleton(BOB), recovered.findTask(a, "4").getAssignments());
+        assertEquals("b\u00e9", recovered.findTask(recovered.findWorkspace("T2"), "1").getDescription());
+        assertEquals("11", recovered.addTask(a, "a10", ALICE, Collections.emptyList(), OPEN).getId());
+
+        // the index is rebuilt too
+        List<Task> found = recovered.findTasks(a, TaskFilter.create().hasStatus(closed));
+        assertEquals(1, found.size());
+        assertEquals("3", found.get(0).getId());
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        MemoryController controller = (MemoryController) newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        for (int i = 0; i < 5; i++) {
+            controller.addTask(workspace, "before" + i, ALICE, Collections.emptyList(), OPEN);
+        }
+        controller.snapshot();
+        controller.updateTask(workspace, "2", "after", ALICE, Collections.emptyList(), OPEN);
+        controller.addTask(workspace, "after5", ALICE, Collections.emptyList(), OPEN);
+        controller.close();
+
+        // the first log is replaced by the snapshot
+        assertEquals(Arrays.toString(new int[]{2}), Arrays.toString(IO.findNumberedFiles(directory, TaskLog.BASE_NAME)));
+        assertEquals(2, IO.findLastNumberedFile(directory, MemoryController.SNAPSHOT_BASE_NAME));
+
+        MemoryController recovered = open(0);
+        workspace = recovered.findWorkspace("T1");
+        assertEquals("before0", recovered.findTask(workspace, "1").getDescription());
+        assertEquals("after", recovered.findTask(workspace, "2").getDescription());
+        assertEquals("after5", recovered.findTask(workspace, "6").getDescription());
+        assertNull(recovered.findTask(workspace, "7"));
+    }
+
+    @Test
+    public void testDamagedLog() throws Exception {
+        MemoryController controller = (MemoryController) newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        for (int i = 0; i < 3; i++) {
+            controller.addTask(workspace, "t" + i, ALICE, Collections.emptyList(), OPEN);
+        }
+        controller.close();
+
+        // lose the end of the last record as a crash while writing would
+        File log = new File(directory, TaskLog.BASE_NAME + ".1");
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        MemoryController recovered = open(0);
+        workspace = recovered.findWorkspace("T1");
+        assertEquals("t1", recovered.findTask(workspace, "2").getDescription());
+        assertNull(recovered.findTask(workspace, "3"));
+        assertEquals("3", recovered.addTask(workspace, "t3", ALICE, Collections.emptyList(), OPEN).getId());
+        recovered.close();
+
+        // and a damaged record ends the log too
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.seek(TaskRecords.HEADER_SIZE + 2);
+            file.write('X');
+        }
+        recovered = open(0);
+        workspace = recovered.findWorkspace("T1");
+        assertNull(recovered.findTask(workspace, "1"));
+        assertNull(recovered.findTask(workspace, "2"));
+        assertEquals("t3", recovered.findTask(workspace, "3").getDescription());
+    }
+
+    @Test
+    public void testSnapshotOfEvicted() throws Exception {
+        MemoryController controller = (MemoryController) newController();
+        File spill = new File(directory, "spill");
+        controller.setEviction(spill, Long.MAX_VALUE);
+        Workspace a = controller.findWorkspace("T1");
+        Workspace b = controller.findWorkspace("T2");
+        controller.addTask(a, "a", ALICE, Collections.emptyList(), OPEN);
+        controller.addTask(b, "b", ALICE, Collections.emptyList(), OPEN);
+        controller.findWorkspace("T2");
+        controller.evictIdle(1);
+        assertEquals(1, spill.list().length);
+
+        // the snapshot replaces the log that has the evicted workspace's tasks
+        controller.snapshot();
+        controller.close();
+        MemoryController recovered = open(0);
+        assertEquals("a", recovered.findTask(recovered.findWorkspace("T1"), "1").getDescription());
+        assertEquals("b", recovered.findTask(recovered.findWorkspace("T2"), "1").getDescription());
+        for (File file : spill.listFiles()) {
+            file.delete();
+        }
+        spill.delete();
+    }
+
+    @Test
+    public void testLogFailure() throws Exception {
+        MemoryController controller = (MemoryController) newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        controller.addTask(workspace, "a", ALICE, Collections.emptyList(), OPEN);
+        Field log = MemoryController.class.getDeclaredField("log");
+        log.setAccessible(true);
+        Field channel = TaskLog.class.getDeclaredField("channel");
+        channel.setAccessible(true);
+        ((FileChannel) channel.get(log.get(controller))).close();
+
+        // the failed write is reported and no more are taken
+        try {
+            controller.addTask(workspace, "b", ALICE, Collections.emptyList(), OPEN);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            controller.updateTask(workspace, "1", 1, "a again", ALICE, Collections.emptyList(), OPEN);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals("a", controller.findTask(workspace, "1").getDescription());
+    }
+
+    @Test
+    public void testIntervalCommit() throws Exception {
+        ((MemoryController) newController()).close();
+        MemoryController controller = open(5);
+        Workspace workspace = controller.findWorkspace("T1");
+        for (int i = 0; i < 100; i++) {
+            controller.addTask(workspace, "t" + i, ALICE, Collections.emptyList(), OPEN);
+        }
+        controller.close();
+
+        MemoryController recovered = open(5);
+        workspace = recovered.findWorkspace("T1");
+        assertEquals("t99", recovered.findTask(workspace, "100").getDescription());
+    }
+}
+
+// END
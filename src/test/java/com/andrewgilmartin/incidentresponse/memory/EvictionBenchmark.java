@@ -0,0 +1,94 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.util.Benchmarks;
+import com.andrewgilmartin.util.Metrics;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures a MemoryController with and without a heap budget for its tasks.
+ * Channels are added with 1,000 tasks each, by default 1,000 channels, and
+ * then the channels are found and a task updated, 90% of the time in the
+ * most recent 10% of channels, as incident channels are busy while the
+ * incident lasts and then go quiet. Reports the heap used after adding the
+ * channels and the latency of the later calls, including those that reload
+ * an evicted channel. The budget is a fifth of the tasks.
+ *
+ * {@code
+ *
+ * java ... EvictionBenchmark [channels [calls]]
+ *
+ * }
+ */
+public class EvictionBenchmark {
+
+    private static final User USER = new User("U1", "alice");
+    private static final int TASKS = 1_000;
+
+    public static void main(String... args) throws Exception {
+        int channels = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        run("unbounded", new MemoryController(), channels, calls);
+        File directory = Files.createTempDirectory("spill").toFile();
+        try {
+            MemoryController controller = new MemoryController();
+            long budget = (long) channels * TASKS * (TaskTable.TASK_BYTES + 34 * TaskTable.DESCRIPTION_CHAR_BYTES) / 5;
+            controller.setEviction(directory, budget);
+            run("budget " + (budget >> 20) + "MB", controller, channels, calls);
+            controller.close();
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private static void run(String name, MemoryController controller, int channels, int calls) throws Exception {
+        Status status = StatusSet.COMMON_STATUS_SET.getDefaultIntitialStatus();
+        for (int c = 0; c < channels; c++) {
+            for (int i = 0; i < TASKS; i++) {
+                controller.addTask(controller.findWorkspace("C" + c), "investigate alert " + i + " in channel " + c, USER, Collections.emptyList(), status);
+            }
+        }
+        // let the evictor catch up
+        Thread.sleep(1000);
+        System.gc();
+        long heap = Benchmarks.usedHeap();
+        Map<String, Long> before = Metrics.snapshot();
+        long[] latencies = new long[calls];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < calls; i++) {
+            int recent = Math.max(1, channels / 10);
+            int c = random.nextInt(10) < 9 ? channels - 1 - random.nextInt(recent) : random.nextInt(channels);
+            long started = System.nanoTime();
+            controller.updateTask(controller.findWorkspace("C" + c), Integer.toString(1 + random.nextInt(TASKS)), "updated", USER, Collections.emptyList(), status);
+            latencies[i] = System.nanoTime() - started;
+        }
+        Map<String, Long> after = Metrics.snapshot();
+        long reloads = delta(before, after, "incidentresponse.workspaces.reloads");
+        System.out.printf(
+                "%-14s heap %,5d MB; calls p50 %,d p99 %,d p999 %,d us; evictions %,d; reloads %,d averaging %,d us%n",
+                name,
+                heap >> 20,
+                Benchmarks.percentile(latencies, calls, 0.50) / 1000,
+                Benchmarks.percentile(latencies, calls, 0.99) / 1000,
+                Benchmarks.percentile(latencies, calls, 0.999) / 1000,
+                delta(before, after, "incidentresponse.workspaces.evictions"),
+                reloads,
+                reloads == 0 ? 0 : delta(before, after, "incidentresponse.workspaces.reload_micros") / reloads
+        );
+    }
+
+    private static long delta(Map<String, Long> before, Map<String, Long> after, String name) {
+        return after.getOrDefault(name, 0L) - before.getOrDefault(name, 0L);
+    }
+}
+
+// END
@@ -0,0 +1,203 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Controller;
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import com.andrewgilmartin.slack.SlackUser;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of a mix of requests from several threads against
+ * the MemoryController and against a controller kept as the MemoryController
+ * was before its TaskTable: a LinkedList of tasks per workspace guarded by the
+ * workspace's monitor and a global map of workspaces. Of the requests, 70%
+ * find a task, 20% update one, 9% list a page of 100 tasks and 1% add one,
+ * spread over the workspaces.
+ *
+ * {@code
+ *
+ * java ... MemoryControllerBenchmark [workspaces [tasks [seconds]]]
+ *
+ * }
+ */
+public class MemoryControllerBenchmark {
+
+    private static final Status STATUS = StatusSet.COMMON_STATUS_SET.getDefaultIntitialStatus();
+    private static final User USER = new User("U1", "alice");
+
+    public static void main(String... args) throws Exception {
+        int workspaces = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        System.out.printf("%d workspaces of %d tasks, %d cpus%n", workspaces, tasks, Runtime.getRuntime().availableProcessors());
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            System.out.printf(
+                    "threads=%d  list: %,10.0f ops/s  table: %,10.0f ops/s%n",
+                    threads,
+                    run(new ListController(), workspaces, tasks, threads, seconds),
+                    run(new MemoryController(), workspaces, tasks, threads, seconds)
+            );
+        }
+    }
+
+    private static double run(Controller controller, int workspaceCount, int taskCount, int threadCount, int seconds) throws Exception {
+        Workspace[] workspaces = new Workspace[workspaceCount];
+        for (int w = 0; w < workspaces.length; w++) {
+            workspaces[w] = controller.findWorkspace("T" + w);
+            for (int t = 0; t < taskCount; t++) {
+                controller.addTask(workspaces[w], "task " + t, USER, Collections.singletonList(USER), STATUS);
+            }
+        }
+        LongAdder ops = new LongAdder();
+        long[] deadline = {0};
+        Runnable body = () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline[0]) {
+                for (int i = 0; i < 100; i++) {
+                    Workspace workspace = controller.findWorkspace(workspaces[random.nextInt(workspaces.length)].getId());
+                    String taskId = Integer.toString(1 + random.nextInt(taskCount));
+                    int op = random.nextInt(100);
+                    if (op < 70) {
+                        controller.findTask(workspace, taskId);
+                    } else if (op < 90) {
+                        controller.updateTask(workspace, taskId, "updated", USER, Collections.singletonList(USER), STATUS);
+                    } else if (op < 99) {
+                        controller.findTasks(workspace, new TaskFilter().after(taskId).limit(100));
+                    } else {
+                        controller.addTask(workspace, "added", USER, Collections.emptyList(), STATUS);
+                    }
+                }
+                ops.add(100);
+            }
+        };
+        // warm up and then measure
+        for (int pass = 0; pass < 2; pass++) {
+            ops.reset();
+            deadline[0] = System.nanoTime() + seconds * 1_000_000_000L;
+            long started = System.nanoTime();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                threads.add(new Thread(body));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (pass == 1) {
+                return ops.sum() * 1e9 / (System.nanoTime() - started);
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * The MemoryController as it was, but with its workspaces and updates
+     * working.
+     */
+    private static class ListController implements Controller {
+
+        private final Map<String, Workspace> idToWorkspace = new HashMap<>();
+        private final Map<String, List<Task>> workspaceIdToTasks = new HashMap<>();
+        private final Map<String, Integer> workspaceIdToTaskCount = new HashMap<>();
+
+        @Override
+        public Workspace findWorkspace(String workspaceId) {
+            synchronized (idToWorkspace) {
+                return idToWorkspace.computeIfAbsent(workspaceId, id -> {
+                    workspaceIdToTasks.put(id, new LinkedList<>());
+                    return new Workspace(id, StatusSet.COMMON_STATUS_SET);
+                });
+            }
+        }
+
+        @Override
+        public Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status) {
+            synchronized (workspace) {
+                Task task = new Task(nextTaskId(workspace), description, creator, assignments, status);
+                tasks(workspace).add(task);
+                return task;
+            }
+        }
+
+        @Override
+        public Task updateTask(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status) {
+            synchronized (workspace) {
+                ListIterator<Task> t = tasks(workspace).listIterator();
+                while (t.hasNext()) {
+                    Task task = t.next();
+                    if (task.getId().equals(taskId)) {
+                        Task replacement = new Task(task.getId(), description, creator, assignments, status);
+                        t.set(replacement);
+                        return replacement;
+                    }
+                }
+                return null;
+            }
+        }
+
+        @Override
+        public Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Task findTask(Workspace workspace, String taskId) {
+            synchronized (workspace) {
+                for (Task task : tasks(workspace)) {
+                    if (task.getId().equals(taskId)) {
+                        return task;
+                    }
+                }
+                return null;
+            }
+        }
+
+        @Override
+        public List<Task> findTasks(Workspace workspace, TaskFilter taskFilter) {
+            synchronized (workspace) {
+                List<Task> tasks = new LinkedList<>();
+                for (Task task : tasks(workspace)) {
+                    if (tasks.size() == taskFilter.getLimit()) {
+                        break;
+                    }
+                    if (taskFilter.test(task)) {
+                        tasks.add(task);
+                    }
+                }
+                return tasks;
+            }
+        }
+
+        @Override
+        public User findcreateUser(SlackUser slackUser) {
+            return new User(slackUser);
+        }
+
+        private List<Task> tasks(Workspace workspace) {
+            synchronized (idToWorkspace) {
+                return workspaceIdToTasks.get(workspace.getId());
+            }
+        }
+
+        private String nextTaskId(Workspace workspace) {
+            synchronized (workspaceIdToTaskCount) {
+                return Integer.toString(workspaceIdToTaskCount.merge(workspace.getId(), 1, Integer::sum));
+            }
+        }
+    }
+}
+
+// END
@@ -0,0 +1,294 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Controller;
+import com.andrewgilmartin.incidentresponse.ControllerTestBase;
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MemoryControllerTest extends ControllerTestBase {
+
+    @Override
+    protected Controller newController() {
+        return new MemoryController();
+    }
+
+    @Test
+    public void testParseId() {
+        assertEquals(1, TaskTable.parseId("1"));
+        assertEquals(Integer.MAX_VALUE, TaskTable.parseId("2147483647"));
+        assertEquals(-1, TaskTable.parseId("2147483648"));
+        assertEquals(-1, TaskTable.parseId("0"));
+        assertEquals(-1, TaskTable.parseId("007"));
+        assertEquals(-1, TaskTable.parseId("1a"));
+        assertEquals(-1, TaskTable.parseId(""));
+        assertEquals(-1, TaskTable.parseId(null));
+    }
+
+    @Test
+    public void testManyTasks() {
+        TaskTable table = new TaskTable(StatusSet.COMMON_STATUS_SET);
+        // enough for three levels of the trie
+        int count = RadixTrie.WIDTH * RadixTrie.WIDTH * 5 + 3;
+        for (int i = 0; i < count; i++) {
+            table.add(id -> new Task(Integer.toString(id), "t", null, Collections.emptyList(), null));
+        }
+        assertEquals(count, table.lastId());
+        assertEquals("1", table.get(1).getId());
+        assertEquals(Integer.toString(count), table.get(count).getId());
+        assertNull(table.get(count + 1));
+        assertNull(table.get(count * 100));
+    }
+
+    @Test
+    public void testIdSet() {
+        IdSet ids = IdSet.EMPTY.with(3);
+        assertSame(ids, ids.with(3));
+        IdSet more = ids.with(IdSet.BLOCK_SIZE * 7 + 1);
+        assertEquals(1, ids.size());
+        assertEquals(2, more.size());
+        assertTrue(more.contains(3));
+        assertFalse(more.contains(4));
+        assertNull(more.block(1));
+        assertNotNull(more.block(7));
+        assertSame(ids.block(0), more.block(0));
+        IdSet fewer = more.without(IdSet.BLOCK_SIZE * 7 + 1);
+        assertNull(fewer.block(7));
+        assertEquals(1, fewer.size());
+        assertTrue(more.contains(IdSet.BLOCK_SIZE * 7 + 1));
+    }
+
+    @Test
+    public void testRadixTrie() {
+        RadixTrie<String> empty = RadixTrie.empty();
+        RadixTrie<String> one = empty.with(5, "five");
+        RadixTrie<String> two = one.with(100_000, "many");
+        assertNull(empty.get(5));
+        assertEquals("five", one.get(5));
+        assertNull(one.get(100_000));
+        assertEquals("five", two.get(5));
+        assertEquals("many", two.get(100_000));
+        assertNull(two.get(-1));
+        assertNull(two.get(Integer.MAX_VALUE));
+        assertSame(two, two.with(100_000, "many"));
+        assertSame(two, two.with(7, null));
+        RadixTrie<String> fewer = two.with(100_000, null);
+        assertNull(fewer.get(100_000));
+        assertEquals("many", two.get(100_000));
+        assertNull(fewer.with(5, null).get(5));
+
+        String[] values = new String[RadixTrie.WIDTH * RadixTrie.WIDTH + 2];
+        values[1] = "a";
+        values[values.length - 1] = "z";
+        RadixTrie<String> built = RadixTrie.of(values);
+        assertEquals("a", built.get(1));
+        assertEquals("z", built.get(values.length - 1));
+        assertNull(built.get(2));
+        assertEquals("b", built.with(2, "b").get(2));
+    }
+
+    @Test
+    public void testAssigneesWithSameHash() {
+        // "Aa" and "BB" have the same hash code
+        User aa = new User("Aa", "aa");
+        User bb = new User("BB", "bb");
+        TaskIndex index = TaskIndex.empty(StatusSet.COMMON_STATUS_SET)
+                .with(1, null, new Task("1", "a", ALICE, Collections.singletonList(aa), OPEN))
+                .with(2, null, new Task("2", "b", ALICE, Arrays.asList(aa, bb), OPEN));
+        int[] ids = new int[4];
+        assertEquals(2, index.find(0L, Collections.singleton(aa), 1, 2, ids));
+        assertEquals(1, index.find(0L, Collections.singleton(bb), 1, 2, ids));
+        assertEquals(2, ids[0]);
+        index = index.with(2, new Task("2", "b", ALICE, Arrays.asList(aa, bb), OPEN), new Task("2", "b", ALICE, Collections.singletonList(bb), OPEN));
+        assertEquals(1, index.find(0L, Collections.singleton(aa), 1, 2, ids));
+        assertEquals(1, ids[0]);
+        assertEquals(1, index.find(0L, Collections.singleton(bb), 1, 2, ids));
+        assertEquals(2, ids[0]);
+    }
+
+    @Test
+    public void testSnapshots() {
+        TaskTable table = new TaskTable(StatusSet.COMMON_STATUS_SET);
+        Status finished = StatusSet.COMMON_STATUS_SET.getFinishedStatuses().iterator().next();
+        table.add(id -> new Task(Integer.toString(id), "a", ALICE, Collections.singletonList(BOB), OPEN));
+        TaskTable.Snapshot before = table.snapshot();
+        table.add(id -> new Task(Integer.toString(id), "b", ALICE, Collections.emptyList(), OPEN));
+        table.replace(1, task -> new Task(task.getId(), "changed", ALICE, Collections.emptyList(), finished));
+
+        // the old snapshot is unchanged
+        assertEquals(1, before.lastId());
+        assertEquals("a", before.get(1).getDescription());
+        assertNull(before.get(2));
+        int[] ids = new int[4];
+        assertEquals(1, before.getIndex().find(0L, Collections.singleton(BOB), 1, before.lastId(), ids));
+        assertEquals(0, before.getIndex().find(StatusSet.COMMON_STATUS_SET.maskOf(finished), null, 1, before.lastId(), ids));
+
+        TaskTable.Snapshot after = table.snapshot();
+        assertEquals(2, after.lastId());
+        assertEquals("changed", after.get(1).getDescription());
+        assertEquals(0, after.getIndex().find(0L, Collections.singleton(BOB), 1, after.lastId(), ids));
+        assertEquals(1, after.getIndex().find(StatusSet.COMMON_STATUS_SET.maskOf(finished), null, 1, after.lastId(), ids));
+        assertEquals(1, ids[0]);
+    }
+
+    @Test
+    public void testIndexFollowsUpdates() {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        Status finished = StatusSet.COMMON_STATUS_SET.getFinishedStatuses().iterator().next();
+        int count = IdSet.BLOCK_SIZE * 3;
+        for (int i = 1; i <= count; i++) {
+            controller.addTask(workspace, "task " + i, ALICE, i % 1000 == 0 ? Collections.singletonList(BOB) : Collections.emptyList(), OPEN);
+        }
+        TaskFilter bob = new TaskFilter().hasAssigment(BOB);
+        assertEquals(3, controller.findTasks(workspace, bob).size());
+        assertEquals("2000", controller.findTasks(workspace, new TaskFilter().hasAssigment(BOB).after("1000")).get(0).getId());
+
+        controller.updateTask(workspace, "2000", "task 2000", ALICE, Collections.emptyList(), finished);
+        List<Task> tasks = controller.findTasks(workspace, new TaskFilter().hasStatus(finished));
+        assertEquals(1, tasks.size());
+        assertEquals("2000", tasks.get(0).getId());
+        assertEquals(2, controller.findTasks(workspace, bob).size());
+        assertEquals(count - 1, controller.findTasks(workspace, new TaskFilter().hasStatus(OPEN)).size());
+
+        // the description is still tested
+        assertEquals(1, controller.findTasks(workspace, new TaskFilter().hasAssigment(BOB).hasStatus(OPEN).hasDescription("3000")).size());
+        assertEquals(0, controller.findTasks(workspace, new TaskFilter().hasAssigment(BOB).hasStatus(finished)).size());
+    }
+
+    @Test
+    public void testLiterals() {
+        assertEquals(Arrays.asList("disk full"), TextIndex.literals("disk full"));
+        assertEquals(Arrays.asList("restart", "disk"), TextIndex.literals("^restart.*disk$"));
+        // optional characters, classes and groups are not literals
+        assertEquals(Arrays.asList("disk", "full"), TextIndex.literals("disks?\\s+full"));
+        assertEquals(Arrays.asList("ok."), TextIndex.literals("db[0-9]+(host)?ok\\."));
+        assertEquals(Collections.emptyList(), TextIndex.literals("a.b{2}c*"));
+        assertNull(TextIndex.literals("disk|full"));
+        assertNull(TextIndex.literals("(?i)disk"));
+        assertNull(TextIndex.literals("\\x41bc"));
+    }
+
+    @Test
+    public void testStaleTextIndex() throws Exception {
+        Controller controller = newController();
+        Workspace workspace = controller.findWorkspace("T1");
+        for (int i = 1; i <= 100; i++) {
+            controller.addTask(workspace, "alpha " + i, ALICE, Collections.emptyList(), OPEN);
+        }
+        TextIndex before = ((MemoryController) controller).tasks(workspace).snapshot().getText();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 1; i <= 100; i++) {
+                controller.updateTask(workspace, Integer.toString(i), "beta " + round + " " + i, ALICE, Collections.emptyList(), OPEN);
+            }
+        }
+        assertTrue(controller.findTasks(workspace, new TaskFilter().hasWords("alpha")).isEmpty());
+        assertEquals(100, controller.findTasks(workspace, new TaskFilter().hasWords("beta 19")).size());
+        // the index is rebuilt in the background without the stale postings
+        TaskTable.Snapshot after = ((MemoryController) controller).tasks(workspace).snapshot();
+        for (int i = 0; i < 500 && after.getText().find(Arrays.asList("alpha"), null, 1, after.lastId(), Integer.MAX_VALUE).length > 0; i++) {
+            Thread.sleep(10);
+            after = ((MemoryController) controller).tasks(workspace).snapshot();
+        }
+        assertNotSame(before, after.getText());
+        assertEquals(0, after.getText().find(Arrays.asList("alpha"), null, 1, after.lastId(), Integer.MAX_VALUE).length);
+        // with the writes made while it was built
+        assertEquals(100, after.getText().find(Arrays.asList("beta", "19"), null, 1, after.lastId(), Integer.MAX_VALUE).length);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File directory = Files.createTempDirectory("spill").toFile();
+        try {
+            MemoryController controller = new MemoryController();
+            controller.setEviction(directory, Long.MAX_VALUE);
+            Workspace a = controller.findWorkspace("T1");
+            Workspace b = controller.findWorkspace("T/2");
+            for (int i = 0; i < 10; i++) {
+                controller.addTask(a, "a" + i, ALICE, Collections.singletonList(BOB), OPEN);
+                controller.addTask(b, "b" + i, ALICE, Collections.emptyList(), OPEN);
+            }
+            long bytes = controller.tasks(a).bytes();
+            assertEquals(10 * (TaskTable.TASK_BYTES + 2 * TaskTable.DESCRIPTION_CHAR_BYTES + 8), bytes);
+
+            // the least recently used is evicted
+            controller.findWorkspace("T/2");
+            controller.evictIdle(bytes);
+            assertEquals(1, directory.list().length);
+            assertTrue(controller.tasks(b).bytes() > 0);
+
+            // and reloaded, including by its stale workspace
+            assertEquals("a3", controller.findTask(a, "4").getDescription());
+            assertEquals(Collections.singleton(BOB), controller.findTask(a, "4").getAssignments());
+            assertEquals(0, directory.list().length);
+            controller.evictIdle(bytes);
+            assertEquals("b9", controller.findTasks(b, new TaskFilter().hasStatus(OPEN).after("9")).get(0).getDescription());
+            assertEquals("11", controller.addTask(a, "a10", ALICE, Collections.emptyList(), OPEN).getId());
+            assertEquals(2, controller.updateTask(b, "1", 1, "b0 again", ALICE, Collections.emptyList(), OPEN).getVersion());
+
+            // the eviction is set once
+            try {
+                controller.setEviction(directory, bytes);
+                fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            controller.close();
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testEvictionUnderLoad() throws Exception {
+        File directory = Files.createTempDirectory("spill").toFile();
+        try {
+            MemoryController controller = new MemoryController();
+            long budget = 20 * TaskTable.TASK_BYTES * 20;
+            controller.setEviction(directory, budget);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < 400; i++) {
+                        Workspace workspace = controller.findWorkspace("T" + (i % 40));
+                        controller.addTask(workspace, "task", ALICE, Collections.emptyList(), OPEN);
+                        controller.updateTask(workspace, "1", "updated " + thread, ALICE, Collections.emptyList(), OPEN);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            // every write is kept however often its workspace was evicted
+            for (int w = 0; w < 40; w++) {
+                Workspace workspace = controller.findWorkspace("T" + w);
+                assertEquals(40, controller.findTasks(workspace, new TaskFilter()).size());
+                assertEquals(41, controller.findTask(workspace, "1").getVersion());
+            }
+            controller.close();
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+}
+
+// END
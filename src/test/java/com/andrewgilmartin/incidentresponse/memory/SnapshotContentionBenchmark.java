@@ -0,0 +1,179 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Controller;
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import com.andrewgilmartin.slack.SlackUser;
+import com.andrewgilmartin.util.Benchmarks;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the latency of listing all of a busy channel's tasks, "/ir all",
+ * while other threads update its tasks. The MemoryController's readers list
+ * from a snapshot without locking; it is compared with the same controller
+ * with every call synchronized on the workspace, as the MemoryController's
+ * were before it kept snapshots, where a listing and the writes wait for each
+ * other. Writers each update a task every 100 microseconds.
+ *
+ * {@code
+ *
+ * java ... SnapshotContentionBenchmark [tasks [seconds]]
+ *
+ * }
+ */
+public class SnapshotContentionBenchmark {
+
+    private static final StatusSet STATUS_SET = StatusSet.COMMON_STATUS_SET;
+    private static final User USER = new User("U1", "alice");
+
+    private static volatile int sink;
+
+    public static void main(String... args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        System.out.printf("%,d tasks, 2 readers, %d cpus; read and write latency p50/p99 in microseconds%n", tasks, Runtime.getRuntime().availableProcessors());
+        for (int writers : new int[]{0, 1, 2, 4}) {
+            long[] locked = run(new LockedController(new MemoryController()), tasks, writers, seconds);
+            long[] snapshot = run(new MemoryController(), tasks, writers, seconds);
+            System.out.printf(
+                    "writers=%d  locked: read %6d/%6d write %6d/%6d   snapshot: read %6d/%6d write %6d/%6d%n",
+                    writers,
+                    locked[0], locked[1], locked[2], locked[3],
+                    snapshot[0], snapshot[1], snapshot[2], snapshot[3]
+            );
+        }
+    }
+
+    private static long[] run(Controller controller, int taskCount, int writerCount, int seconds) throws Exception {
+        Workspace workspace = controller.findWorkspace("T1");
+        List<Status> statuses = new ArrayList<>(STATUS_SET.getStatuses());
+        for (int i = 0; i < taskCount; i++) {
+            controller.addTask(workspace, "task " + i, USER, Collections.emptyList(), statuses.get(i % statuses.size()));
+        }
+        long[][] reads = new long[2][1_000_000];
+        long[][] writes = new long[writerCount][1_000_000];
+        int[] readCounts = new int[reads.length];
+        int[] writeCounts = new int[writes.length];
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < reads.length; r++) {
+            int reader = r;
+            threads.add(new Thread(() -> {
+                TaskFilter all = new TaskFilter().hasStatus(STATUS_SET.getStatuses());
+                while (System.nanoTime() < deadline && readCounts[reader] < reads[reader].length) {
+                    long started = System.nanoTime();
+                    sink += controller.findTasks(workspace, all).size();
+                    reads[reader][readCounts[reader]++] = System.nanoTime() - started;
+                }
+            }));
+        }
+        for (int w = 0; w < writerCount; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline && writeCounts[writer] < writes[writer].length) {
+                    String taskId = Integer.toString(1 + random.nextInt(taskCount));
+                    Status status = statuses.get(random.nextInt(statuses.size()));
+                    long started = System.nanoTime();
+                    controller.updateTask(workspace, taskId, "updated", USER, Collections.emptyList(), status);
+                    writes[writer][writeCounts[writer]++] = System.nanoTime() - started;
+                    LockSupport.parkNanos(100_000);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long[] read = merge(reads, readCounts);
+        long[] write = merge(writes, writeCounts);
+        return new long[]{
+            Benchmarks.percentile(read, read.length, 0.50) / 1000,
+            Benchmarks.percentile(read, read.length, 0.99) / 1000,
+            Benchmarks.percentile(write, write.length, 0.50) / 1000,
+            Benchmarks.percentile(write, write.length, 0.99) / 1000
+        };
+    }
+
+    private static long[] merge(long[][] latencies, int[] counts) {
+        int n = 0;
+        for (int count : counts) {
+            n += count;
+        }
+        long[] merged = new long[n];
+        n = 0;
+        for (int i = 0; i < counts.length; i++) {
+            System.arraycopy(latencies[i], 0, merged, n, counts[i]);
+            n += counts[i];
+        }
+        return merged;
+    }
+
+    /**
+     * The controller with every call synchronized on the workspace.
+     */
+    private static class LockedController implements Controller {
+
+        private final Controller controller;
+
+        LockedController(Controller controller) {
+            this.controller = controller;
+        }
+
+        @Override
+        public Workspace findWorkspace(String workspaceId) {
+            return controller.findWorkspace(workspaceId);
+        }
+
+        @Override
+        public Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status) {
+            synchronized (workspace) {
+                return controller.addTask(workspace, description, creator, assignments, status);
+            }
+        }
+
+        @Override
+        public Task updateTask(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status) {
+            synchronized (workspace) {
+                return controller.updateTask(workspace, taskId, description, creator, assignments, status);
+            }
+        }
+
+        @Override
+        public Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
+            synchronized (workspace) {
+                return controller.updateTask(workspace, taskId, version, description, creator, assignments, status);
+            }
+        }
+
+        @Override
+        public Task findTask(Workspace workspace, String taskId) {
+            synchronized (workspace) {
+                return controller.findTask(workspace, taskId);
+            }
+        }
+
+        @Override
+        public List<Task> findTasks(Workspace workspace, TaskFilter taskFilter) {
+            synchronized (workspace) {
+                return controller.findTasks(workspace, taskFilter);
+            }
+        }
+
+        @Override
+        public User findcreateUser(SlackUser slackUser) {
+            return controller.findcreateUser(slackUser);
+        }
+    }
+}
+
+// END
@@ -0,0 +1,111 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import com.andrewgilmartin.util.Benchmarks;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares listing a page of tasks by scanning the workspace's task table, as
+ * was done before the TaskIndex, and with the index. The workspace is as an
+ * old one is: 95% of its tasks are finished, the rest spread among the
+ * unfinished statuses, and a third are assigned to one of 50 users. Pages are
+ * 101 tasks, as IncidentResponseSlackApp asks for, and "all" lists every
+ * match.
+ *
+ * {@code
+ *
+ * java -Xmx3g ... TaskIndexBenchmark [tasks...]
+ *
+ * }
+ */
+public class TaskIndexBenchmark {
+
+    private static final StatusSet STATUS_SET = StatusSet.COMMON_STATUS_SET;
+    private static final int PAGE = 101;
+
+    private static int sink;
+
+    public static void main(String... args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10_000, 100_000, 1_000_000};
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        MemoryController controller = new MemoryController();
+        Workspace workspace = controller.findWorkspace("T1");
+        List<Status> unfinished = new ArrayList<>(STATUS_SET.getUnfinishedStatuses());
+        List<Status> finished = new ArrayList<>(STATUS_SET.getFinishedStatuses());
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(new User("U" + i, "user" + i));
+        }
+        Random random = new Random(17);
+        for (int i = 0; i < size; i++) {
+            Status status = random.nextInt(100) < 95
+                    ? finished.get(random.nextInt(finished.size()))
+                    : unfinished.get(random.nextInt(unfinished.size()));
+            List<User> assignments = random.nextInt(3) == 0
+                    ? Collections.singletonList(users.get(random.nextInt(users.size())))
+                    : Collections.emptyList();
+            controller.addTask(workspace, "task number " + i, users.get(0), assignments, status);
+        }
+        TaskTable table = controller.tasks(workspace);
+
+        Object[][] queries = {
+            {"unfinished", new TaskFilter().hasStatus(STATUS_SET.getUnfinishedStatuses())},
+            {"finished", new TaskFilter().hasStatus(STATUS_SET.getFinishedStatuses())},
+            {"@user7", new TaskFilter().hasAssigment(users.get(7))},
+            {"!red", new TaskFilter().hasStatus(STATUS_SET.findStatus("red"))},
+            {"@user7 !red", new TaskFilter().hasAssigment(users.get(7)).hasStatus(STATUS_SET.findStatus("red"))}
+        };
+        int iterations = Math.max(20, 2_000_000 / size);
+        for (Object[] query : queries) {
+            String name = (String) query[0];
+            TaskFilter filter = (TaskFilter) query[1];
+            TaskFilter page = copy(filter).limit(PAGE);
+            System.out.printf(
+                    "tasks=%-8d %-12s page  scan: %10.0fns  index: %10.0fns   all  scan: %11.0fns  index: %11.0fns  (%d)%n",
+                    size,
+                    name,
+                    Benchmarks.time(iterations, iterations, () -> sink += scan(table, page).size()),
+                    Benchmarks.time(iterations, iterations, () -> sink += controller.findTasks(workspace, page).size()),
+                    Benchmarks.time(iterations / 10 + 1, iterations / 10 + 1, () -> sink += scan(table, filter).size()),
+                    Benchmarks.time(iterations / 10 + 1, iterations / 10 + 1, () -> sink += controller.findTasks(workspace, filter).size()),
+                    controller.findTasks(workspace, filter).size()
+            );
+        }
+    }
+
+    /**
+     * Lists as MemoryController did before the index.
+     */
+    private static List<Task> scan(TaskTable table, TaskFilter filter) {
+        List<Task> tasks = new ArrayList<>();
+        for (int id = 1, last = table.lastId(); id <= last && tasks.size() < filter.getLimit(); id++) {
+            Task task = table.get(id);
+            if (task != null && filter.test(task)) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    private static TaskFilter copy(TaskFilter filter) {
+        return new TaskFilter().hasStatus(filter.getStatuses()).hasAssigment(filter.getAssignments());
+    }
+}
+
+// END
@@ -0,0 +1,107 @@
+package com.andrewgilmartin.incidentresponse.memory;
+
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import com.andrewgilmartin.util.Benchmarks;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Compares finding tasks by their descriptions with the TextIndex and by
+ * testing every task, as MemoryController did before the index and as the
+ * other controllers do. A workspace is given 100,000 tasks, by default, with
+ * descriptions such as "restart the cache on db417 after a timeout alert
+ * 123", and each search finds a page of tasks, as ListCommand does.
+ *
+ * {@code
+ *
+ * java ... TextSearchBenchmark [tasks]
+ *
+ * }
+ */
+public class TextSearchBenchmark {
+
+    private static final User USER = new User("U1", "alice");
+    private static final String[] VERBS = {"restart", "check", "replace", "page about", "roll back", "scale up", "drain", "investigate"};
+    private static final String[] OBJECTS = {"the cache", "the disk", "the queue", "the load balancer", "the certificate", "the database", "the api", "the cron job"};
+    private static final String[] HOSTS = {"db", "web", "cache", "worker"};
+    private static final String[] SYMPTOMS = {"a timeout", "high latency", "a full disk", "an error spike", "a failed deploy", "memory pressure"};
+
+    private static volatile int sink;
+
+    public static void main(String... args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Status status = StatusSet.COMMON_STATUS_SET.getDefaultIntitialStatus();
+        MemoryController controller = new MemoryController();
+        Workspace workspace = controller.findWorkspace("C1");
+        Random random = new Random(42);
+        long heap = Benchmarks.usedHeap();
+        long started = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            String description = VERBS[random.nextInt(VERBS.length)]
+                    + " " + OBJECTS[random.nextInt(OBJECTS.length)]
+                    + " on " + HOSTS[random.nextInt(HOSTS.length)] + random.nextInt(1000)
+                    + " after " + SYMPTOMS[random.nextInt(SYMPTOMS.length)]
+                    + " alert " + i;
+            controller.addTask(workspace, description, USER, Collections.emptyList(), status);
+        }
+        long elapsed = System.nanoTime() - started;
+        System.gc();
+        System.out.printf(
+                "%,d tasks added in %,d ms, %,d ns a task; heap %,d MB%n",
+                count,
+                elapsed / 1_000_000,
+                elapsed / count,
+                (Benchmarks.usedHeap() - heap) >> 20
+        );
+
+        search(controller, workspace, "rare words", new TaskFilter().hasWords("disk db417"));
+        search(controller, workspace, "common word", new TaskFilter().hasWords("restart"));
+        search(controller, workspace, "rare regex", new TaskFilter().hasDescription("timeout alert 4242\\d$"));
+        search(controller, workspace, "common regex", new TaskFilter().hasDescription("the disk on web"));
+        search(controller, workspace, "no literals", new TaskFilter().hasDescription("db\\d+ a"));
+    }
+
+    private static void search(MemoryController controller, Workspace workspace, String name, TaskFilter filter) {
+        // a page of tasks and one more, as ListCommand finds
+        filter.limit(101);
+        TaskTable table = controller.tasks(workspace);
+        int[] found = new int[2];
+        Runnable indexed = () -> {
+            found[0] = controller.findTasks(workspace, filter).size();
+            sink += found[0];
+        };
+        Runnable scanned = () -> {
+            TaskTable.Snapshot snapshot = table.snapshot();
+            int n = 0;
+            for (int id = 1; id <= snapshot.lastId() && n < filter.getLimit(); id++) {
+                Task task = snapshot.get(id);
+                if (task != null && filter.test(task)) {
+                    n += 1;
+                }
+            }
+            found[1] = n;
+            sink += n;
+        };
+        int iterations = 50;
+        double indexedNanos = Benchmarks.time(iterations, iterations, indexed);
+        double scannedNanos = Benchmarks.time(iterations, iterations, scanned);
+        if (found[0] != found[1]) {
+            throw new IllegalStateException("searches differ: " + name);
+        }
+        System.out.printf(
+                "%-13s %3d found  index: %,11.0f ns  scan: %,11.0f ns  %6.1fx%n",
+                name,
+                found[0],
+                indexedNanos,
+                scannedNanos,
+                scannedNanos / indexedNanos
+        );
+    }
+}
+
+// END
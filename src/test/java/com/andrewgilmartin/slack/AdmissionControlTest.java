@@ -0,0 +1,122 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.slack.SlackAppDispatcher.Reply;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AdmissionControlTest {
+
+    @Test
+    public void testChannelRate() {
+        AdmissionControl admission = new AdmissionControl(100, 0);
+        admission.setChannelRate(0.001, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(admission.admit("C1", "U1"));
+            admission.release();
+        }
+        assertFalse(admission.admit("C1", "U2"));
+        // a runaway channel does not affect the others
+        assertTrue(admission.admit("C2", "U1"));
+        admission.release();
+    }
+
+    @Test
+    public void testUserRate() {
+        AdmissionControl admission = new AdmissionControl(100, 0);
+        admission.setUserRate(0.001, 1);
+        assertTrue(admission.admit("C1", "U1"));
+        admission.release();
+        assertFalse(admission.admit("C2", "U1"));
+        assertTrue(admission.admit("C1", "U2"));
+        admission.release();
+    }
+
+    @Test
+    public void testNoTokenTakenWhenShed() {
+        AdmissionControl admission = new AdmissionControl(100, 0);
+        admission.setChannelRate(0.001, 1);
+        admission.setUserRate(0.001, 1);
+        assertTrue(admission.admit("C1", "U1"));
+        admission.release();
+        // the user is over its rate, and the channel keeps its token
+        assertFalse(admission.admit("C2", "U1"));
+        assertTrue(admission.admit("C2", "U2"));
+        admission.release();
+    }
+
+    @Test
+    public void testEnter() {
+        AdmissionControl admission = new AdmissionControl(1, 1000);
+        admission.setChannelRate(0.001, 1);
+        assertTrue(admission.enter());
+        // entering does not wait
+        assertFalse(admission.enter());
+        assertTrue(admission.admitEntered("C1", "U1"));
+        admission.release();
+
+        // a request shed by its rate gives up its slot
+        assertTrue(admission.enter());
+        assertFalse(admission.admitEntered("C1", "U1"));
+        assertTrue(admission.enter());
+        admission.release();
+    }
+
+    @Test
+    public void testInFlight() throws Exception {
+        AdmissionControl admission = new AdmissionControl(1, 50);
+        assertTrue(admission.admit("C1", "U1"));
+        long start = System.nanoTime();
+        assertFalse(admission.admit("C2", "U2"));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+        admission.release();
+        assertTrue(admission.admit("C2", "U2"));
+        admission.release();
+    }
+
+    @Test
+    public void testBusyReply() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        SlackAppDispatcher dispatcher = new SlackAppDispatcher(new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return "gIkuvaNzQIHg97ATvDxqgjtO";
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                entered.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                response.getResponseContent().text("done");
+            }
+        });
+        dispatcher.setAdmissionControl(new AdmissionControl(1, 0));
+        Thread slow = new Thread(() -> dispatcher.dispatch(SlackForm.parse(SlackFormTest.SLASH_COMMAND.getBytes(StandardCharsets.UTF_8))));
+        slow.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        Reply reply = dispatcher.dispatch(SlackForm.parse(SlackFormTest.SLASH_COMMAND.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(SlackAppDispatcher.HTTP_OK, reply.getStatus());
+        assertTrue(reply.getResponse().isError());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reply.getResponse().render(out);
+        String json = out.toString("UTF-8");
+        assertTrue(json, json.contains("\"ephemeral\""));
+        assertTrue(json, json.contains("busy"));
+
+        finish.countDown();
+        slow.join(5000);
+        reply = dispatcher.dispatch(SlackForm.parse(SlackFormTest.SLASH_COMMAND.getBytes(StandardCharsets.UTF_8)));
+        assertFalse(reply.getResponse().isError());
+    }
+}
+
+// END
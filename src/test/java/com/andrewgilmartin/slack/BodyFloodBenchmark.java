@@ -0,0 +1,145 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.slack.httpserver.HttpServerSlackServer;
+import com.andrewgilmartin.slack.nio.NioSlackServer;
+import com.andrewgilmartin.util.Benchmarks;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Floods each server with request bodies and reports the bytes allocated per
+ * request and the peak heap. Bodies larger than the limit, with or without a
+ * declared length, should be refused cheaply; bodies within the limit should
+ * be read into pooled buffers.
+ *
+ * {@code
+ *
+ * java -Xmx256m ... BodyFloodBenchmark [clients [requests-per-client]]
+ *
+ * }
+ */
+public class BodyFloodBenchmark {
+
+    private static final String TOKEN = "benchmark";
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+
+    private static final SlackApp APP = new SlackApp() {
+        @Override
+        public String getVerificationToken() {
+            return TOKEN;
+        }
+
+        @Override
+        public void request(SlackRequest request, SlackResponse response) {
+            response.getResponseContent().text("ok");
+        }
+    };
+
+    public static void main(String... args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        System.setProperty("http.maxConnections", Integer.toString(clients * 2));
+        System.out.printf("clients=%d requests/client=%d max-body=%d%n", clients, requests, MAX_BODY_SIZE);
+        System.out.printf("%-4s %-20s %8s %8s %14s %10s%n", "", "body", "ok", "413", "bytes/request", "peak-heap");
+        for (String name : new String[]{"jdk", "nio"}) {
+            SlackServer server = "jdk".equals(name)
+                    ? new HttpServerSlackServer(0, "/ir", APP, 1000, Executors.newFixedThreadPool(10))
+                    : new NioSlackServer(0, "/ir", APP, 1000, 2, Executors.newFixedThreadPool(10));
+            try {
+                server.setMaxBodySize(MAX_BODY_SIZE);
+                server.run();
+                URL url = new URL("http://localhost:" + server.getPort() + "/ir");
+                run(name, "8KB", url, body(8 * 1024), false, clients, requests);
+                run(name, "1MB declared", url, body(1024 * 1024), false, clients, requests);
+                if ("jdk".equals(name)) {
+                    // the NIO server refuses requests without a declared length
+                    run(name, "1MB chunked", url, body(1024 * 1024), true, clients, requests);
+                }
+            } finally {
+                server.close();
+            }
+        }
+    }
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        Arrays.fill(body, (byte) 'x');
+        byte[] prefix = ("token=" + TOKEN + "&text=flood&padding=").getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(prefix, 0, body, 0, prefix.length);
+        return body;
+    }
+
+    private static void run(String server, String name, URL url, byte[] body, boolean chunked, int clients, int requests) throws Exception {
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(clients);
+        Benchmarks.usedHeap();
+        Benchmarks.resetPeakHeap();
+        long allocated = Benchmarks.totalAllocatedBytes();
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            threads[c] = new Thread(() -> {
+                for (int r = 0; r < requests; r++) {
+                    int status = post(url, body, chunked);
+                    if (status == 200) {
+                        ok.incrementAndGet();
+                    } else {
+                        refused.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+            threads[c].start();
+        }
+        done.await();
+        // the client threads have ended, so this is what the server allocated
+        long serverAllocated = Benchmarks.totalAllocatedBytes() - allocated;
+        System.out.printf(
+                "%-4s %-20s %8d %8d %14d %9dM%n",
+                server,
+                name,
+                ok.get(),
+                refused.get(),
+                serverAllocated / (clients * requests),
+                Benchmarks.peakHeap() / (1024 * 1024)
+        );
+    }
+
+    private static int post(URL url, byte[] body, boolean chunked) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            if (chunked) {
+                connection.setChunkedStreamingMode(8192);
+            } else {
+                connection.setFixedLengthStreamingMode(body.length);
+            }
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            if (status == 200) {
+                try (InputStream in = connection.getInputStream()) {
+                    while (in.read() != -1) {
+                        // drain
+                    }
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            // the server closed the connection on an oversized body
+            return -1;
+        }
+    }
+}
+
+// END
@@ -0,0 +1,121 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.slack.SlackAppDispatcher.Reply;
+import com.andrewgilmartin.util.ResponseBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SlackAppDispatcherTest {
+
+    private static final String TOKEN = "gIkuvaNzQIHg97ATvDxqgjtO";
+
+    private static SlackForm form(String text) {
+        return SlackForm.parse(SlackFormTest.SLASH_COMMAND.replaceFirst("&text=[^&]*", "&text=" + text).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String render(Reply reply) throws Exception {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        reply.render(buffer);
+        return new String(buffer.array(), 0, buffer.size(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testDuplicateIsReplayed() throws Exception {
+        AtomicInteger performed = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        SlackAppDispatcher dispatcher = new SlackAppDispatcher(new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                int n = performed.incrementAndGet();
+                entered.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                response.getResponseContent().text("performed " + request.getCommandText() + " " + n);
+            }
+        });
+        dispatcher.setDeduplication(60_000, 100);
+
+        Reply[] original = new Reply[1];
+        Thread thread = new Thread(() -> original[0] = dispatcher.dispatch(form("add")));
+        thread.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        // arrives while the original is still being performed
+        Reply[] retried = new Reply[1];
+        Thread retry = new Thread(() -> retried[0] = dispatcher.dispatch(form("add"), true));
+        retry.start();
+        Thread.sleep(50);
+        finish.countDown();
+        thread.join(5000);
+        retry.join(5000);
+
+        String expected = render(original[0]);
+        assertTrue(expected, expected.contains("performed add 1"));
+        assertEquals(SlackAppDispatcher.HTTP_OK, retried[0].getStatus());
+        assertEquals(expected, render(retried[0]));
+        assertEquals(expected, render(dispatcher.dispatch(form("add"), true)));
+        assertTrue(render(dispatcher.dispatch(form("list"))).contains("performed list 2"));
+        assertEquals(2, performed.get());
+    }
+
+    @Test
+    public void testRepeatIsPerformed() throws Exception {
+        AtomicInteger performed = new AtomicInteger();
+        SlackAppDispatcher dispatcher = new SlackAppDispatcher(new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                response.getResponseContent().text("performed " + performed.incrementAndGet());
+            }
+        });
+        dispatcher.setDeduplication(60_000, 100);
+        // a user running the same command again is not a retry
+        assertTrue(render(dispatcher.dispatch(form("list"))).contains("performed 1"));
+        assertTrue(render(dispatcher.dispatch(form("list"))).contains("performed 2"));
+        // a retry is sent the latest response
+        assertTrue(render(dispatcher.dispatch(form("list"), true)).contains("performed 2"));
+        assertEquals(2, performed.get());
+    }
+
+    @Test
+    public void testErrorIsNotReplayed() throws Exception {
+        AtomicInteger performed = new AtomicInteger();
+        SlackAppDispatcher dispatcher = new SlackAppDispatcher(new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                if (performed.incrementAndGet() == 1) {
+                    response.setErrorText("try again");
+                } else {
+                    response.getResponseContent().text("ok");
+                }
+            }
+        });
+        dispatcher.setDeduplication(60_000, 100);
+        assertTrue(dispatcher.dispatch(form("add")).getResponse().isError());
+        assertFalse(dispatcher.dispatch(form("add"), true).getResponse().isError());
+        assertEquals(2, performed.get());
+    }
+}
+
+// END
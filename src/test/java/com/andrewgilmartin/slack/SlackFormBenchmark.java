@@ -0,0 +1,96 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.util.Benchmarks;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the byte-level SlackForm parser with the previous
+ * String.split/URLDecoder path on real slash command payloads.
+ */
+public class SlackFormBenchmark {
+
+    private static final String[] PAYLOADS = new String[]{
+        // list
+        SlackFormTest.SLASH_COMMAND.replaceFirst("&text=[^&]*", "&text="),
+        // add with assignments and status
+        SlackFormTest.SLASH_COMMAND,
+        // update with a long description
+        SlackFormTest.SLASH_COMMAND.replaceFirst("&text=[^&]*", "&text=12+" + repeat("check+the+replica+lag+on+db-3+%26+db-4+", 10))
+    };
+
+    public static void main(String... args) throws Exception {
+        byte[][] payloads = new byte[PAYLOADS.length][];
+        for (int i = 0; i < PAYLOADS.length; i++) {
+            payloads[i] = PAYLOADS[i].getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] scratch = new byte[4096];
+        int iterations = 1_000_000;
+        Object[] sink = new Object[1];
+
+        Runnable legacy = () -> {
+            for (byte[] payload : payloads) {
+                try {
+                    Map<String, List<String>> p = parseParameters(new String(payload, StandardCharsets.UTF_8));
+                    sink[0] = p.get("text");
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        Runnable form = () -> {
+            for (byte[] payload : payloads) {
+                // the parser decodes in place, so work on a copy as a server would on its own buffer
+                System.arraycopy(payload, 0, scratch, 0, payload.length);
+                sink[0] = SlackForm.parse(scratch, 0, payload.length).getText();
+            }
+        };
+
+        System.out.printf("%-8s %10s %12s%n", "parser", "ns/parse", "bytes/parse");
+        for (int round = 0; round < 2; round++) {
+            report("legacy", legacy, iterations);
+            report("form", form, iterations);
+        }
+    }
+
+    private static void report(String name, Runnable body, int iterations) {
+        double ns = Benchmarks.time(iterations / 10, iterations, body) / PAYLOADS.length;
+        double bytes = Benchmarks.allocations(1000, iterations / 10, body) / PAYLOADS.length;
+        System.out.printf("%-8s %10.1f %12.1f%n", name, ns, bytes);
+    }
+
+    private static String repeat(String s, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The previous parser.
+     */
+    private static Map<String, List<String>> parseParameters(String query) throws UnsupportedEncodingException {
+        Map<String, List<String>> q = new HashMap<>();
+        if (query != null) {
+            String[] pp = query.split("&");
+            for (String p : pp) {
+                String[] nv = p.split("=", 2);
+                String name = URLDecoder.decode(nv[0], StandardCharsets.UTF_8.name());
+                String value = nv.length == 2 ? URLDecoder.decode(nv[1], StandardCharsets.UTF_8.name()) : "";
+                if (!q.containsKey(name)) {
+                    q.put(name, new LinkedList<>());
+                }
+                q.get(name).add(value);
+            }
+        }
+        return q;
+    }
+}
+
+// END
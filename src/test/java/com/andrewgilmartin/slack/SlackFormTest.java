@@ -0,0 +1,55 @@
+package com.andrewgilmartin.slack;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SlackFormTest {
+
+    static final String SLASH_COMMAND
+            = "token=gIkuvaNzQIHg97ATvDxqgjtO"
+            + "&team_id=T0001"
+            + "&team_domain=example"
+            + "&enterprise_id=E0001"
+            + "&enterprise_name=Globular%20Construct%20Inc"
+            + "&channel_id=C2147483705"
+            + "&channel_name=incident-2018-09-12"
+            + "&user_id=U2147483697"
+            + "&user_name=Steve"
+            + "&command=%2Fir"
+            + "&text=Restart+the+%3Cprimary%3E+database+%3C%40U2147483697%7Csteve%3E+%21red+%E2%9C%93"
+            + "&response_url=https%3A%2F%2Fhooks.slack.com%2Fcommands%2F1234%2F5678"
+            + "&trigger_id=13345224609.738474920.8088930838d88f008e0";
+
+    @Test
+    public void testSlashCommand() throws Exception {
+        SlackForm form = SlackForm.parse(SLASH_COMMAND.getBytes(StandardCharsets.UTF_8));
+        assertEquals("gIkuvaNzQIHg97ATvDxqgjtO", form.getToken());
+        assertEquals("T0001", form.getTeamId());
+        assertEquals("C2147483705", form.getChannelId());
+        assertEquals("incident-2018-09-12", form.getChannelName());
+        assertEquals("U2147483697", form.getUserId());
+        assertEquals("Steve", form.getUserName());
+        assertEquals("/ir", form.getCommand());
+        assertEquals(URLDecoder.decode("Restart+the+%3Cprimary%3E+database+%3C%40U2147483697%7Csteve%3E+%21red+%E2%9C%93", "UTF-8"), form.getText());
+        assertEquals("https://hooks.slack.com/commands/1234/5678", form.getResponseUrl());
+        assertNull(form.getSslCheck());
+    }
+
+    @Test
+    public void testEdgeCases() {
+        SlackForm form = SlackForm.parse("text&token=a&token=b&command=&user_id=%zz%4&channel_id=%41".getBytes(StandardCharsets.UTF_8));
+        assertEquals("", form.getText());
+        assertEquals("a", form.getToken());
+        assertEquals("", form.getCommand());
+        assertEquals("%zz%4", form.getUserId());
+        assertEquals("A", form.getChannelId());
+        assertNull(form.getUserName());
+
+        form = SlackForm.parse(new byte[0]);
+        assertNull(form.getToken());
+    }
+}
+
+// END
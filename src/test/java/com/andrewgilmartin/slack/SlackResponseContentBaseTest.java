@@ -0,0 +1,90 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.util.JsonEncoder;
+import com.andrewgilmartin.util.JsonWriter;
+import com.andrewgilmartin.util.ResponseBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SlackResponseContentBaseTest {
+
+    private static final String ALL_ASCII;
+
+    static {
+        StringBuilder s = new StringBuilder();
+        for (char c = 0; c < 128; c++) {
+            s.append(c);
+        }
+        ALL_ASCII = s.toString();
+    }
+
+    private static final String[] TEXTS = {
+        "",
+        "plain",
+        ALL_ASCII,
+        "<primary> & \"replica\" \\ done",
+        "caf\u00e9 \u2713 \ud83d\udd25 and a lone \ud83d surrogate",
+        "line one\nline two\r\n\ttabbed"
+    };
+
+    private static byte[] render(SlackResponseBase response) throws Exception {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        response.render(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.size());
+    }
+
+    /**
+     * Render the text as it was before escaping was fused: Slack escaped when
+     * added and JSON escaped when rendered.
+     */
+    private static byte[] expected(String text) {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        new JsonEncoder(buffer).hash().value("response_type", "ephemeral").value("text", text).end();
+        return Arrays.copyOf(buffer.array(), buffer.size());
+    }
+
+    @Test
+    public void testTextIsByteIdentical() throws Exception {
+        for (String text : TEXTS) {
+            SlackResponseBase response = new SlackResponseBase();
+            response.getResponseContent().text(text);
+            assertArrayEquals(text, expected(JsonWriter.escapeXml(text)), render(response));
+        }
+    }
+
+    @Test
+    public void testMarkupIsByteIdentical() throws Exception {
+        for (String text : TEXTS) {
+            SlackResponseBase response = new SlackResponseBase();
+            response.getResponseContent()
+                    .text(text)
+                    .line()
+                    .user("U1", "st\"eve")
+                    .space()
+                    .link(text, "https://example.com/?a=1&b=\"2\"")
+                    .space()
+                    .emoji("fire")
+                    .space()
+                    .text(42)
+                    .space()
+                    .text((Object) text);
+            String raw = JsonWriter.escapeXml(text)
+                    + (text.isEmpty() ? "" : "\n") // line() only follows text
+                    + "<U1|st\"eve>"
+                    + " "
+                    + "<https://example.com/?a=1&b=\"2\"|" + JsonWriter.escapeXml(text) + ">"
+                    + " "
+                    + ":fire:"
+                    + " "
+                    + "42"
+                    + " "
+                    + JsonWriter.escapeXml(text);
+            assertArrayEquals(text, expected(raw), render(response));
+            SlackResponseContentBase content = (SlackResponseContentBase) response.getResponseContent();
+            assertEquals(raw, content.getAttachments().get(0).getText());
+        }
+    }
+}
+
+// END
@@ -0,0 +1,58 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.util.Benchmarks;
+import com.andrewgilmartin.util.JsonEncoder;
+import com.andrewgilmartin.util.JsonWriter;
+import com.andrewgilmartin.util.ResponseBuffer;
+
+/**
+ * Compares escaping a task description in two stages, Slack's entities when
+ * the text is added and JSON when it is rendered, with the fused single pass
+ * escaping.
+ *
+ * {@code
+ *
+ * java ... SlackResponseEscapeBenchmark [description-lengths...]
+ *
+ * }
+ */
+public class SlackResponseEscapeBenchmark {
+
+    private static final String SENTENCE = "Restart the <primary> database & confirm \"replicas\" caught up. ";
+
+    public static void main(String... args) {
+        int[] lengths = new int[args.length > 0 ? args.length : 3];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = args.length > 0 ? Integer.parseInt(args[i]) : (int) Math.pow(10, i + 2) * 2;
+        }
+        for (int length : lengths) {
+            StringBuilder d = new StringBuilder();
+            while (d.length() < length) {
+                d.append(SENTENCE);
+            }
+            String description = d.substring(0, length);
+            int iterations = Math.max(1000, 20_000_000 / length);
+            StringBuilder text = new StringBuilder();
+            Runnable twoStage = () -> {
+                text.setLength(0);
+                text.append(JsonWriter.escapeXml(description));
+                new JsonEncoder(ResponseBuffer.get()).value(text);
+            };
+            Runnable fused = () -> {
+                text.setLength(0);
+                JsonEncoder.escapeWithEntities(text, description);
+                new JsonEncoder(ResponseBuffer.get()).escapedValue(text);
+            };
+            System.out.printf(
+                    "length=%-6d two-stage: %9.0fns %8.0fB/op  fused: %9.0fns %8.0fB/op%n",
+                    length,
+                    Benchmarks.time(iterations, iterations, twoStage),
+                    Benchmarks.allocations(iterations, iterations, twoStage),
+                    Benchmarks.time(iterations, iterations, fused),
+                    Benchmarks.allocations(iterations, iterations, fused)
+            );
+        }
+    }
+}
+
+// END
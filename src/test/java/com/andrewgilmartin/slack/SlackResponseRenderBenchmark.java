@@ -0,0 +1,115 @@
+package com.andrewgilmartin.slack;
+
+import com.andrewgilmartin.slack.SlackResponseContentBase.Attachment;
+import com.andrewgilmartin.util.Benchmarks;
+import com.andrewgilmartin.util.JsonWriter;
+import com.andrewgilmartin.util.ResponseBuffer;
+import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Compares rendering a list response with JsonWriter, as was done before the
+ * JsonEncoder, and with the JsonEncoder. Both render into a ResponseBuffer.
+ *
+ * {@code
+ *
+ * java ... SlackResponseRenderBenchmark [attachments...]
+ *
+ * }
+ */
+public class SlackResponseRenderBenchmark {
+
+    public static void main(String... args) throws Exception {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10, 100, 500};
+        for (int size : sizes) {
+            SlackResponseBase response = list(size);
+            int iterations = Math.max(1000, 200_000 / size);
+            int[] writerBytes = new int[1];
+            Runnable writer = () -> {
+                try {
+                    ResponseBuffer buffer = ResponseBuffer.get();
+                    renderWithJsonWriter(response, buffer);
+                    writerBytes[0] = buffer.size();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            int[] encoderBytes = new int[1];
+            Runnable encoder = () -> {
+                try {
+                    ResponseBuffer buffer = ResponseBuffer.get();
+                    response.render(buffer);
+                    encoderBytes[0] = buffer.size();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            System.out.printf(
+                    "attachments=%-4d JsonWriter: %9.0fns %8.0fB/op %7dB  JsonEncoder: %9.0fns %8.0fB/op %7dB%n",
+                    size,
+                    Benchmarks.time(iterations, iterations, writer),
+                    Benchmarks.allocations(iterations, iterations, writer),
+                    writerBytes[0],
+                    Benchmarks.time(iterations, iterations, encoder),
+                    Benchmarks.allocations(iterations, iterations, encoder),
+                    encoderBytes[0]
+            );
+        }
+    }
+
+    static SlackResponseBase list(int size) {
+        SlackResponseBase response = new SlackResponseBase();
+        SlackResponseContent content = response.getResponseContent().text("Tasks in #incident-2018-09-12");
+        for (int i = 0; i < size; i++) {
+            content.attachment()
+                    .color(i % 2 == 0 ? Color.ORANGE : Color.GREEN)
+                    .title("Task " + i)
+                    .text("Restart the \"primary\" database, then confirm that all of the replicas have caught up")
+                    .line()
+                    .text("assigned to <@U2147483697|steve> and <@U2147483698|jane> \u2713");
+        }
+        return response;
+    }
+
+    /**
+     * The render method as it was with JsonWriter.
+     */
+    static void renderWithJsonWriter(SlackResponseBase response, ResponseBuffer buffer) throws IOException {
+        JsonWriter json = new JsonWriter(buffer.writer());
+        SlackResponseContentBase content = (SlackResponseContentBase) response.getResponseContent();
+        Iterator<Attachment> i = content.getAttachments().iterator();
+        if (i.hasNext()) {
+            Attachment attachment = i.next();
+            json.hash();
+            json.value("response_type", response.isBroadcastResponse() ? "in_channel" : "ephemeral");
+            json.value("text", attachment.getText());
+            if (i.hasNext()) {
+                json.key("attachments");
+                json.array();
+                do {
+                    json.hash();
+                    attachment = i.next();
+                    if (attachment.hasTitle()) {
+                        json.value("title", attachment.getTitle());
+                    }
+                    if (attachment.hasColor()) {
+                        json.value("color", response.toSlackColor(attachment.getColor()));
+                    }
+                    json.value("text", attachment.getText());
+                    json.value("mrkdwn", true);
+                    json.end();
+                } while (i.hasNext());
+                json.end();
+            }
+            json.end();
+        }
+        json.flush();
+    }
+}
+
+// END
@@ -0,0 +1,44 @@
+package com.andrewgilmartin.slack;
+
+import java.util.regex.Matcher;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SlackUserBaseTest {
+
+    @Test
+    public void testParseMatchesPattern() {
+        String[] texts = {
+            "<U1|alice>",
+            "<U1|>",
+            "<|alice>",
+            "<|>",
+            "<U1|al|ice>",
+            "<U1|a>b>",
+            "<U1>",
+            "U1|alice",
+            "<U1|alice",
+            "<U1|alice> ",
+            " <U1|alice>",
+            "<U1|ali\nce>",
+            "<U1|ali\u2028ce>",
+            "<U\u00e91|caf\u00e9>",
+            "<>",
+            "<",
+            ""
+        };
+        for (String text : texts) {
+            Matcher m = SlackUserBase.SLACK_USER_PATTERN.matcher(text);
+            SlackUserBase user = SlackUserBase.parseSlackUserBase(text);
+            if (m.matches()) {
+                assertNotNull(text, user);
+                assertEquals(text, m.group(1), user.getId());
+                assertEquals(text, m.group(2), user.getName());
+            } else {
+                assertNull(text, user);
+            }
+        }
+    }
+}
+
+// END
@@ -0,0 +1,173 @@
+package com.andrewgilmartin.slack.httpserver;
+
+import com.andrewgilmartin.incidentresponse.Controller;
+import com.andrewgilmartin.incidentresponse.IncidentResponseSlackApp;
+import com.andrewgilmartin.incidentresponse.Status;
+import com.andrewgilmartin.incidentresponse.StatusSet;
+import com.andrewgilmartin.incidentresponse.Task;
+import com.andrewgilmartin.incidentresponse.TaskFilter;
+import com.andrewgilmartin.incidentresponse.User;
+import com.andrewgilmartin.incidentresponse.Workspace;
+import com.andrewgilmartin.slack.SlackUser;
+import com.andrewgilmartin.util.Benchmarks;
+import com.andrewgilmartin.util.ExecutorMode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures throughput and p99 latency of each executor mode against a
+ * controller that stands in for a slow SimpleDB.
+ *
+ * {@code
+ *
+ * java ... HttpServerSlackServerBenchmark [clients [requests-per-client [delay-millis]]]
+ *
+ * }
+ */
+public class HttpServerSlackServerBenchmark {
+
+    private static final String TOKEN = "benchmark";
+
+    public static void main(String... args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long delay = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        System.out.printf("clients=%d requests/client=%d controller-delay=%dms%n", clients, requests, delay);
+        for (ExecutorMode mode : ExecutorMode.values()) {
+            try {
+                run(mode, clients, requests, delay);
+            } catch (IllegalStateException e) {
+                System.out.printf("%-8s skipped: %s%n", mode, e.getMessage());
+            }
+        }
+    }
+
+    private static void run(ExecutorMode mode, int clients, int requests, long delay) throws Exception {
+        IncidentResponseSlackApp app = new IncidentResponseSlackApp(new SlowController(delay), TOKEN);
+        try (HttpServerSlackServer server = new HttpServerSlackServer(0, "/ir", app, 1000, mode.create(10, 100))) {
+            server.run();
+            URL url = new URL("http://localhost:" + server.getPort() + "/ir");
+            long[] latencies = new long[clients * requests];
+            AtomicInteger count = new AtomicInteger();
+            AtomicInteger failures = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(clients);
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                Thread thread = new Thread(() -> {
+                    for (int r = 0; r < requests; r++) {
+                        long t = System.nanoTime();
+                        try {
+                            post(url);
+                            latencies[count.getAndIncrement()] = System.nanoTime() - t;
+                        } catch (IOException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                });
+                thread.start();
+            }
+            done.await();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            int n = count.get();
+            System.out.printf(
+                    "%-8s requests/sec=%8.1f p50=%6.1fms p99=%6.1fms failures=%d%n",
+                    mode,
+                    n / seconds,
+                    Benchmarks.percentile(latencies, n, 0.50) / 1e6,
+                    Benchmarks.percentile(latencies, n, 0.99) / 1e6,
+                    failures.get()
+            );
+        }
+    }
+
+    private static void post(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write((
+                    "token=" + TOKEN
+                    + "&channel_id=C1&channel_name=incident"
+                    + "&user_id=U1&user_name=responder"
+                    + "&command=%2Fir&text=").getBytes(StandardCharsets.UTF_8));
+        }
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // drain
+            }
+        }
+    }
+
+    /**
+     * A controller that has no tasks and takes its time saying so.
+     */
+    private static class SlowController implements Controller {
+
+        private final long delay;
+
+        public SlowController(long delay) {
+            this.delay = delay;
+        }
+
+        private void pause() {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public Workspace findWorkspace(String workspaceId) {
+            return new Workspace(workspaceId, StatusSet.COMMON_STATUS_SET);
+        }
+
+        @Override
+        public Task addTask(Workspace workspace, String description, User creator, Collection<User> assignments, Status status) {
+            pause();
+            return null;
+        }
+
+        @Override
+        public Task updateTask(Workspace workspace, String taskId, String description, User creator, Collection<User> assignments, Status status) {
+            pause();
+            return null;
+        }
+
+        @Override
+        public Task updateTask(Workspace workspace, String taskId, long version, String description, User creator, Collection<User> assignments, Status status) {
+            pause();
+            return null;
+        }
+
+        @Override
+        public Task findTask(Workspace workspace, String taskId) {
+            pause();
+            return null;
+        }
+
+        @Override
+        public List<Task> findTasks(Workspace workspace, TaskFilter taskFilter) {
+            pause();
+            return Collections.emptyList();
+        }
+
+        @Override
+        public User findcreateUser(SlackUser slackUser) {
+            return new User(slackUser);
+        }
+    }
+}
+
+// END
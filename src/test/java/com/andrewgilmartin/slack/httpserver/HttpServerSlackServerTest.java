@@ -0,0 +1,212 @@
+package com.andrewgilmartin.slack.httpserver;
+
+import com.andrewgilmartin.slack.HttpSlackResponsePoster;
+import com.andrewgilmartin.slack.SlackApp;
+import com.andrewgilmartin.slack.SlackRequest;
+import com.andrewgilmartin.slack.SlackResponse;
+import com.andrewgilmartin.util.IO;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HttpServerSlackServerTest {
+
+    private static final String TOKEN = "test-token";
+
+    @Test
+    public void testDeferredResponse() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SlackApp app = new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                response.getResponseContent().text("done " + request.getCommandText());
+            }
+        };
+
+        // stand-in for Slack's response_url
+        BlockingQueue<String> posted = new ArrayBlockingQueue<>(1);
+        HttpServer standIn = HttpServer.create(new InetSocketAddress(0), 10);
+        standIn.createContext("/response", (he) -> {
+            String json = IO.slurp(he.getRequestBody());
+            he.sendResponseHeaders(200, -1);
+            he.close();
+            posted.add(json);
+        });
+        standIn.start();
+
+        try (HttpServerSlackServer server = new HttpServerSlackServer(0, "/ir", app, 10, Executors.newFixedThreadPool(2))) {
+            server.setDeferredResponses(Executors.newFixedThreadPool(2), new HttpSlackResponsePoster());
+            server.run();
+
+            String responseUrl = "http://localhost:" + standIn.getAddress().getPort() + "/response";
+            // the acknowledgement must arrive while the app is still blocked
+            assertEquals(200, post(server.getPort(), "token=" + TOKEN + "&text=hello&response_url=" + responseUrl));
+            assertNull(posted.poll());
+
+            release.countDown();
+            String json = posted.poll(10, TimeUnit.SECONDS);
+            assertNotNull(json);
+            assertTrue(json.contains("\"done hello\""));
+        } finally {
+            standIn.stop(0);
+        }
+    }
+
+    @Test
+    public void testContentLength() throws Exception {
+        SlackApp app = new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                response.getResponseContent().text("ok");
+            }
+        };
+        try (HttpServerSlackServer server = new HttpServerSlackServer(0, "/ir", app, 10, Executors.newFixedThreadPool(2))) {
+            server.run();
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/ir").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(("token=" + TOKEN).getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(200, connection.getResponseCode());
+            assertNull(connection.getHeaderField("Transfer-Encoding"));
+            String body;
+            try (InputStream in = connection.getInputStream()) {
+                body = IO.slurp(in);
+            }
+            assertEquals(Integer.toString(body.getBytes(StandardCharsets.UTF_8).length), connection.getHeaderField("Content-Length"));
+            assertTrue(body, body.contains("\"ok\""));
+        }
+    }
+
+    @Test
+    public void testMetricsToken() throws Exception {
+        SlackApp app = new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                response.getResponseContent().text("ok");
+            }
+        };
+        try (HttpServerSlackServer server = new HttpServerSlackServer(0, "/ir", app, 10, Executors.newFixedThreadPool(2))) {
+            server.run();
+            URL metrics = new URL("http://localhost:" + server.getPort() + "/metrics");
+            assertEquals(404, ((HttpURLConnection) metrics.openConnection()).getResponseCode());
+            server.setMetricsToken("secret");
+            assertEquals(401, ((HttpURLConnection) metrics.openConnection()).getResponseCode());
+            HttpURLConnection connection = (HttpURLConnection) metrics.openConnection();
+            connection.setRequestProperty("Authorization", "Bearer secret");
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream in = connection.getInputStream()) {
+                assertTrue(IO.slurp(in).contains("slack."));
+            }
+        }
+    }
+
+    @Test
+    public void testUnauthorized() throws Exception {
+        SlackApp app = new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                fail("unauthorized request was performed");
+            }
+        };
+        try (HttpServerSlackServer server = new HttpServerSlackServer(0, "/ir", app, 10, Executors.newFixedThreadPool(2))) {
+            server.run();
+            assertEquals(401, post(server.getPort(), "token=wrong&text=hello"));
+        }
+    }
+
+    @Test
+    public void testPayloadTooLarge() throws Exception {
+        SlackApp app = new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                response.getResponseContent().text("ok");
+            }
+        };
+        try (HttpServerSlackServer server = new HttpServerSlackServer(0, "/ir", app, 10, Executors.newFixedThreadPool(2))) {
+            server.setMaxBodySize(64);
+            server.run();
+            String small = "token=" + TOKEN + "&text=hello";
+            StringBuilder large = new StringBuilder(small).append("&padding=");
+            while (large.length() <= 64) {
+                large.append("xxxxxxxx");
+            }
+            assertEquals(200, post(server.getPort(), small));
+            assertEquals(200, post(server.getPort(), large.substring(0, 64))); // exactly the limit
+            // declared length
+            assertEquals(413, post(server.getPort(), large.toString()));
+            // no declared length
+            assertEquals(413, post(server.getPort(), large.toString(), true));
+        }
+    }
+
+    private static int post(int port, String body) throws IOException {
+        return post(port, body, false);
+    }
+
+    private static int post(int port, String body, boolean chunked) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/ir").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (chunked) {
+            connection.setChunkedStreamingMode(16);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        if (status == 200) {
+            try (InputStream in = connection.getInputStream()) {
+                while (in.read() != -1) {
+                    // drain
+                }
+            }
+        }
+        return status;
+    }
+}
+
+// END
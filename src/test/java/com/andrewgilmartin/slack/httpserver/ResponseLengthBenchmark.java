@@ -0,0 +1,199 @@
+package com.andrewgilmartin.slack.httpserver;
+
+import com.andrewgilmartin.slack.SlackApp;
+import com.andrewgilmartin.slack.SlackRequest;
+import com.andrewgilmartin.slack.SlackResponse;
+import com.andrewgilmartin.slack.SlackResponseBase;
+import com.andrewgilmartin.slack.SlackServer;
+import com.andrewgilmartin.slack.nio.NioSlackServer;
+import com.andrewgilmartin.util.Benchmarks;
+import com.andrewgilmartin.util.IO;
+import com.andrewgilmartin.util.ResponseBuffer;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the historical chunked response, streamed while rendering, with the
+ * response rendered into the per-thread buffer and sent with an exact length.
+ * Reports the bytes on the wire, the request latency over a keep-alive
+ * connection, and the bytes allocated per rendering. The HttpServer reads its
+ * configuration once and so run each mode in its own JVM. The chunked mode is
+ * the historical path including the HttpServer's default of Nagle's algorithm.
+ *
+ * {@code
+ *
+ * java ... ResponseLengthBenchmark chunked|fixed|nio [attachments [requests]]
+ *
+ * }
+ */
+public class ResponseLengthBenchmark {
+
+    private static final String TOKEN = "benchmark";
+    private static final String BODY = "token=" + TOKEN + "&channel_id=C1&user_id=U1&command=%2Fir&text=list";
+
+    public static void main(String... args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "fixed";
+        int attachments = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        SlackApp app = new ListApp(attachments);
+        System.out.printf("mode=%s attachments=%d requests=%d%n", mode, attachments, requests);
+        switch (mode) {
+            case "chunked": {
+                HttpServer chunked = HttpServer.create(new InetSocketAddress(0), 10);
+                chunked.setExecutor(Executors.newFixedThreadPool(2));
+                chunked.createContext("/ir", (he) -> {
+                    IO.slurp(he.getRequestBody());
+                    SlackResponseBase response = new SlackResponseBase();
+                    app.request(null, response);
+                    he.getResponseHeaders().add("content-type", "application/json; charset=utf-8");
+                    he.sendResponseHeaders(200, 0);
+                    response.render(he.getResponseBody());
+                });
+                chunked.start();
+                try {
+                    run(mode, chunked.getAddress().getPort(), requests);
+                } finally {
+                    chunked.stop(0);
+                }
+                break;
+            }
+            case "fixed": {
+                try (SlackServer server = new HttpServerSlackServer(0, "/ir", app, 10, Executors.newFixedThreadPool(2))) {
+                    server.run();
+                    run(mode, server.getPort(), requests);
+                }
+                break;
+            }
+            case "nio": {
+                try (SlackServer server = new NioSlackServer(0, "/ir", app, 10, 1, Executors.newFixedThreadPool(2))) {
+                    server.run();
+                    run(mode, server.getPort(), requests);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(mode);
+        }
+
+        SlackResponseBase response = new SlackResponseBase();
+        app.request(null, response);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.out.printf(
+                "render allocation: stream=%.0fB buffer=%.0fB%n",
+                Benchmarks.allocations(10_000, 10_000, () -> {
+                    try {
+                        out.reset();
+                        response.render(out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }),
+                Benchmarks.allocations(10_000, 10_000, () -> {
+                    try {
+                        response.render(ResponseBuffer.get());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+        );
+    }
+
+    private static void run(String name, int port, int requests) throws Exception {
+        URL url = new URL("http://localhost:" + port + "/ir");
+        long[] latencies = new long[requests];
+        for (int i = 0; i < requests / 10; i++) {
+            post(url);
+        }
+        for (int i = 0; i < requests; i++) {
+            long t = System.nanoTime();
+            post(url);
+            latencies[i] = System.nanoTime() - t;
+        }
+        System.out.printf(
+                "%-8s wire=%dB p50=%6.3fms p99=%6.3fms%n",
+                name,
+                wireBytes(port),
+                Benchmarks.percentile(latencies, requests, 0.50) / 1e6,
+                Benchmarks.percentile(latencies, requests, 0.99) / 1e6
+        );
+    }
+
+    private static void post(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                // drain
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes, headers included, of one response.
+     */
+    private static long wireBytes(int port) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write((
+                    "POST /ir HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Connection: close\r\n"
+                    + "Content-Length: " + BODY.length() + "\r\n"
+                    + "\r\n"
+                    + BODY).getBytes(StandardCharsets.UTF_8));
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            long total = 0;
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * A stand-in for a task list response.
+     */
+    private static class ListApp implements SlackApp {
+
+        private final int attachments;
+
+        public ListApp(int attachments) {
+            this.attachments = attachments;
+        }
+
+        @Override
+        public String getVerificationToken() {
+            return TOKEN;
+        }
+
+        @Override
+        public void request(SlackRequest request, SlackResponse response) {
+            response.getResponseContent().text("Tasks");
+            for (int i = 0; i < attachments; i++) {
+                response.getResponseContent()
+                        .attachment()
+                        .color(Color.ORANGE)
+                        .title("Task " + i)
+                        .text("Restart the primary database and confirm the replicas caught up");
+            }
+        }
+    }
+}
+
+// END
@@ -0,0 +1,127 @@
+package com.andrewgilmartin.slack.nio;
+
+import com.andrewgilmartin.slack.SlackApp;
+import com.andrewgilmartin.slack.SlackRequest;
+import com.andrewgilmartin.slack.SlackResponse;
+import com.andrewgilmartin.slack.SlackServer;
+import com.andrewgilmartin.slack.httpserver.HttpServerSlackServer;
+import com.andrewgilmartin.util.Benchmarks;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares requests/sec of the JDK HttpServer front end and the NIO front end
+ * while each holds many idle keep-alive connections.
+ *
+ * {@code
+ *
+ * java ... NioSlackServerBenchmark [idle-connections [clients [requests-per-client]]]
+ *
+ * }
+ */
+public class NioSlackServerBenchmark {
+
+    private static final String TOKEN = "benchmark";
+
+    private static final SlackApp APP = new SlackApp() {
+        @Override
+        public String getVerificationToken() {
+            return TOKEN;
+        }
+
+        @Override
+        public void request(SlackRequest request, SlackResponse response) {
+            response.getResponseContent().text("No matching tasks");
+        }
+    };
+
+    public static void main(String... args) throws Exception {
+        int idle = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        System.setProperty("http.maxConnections", Integer.toString(clients * 2));
+        System.out.printf("idle-connections=%d clients=%d requests/client=%d%n", idle, clients, requests);
+        try (SlackServer server = new HttpServerSlackServer(0, "/ir", APP, 1000, Executors.newFixedThreadPool(10))) {
+            run("jdk", server, idle, clients, requests);
+        }
+        try (SlackServer server = new NioSlackServer(0, "/ir", APP, 1000, 2, Executors.newFixedThreadPool(10))) {
+            run("nio", server, idle, clients, requests);
+        }
+    }
+
+    private static void run(String name, SlackServer server, int idle, int clients, int requests) throws Exception {
+        server.run();
+        List<Socket> idlers = new ArrayList<>(idle);
+        try {
+            for (int i = 0; i < idle; i++) {
+                idlers.add(new Socket("localhost", server.getPort()));
+            }
+            URL url = new URL("http://localhost:" + server.getPort() + "/ir");
+            long[] latencies = new long[clients * requests];
+            AtomicInteger count = new AtomicInteger();
+            AtomicInteger failures = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(clients);
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                new Thread(() -> {
+                    for (int r = 0; r < requests; r++) {
+                        long t = System.nanoTime();
+                        try {
+                            post(url);
+                            latencies[count.getAndIncrement()] = System.nanoTime() - t;
+                        } catch (IOException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            int n = count.get();
+            System.out.printf(
+                    "%-4s requests/sec=%9.1f p50=%6.2fms p99=%6.2fms failures=%d%n",
+                    name,
+                    n / seconds,
+                    Benchmarks.percentile(latencies, n, 0.50) / 1e6,
+                    Benchmarks.percentile(latencies, n, 0.99) / 1e6,
+                    failures.get()
+            );
+        } finally {
+            for (Socket socket : idlers) {
+                socket.close();
+            }
+        }
+    }
+
+    private static void post(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write((
+                    "token=" + TOKEN
+                    + "&channel_id=C1&channel_name=incident"
+                    + "&user_id=U1&user_name=responder"
+                    + "&command=%2Fir&text=").getBytes(StandardCharsets.UTF_8));
+        }
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // drain
+            }
+        }
+    }
+}
+
+// END
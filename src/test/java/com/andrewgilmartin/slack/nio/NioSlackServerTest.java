@@ -0,0 +1,259 @@
+package com.andrewgilmartin.slack.nio;
+
+import com.andrewgilmartin.slack.AdmissionControl;
+import com.andrewgilmartin.slack.SlackApp;
+import com.andrewgilmartin.slack.SlackRequest;
+import com.andrewgilmartin.slack.SlackResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class NioSlackServerTest {
+
+    private static final String TOKEN = "test-token";
+
+    private static final SlackApp ECHO_APP = new SlackApp() {
+        @Override
+        public String getVerificationToken() {
+            return TOKEN;
+        }
+
+        @Override
+        public void request(SlackRequest request, SlackResponse response) {
+            response.getResponseContent().text("echo " + request.getCommandText());
+        }
+    };
+
+    private static NioSlackServer start() throws IOException {
+        NioSlackServer server = new NioSlackServer(0, "/ir", ECHO_APP, 100, 2, Executors.newFixedThreadPool(2));
+        server.setReadTimeout(500);
+        server.setIdleTimeout(500);
+        server.run();
+        return server;
+    }
+
+    private static String request(String path, String body) {
+        return "POST " + path + " HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: application/x-www-form-urlencoded\r\n"
+                + "Content-Length: " + body.getBytes(StandardCharsets.UTF_8).length + "\r\n"
+                + "\r\n"
+                + body;
+    }
+
+    /**
+     * Read one response and return its body, or null at end of stream.
+     */
+    private static String response(InputStream in, int expectedStatus) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            head.write(b);
+            byte[] h = head.toByteArray();
+            int n = h.length;
+            if (n >= 4 && h[n - 4] == '\r' && h[n - 3] == '\n' && h[n - 2] == '\r' && h[n - 1] == '\n') {
+                break;
+            }
+        }
+        if (b == -1) {
+            return null;
+        }
+        String headers = new String(head.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(headers, headers.startsWith("HTTP/1.1 " + expectedStatus + " "));
+        int length = 0;
+        for (String line : headers.split("\r\n")) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+        byte[] body = new byte[length];
+        for (int i = 0; i < length; i++) {
+            body[i] = (byte) in.read();
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testKeepAliveAndPipelining() throws Exception {
+        try (NioSlackServer server = start(); Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write(request("/ir", "token=" + TOKEN + "&text=one").getBytes(StandardCharsets.UTF_8));
+            assertTrue(response(in, 200).contains("\"echo one\""));
+
+            // two requests in one write, the second split across the first's tail
+            out.write((request("/ir", "token=" + TOKEN + "&text=two") + request("/ir", "token=" + TOKEN + "&text=three")).getBytes(StandardCharsets.UTF_8));
+            assertTrue(response(in, 200).contains("\"echo two\""));
+            assertTrue(response(in, 200).contains("\"echo three\""));
+
+            out.write(request("/elsewhere", "token=" + TOKEN).getBytes(StandardCharsets.UTF_8));
+            response(in, 404);
+
+            out.write(request("/ir", "token=wrong").getBytes(StandardCharsets.UTF_8));
+            response(in, 401);
+        }
+    }
+
+    @Test
+    public void testLargeResponse() throws Exception {
+        SlackApp app = new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < 200_000; i++) {
+                    text.append(request.getCommandText());
+                }
+                response.getResponseContent().text(text);
+            }
+        };
+        try (NioSlackServer server = new NioSlackServer(0, "/ir", app, 100, 1, Executors.newFixedThreadPool(1)); Socket socket = new Socket("localhost", server.getPort())) {
+            server.run();
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            // larger than the socket buffers so the event loop writes the rest
+            out.write(request("/ir", "token=" + TOKEN + "&text=abcdefghij").getBytes(StandardCharsets.UTF_8));
+            Thread.sleep(200);
+            String body = response(in, 200);
+            assertTrue(body.length() > 2_000_000);
+            assertTrue(body.endsWith("abcdefghij\"}"));
+            // the connection is still usable
+            out.write(request("/ir", "token=" + TOKEN + "&text=x").getBytes(StandardCharsets.UTF_8));
+            assertTrue(response(in, 200).contains("xxxxx"));
+        }
+    }
+
+    @Test
+    public void testSlowClientIsClosed() throws Exception {
+        try (NioSlackServer server = start(); Socket socket = new Socket("localhost", server.getPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write("POST /ir HTTP/1.1\r\nContent-Length: 100\r\n\r\ntoken=".getBytes(StandardCharsets.UTF_8));
+            // never send the rest of the body
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testMetricsToken() throws Exception {
+        String get = "GET /metrics HTTP/1.1\r\nHost: localhost\r\n";
+        try (NioSlackServer server = start(); Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            out.write((get + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            response(in, 404);
+            server.setMetricsToken("secret");
+            out.write((get + "Authorization: Bearer wrong\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            response(in, 401);
+            out.write((get + "Authorization: Bearer secret\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            assertTrue(response(in, 200).contains("slack."));
+        }
+    }
+
+    @Test
+    public void testShedBeforeQueued() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        SlackApp app = new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                entered.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                response.getResponseContent().text("done");
+            }
+        };
+        // one worker, so a second request would wait in the queue
+        try (NioSlackServer server = new NioSlackServer(0, "/ir", app, 100, 1, Executors.newFixedThreadPool(1));
+                Socket slow = new Socket("localhost", server.getPort());
+                Socket shed = new Socket("localhost", server.getPort())) {
+            server.setAdmissionControl(new AdmissionControl(1, 1000));
+            server.run();
+            slow.getOutputStream().write(request("/ir", "token=" + TOKEN).getBytes(StandardCharsets.UTF_8));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            shed.getOutputStream().write(request("/ir", "token=" + TOKEN).getBytes(StandardCharsets.UTF_8));
+            assertTrue(response(shed.getInputStream(), 200).contains("busy"));
+            finish.countDown();
+            assertTrue(response(slow.getInputStream(), 200).contains("done"));
+        }
+    }
+
+    @Test
+    public void testPayloadTooLarge() throws Exception {
+        try (NioSlackServer server = start(); Socket socket = new Socket("localhost", server.getPort())) {
+            socket.getOutputStream().write("POST /ir HTTP/1.1\r\nContent-Length: 100000000\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+            response(socket.getInputStream(), 413);
+        }
+    }
+
+    @Test
+    public void testChunkedRequestIsRefused() throws Exception {
+        try (NioSlackServer server = start(); Socket socket = new Socket("localhost", server.getPort())) {
+            socket.getOutputStream().write("POST /ir HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+            response(socket.getInputStream(), 411);
+        }
+    }
+
+    @Test
+    public void testFailedRequestClosesConnection() throws Exception {
+        SlackApp app = new SlackApp() {
+            @Override
+            public String getVerificationToken() {
+                return TOKEN;
+            }
+
+            @Override
+            public void request(SlackRequest request, SlackResponse response) {
+                throw new IllegalStateException("failed");
+            }
+        };
+        try (NioSlackServer server = new NioSlackServer(0, "/ir", app, 100, 1, Executors.newFixedThreadPool(1)); Socket socket = new Socket("localhost", server.getPort())) {
+            server.run();
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request("/ir", "token=" + TOKEN).getBytes(StandardCharsets.UTF_8));
+            InputStream in = socket.getInputStream();
+            response(in, 500);
+            // the reply said Connection: close
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testExpectContinue() throws Exception {
+        String body = "token=" + TOKEN + "&text=continued";
+        try (NioSlackServer server = start(); Socket socket = new Socket("localhost", server.getPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            out.write(("POST /ir HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: " + body.length() + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            assertEquals("", response(in, 100));
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+            assertTrue(response(in, 200).contains("\"echo continued\""));
+            // the connection is kept alive
+            out.write(request("/ir", "token=" + TOKEN + "&text=again").getBytes(StandardCharsets.UTF_8));
+            assertTrue(response(in, 200).contains("\"echo again\""));
+        }
+    }
+}
+
+// END
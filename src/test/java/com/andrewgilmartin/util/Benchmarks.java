@@ -0,0 +1,146 @@
+package com.andrewgilmartin.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Small helpers shared by the benchmark programs. The benchmarks are plain
+ * main programs, rather than JMH harnesses, so that the project continues to
+ * need only what the JRE provides. Run them with, eg,
+ *
+ * {@code
+ *
+ * mvn test-compile exec:java \
+ *   -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.andrewgilmartin.slack.httpserver.HttpServerSlackServerBenchmark
+ *
+ * }
+ */
+public class Benchmarks {
+
+    /**
+     * Returns the p-th percentile, eg 0.99, of the given latencies. The array
+     * is sorted in place.
+     */
+    public static long percentile(long[] latencies, int count, double p) {
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(latencies, 0, count);
+        int i = (int) Math.ceil(p * count) - 1;
+        return latencies[Math.max(0, Math.min(count - 1, i))];
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or
+     * -1 if the JVM does not support measuring it.
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+            if (b.isThreadAllocatedMemorySupported()) {
+                return b.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of bytes allocated by all live threads so far, or -1
+     * if the JVM does not support measuring it. Threads that have ended are
+     * not counted.
+     */
+    public static long totalAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+            if (b.isThreadAllocatedMemorySupported()) {
+                long total = 0;
+                for (long bytes : b.getThreadAllocatedBytes(b.getAllThreadIds())) {
+                    if (bytes > 0) {
+                        total += bytes;
+                    }
+                }
+                return total;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reset the heap's peak usage.
+     */
+    public static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Returns the heap's peak usage since it was last reset. This is the sum
+     * of the peaks of each heap pool and so is an upper bound.
+     */
+    public static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Returns the heap in use after encouraging a garbage collection.
+     */
+    public static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Run the body repeatedly for the warmup and then measured iterations and
+     * return the mean nanoseconds per iteration.
+     */
+    public static double time(int warmup, int iterations, Runnable body) {
+        for (int i = 0; i < warmup; i++) {
+            body.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            body.run();
+        }
+        return (double) (System.nanoTime() - start) / iterations;
+    }
+
+    /**
+     * Run the body repeatedly and return the mean bytes allocated per
+     * iteration.
+     */
+    public static double allocations(int warmup, int iterations, Runnable body) {
+        for (int i = 0; i < warmup; i++) {
+            body.run();
+        }
+        long start = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            body.run();
+        }
+        return (double) (allocatedBytes() - start) / iterations;
+    }
+}
+
+// END
@@ -0,0 +1,46 @@
+package com.andrewgilmartin.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testSizeClasses() {
+        BufferPool pool = new BufferPool(64 * 1024, 4);
+        assertEquals(1024, pool.acquire(0).length);
+        assertEquals(1024, pool.acquire(300).length);
+        assertEquals(2048, pool.acquire(1025).length);
+        assertEquals(64 * 1024, pool.acquire(40_000).length);
+        assertEquals(64 * 1024, pool.acquire().length);
+    }
+
+    @Test
+    public void testLargestSizeNotAPowerOfTwo() {
+        BufferPool pool = new BufferPool(3000, 4);
+        assertEquals(2048, pool.acquire(2000).length);
+        assertEquals(3000, pool.acquire(2049).length);
+        assertEquals(3000, pool.acquire().length);
+    }
+
+    @Test
+    public void testReleasedBuffersAreReused() {
+        BufferPool pool = new BufferPool(64 * 1024, 4);
+        byte[] small = pool.acquire(100);
+        byte[] large = pool.acquire(50_000);
+        pool.release(small);
+        pool.release(large);
+        // arrays not of a size class are left alone
+        pool.release(new byte[1500]);
+        assertSame(small, pool.acquire(500));
+        assertSame(large, pool.acquire(50_000));
+        assertEquals(2, pool.getAllocations());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLarge() {
+        new BufferPool(1024, 4).acquire(1025);
+    }
+}
+
+// END
@@ -0,0 +1,73 @@
+package com.andrewgilmartin.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ExecutorModeTest {
+
+    @Test
+    public void testParse() {
+        assertEquals(ExecutorMode.BOUNDED, ExecutorMode.parse("bounded"));
+        assertEquals(ExecutorMode.FIXED, ExecutorMode.parse("Fixed"));
+    }
+
+    @Test
+    public void testBoundedQueue() {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ExecutorMode.BOUNDED.create(2, 5);
+        try {
+            assertEquals(2, executor.getMaximumPoolSize());
+            assertTrue(executor.getQueue() instanceof ArrayBlockingQueue);
+            assertEquals(5, executor.getQueue().remainingCapacity());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testZeroQueueHandsOff() throws Exception {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ExecutorMode.BOUNDED.create(1, 0);
+        try {
+            assertTrue(executor.getQueue() instanceof SynchronousQueue);
+            CountDownLatch finish = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            // the only thread is busy, so the caller runs the task
+            Thread[] ranOn = new Thread[1];
+            executor.execute(() -> ranOn[0] = Thread.currentThread());
+            assertSame(Thread.currentThread(), ranOn[0]);
+            finish.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeQueue() {
+        ExecutorMode.BOUNDED.create(2, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoThreads() {
+        ExecutorMode.BOUNDED.create(0, 10);
+    }
+
+    @Test
+    public void testFixedIgnoresQueueSize() {
+        ExecutorService executor = ExecutorMode.FIXED.create(2, 0);
+        executor.shutdown();
+    }
+}
+
+// END
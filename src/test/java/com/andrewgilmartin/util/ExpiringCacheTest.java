@@ -0,0 +1,81 @@
+package com.andrewgilmartin.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ExpiringCacheTest {
+
+    @Test
+    public void testPutIfAbsent() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 60_000);
+        assertNull(cache.putIfAbsent("a", "1"));
+        assertEquals("1", cache.putIfAbsent("a", "2"));
+        assertEquals("1", cache.get("a"));
+        cache.remove("a", "2"); // not its value
+        assertEquals("1", cache.get("a"));
+        cache.remove("a", "1");
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 50);
+        cache.putIfAbsent("a", "1");
+        Thread.sleep(100);
+        assertNull(cache.get("a"));
+        assertNull(cache.putIfAbsent("a", "2"));
+        assertEquals("2", cache.get("a"));
+    }
+
+    @Test
+    public void testPutIfAbsentOnceWhileRotating() throws Exception {
+        // a generation of one entry rotates on every add
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(2, 60_000);
+        int threads = 4;
+        int keys = 2_000;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        AtomicInteger added = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int key = 0; key < keys; key++) {
+                        barrier.await();
+                        if (cache.putIfAbsent(key, key) == null) {
+                            added.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(keys, added.get());
+    }
+
+    @Test
+    public void testBounded() {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(100, 60_000);
+        for (int i = 0; i < 10_000; i++) {
+            cache.putIfAbsent(i, i);
+        }
+        assertTrue(cache.size() <= 100);
+        assertEquals(Integer.valueOf(9_999), cache.get(9_999));
+        assertNull(cache.get(0));
+    }
+}
+
+// END
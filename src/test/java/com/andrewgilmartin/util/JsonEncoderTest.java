@@ -0,0 +1,53 @@
+package com.andrewgilmartin.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JsonEncoderTest {
+
+    private static String json(ResponseBuffer buffer) {
+        return new String(buffer.array(), 0, buffer.size(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStructure() {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        new JsonEncoder(buffer)
+                .hash()
+                .value("a", "b")
+                .key("c")
+                .array()
+                .value(1)
+                .value(-20L)
+                .hash()
+                .end()
+                .array()
+                .end()
+                .end()
+                .value("d", 3.5)
+                .value("e", true)
+                .value("f", null)
+                .values("g", Arrays.asList("x", 0, Long.MIN_VALUE))
+                .end();
+        assertEquals("{\"a\":\"b\",\"c\":[1,-20,{},[]],\"d\":3.5,\"e\":true,\"f\":null,\"g\":[\"x\",0,-9223372036854775808]}", json(buffer));
+    }
+
+    @Test
+    public void testEscaping() {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        new JsonEncoder(buffer).value("quote \" backslash \\ newline \n tab \t bell \u0007 del \u007f");
+        assertEquals("\"quote \\\" backslash \\\\ newline \\n tab \\t bell \\u0007 del \\u007f\"", json(buffer));
+    }
+
+    @Test
+    public void testUnicode() {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        new JsonEncoder(buffer).array().value("caf\u00e9 \u2713 \ud83d\udd25").value("lone \ud83d!").end();
+        // non-ASCII is written as UTF-8 and only an unpaired surrogate is escaped
+        assertEquals("[\"caf\u00e9 \u2713 \ud83d\udd25\",\"lone \\ud83d!\"]", json(buffer));
+    }
+}
+
+// END
@@ -0,0 +1,44 @@
+package com.andrewgilmartin.util;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResponseBufferTest {
+
+    @Test
+    public void testUtf8() throws Exception {
+        String text = "plain ascii, caf\u00e9, \u2713 check, \ud83d\udd25 fire";
+        ResponseBuffer buffer = ResponseBuffer.get();
+        Writer writer = buffer.writer();
+        writer.append(text);
+        writer.write(text, 0, 5);
+        writer.write(text.toCharArray(), 0, text.length());
+        writer.flush();
+        byte[] expected = (text + text.substring(0, 5) + text).getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, Arrays.copyOf(buffer.array(), buffer.size()));
+    }
+
+    @Test
+    public void testUnpairedSurrogate() throws Exception {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        buffer.writer().append("a\ud83db\udd25c");
+        assertEquals("a?b?c", new String(buffer.array(), 0, buffer.size(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        ResponseBuffer buffer = ResponseBuffer.get();
+        buffer.writer().append("first");
+        byte[] array = buffer.array();
+        buffer = ResponseBuffer.get();
+        assertEquals(0, buffer.size());
+        assertSame(array, buffer.array());
+        buffer.writer().append("second");
+        assertEquals("second", new String(buffer.array(), 0, buffer.size(), StandardCharsets.UTF_8));
+    }
+}
+
+// END